@@ -0,0 +1,185 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Templates and model shared by all benchmarks.
+ * <p>
+ * The templates under {@code templates/benchmark} exercise inheritance, imported macros, loops,
+ * filters and auto-escaping. The model is deterministic so that results are comparable between
+ * runs.
+ */
+public final class BenchmarkData {
+
+  public static final String HOME = "templates/benchmark/home.peb";
+
+  public static final String BASE = "templates/benchmark/base.peb";
+
+  public static final String MACROS = "templates/benchmark/macros.peb";
+
+  public static final String FOOTER = "templates/benchmark/footer.peb";
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * Reads the source of a template from the classpath.
+   *
+   * @param templateName The classpath location of the template
+   * @return The raw template source
+   */
+  public static String source(String templateName) {
+    try (InputStream is = BenchmarkData.class.getClassLoader().getResourceAsStream(templateName)) {
+      if (is == null) {
+        throw new IllegalArgumentException("Unknown template " + templateName);
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while ((read = is.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Builds the model used to render {@link #HOME}.
+   *
+   * @param productCount The number of products to list
+   * @return The model
+   */
+  public static Map<String, Object> model(int productCount) {
+    Map<String, Object> model = new HashMap<>();
+    model.put("title", "featured products");
+    model.put("user", new User("Jane <Doe>"));
+    model.put("categories", Arrays.asList("Books", "Garden & Outdoors", "Toys"));
+    model.put("navigation", Arrays.asList(
+        new NavigationItem("home", "/", true),
+        new NavigationItem("new arrivals", "/new", false),
+        new NavigationItem("deals", "/deals", false),
+        new NavigationItem("contact us", "/contact", false)));
+
+    List<Product> products = new ArrayList<>(productCount);
+    for (int i = 0; i < productCount; i++) {
+      products.add(new Product(
+          "Product number " + i + " with a fairly long and descriptive name",
+          "Description of <b>product " + i + "</b> & its \"features\"",
+          new BigDecimal(i * 13 % 500).add(new BigDecimal("0.99")),
+          i % 7 != 0,
+          i % 5 == 0 ? 15 : 0,
+          i % 3 == 0 ? Arrays.asList("new", "popular") : Arrays.asList("classic")));
+    }
+    model.put("products", products);
+    return model;
+  }
+
+  public static class User {
+
+    private final String name;
+
+    public User(String name) {
+      this.name = name;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+  }
+
+  public static class NavigationItem {
+
+    private final String label;
+
+    private final String href;
+
+    private final boolean active;
+
+    public NavigationItem(String label, String href, boolean active) {
+      this.label = label;
+      this.href = href;
+      this.active = active;
+    }
+
+    public String getLabel() {
+      return this.label;
+    }
+
+    public String getHref() {
+      return this.href;
+    }
+
+    public boolean isActive() {
+      return this.active;
+    }
+  }
+
+  public static class Product {
+
+    private final String name;
+
+    private final String description;
+
+    private final BigDecimal price;
+
+    private final boolean inStock;
+
+    private final int discount;
+
+    private final List<String> tags;
+
+    public Product(String name, String description, BigDecimal price, boolean inStock,
+        int discount, List<String> tags) {
+      this.name = name;
+      this.description = description;
+      this.price = price;
+      this.inStock = inStock;
+      this.discount = discount;
+      this.tags = tags;
+    }
+
+    public String getName() {
+      return this.name;
+    }
+
+    public String getDescription() {
+      return this.description;
+    }
+
+    public BigDecimal getPrice() {
+      return this.price;
+    }
+
+    public boolean isInStock() {
+      return this.inStock;
+    }
+
+    public int getDiscount() {
+      return this.discount;
+    }
+
+    public List<String> getTags() {
+      return this.tags;
+    }
+  }
+}
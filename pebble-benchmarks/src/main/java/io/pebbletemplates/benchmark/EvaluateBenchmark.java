@@ -0,0 +1,71 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PebbleTemplate#evaluate(java.io.Writer, Map)} of a page that extends a layout,
+ * calls imported macros in a loop, applies filters and relies on auto-escaping.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluateBenchmark {
+
+  @Param({"10", "100", "1000"})
+  public int products;
+
+  @Param({"true", "false"})
+  public boolean autoEscaping;
+
+  @Param({"false", "true"})
+  public boolean compileTemplates;
+
+  private PebbleTemplate template;
+
+  private Map<String, Object> model;
+
+  @Setup
+  public void setup() {
+    PebbleEngine engine = new PebbleEngine.Builder()
+        .autoEscaping(this.autoEscaping)
+        .compileTemplates(this.compileTemplates)
+        .build();
+    this.template = engine.getTemplate(BenchmarkData.HOME);
+    this.model = BenchmarkData.model(this.products);
+  }
+
+  @Benchmark
+  public String evaluate() throws IOException {
+    StringWriter writer = new StringWriter(16 * 1024);
+    this.template.evaluate(writer, this.model);
+    return writer.toString();
+  }
+}
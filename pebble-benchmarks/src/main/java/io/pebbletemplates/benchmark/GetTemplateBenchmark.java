@@ -0,0 +1,64 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link PebbleEngine#getTemplate(String)}.
+ * <p>
+ * The cold benchmark uses an engine without template cache so every invocation loads, lexes,
+ * parses and visits the template. The warm benchmark measures the cost of a cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetTemplateBenchmark {
+
+  @Param({BenchmarkData.HOME, BenchmarkData.BASE, BenchmarkData.MACROS})
+  public String templateName;
+
+  private PebbleEngine coldEngine;
+
+  private PebbleEngine warmEngine;
+
+  @Setup
+  public void setup() {
+    this.coldEngine = new PebbleEngine.Builder().cacheActive(false).build();
+    this.warmEngine = new PebbleEngine.Builder().build();
+    this.warmEngine.getTemplate(this.templateName);
+  }
+
+  @Benchmark
+  public PebbleTemplate cold() {
+    return this.coldEngine.getTemplate(this.templateName);
+  }
+
+  @Benchmark
+  public PebbleTemplate warm() {
+    return this.warmEngine.getTemplate(this.templateName);
+  }
+}
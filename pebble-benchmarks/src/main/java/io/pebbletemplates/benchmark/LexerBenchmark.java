@@ -0,0 +1,61 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.lexer.LexerImpl;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LexerImpl#tokenize(java.io.Reader, String)} on its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LexerBenchmark {
+
+  @Param({BenchmarkData.HOME, BenchmarkData.BASE, BenchmarkData.MACROS})
+  public String templateName;
+
+  private String source;
+
+  private LexerImpl lexer;
+
+  @Setup
+  public void setup() {
+    PebbleEngine engine = new PebbleEngine.Builder().build();
+    ExtensionRegistry registry = engine.getExtensionRegistry();
+    this.source = BenchmarkData.source(this.templateName);
+    this.lexer = new LexerImpl(engine.getSyntax(), registry.getUnaryOperators().values(),
+        registry.getBinaryOperators().values());
+  }
+
+  @Benchmark
+  public TokenStream tokenize() {
+    return this.lexer.tokenize(new StringReader(this.source), this.templateName);
+  }
+}
@@ -0,0 +1,72 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.benchmark;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.lexer.LexerImpl;
+import io.pebbletemplates.pebble.lexer.Token;
+import io.pebbletemplates.pebble.lexer.TokenStream;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.parser.ParserImpl;
+import io.pebbletemplates.pebble.parser.ParserOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ParserImpl#parse(TokenStream)} on a pre-lexed token list so that lexing costs
+ * are excluded.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+
+  @Param({BenchmarkData.HOME, BenchmarkData.BASE, BenchmarkData.MACROS})
+  public String templateName;
+
+  private List<Token> tokens;
+
+  private ParserImpl parser;
+
+  @Setup
+  public void setup() {
+    PebbleEngine engine = new PebbleEngine.Builder().build();
+    ExtensionRegistry registry = engine.getExtensionRegistry();
+    LexerImpl lexer = new LexerImpl(engine.getSyntax(), registry.getUnaryOperators().values(),
+        registry.getBinaryOperators().values());
+    this.tokens = lexer
+        .tokenize(new StringReader(BenchmarkData.source(this.templateName)), this.templateName)
+        .getTokens();
+    this.parser = new ParserImpl(registry.getUnaryOperators(), registry.getBinaryOperators(),
+        registry.getTokenParsers(), new ParserOptions());
+  }
+
+  @Benchmark
+  public RootNode parse() {
+    // a token stream is consumed by the parser, hence a fresh one is needed on every invocation
+    return this.parser.parse(new TokenStream(this.tokens, this.templateName));
+  }
+}
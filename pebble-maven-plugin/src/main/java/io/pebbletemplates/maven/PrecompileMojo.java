@@ -0,0 +1,186 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.maven;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.extension.Extension;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.template.PrecompilationReport;
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the templates of the project at build time, fails the build when a template can't be
+ * parsed and writes the parsed templates into a {@link io.pebbletemplates.pebble.template.TemplateArchive}
+ * packaged with the classes of the project.
+ * <p>
+ * The engine used at runtime only reads the archive when it has been configured like the engine of
+ * this goal, that is with the same syntax, parser options and extensions, and when its template
+ * names match the ones of this goal: by default the ones of a {@code ClasspathLoader} with the
+ * prefix {@code templates} and the suffix {@code .peb}, like the Spring Boot starter.
+ */
+@Mojo(name = "precompile", defaultPhase = LifecyclePhase.PROCESS_CLASSES, threadSafe = true,
+    requiresDependencyResolution = ResolutionScope.COMPILE)
+public class PrecompileMojo extends AbstractMojo {
+
+  @Parameter(defaultValue = "${project}", readonly = true, required = true)
+  MavenProject project;
+
+  /**
+   * The directory of the templates, template names are relative to it.
+   */
+  @Parameter(defaultValue = "${project.basedir}/src/main/resources/templates", required = true)
+  File templateDirectory;
+
+  /**
+   * The suffix of the templates, only the files with this suffix are parsed and it isn't part of
+   * the template names.
+   */
+  @Parameter(defaultValue = ".peb")
+  String suffix;
+
+  /**
+   * The archive, in the output directory so that it's packaged in the jar. It can be opened with
+   * {@code TemplateArchive.open(getClass().getResource("/META-INF/pebble/templates.archive"))}.
+   */
+  @Parameter(defaultValue = "${project.build.outputDirectory}/META-INF/pebble/templates.archive",
+      required = true)
+  File archive;
+
+  /**
+   * The class names of the extensions registered by the engine used at runtime, which are loaded
+   * from the classes and the dependencies of the project.
+   */
+  @Parameter
+  List<String> extensions = new ArrayList<>();
+
+  /**
+   * The delimiters of the templates, when they differ from the default ones.
+   */
+  @Parameter
+  SyntaxParameters syntax;
+
+  @Parameter(defaultValue = "true")
+  boolean newLineTrimming = true;
+
+  @Parameter(defaultValue = "false")
+  boolean literalDecimalTreatedAsInteger;
+
+  @Parameter(defaultValue = "false")
+  boolean literalNumbersAsBigDecimals;
+
+  /**
+   * Whether a template which can't be parsed fails the build, otherwise it's only reported and
+   * left out of the archive.
+   */
+  @Parameter(property = "pebble.failOnError", defaultValue = "true")
+  boolean failOnError = true;
+
+  @Parameter(property = "pebble.skip", defaultValue = "false")
+  boolean skip;
+
+  @Override
+  public void execute() throws MojoExecutionException, MojoFailureException {
+    if (this.skip) {
+      this.getLog().info("Skipping the precompilation of the Pebble templates");
+      return;
+    }
+    if (!this.templateDirectory.isDirectory()) {
+      this.getLog().info("No Pebble templates in " + this.templateDirectory);
+      return;
+    }
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    try (URLClassLoader classLoader = this.createProjectClassLoader()) {
+      Thread.currentThread().setContextClassLoader(classLoader);
+      this.precompile(classLoader);
+    } catch (IOException e) {
+      throw new MojoExecutionException("Could not write the template archive " + this.archive, e);
+    } finally {
+      Thread.currentThread().setContextClassLoader(contextClassLoader);
+    }
+  }
+
+  private void precompile(ClassLoader classLoader)
+      throws MojoExecutionException, MojoFailureException, IOException {
+    long start = System.nanoTime();
+    FileLoader loader = new FileLoader(this.templateDirectory.getAbsolutePath());
+    loader.setSuffix(this.suffix);
+    PebbleEngine engine = this.createEngine(loader, classLoader);
+
+    List<String> templateNames = loader.listTemplateNames();
+    Path file = this.archive.toPath();
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    PrecompilationReport report = engine.precompile(templateNames, file);
+    for (PrecompilationReport.Result failure : report.getFailures()) {
+      this.getLog().error("Invalid Pebble template " + failure.getTemplateName() + ": "
+          + failure.getError().getMessage());
+    }
+    if (!report.isSuccessful() && this.failOnError) {
+      throw new MojoFailureException(String.format("%d of %d Pebble templates are invalid",
+          report.getFailures().size(), templateNames.size()));
+    }
+    this.getLog().info(String.format("Precompiled %d Pebble templates into %s in %d ms",
+        templateNames.size() - report.getFailures().size(), file,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+  }
+
+  private PebbleEngine createEngine(FileLoader loader, ClassLoader classLoader)
+      throws MojoExecutionException {
+    PebbleEngine.Builder builder = new PebbleEngine.Builder()
+        .loader(loader)
+        .newLineTrimming(this.newLineTrimming)
+        .literalDecimalTreatedAsInteger(this.literalDecimalTreatedAsInteger)
+        .literalNumbersAsBigDecimals(this.literalNumbersAsBigDecimals);
+    if (this.syntax != null) {
+      builder.syntax(this.syntax.build(this.newLineTrimming));
+    }
+    for (String extension : this.extensions) {
+      try {
+        builder.extension((Extension) Class.forName(extension, true, classLoader)
+            .getDeclaredConstructor().newInstance());
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        throw new MojoExecutionException("Could not instantiate the Pebble extension " + extension,
+            e);
+      }
+    }
+    return builder.build();
+  }
+
+  private URLClassLoader createProjectClassLoader() throws MojoExecutionException {
+    List<URL> urls = new ArrayList<>();
+    try {
+      if (this.project != null) {
+        for (String element : this.project.getCompileClasspathElements()) {
+          urls.add(new File(element).toURI().toURL());
+        }
+      }
+    } catch (DependencyResolutionRequiredException | MalformedURLException e) {
+      throw new MojoExecutionException("Could not resolve the classpath of the project", e);
+    }
+    return new URLClassLoader(urls.toArray(new URL[0]), this.getClass().getClassLoader());
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.maven;
+
+import io.pebbletemplates.pebble.lexer.Syntax;
+
+/**
+ * The delimiters of the templates, configured by the {@code <syntax>} element of the plugin. The
+ * delimiters which aren't configured keep their default value.
+ */
+public class SyntaxParameters {
+
+  private String commentOpenDelimiter;
+
+  private String commentCloseDelimiter;
+
+  private String executeOpenDelimiter;
+
+  private String executeCloseDelimiter;
+
+  private String printOpenDelimiter;
+
+  private String printCloseDelimiter;
+
+  private String whitespaceTrim;
+
+  Syntax build(boolean newLineTrimming) {
+    Syntax.Builder builder = new Syntax.Builder().setEnableNewLineTrimming(newLineTrimming);
+    if (this.commentOpenDelimiter != null) {
+      builder.setCommentOpenDelimiter(this.commentOpenDelimiter);
+    }
+    if (this.commentCloseDelimiter != null) {
+      builder.setCommentCloseDelimiter(this.commentCloseDelimiter);
+    }
+    if (this.executeOpenDelimiter != null) {
+      builder.setExecuteOpenDelimiter(this.executeOpenDelimiter);
+    }
+    if (this.executeCloseDelimiter != null) {
+      builder.setExecuteCloseDelimiter(this.executeCloseDelimiter);
+    }
+    if (this.printOpenDelimiter != null) {
+      builder.setPrintOpenDelimiter(this.printOpenDelimiter);
+    }
+    if (this.printCloseDelimiter != null) {
+      builder.setPrintCloseDelimiter(this.printCloseDelimiter);
+    }
+    if (this.whitespaceTrim != null) {
+      builder.setWhitespaceTrim(this.whitespaceTrim);
+    }
+    return builder.build();
+  }
+
+  public void setCommentOpenDelimiter(String commentOpenDelimiter) {
+    this.commentOpenDelimiter = commentOpenDelimiter;
+  }
+
+  public void setCommentCloseDelimiter(String commentCloseDelimiter) {
+    this.commentCloseDelimiter = commentCloseDelimiter;
+  }
+
+  public void setExecuteOpenDelimiter(String executeOpenDelimiter) {
+    this.executeOpenDelimiter = executeOpenDelimiter;
+  }
+
+  public void setExecuteCloseDelimiter(String executeCloseDelimiter) {
+    this.executeCloseDelimiter = executeCloseDelimiter;
+  }
+
+  public void setPrintOpenDelimiter(String printOpenDelimiter) {
+    this.printOpenDelimiter = printOpenDelimiter;
+  }
+
+  public void setPrintCloseDelimiter(String printCloseDelimiter) {
+    this.printCloseDelimiter = printCloseDelimiter;
+  }
+
+  public void setWhitespaceTrim(String whitespaceTrim) {
+    this.whitespaceTrim = whitespaceTrim;
+  }
+}
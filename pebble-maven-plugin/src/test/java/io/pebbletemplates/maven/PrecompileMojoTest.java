@@ -0,0 +1,109 @@
+package io.pebbletemplates.maven;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.template.TemplateArchive;
+import org.apache.maven.plugin.MojoFailureException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PrecompileMojoTest {
+
+  @Test
+  void archivesTheTemplates(@TempDir Path directory) throws Exception {
+    Path templates = directory.resolve("templates");
+    write(templates, "base.peb", "<html>{% block content %}{% endblock %}</html>");
+    write(templates, "pages/home.peb",
+        "{% extends 'base' %}{% block content %}{{ name }}{% endblock %}");
+    write(templates, "notes.txt", "{{ not a template");
+    PrecompileMojo mojo = mojo(directory);
+
+    mojo.execute();
+
+    TemplateArchive archive = TemplateArchive.open(mojo.archive.toPath());
+    assertEquals(new HashSet<>(Arrays.asList("base", "pages/home")), archive.getTemplateNames());
+    FileLoader loader = new FileLoader(templates.toString());
+    loader.setSuffix(".peb");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).templateArchive(archive)
+        .build();
+    assertSame(archive, engine.getTemplateArchive());
+    StringWriter writer = new StringWriter();
+    engine.getTemplate("pages/home").evaluate(writer, Collections.singletonMap("name", "Pebble"));
+    assertEquals("<html>Pebble</html>", writer.toString());
+  }
+
+  @Test
+  void failsOnInvalidTemplates(@TempDir Path directory) throws IOException {
+    write(directory.resolve("templates"), "valid.peb", "{{ name }}");
+    write(directory.resolve("templates"), "invalid.peb", "{% if name %}unclosed");
+    PrecompileMojo mojo = mojo(directory);
+
+    MojoFailureException exception = assertThrows(MojoFailureException.class, mojo::execute);
+
+    assertEquals("1 of 2 Pebble templates are invalid", exception.getMessage());
+    assertFalse(Files.exists(mojo.archive.toPath()));
+  }
+
+  @Test
+  void leavesInvalidTemplatesOutOfTheArchive(@TempDir Path directory) throws Exception {
+    write(directory.resolve("templates"), "valid.peb", "{{ name }}");
+    write(directory.resolve("templates"), "invalid.peb", "{% if name %}unclosed");
+    PrecompileMojo mojo = mojo(directory);
+    mojo.failOnError = false;
+
+    mojo.execute();
+
+    assertEquals(Collections.singleton("valid"),
+        TemplateArchive.open(mojo.archive.toPath()).getTemplateNames());
+  }
+
+  @Test
+  void usesTheConfiguredSyntax(@TempDir Path directory) throws Exception {
+    write(directory.resolve("templates"), "page.peb", "${ name }");
+    PrecompileMojo mojo = mojo(directory);
+    mojo.syntax = new SyntaxParameters();
+    mojo.syntax.setPrintOpenDelimiter("${");
+    mojo.syntax.setPrintCloseDelimiter("}");
+
+    mojo.execute();
+
+    assertFalse(TemplateArchive.open(mojo.archive.toPath()).getFingerprint().equals(
+        TemplateArchive.open(defaultArchive(directory)).getFingerprint()));
+  }
+
+  private static Path defaultArchive(Path directory) throws Exception {
+    Path other = directory.resolve("other");
+    write(other.resolve("templates"), "page.peb", "{{ name }}");
+    PrecompileMojo mojo = mojo(other);
+    mojo.execute();
+    return mojo.archive.toPath();
+  }
+
+  private static PrecompileMojo mojo(Path directory) {
+    PrecompileMojo mojo = new PrecompileMojo();
+    mojo.templateDirectory = directory.resolve("templates").toFile();
+    mojo.suffix = ".peb";
+    mojo.archive = directory.resolve("classes/META-INF/pebble/templates.archive").toFile();
+    return mojo;
+  }
+
+  private static void write(Path directory, String name, String content) throws IOException {
+    Path file = directory.resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
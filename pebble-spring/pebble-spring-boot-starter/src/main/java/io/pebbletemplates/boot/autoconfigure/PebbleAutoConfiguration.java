@@ -3,6 +3,7 @@ package io.pebbletemplates.boot.autoconfigure;
 import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.attributes.methodaccess.MethodAccessValidator;
 import io.pebbletemplates.pebble.extension.Extension;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
 import io.pebbletemplates.pebble.loader.ClasspathLoader;
 import io.pebbletemplates.pebble.loader.Loader;
 import io.pebbletemplates.pebble.node.ForNode;
@@ -26,7 +27,8 @@ import java.util.List;
 @AutoConfiguration
 @ConditionalOnClass(PebbleEngine.class)
 @EnableConfigurationProperties(PebbleProperties.class)
-@Import({PebbleServletWebConfiguration.class, PebbleReactiveWebConfiguration.class})
+@Import({PebbleServletWebConfiguration.class, PebbleReactiveWebConfiguration.class,
+    PebbleMetricsConfiguration.class})
 public class PebbleAutoConfiguration extends AbstractPebbleConfiguration {
 
   @Bean
@@ -52,7 +54,8 @@ public class PebbleAutoConfiguration extends AbstractPebbleConfiguration {
       Loader<?> pebbleLoader,
       SpringExtension springExtension,
       @Nullable List<Extension> extensions,
-      @Nullable MethodAccessValidator methodAccessValidator) {
+      @Nullable MethodAccessValidator methodAccessValidator,
+      @Nullable Instrumentation instrumentation) {
     PebbleEngine.Builder builder = new PebbleEngine.Builder();
     builder.loader(pebbleLoader);
     builder.extension(springExtension);
@@ -68,6 +71,9 @@ public class PebbleAutoConfiguration extends AbstractPebbleConfiguration {
     if (methodAccessValidator != null) {
       builder.methodAccessValidator(methodAccessValidator);
     }
+    if (instrumentation != null) {
+      builder.instrumentation(instrumentation);
+    }
     return builder.build();
   }
 }
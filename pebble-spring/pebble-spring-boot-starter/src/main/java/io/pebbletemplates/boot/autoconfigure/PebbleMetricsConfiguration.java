@@ -0,0 +1,30 @@
+package io.pebbletemplates.boot.autoconfigure;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
+import io.pebbletemplates.pebble.instrumentation.MicrometerInstrumentation;
+import io.pebbletemplates.pebble.loader.Loader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Collections;
+
+/**
+ * Registers the Micrometer binder of the engine when Micrometer is on the classpath, Spring Boot
+ * binds it to the meter registry of the application. The meters are tagged with the template names
+ * unless the templates are loaded from strings, whose names are the templates themselves.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnClass(MeterBinder.class)
+class PebbleMetricsConfiguration {
+
+  @Bean
+  @ConditionalOnMissingBean(Instrumentation.class)
+  MicrometerInstrumentation pebbleInstrumentation(Loader<?> pebbleLoader) {
+    return new MicrometerInstrumentation(Collections.emptyList(),
+        !(pebbleLoader instanceof StringLoader));
+  }
+}
@@ -6,6 +6,7 @@ import io.pebbletemplates.pebble.attributes.methodaccess.MethodAccessValidator;
 import io.pebbletemplates.pebble.attributes.methodaccess.NoOpMethodAccessValidator;
 import io.pebbletemplates.pebble.cache.tag.NoOpTagCache;
 import io.pebbletemplates.pebble.cache.template.NoOpTemplateCache;
+import io.pebbletemplates.pebble.instrumentation.MicrometerInstrumentation;
 import io.pebbletemplates.pebble.loader.Loader;
 import io.pebbletemplates.spring.extension.SpringExtension;
 import io.pebbletemplates.spring.reactive.PebbleReactiveView;
@@ -48,6 +49,7 @@ class PebbleAutoConfigurationTest {
     assertThat(this.webContext.getBean(PebbleEngine.class).getEvaluationOptions().getMethodAccessValidator()).isInstanceOf(BlacklistMethodAccessValidator.class);
     assertThat(this.webContext.getBean(PebbleEngine.class).getTagCache()).isInstanceOf(NoOpTagCache.class);
     assertThat(this.webContext.getBean(PebbleEngine.class).getTemplateCache()).isInstanceOf(NoOpTemplateCache.class);
+    assertThat(this.webContext.getBean(PebbleEngine.class).getInstrumentation()).isInstanceOf(MicrometerInstrumentation.class);
     assertThat(this.webContext.getBeansOfType(PebbleViewResolver.class)).hasSize(1);
   }
 
@@ -3,28 +3,31 @@ package io.pebbletemplates.spring.reactive;
 import static java.util.Optional.ofNullable;
 
 import io.pebbletemplates.pebble.PebbleEngine;
-import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.spring.context.Beans;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.utils.ByteWriter;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.Executor;
 
+import org.reactivestreams.Publisher;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.MediaType;
 import org.springframework.lang.Nullable;
+import org.springframework.util.Assert;
 import org.springframework.util.MimeType;
 import org.springframework.web.reactive.result.view.AbstractUrlBasedView;
 import org.springframework.web.server.ServerWebExchange;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 public class PebbleReactiveView extends AbstractUrlBasedView {
 
@@ -33,8 +36,15 @@ public class PebbleReactiveView extends AbstractUrlBasedView {
   private static final String RESPONSE_VARIABLE_NAME = "response";
   private static final String SESSION_VARIABLE_NAME = "session";
 
+  /**
+   * The default size of the buffers written to the response
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 8192;
+
   private PebbleEngine pebbleEngine;
   private String templateName;
+  private int chunkSize = DEFAULT_CHUNK_SIZE;
+  private Executor executor = Schedulers.boundedElastic()::schedule;
 
   @Override
   public boolean checkResourceExists(Locale locale) {
@@ -45,21 +55,24 @@ public class PebbleReactiveView extends AbstractUrlBasedView {
   protected Mono<Void> renderInternal(Map<String, Object> renderAttributes,
                                       MediaType contentType,
                                       ServerWebExchange exchange) {
-    DataBuffer dataBuffer = exchange.getResponse().bufferFactory().allocateBuffer();
     if (this.logger.isDebugEnabled()) {
       this.logger.debug(exchange.getLogPrefix() + "Rendering [" + this.getUrl() + "]");
     }
 
     Locale locale = LocaleContextHolder.getLocale(exchange.getLocaleContext());
+    Charset charset = this.getCharset(contentType);
+    PebbleTemplate template;
     try {
-      Charset charset = this.getCharset(contentType);
-      Writer writer = new OutputStreamWriter(dataBuffer.asOutputStream(), charset);
-      this.evaluateTemplate(renderAttributes, locale, writer);
+      template = this.pebbleEngine.getTemplate(this.templateName);
     } catch (Exception ex) {
-      DataBufferUtils.release(dataBuffer);
       return Mono.error(ex);
     }
-    return exchange.getResponse().writeWith(Flux.just(dataBuffer));
+    // the template is rendered on the executor, which blocks while the response has no demand
+    Publisher<DataBuffer> body = DataBufferUtils.outputStreamPublisher(
+            outputStream -> this.evaluateTemplate(template, renderAttributes, locale, outputStream,
+                    charset),
+            exchange.getResponse().bufferFactory(), this.executor, this.chunkSize);
+    return exchange.getResponse().writeWith(body);
   }
 
   @Override
@@ -82,13 +95,13 @@ public class PebbleReactiveView extends AbstractUrlBasedView {
         .orElse(this.getDefaultCharset());
   }
 
-  private void evaluateTemplate(Map<String, Object> model, Locale locale, Writer writer)
-      throws IOException, PebbleException {
+  private void evaluateTemplate(PebbleTemplate template, Map<String, Object> model,
+                                Locale locale, OutputStream outputStream, Charset charset) {
     try {
-      PebbleTemplate template = this.pebbleEngine.getTemplate(this.templateName);
-      template.evaluate(writer, model, locale);
-    } finally {
-      writer.flush();
+      // each full buffer of the writer becomes a chunk of the response
+      template.evaluate(new ByteWriter(outputStream, charset, this.chunkSize), model, locale);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
     }
   }
 
@@ -107,4 +120,35 @@ public class PebbleReactiveView extends AbstractUrlBasedView {
   public void setTemplateName(String templateName) {
     this.templateName = templateName;
   }
+
+  public int getChunkSize() {
+    return this.chunkSize;
+  }
+
+  /**
+   * Sets the size of the buffers written to the response. A buffer is written once it is full, or
+   * when the template is flushed, and the rendering waits while the response can't accept more.
+   *
+   * @param chunkSize The size of the buffers, in bytes
+   */
+  public void setChunkSize(int chunkSize) {
+    Assert.isTrue(chunkSize >= 4, "Chunk size must be at least 4 bytes");
+    this.chunkSize = chunkSize;
+  }
+
+  public Executor getExecutor() {
+    return this.executor;
+  }
+
+  /**
+   * Sets the executor on which templates are rendered. The rendering blocks while the response
+   * can't accept more buffers, the executor must therefore not run on an event loop. Defaults to
+   * the bounded elastic scheduler of Reactor.
+   *
+   * @param executor The executor
+   */
+  public void setExecutor(Executor executor) {
+    Assert.notNull(executor, "Executor must not be null");
+    this.executor = executor;
+  }
 }
@@ -18,7 +18,8 @@ import org.springframework.web.servlet.support.RequestContextUtils;
 import org.springframework.web.servlet.view.AbstractTemplateView;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Map;
 
@@ -78,12 +79,14 @@ public class PebbleView extends AbstractTemplateView {
       HttpServletResponse response) throws IOException, PebbleException {
     Locale locale = RequestContextUtils.getLocale(request);
 
-    Writer writer = response.getWriter();
+    // static text is written as bytes encoded once per charset
+    OutputStream outputStream = response.getOutputStream();
     try {
       PebbleTemplate template = this.pebbleEngine.getTemplate(this.templateName);
-      template.evaluate(writer, model, locale);
+      template.evaluate(outputStream, Charset.forName(response.getCharacterEncoding()), model,
+          locale);
     } finally {
-      writer.flush();
+      outputStream.flush();
     }
   }
 
@@ -0,0 +1,66 @@
+package io.pebbletemplates.spring.reactive;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Unit test for the PebbleReactiveView
+ */
+class PebbleReactiveViewTest {
+
+  private final PebbleReactiveView view = new PebbleReactiveView();
+  private final MockServerWebExchange exchange = MockServerWebExchange
+      .from(MockServerHttpRequest.get("/"));
+
+  @BeforeEach
+  void initView() {
+    this.view.setPebbleEngine(new PebbleEngine.Builder().loader(new StringLoader()).build());
+    this.view.setApplicationContext(new StaticApplicationContext());
+  }
+
+  @Test
+  void whenRenderingALargePage_thenTheResponseIsWrittenInChunks() {
+    this.view.setTemplateName("{% for i in range(1, 100) %}<li>{{ name }} {{ i }}</li>{% endfor %}");
+    this.view.setChunkSize(64);
+    Map<String, Object> model = new HashMap<>();
+    model.put("name", "élément");
+
+    this.view.render(model, MediaType.TEXT_HTML, this.exchange).block();
+
+    StringBuilder expected = new StringBuilder();
+    for (int i = 1; i <= 100; i++) {
+      expected.append("<li>élément ").append(i).append("</li>");
+    }
+    List<DataBuffer> buffers = this.exchange.getResponse().getBody().collectList().block();
+    assertTrue(buffers.size() > 1);
+    DataBuffer joined = this.exchange.getResponse().bufferFactory().join(buffers);
+    assertEquals(expected.toString(), joined.toString(StandardCharsets.UTF_8));
+    DataBufferUtils.release(joined);
+  }
+
+  @Test
+  void whenRenderingAPageWhichFails_thenTheErrorIsPropagated() {
+    this.view.setTemplateName("{{ 'a' | date('invalid') }}");
+
+    assertThrows(PebbleException.class,
+        () -> this.view.render(new HashMap<>(), MediaType.TEXT_HTML, this.exchange).block());
+  }
+}
@@ -1,12 +1,18 @@
 package io.pebbletemplates.spring.reactive;
 
 import io.pebbletemplates.pebble.PebbleEngine;
+import org.springframework.lang.Nullable;
 import org.springframework.web.reactive.result.view.AbstractUrlBasedView;
 import org.springframework.web.reactive.result.view.UrlBasedViewResolver;
 
+import java.util.concurrent.Executor;
+
 public class PebbleReactiveViewResolver extends UrlBasedViewResolver {
 
   private final PebbleEngine pebbleEngine;
+  private int chunkSize = PebbleReactiveView.DEFAULT_CHUNK_SIZE;
+  @Nullable
+  private Executor executor;
 
   public PebbleReactiveViewResolver(PebbleEngine pebbleEngine) {
     this.setViewClass(this.requiredViewClass());
@@ -18,6 +24,10 @@ public class PebbleReactiveViewResolver extends UrlBasedViewResolver {
     PebbleReactiveView view = (PebbleReactiveView) super.createView(viewName);
     view.setPebbleEngine(this.pebbleEngine);
     view.setTemplateName(viewName);
+    view.setChunkSize(this.chunkSize);
+    if (this.executor != null) {
+      view.setExecutor(this.executor);
+    }
 
     return view;
   }
@@ -26,4 +36,24 @@ public class PebbleReactiveViewResolver extends UrlBasedViewResolver {
   protected Class<?> requiredViewClass() {
     return PebbleReactiveView.class;
   }
+
+  /**
+   * Sets the size of the buffers written to the response by the views.
+   *
+   * @param chunkSize The size of the buffers, in bytes
+   * @see PebbleReactiveView#setChunkSize(int)
+   */
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets the executor on which the views render their templates.
+   *
+   * @param executor The executor
+   * @see PebbleReactiveView#setExecutor(Executor)
+   */
+  public void setExecutor(Executor executor) {
+    this.executor = executor;
+  }
 }
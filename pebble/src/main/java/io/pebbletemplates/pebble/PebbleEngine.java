@@ -12,35 +12,70 @@ package io.pebbletemplates.pebble;
 import io.pebbletemplates.pebble.attributes.methodaccess.BlacklistMethodAccessValidator;
 import io.pebbletemplates.pebble.attributes.methodaccess.MethodAccessValidator;
 import io.pebbletemplates.pebble.cache.CacheKey;
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
 import io.pebbletemplates.pebble.cache.PebbleCache;
+import io.pebbletemplates.pebble.cache.macro.ConcurrentMapMacroCache;
+import io.pebbletemplates.pebble.cache.macro.NoOpMacroCache;
 import io.pebbletemplates.pebble.cache.tag.ConcurrentMapTagCache;
 import io.pebbletemplates.pebble.cache.tag.NoOpTagCache;
 import io.pebbletemplates.pebble.cache.template.ConcurrentMapTemplateCache;
 import io.pebbletemplates.pebble.cache.template.NoOpTemplateCache;
+import io.pebbletemplates.pebble.cache.template.TemplateDependencyGraph;
+import io.pebbletemplates.pebble.compiler.TemplateCompiler;
 import io.pebbletemplates.pebble.error.LoaderException;
+import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.*;
 import io.pebbletemplates.pebble.extension.escaper.EscapingStrategy;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler;
 import io.pebbletemplates.pebble.lexer.LexerImpl;
 import io.pebbletemplates.pebble.lexer.Syntax;
 import io.pebbletemplates.pebble.lexer.TokenStream;
 import io.pebbletemplates.pebble.loader.ClasspathLoader;
 import io.pebbletemplates.pebble.loader.Loader;
 import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.loader.TemplateReloader;
 import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.operator.BinaryOperator;
+import io.pebbletemplates.pebble.operator.UnaryOperator;
 import io.pebbletemplates.pebble.parser.Parser;
 import io.pebbletemplates.pebble.parser.ParserImpl;
 import io.pebbletemplates.pebble.parser.ParserOptions;
+import io.pebbletemplates.pebble.template.EvaluationContextPool;
 import io.pebbletemplates.pebble.template.EvaluationOptions;
+import io.pebbletemplates.pebble.template.NodeCodec;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.template.PrecompilationReport;
+import io.pebbletemplates.pebble.template.TemplateArchive;
+import io.pebbletemplates.pebble.template.TemplateArchiveWriter;
+import io.pebbletemplates.pebble.tokenParser.TokenParser;
 import io.pebbletemplates.pebble.utils.TypeUtils;
+import io.pebbletemplates.pebble.utils.VirtualThreads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.NotSerializableException;
 import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 
 /**
@@ -63,8 +98,12 @@ public class PebbleEngine {
 
   private final int maxRenderedSize;
 
+  private final int maxRenderedBytes;
+
   private final PebbleCache<CacheKey, Object> tagCache;
 
+  private final PebbleCache<MacroCacheKey, String> macroCache;
+
   private final ExecutorService executorService;
 
   private final PebbleCache<Object, PebbleTemplate> templateCache;
@@ -75,6 +114,20 @@ public class PebbleEngine {
 
   private final EvaluationOptions evaluationOptions;
 
+  private final TemplateCompiler templateCompiler;
+
+  private final TemplateReloader templateReloader;
+
+  private final TemplateArchive templateArchive;
+
+  private final NodeCodec nodeCodec;
+
+  private final Instrumentation instrumentation;
+
+  private final EvaluationContextPool evaluationContextPool;
+
+  private final TemplateDependencyGraph dependencyGraph = new TemplateDependencyGraph();
+
   /**
    * Constructor for the Pebble Engine given an instantiated Loader. This method does only load
    * those userProvidedExtensions listed here.
@@ -87,24 +140,44 @@ public class PebbleEngine {
       boolean strictVariables,
       Locale defaultLocale,
       int maxRenderedSize,
+      int maxRenderedBytes,
       PebbleCache<CacheKey, Object> tagCache,
+      PebbleCache<MacroCacheKey, String> macroCache,
       PebbleCache<Object, PebbleTemplate> templateCache,
       ExecutorService executorService,
       ExtensionRegistry extensionRegistry,
       ParserOptions parserOptions,
-      EvaluationOptions evaluationOptions) {
+      EvaluationOptions evaluationOptions,
+      TemplateCompiler templateCompiler,
+      TemplateReloader templateReloader,
+      TemplateArchive templateArchive,
+      Instrumentation instrumentation,
+      boolean contextPooling) {
 
     this.loader = loader;
     this.syntax = syntax;
     this.strictVariables = strictVariables;
     this.defaultLocale = defaultLocale;
     this.maxRenderedSize = maxRenderedSize;
+    this.maxRenderedBytes = maxRenderedBytes;
     this.tagCache = tagCache;
+    this.macroCache = macroCache;
     this.executorService = executorService;
     this.templateCache = templateCache;
     this.extensionRegistry = extensionRegistry;
     this.parserOptions = parserOptions;
     this.evaluationOptions = evaluationOptions;
+    this.templateCompiler = templateCompiler;
+    this.templateReloader = templateReloader;
+    if (templateArchive != null && !templateArchive.getFingerprint().equals(this.fingerprint())) {
+      this.logger.warn("The template archive has been written with another configuration of the "
+          + "engine or another version of Pebble, all templates will be parsed");
+      templateArchive = null;
+    }
+    this.templateArchive = templateArchive;
+    this.nodeCodec = templateArchive == null ? null : new NodeCodec(extensionRegistry);
+    this.instrumentation = instrumentation;
+    this.evaluationContextPool = contextPooling ? new EvaluationContextPool(this) : null;
   }
 
   /**
@@ -129,6 +202,135 @@ public class PebbleEngine {
     return this.getTemplate(templateName, new StringLoader());
   }
 
+  /**
+   * Loads, parses, and compiles a template used by another template, through the "extends",
+   * "include", "import", "from" or "embed" tags, and records the dependency between them so that
+   * {@link #invalidate(String)} evicts the latter along with the former.
+   *
+   * @param templateName The resolved name of the used template
+   * @param dependent The template using it
+   * @return PebbleTemplate The compiled version of the template
+   */
+  public PebbleTemplate getTemplate(String templateName, PebbleTemplateImpl dependent) {
+    if (templateName != null && this.loader != null && dependent.getCacheKey() != null) {
+      // recorded first, so that an invalidation happening meanwhile evicts the dependent template
+      this.dependencyGraph.addDependency(dependent.getCacheKey(),
+          this.loader.createCacheKey(templateName));
+    }
+    return this.getTemplate(templateName, this.loader);
+  }
+
+  /**
+   * Evicts a template from the template cache, along with all the templates which directly or
+   * indirectly extend, include, import or embed it, and discards the outputs of the pure macros
+   * invoked by these templates from the macro cache. They are loaded again the next time they are
+   * used, while the other templates remain cached.
+   *
+   * @param templateName The name of the template
+   */
+  public void invalidate(String templateName) {
+    Object cacheKey = this.loader.createCacheKey(templateName);
+    Set<Object> evicted = this.dependencyGraph.remove(cacheKey, this.templateCache::invalidate);
+    this.macroCache.invalidateIf(key -> evicted.contains(key.getTemplateCacheKey()));
+    this.logger.debug("Invalidated templates {}", evicted);
+  }
+
+  /**
+   * Evicts all the templates from the template cache.
+   */
+  public void invalidateAll() {
+    this.templateCache.invalidateAll();
+    this.macroCache.invalidateAll();
+    this.dependencyGraph.clear();
+  }
+
+  /**
+   * Compiles all the templates listed by the loader ahead of time, see {@link
+   * Loader#listTemplateNames()}, so that the first evaluations don't have to load and parse them.
+   * The templates are compiled concurrently, see {@link #precompile(Collection)}.
+   *
+   * @return The compilation time and the errors of each template
+   */
+  public PrecompilationReport precompile() {
+    return this.precompile(this.loader.listTemplateNames());
+  }
+
+  /**
+   * Compiles some templates ahead of time on the executor service of the engine, see {@link
+   * Builder#executorService(ExecutorService)}. Without one, the templates are compiled on a pool
+   * of at most one thread per processor, which is shut down afterwards.
+   *
+   * @param templateNames The names of the templates
+   * @return The compilation time and the errors of each template
+   */
+  public PrecompilationReport precompile(Collection<String> templateNames) {
+    if (this.executorService != null) {
+      return this.precompile(templateNames, this.executorService);
+    }
+    int threads = Math.min(templateNames.size(), Runtime.getRuntime().availableProcessors());
+    ExecutorService executorService = Executors.newFixedThreadPool(Math.max(threads, 1),
+        runnable -> {
+          Thread thread = new Thread(runnable, "pebble-precompiler");
+          thread.setDaemon(true);
+          return thread;
+        });
+    try {
+      return this.precompile(templateNames, executorService);
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  /**
+   * Compiles some templates ahead of time. The compiled templates are stored in the template cache,
+   * a template which can't be compiled is reported instead of failing the others.
+   *
+   * @param templateNames The names of the templates
+   * @param executorService The executor compiling the templates concurrently
+   * @return The compilation time and the errors of each template
+   */
+  public PrecompilationReport precompile(Collection<String> templateNames,
+      ExecutorService executorService) {
+    long start = System.nanoTime();
+    List<Future<PrecompilationReport.Result>> futures = new ArrayList<>(templateNames.size());
+    for (String templateName : templateNames) {
+      futures.add(executorService.submit(() -> this.precompile(templateName)));
+    }
+    List<PrecompilationReport.Result> results = new ArrayList<>(futures.size());
+    try {
+      for (Future<PrecompilationReport.Result> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      futures.forEach(future -> future.cancel(true));
+      Thread.currentThread().interrupt();
+      throw new PebbleException(e, "Interrupted while precompiling templates");
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(true));
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new PebbleException(e.getCause(), "Could not precompile templates");
+    }
+    PrecompilationReport report = new PrecompilationReport(results,
+        Duration.ofNanos(System.nanoTime() - start));
+    this.logger.info("{}", report);
+    return report;
+  }
+
+  private PrecompilationReport.Result precompile(String templateName) {
+    long start = System.nanoTime();
+    RuntimeException error = null;
+    try {
+      this.getTemplate(templateName);
+    } catch (RuntimeException e) {
+      this.logger.warn("Could not precompile template {}", templateName, e);
+      error = e;
+    }
+    return new PrecompilationReport.Result(templateName,
+        Duration.ofNanos(System.nanoTime() - start), error);
+  }
+
   private PebbleTemplate getTemplate(String templateName, Loader loader) {
     /*
      * template name will be null if user uses the extends tag with an
@@ -143,34 +345,53 @@ public class PebbleEngine {
     }
 
     Object cacheKey = loader.createCacheKey(templateName);
-    return this.templateCache
-        .computeIfAbsent(cacheKey, k -> this.getPebbleTemplate(templateName, loader, cacheKey));
+    if (this.instrumentation == null) {
+      return this.templateCache
+          .computeIfAbsent(cacheKey, k -> this.getPebbleTemplate(templateName, loader, cacheKey));
+    }
+
+    boolean[] compiled = new boolean[1];
+    PebbleTemplate template = this.templateCache.computeIfAbsent(cacheKey, k -> {
+      compiled[0] = true;
+      long start = System.nanoTime();
+      Throwable error = null;
+      try {
+        return this.getPebbleTemplate(templateName, loader, cacheKey);
+      } catch (RuntimeException | Error e) {
+        error = e;
+        throw e;
+      } finally {
+        this.instrumentation.templateCompiled(templateName, System.nanoTime() - start, error);
+      }
+    });
+    if (!compiled[0]) {
+      this.instrumentation.templateCacheHit(templateName);
+    }
+    return template;
   }
 
   private PebbleTemplate getPebbleTemplate(String templateName, Loader loader, Object cacheKey) {
 
+    if (this.templateReloader != null) {
+      // before reading the template, so that a concurrent change isn't missed
+      this.templateReloader.watch(this, loader, templateName);
+    }
+
     Reader templateReader = loader.getReader(cacheKey);
     
     try {
-      this.logger.trace("Tokenizing template named {}", templateName);
-      LexerImpl lexer = new LexerImpl(this.syntax,
-          this.extensionRegistry.getUnaryOperators().values(),
-          this.extensionRegistry.getBinaryOperators().values());
-      TokenStream tokenStream = lexer.tokenize(templateReader, templateName);
-      this.logger.trace("TokenStream: {}", tokenStream);
-      
-      Parser parser = new ParserImpl(this.extensionRegistry.getUnaryOperators(),
-          this.extensionRegistry.getBinaryOperators(), this.extensionRegistry.getTokenParsers(),
-              this.parserOptions);
-      RootNode root = parser.parse(tokenStream);
-
-      PebbleTemplateImpl instance = new PebbleTemplateImpl(this, root, templateName);
-
-      for (NodeVisitorFactory visitorFactory : this.extensionRegistry.getNodeVisitors()) {
-        visitorFactory.createVisitor(instance).visit(root);
+      RootNode root;
+      if (this.templateArchive != null) {
+        String source = readSource(templateReader, templateName);
+        root = this.templateArchive.read(templateName, source, this.nodeCodec);
+        if (root == null) {
+          root = this.parse(new StringReader(source), templateName);
+        }
+      } else {
+        root = this.parse(templateReader, templateName);
       }
 
-      return instance;
+      return this.compile(root, templateName, cacheKey);
 
     } finally {
       try {
@@ -181,6 +402,201 @@ public class PebbleEngine {
     }
   }
 
+  /**
+   * Creates a template from its tree, which is modified by the node visitors.
+   */
+  private PebbleTemplateImpl compile(RootNode root, String templateName, Object cacheKey) {
+    PebbleTemplateImpl instance = new PebbleTemplateImpl(this, root, templateName, cacheKey);
+
+    for (NodeVisitorFactory visitorFactory : this.extensionRegistry.getNodeVisitors()) {
+      visitorFactory.createVisitor(instance).visit(root);
+    }
+
+    if (this.templateCompiler != null) {
+      this.logger.trace("Compiling template named {}", templateName);
+      this.templateCompiler.compile(instance, root);
+    }
+
+    return instance;
+  }
+
+  private RootNode parse(Reader templateReader, String templateName) {
+    this.logger.trace("Tokenizing template named {}", templateName);
+    LexerImpl lexer = new LexerImpl(this.syntax,
+        this.extensionRegistry.getUnaryOperators().values(),
+        this.extensionRegistry.getBinaryOperators().values());
+    TokenStream tokenStream = lexer.tokenize(templateReader, templateName);
+    this.logger.trace("TokenStream: {}", tokenStream);
+
+    Parser parser = new ParserImpl(this.extensionRegistry.getUnaryOperators(),
+        this.extensionRegistry.getBinaryOperators(), this.extensionRegistry.getTokenParsers(),
+        this.parserOptions);
+    return parser.parse(tokenStream);
+  }
+
+  private static String readSource(Reader reader, String templateName) {
+    StringBuilder source = new StringBuilder();
+    char[] buffer = new char[4096];
+    try {
+      int count;
+      while ((count = reader.read(buffer)) != -1) {
+        source.append(buffer, 0, count);
+      }
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not read template " + templateName);
+    }
+    return source.toString();
+  }
+
+  /**
+   * Parses the templates listed by the loader and writes their trees into an archive, see {@link
+   * Loader#listTemplateNames()} and {@link Builder#templateArchive(TemplateArchive)}.
+   *
+   * @param file The archive, replaced if it exists
+   * @return The names of the archived templates
+   * @throws IOException If the archive can't be written
+   */
+  public List<String> writeTemplateArchive(Path file) throws IOException {
+    return this.writeTemplateArchive(this.loader.listTemplateNames(), file);
+  }
+
+  /**
+   * Parses templates and writes their trees into an archive, which is meant to be written at build
+   * time and used by engines configured like this one, see {@link
+   * Builder#templateArchive(TemplateArchive)}. A template which can't be parsed fails the whole
+   * archive, while a template using nodes which aren't serializable is only left out of it.
+   *
+   * @param templateNames The names of the templates
+   * @param file The archive, replaced if it exists
+   * @return The names of the archived templates
+   * @throws IOException If the archive can't be written
+   */
+  public List<String> writeTemplateArchive(Collection<String> templateNames, Path file)
+      throws IOException {
+    TemplateArchiveWriter writer = new TemplateArchiveWriter(this.fingerprint(),
+        new NodeCodec(this.extensionRegistry));
+    for (String templateName : templateNames) {
+      String source = this.readSource(templateName);
+      this.archive(writer, templateName, source,
+          this.parse(new StringReader(source), templateName));
+    }
+    writer.write(file);
+    this.logger.info("Archived {} templates into {}", writer.getTemplateNames().size(), file);
+    return writer.getTemplateNames();
+  }
+
+  /**
+   * Compiles some templates ahead of time and writes their trees into an archive, loading and
+   * parsing each template only once, see {@link #precompile(Collection)} and {@link
+   * #writeTemplateArchive(Collection, Path)}. The templates are compiled one after the other on
+   * the calling thread and stored in the template cache. A template which can't be compiled is
+   * reported instead of failing the others and left out of the archive.
+   *
+   * @param templateNames The names of the templates
+   * @param file The archive, replaced if it exists
+   * @return The compilation time and the errors of each template
+   * @throws IOException If the archive can't be written
+   */
+  public PrecompilationReport precompile(Collection<String> templateNames, Path file)
+      throws IOException {
+    long start = System.nanoTime();
+    TemplateArchiveWriter writer = new TemplateArchiveWriter(this.fingerprint(),
+        new NodeCodec(this.extensionRegistry));
+    List<PrecompilationReport.Result> results = new ArrayList<>(templateNames.size());
+    for (String templateName : templateNames) {
+      long templateStart = System.nanoTime();
+      RuntimeException error = null;
+      try {
+        Object cacheKey = this.loader.createCacheKey(templateName);
+        if (this.templateReloader != null) {
+          this.templateReloader.watch(this, this.loader, templateName);
+        }
+        String source = this.readSource(templateName);
+        RootNode root = this.parse(new StringReader(source), templateName);
+        // archived before the node visitors modify the tree
+        this.archive(writer, templateName, source, root);
+        PebbleTemplate template = this.compile(root, templateName, cacheKey);
+        this.templateCache.computeIfAbsent(cacheKey, k -> template);
+      } catch (RuntimeException e) {
+        this.logger.warn("Could not precompile template {}", templateName, e);
+        writer.remove(templateName);
+        error = e;
+      }
+      results.add(new PrecompilationReport.Result(templateName,
+          Duration.ofNanos(System.nanoTime() - templateStart), error));
+    }
+    writer.write(file);
+    this.logger.info("Archived {} templates into {}", writer.getTemplateNames().size(), file);
+    PrecompilationReport report = new PrecompilationReport(results,
+        Duration.ofNanos(System.nanoTime() - start));
+    this.logger.info("{}", report);
+    return report;
+  }
+
+  private String readSource(String templateName) throws IOException {
+    try (Reader reader = openReader(this.loader, templateName)) {
+      return readSource(reader, templateName);
+    }
+  }
+
+  private void archive(TemplateArchiveWriter writer, String templateName, String source,
+      RootNode root) {
+    try {
+      writer.add(templateName, source, root);
+    } catch (NotSerializableException e) {
+      this.logger.warn("Template {} can't be archived, node {} isn't supported", templateName,
+          e.getMessage());
+    }
+  }
+
+  private static <T> Reader openReader(Loader<T> loader, String templateName) {
+    return loader.getReader(loader.createCacheKey(templateName));
+  }
+
+  /**
+   * Identifies the configuration which affects how templates are parsed: the version of Pebble,
+   * the syntax, the parser options and the operators and tags of the extensions.
+   */
+  private String fingerprint() {
+    StringBuilder configuration = new StringBuilder();
+    configuration.append(this.syntax.getCommentOpenDelimiter()).append(' ')
+        .append(this.syntax.getCommentCloseDelimiter()).append(' ')
+        .append(this.syntax.getExecuteOpenDelimiter()).append(' ')
+        .append(this.syntax.getExecuteCloseDelimiter()).append(' ')
+        .append(this.syntax.getPrintOpenDelimiter()).append(' ')
+        .append(this.syntax.getPrintCloseDelimiter()).append(' ')
+        .append(this.syntax.getInterpolationOpenDelimiter()).append(' ')
+        .append(this.syntax.getInterpolationCloseDelimiter()).append(' ')
+        .append(this.syntax.getWhitespaceTrim()).append(' ')
+        .append(this.syntax.isEnableNewLineTrimming()).append('\n')
+        .append(this.parserOptions.isLiteralDecimalTreatedAsInteger()).append(' ')
+        .append(this.parserOptions.isLiteralNumbersAsBigDecimals()).append('\n');
+    for (UnaryOperator operator : new TreeMap<>(this.extensionRegistry.getUnaryOperators())
+        .values()) {
+      configuration.append(operator.getSymbol()).append(' ').append(operator.getPrecedence())
+          .append(' ').append(operator.getNodeClass().getName()).append('\n');
+    }
+    for (BinaryOperator operator : new TreeMap<>(this.extensionRegistry.getBinaryOperators())
+        .values()) {
+      configuration.append(operator.getSymbol()).append(' ').append(operator.getPrecedence())
+          .append(' ').append(operator.getType()).append(' ').append(operator.getAssociativity())
+          .append(' ').append(operator.createInstance().getClass().getName()).append('\n');
+    }
+    for (Map.Entry<String, TokenParser> tag : new TreeMap<>(
+        this.extensionRegistry.getTokenParsers()).entrySet()) {
+      configuration.append(tag.getKey()).append(' ').append(tag.getValue().getClass().getName())
+          .append('\n');
+    }
+    String version = PebbleEngine.class.getPackage().getImplementationVersion();
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256")
+          .digest(configuration.toString().getBytes(StandardCharsets.UTF_8));
+      return (version == null ? "unknown" : version) + ":" + new BigInteger(1, digest).toString(16);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   /**
    * Returns the loader
    *
@@ -226,6 +642,15 @@ public class PebbleEngine {
     return this.maxRenderedSize;
   }
 
+  /**
+   * Returns the max rendered size in bytes.
+   *
+   * @return The max rendered size in bytes.
+   */
+  public int getMaxRenderedBytes() {
+    return this.maxRenderedBytes;
+  }
+
   /**
    * Returns the executor service
    *
@@ -235,6 +660,42 @@ public class PebbleEngine {
     return this.executorService;
   }
 
+  /**
+   * Returns the template reloader
+   *
+   * @return The template reloader, or null if templates aren't reloaded when their files change
+   */
+  public TemplateReloader getTemplateReloader() {
+    return this.templateReloader;
+  }
+
+  /**
+   * Returns the template archive
+   *
+   * @return The template archive, or null if all templates are parsed
+   */
+  public TemplateArchive getTemplateArchive() {
+    return this.templateArchive;
+  }
+
+  /**
+   * Returns the instrumentation receiving the measurements of the engine.
+   *
+   * @return The instrumentation, null if none
+   */
+  public Instrumentation getInstrumentation() {
+    return this.instrumentation;
+  }
+
+  /**
+   * Returns the pool of the evaluation contexts reused by the evaluations.
+   *
+   * @return The pool, null if the contexts aren't pooled
+   */
+  public EvaluationContextPool getEvaluationContextPool() {
+    return this.evaluationContextPool;
+  }
+
   /**
    * Returns the syntax which is used by this PebbleEngine.
    *
@@ -262,6 +723,15 @@ public class PebbleEngine {
     return this.tagCache;
   }
 
+  /**
+   * Returns the cache of the output of the pure macros
+   *
+   * @return The macro cache
+   */
+  public PebbleCache<MacroCacheKey, String> getMacroCache() {
+    return this.macroCache;
+  }
+
   /**
    * A builder to configure and construct an instance of a PebbleEngine.
    */
@@ -279,14 +749,20 @@ public class PebbleEngine {
 
     private int maxRenderedSize = -1;
 
+    private int maxRenderedBytes = -1;
+
     private ExecutorService executorService;
 
+    private boolean virtualThreads = false;
+
     private PebbleCache<Object, PebbleTemplate> templateCache;
 
     private boolean cacheActive = true;
 
     private PebbleCache<CacheKey, Object> tagCache;
 
+    private PebbleCache<MacroCacheKey, String> macroCache;
+
     private boolean literalDecimalTreatedAsInteger = false;
 
     private boolean greedyMatchMethod = false;
@@ -295,6 +771,16 @@ public class PebbleEngine {
 
     private MethodAccessValidator methodAccessValidator = new BlacklistMethodAccessValidator();
 
+    private boolean compileTemplates = false;
+
+    private TemplateReloader templateReloader;
+
+    private TemplateArchive templateArchive;
+
+    private Instrumentation instrumentation;
+
+    private boolean contextPooling = false;
+
     private final ExtensionRegistryFactory factory = new ExtensionRegistryFactory();
 
     /**
@@ -402,6 +888,19 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Sets the maximum size of the rendered template in bytes, once encoded in UTF-8. If the
+     * rendered template exceeds this limit, then a PebbleException is thrown. The default value is
+     * -1 and it means unlimited.
+     *
+     * @param maxRenderedBytes The maximum allowed size of the rendered template in bytes.
+     * @return This builder object.
+     */
+    public Builder maxRenderedBytes(int maxRenderedBytes) {
+      this.maxRenderedBytes = maxRenderedBytes;
+      return this;
+    }
+
     /**
      * Sets the executor service which is required if using one of Pebble's multithreading features
      * such as the "parallel" tag.
@@ -414,6 +913,20 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Renders the contents of each "parallel" tag on its own virtual thread, instead of requiring an
+     * executor service whose pool limits how many tags run at once. Virtual threads require Java 21
+     * or later. An executor service set with {@link #executorService(ExecutorService)} takes
+     * precedence.
+     *
+     * @param virtualThreads Whether to use virtual threads, false by default
+     * @return This builder object
+     */
+    public Builder virtualThreads(boolean virtualThreads) {
+      this.virtualThreads = virtualThreads;
+      return this;
+    }
+
     /**
      * Sets the cache used by the engine to store compiled PebbleTemplate instances.
      *
@@ -436,6 +949,20 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Sets the cache of the output of the macros declared as "pure", such as
+     * {@code {% macro input(name, value) pure %}}. A pure macro is rendered once per distinct
+     * arguments and locale, its output must therefore only depend on them. The default cache
+     * holds the output of up to 1000 calls.
+     *
+     * @param macroCache The macro cache
+     * @return This builder object
+     */
+    public Builder macroCache(PebbleCache<MacroCacheKey, String> macroCache) {
+      this.macroCache = macroCache;
+      return this;
+    }
+
     /**
      * Sets whether or not escaping should be performed automatically. The default value of this
      * setting is "true".
@@ -460,6 +987,39 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Enable/disable the evaluation of constant expressions when templates are loaded. Default is
+     * enabled.
+     * <p>
+     * When enabled, the built-in operators applied to literals are replaced by their result, the
+     * branches of if tags whose condition is a boolean literal are removed and adjacent texts are
+     * merged, see {@link io.pebbletemplates.pebble.extension.core.ConstantFoldingNodeVisitor}.
+     *
+     * @param constantFolding toggle to enable/disable constant folding
+     * @return This builder object
+     */
+    public Builder constantFolding(boolean constantFolding) {
+      this.factory.constantFolding(constantFolding);
+      return this;
+    }
+
+    /**
+     * Enable/disable the minification of the whitespace of HTML templates. Default is disabled.
+     * <p>
+     * When enabled, every run of whitespace in the text of the templates is collapsed into a
+     * single space or newline, except within the pre, textarea, script and style elements and the
+     * quoted attribute values, see
+     * {@link io.pebbletemplates.pebble.extension.core.HtmlWhitespaceMinifierNodeVisitor}. This is
+     * only meant for HTML templates whose stylesheets don't preserve whitespace elsewhere.
+     *
+     * @param minifyHtmlWhitespace toggle to enable/disable the whitespace minification
+     * @return This builder object
+     */
+    public Builder minifyHtmlWhitespace(boolean minifyHtmlWhitespace) {
+      this.factory.minifyHtmlWhitespace(minifyHtmlWhitespace);
+      return this;
+    }
+
     /**
      * Sets the default escaping strategy of the built-in escaper extension.
      *
@@ -556,6 +1116,110 @@ public class PebbleEngine {
       return this;
     }
 
+    /**
+     * Enable/disable the compilation of templates into JVM classes. Default is disabled.
+     * <p>
+     * When enabled, text, print, if and for nodes as well as the arithmetic and comparison
+     * operators are executed as straight-line code of a generated class instead of being
+     * dispatched through the node tree. Other nodes are still interpreted. Compilation requires
+     * ASM (org.ow2.asm:asm) on the classpath; without it all templates are interpreted.
+     *
+     * @param compileTemplates toggle to enable/disable template compilation
+     * @return This builder object
+     */
+    public Builder compileTemplates(boolean compileTemplates) {
+      this.compileTemplates = compileTemplates;
+      return this;
+    }
+
+    /**
+     * Sets a reloader which watches the files of the loaded templates, and invalidates a template
+     * and the templates using it as soon as its file changes. Only the templates read from files
+     * are watched, such as those of a {@link io.pebbletemplates.pebble.loader.FileLoader}, or those
+     * of a {@link ClasspathLoader} found in a directory of the classpath. This is meant for
+     * development, the reloader must be closed once the engine isn't used anymore.
+     *
+     * @param templateReloader The template reloader, none by default
+     * @return This builder object
+     */
+    public Builder templateReloader(TemplateReloader templateReloader) {
+      this.templateReloader = templateReloader;
+      return this;
+    }
+
+    /**
+     * Sets an archive of parsed templates, written at build time by {@link
+     * PebbleEngine#writeTemplateArchive(Collection, Path)}, so that templates are read from it
+     * instead of being lexed and parsed. A template whose source changed since the archive was
+     * written is parsed, and the archive is ignored when it has been written by an engine with
+     * another syntax, parser options, extensions or Pebble version.
+     *
+     * @param templateArchive The template archive, none by default
+     * @return This builder object
+     */
+    public Builder templateArchive(TemplateArchive templateArchive) {
+      this.templateArchive = templateArchive;
+      return this;
+    }
+
+    /**
+     * Sets an instrumentation receiving the measurements of the engine: the compilation time of
+     * the templates, the hits and misses of the template cache and of the "cache" tag, the
+     * evaluation time and output size of the templates, the evaluation time of the included
+     * templates and the timing of the "parallel" tag tasks. {@link
+     * io.pebbletemplates.pebble.instrumentation.MicrometerInstrumentation} records them as
+     * Micrometer meters.
+     *
+     * @param instrumentation The instrumentation, none by default
+     * @return This builder object
+     */
+    public Builder instrumentation(Instrumentation instrumentation) {
+      this.instrumentation = instrumentation;
+      return this;
+    }
+
+    /**
+     * Reuses an evaluation context per thread, with its scope chain, its global variables and its
+     * imported templates, instead of allocating them for each evaluation. This lowers the
+     * allocations of the engines rendering many small templates, but the extensions must not keep
+     * a reference to the evaluation context once an evaluation is complete.
+     *
+     * @param contextPooling Whether the evaluation contexts are reused, false by default
+     * @return This builder object
+     */
+    public Builder contextPooling(boolean contextPooling) {
+      this.contextPooling = contextPooling;
+      return this;
+    }
+
+    /**
+     * Sets a profiler measuring the rendering time of every node of the templates and the
+     * evaluation time of the filter, function and macro calls, per template line. This slows down
+     * the rendering and is meant to find what makes a page slow.
+     *
+     * @param profiler The profiler, none by default
+     * @return This builder object
+     */
+    public Builder profiler(RenderProfiler profiler) {
+      this.factory.profiler(profiler);
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of members (methods and fields) found by reflection which are
+     * cached by the default attribute resolver, the attributes which aren't members of a class
+     * included. The least used members are evicted when Caffeine is on the classpath, arbitrary
+     * ones otherwise. The statistics of the cache are returned by {@link
+     * io.pebbletemplates.pebble.attributes.DefaultAttributeResolver#getMemberCacheStats()}.
+     *
+     * @param memberCacheSize The maximum number of cached members, 10000 by default
+     * @return This builder object
+     */
+    public Builder memberCacheSize(int memberCacheSize) {
+      this.factory.memberCacheSize(memberCacheSize);
+      return this;
+    }
+
     /**
      * Registers an implementation of {@link ExtensionCustomizer} to change runtime-behaviour of standard
      * functionality.
@@ -596,9 +1260,14 @@ public class PebbleEngine {
         if (this.tagCache == null) {
           this.tagCache = new ConcurrentMapTagCache();
         }
+
+        if (this.macroCache == null) {
+          this.macroCache = new ConcurrentMapMacroCache();
+        }
       } else {
         this.templateCache = new NoOpTemplateCache();
         this.tagCache = new NoOpTagCache();
+        this.macroCache = new NoOpMacroCache();
       }
 
       if (this.syntax == null) {
@@ -612,9 +1281,19 @@ public class PebbleEngine {
 
       EvaluationOptions evaluationOptions = new EvaluationOptions(this.greedyMatchMethod,
           this.methodAccessValidator);
+
+      TemplateCompiler templateCompiler = this.compileTemplates ? TemplateCompiler.create() : null;
+
+      ExecutorService executorService = this.executorService;
+      if (executorService == null && this.virtualThreads) {
+        executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+      }
+
       return new PebbleEngine(this.loader, this.syntax, this.strictVariables, this.defaultLocale, this.maxRenderedSize,
-          this.tagCache, this.templateCache,
-          this.executorService, extensionRegistry, parserOptions, evaluationOptions);
+          this.maxRenderedBytes, this.tagCache, this.macroCache, this.templateCache,
+          executorService, extensionRegistry, parserOptions, evaluationOptions,
+          templateCompiler, this.templateReloader, this.templateArchive, this.instrumentation,
+          this.contextPooling);
     }
   }
 
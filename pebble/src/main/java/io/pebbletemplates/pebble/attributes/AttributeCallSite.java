@@ -0,0 +1,156 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.template.MacroAttributeProvider;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An inline cache owned by a single attribute access of a template, such as {@code user.name}.
+ * <p>
+ * Once the {@link DefaultAttributeResolver} resolved an attribute to a field or a method, the
+ * member is remembered for the class of the object and the types of the arguments, so that the
+ * next evaluations with the same types invoke it directly instead of asking each resolver and
+ * looking up the member cache. Up to {@value #MAX_ENTRIES} types are remembered, the call site
+ * always uses the attribute resolvers afterwards.
+ */
+public final class AttributeCallSite {
+
+  private static final int MAX_ENTRIES = 4;
+
+  private static final Entry[] EMPTY = new Entry[0];
+
+  /**
+   * The cached members, null once the call site saw too many types. Concurrent links may drop an
+   * entry, which is then linked again on a later evaluation.
+   */
+  private volatile Entry[] entries = EMPTY;
+
+  /**
+   * Invokes the member cached for an object.
+   *
+   * @param resolvers The attribute resolvers of the engine
+   * @param instance The object which is being accessed, must not be null
+   * @param attributeName The name of the attribute
+   * @param argumentValues The evaluated arguments, null if the attribute isn't invoked
+   * @param filename Filename of the template
+   * @param lineNumber The line number of the attribute access
+   * @return The resolved attribute or null if no member is cached for this object, in which case
+   * the attribute resolvers must be used
+   */
+  public ResolvedAttribute invoke(List<AttributeResolver> resolvers, Object instance,
+      String attributeName, Object[] argumentValues, String filename, int lineNumber) {
+    Entry[] entries = this.entries;
+    if (entries == null || entries.length == 0) {
+      return null;
+    }
+    Class<?> clazz = instance.getClass();
+    for (Entry entry : entries) {
+      if (entry.clazz == clazz && entry.matches(resolvers, attributeName, argumentValues)) {
+        return new ResolvedAttribute(
+            entry.accessor.invoke(instance, argumentValues, filename, lineNumber));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Caches the member through which an attribute has been resolved, if any.
+   *
+   * @param resolvers The attribute resolvers of the engine
+   * @param resolver The resolver which resolved the attribute
+   * @param instance The object which has been accessed, must not be null
+   * @param attributeName The name of the attribute
+   * @param argumentValues The evaluated arguments, null if the attribute isn't invoked
+   */
+  public void link(List<AttributeResolver> resolvers, AttributeResolver resolver, Object instance,
+      String attributeName, Object[] argumentValues) {
+    // the other resolvers would have to be asked first
+    if (resolvers.isEmpty() || resolvers.get(0) != resolver
+        || !(resolver instanceof DefaultAttributeResolver)) {
+      return;
+    }
+    Entry[] entries = this.entries;
+    if (entries == null || isResolvedWithoutMember(instance, argumentValues)) {
+      return;
+    }
+    MemberAccessor accessor = ((DefaultAttributeResolver) resolver)
+        .getCachedMember(instance, attributeName, argumentValues);
+    if (accessor == null) {
+      return;
+    }
+    if (entries.length == MAX_ENTRIES) {
+      this.entries = null;
+    } else {
+      Entry[] linked = Arrays.copyOf(entries, entries.length + 1);
+      linked[entries.length] = new Entry(resolver, instance.getClass(), attributeName,
+          argumentTypes(argumentValues), accessor);
+      this.entries = linked;
+    }
+  }
+
+  /**
+   * Maps, arrays, lists and macros are usually resolved without a member, there is no need to look
+   * one up.
+   */
+  private static boolean isResolvedWithoutMember(Object instance, Object[] argumentValues) {
+    return (argumentValues == null
+        && (instance instanceof Map || instance instanceof List || instance.getClass().isArray()))
+        || instance instanceof MacroAttributeProvider;
+  }
+
+  private static Class<?>[] argumentTypes(Object[] argumentValues) {
+    if (argumentValues == null) {
+      return null;
+    }
+    Class<?>[] argumentTypes = new Class<?>[argumentValues.length];
+    for (int i = 0; i < argumentValues.length; i++) {
+      argumentTypes[i] = argumentValues[i] == null ? null : argumentValues[i].getClass();
+    }
+    return argumentTypes;
+  }
+
+  private static final class Entry {
+
+    private final AttributeResolver resolver;
+
+    private final Class<?> clazz;
+
+    private final String attributeName;
+
+    private final Class<?>[] argumentTypes;
+
+    private final MemberAccessor accessor;
+
+    private Entry(AttributeResolver resolver, Class<?> clazz, String attributeName,
+        Class<?>[] argumentTypes, MemberAccessor accessor) {
+      this.resolver = resolver;
+      this.clazz = clazz;
+      this.attributeName = attributeName;
+      this.argumentTypes = argumentTypes;
+      this.accessor = accessor;
+    }
+
+    private boolean matches(List<AttributeResolver> resolvers, String attributeName,
+        Object[] argumentValues) {
+      if (resolvers.isEmpty() || resolvers.get(0) != this.resolver
+          || !this.attributeName.equals(attributeName)) {
+        return false;
+      }
+      if (argumentValues == null || this.argumentTypes == null) {
+        return argumentValues == null && this.argumentTypes == null;
+      }
+      if (argumentValues.length != this.argumentTypes.length) {
+        return false;
+      }
+      for (int i = 0; i < argumentValues.length; i++) {
+        Object value = argumentValues[i];
+        if ((value == null ? null : value.getClass()) != this.argumentTypes[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
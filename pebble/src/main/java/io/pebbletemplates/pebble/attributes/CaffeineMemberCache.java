@@ -0,0 +1,44 @@
+package io.pebbletemplates.pebble.attributes;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.pebbletemplates.pebble.attributes.MemberCacheUtils.MemberCacheKey;
+
+import java.util.function.Function;
+
+/**
+ * A member cache backed by Caffeine, evicting the least used members once it is full.
+ */
+class CaffeineMemberCache extends MemberCache {
+
+  private final Cache<MemberCacheKey, MemberAccessor> members;
+
+  CaffeineMemberCache(int maximumSize) {
+    super(maximumSize);
+    this.members = Caffeine.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build();
+  }
+
+  @Override
+  MemberAccessor lookup(MemberCacheKey key) {
+    return this.members.getIfPresent(key);
+  }
+
+  @Override
+  MemberAccessor compute(MemberCacheKey key,
+      Function<MemberCacheKey, MemberAccessor> reflect) {
+    return this.members.get(key, reflect);
+  }
+
+  @Override
+  long size() {
+    return this.members.estimatedSize();
+  }
+
+  @Override
+  long evictionCount() {
+    return this.members.stats().evictionCount();
+  }
+}
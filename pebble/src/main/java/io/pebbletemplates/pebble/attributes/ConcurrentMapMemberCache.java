@@ -0,0 +1,61 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.attributes.MemberCacheUtils.MemberCacheKey;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A member cache evicting an arbitrary member once it is full, used without Caffeine.
+ */
+class ConcurrentMapMemberCache extends MemberCache {
+
+  private final ConcurrentHashMap<MemberCacheKey, MemberAccessor> members;
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  ConcurrentMapMemberCache(int maximumSize) {
+    super(maximumSize);
+    this.members = new ConcurrentHashMap<>(Math.min(maximumSize, 256));
+  }
+
+  @Override
+  MemberAccessor lookup(MemberCacheKey key) {
+    return this.members.get(key);
+  }
+
+  @Override
+  MemberAccessor compute(MemberCacheKey key,
+      Function<MemberCacheKey, MemberAccessor> reflect) {
+    MemberAccessor accessor = this.members.get(key);
+    if (accessor != null) {
+      return accessor;
+    }
+    // reflecting outside of the map, which blocks the other keys of the bin while computing
+    accessor = reflect.apply(key);
+    MemberAccessor previous = this.members.putIfAbsent(key, accessor);
+    if (previous != null) {
+      return previous;
+    }
+    Iterator<MemberCacheKey> keys = this.members.keySet().iterator();
+    while (this.members.size() > this.getMaximumSize() && keys.hasNext()) {
+      MemberCacheKey evicted = keys.next();
+      if (!evicted.equals(key) && this.members.remove(evicted) != null) {
+        this.evictionCount.increment();
+      }
+    }
+    return accessor;
+  }
+
+  @Override
+  long size() {
+    return this.members.size();
+  }
+
+  @Override
+  long evictionCount() {
+    return this.evictionCount.sum();
+  }
+}
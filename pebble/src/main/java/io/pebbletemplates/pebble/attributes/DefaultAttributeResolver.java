@@ -1,21 +1,31 @@
 package io.pebbletemplates.pebble.attributes;
 
-import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.MacroAttributeProvider;
-import io.pebbletemplates.pebble.utils.TypeUtils;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Member;
-import java.lang.reflect.Method;
 import java.util.List;
 import java.util.Map;
 
 public class DefaultAttributeResolver implements AttributeResolver {
 
-  private final MemberCacheUtils memberCacheUtils = new MemberCacheUtils();
+  private final MemberCacheUtils memberCacheUtils;
+
+  public DefaultAttributeResolver() {
+    this(MemberCacheUtils.DEFAULT_MAXIMUM_SIZE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param memberCacheSize The maximum number of members found by reflection which are cached
+   */
+  public DefaultAttributeResolver(int memberCacheSize) {
+    if (memberCacheSize <= 0) {
+      throw new IllegalArgumentException("The member cache size must be positive");
+    }
+    this.memberCacheUtils = new MemberCacheUtils(memberCacheSize);
+  }
 
   @Override
   public ResolvedAttribute resolve(Object instance,
@@ -29,7 +39,7 @@ public class DefaultAttributeResolver implements AttributeResolver {
       String attributeName = String.valueOf(attributeNameValue);
 
       Class<?>[] argumentTypes = this.getArgumentTypes(argumentValues);
-      Member member = this.memberCacheUtils.getMember(instance, attributeName, argumentTypes);
+      MemberAccessor member = this.memberCacheUtils.getMember(instance, attributeName, argumentTypes);
       if (member == null) {
         if (argumentValues == null) {
 
@@ -66,7 +76,7 @@ public class DefaultAttributeResolver implements AttributeResolver {
       }
 
       if (member != null) {
-        return new ResolvedAttribute(this.invokeMember(instance, member, argumentValues, filename, lineNumber));
+        return new ResolvedAttribute(member.invoke(instance, argumentValues, filename, lineNumber));
       }
     }
     return null;
@@ -91,22 +101,18 @@ public class DefaultAttributeResolver implements AttributeResolver {
   }
 
   /**
-   * Invoke the "Member" that was found via reflection.
+   * Returns the member through which an attribute is resolved, if it has already been found.
    */
-  private Object invokeMember(Object object, Member member, Object[] argumentValues, String filename, int lineNumber) {
-    Object result = null;
-    try {
-      if (member instanceof Method) {
-        Method method = (Method) member;
-        argumentValues = TypeUtils.compatibleCast(argumentValues, method.getParameterTypes());
-        result = method.invoke(object, argumentValues);
-      } else if (member instanceof Field) {
-        result = ((Field) member).get(object);
-      }
+  MemberAccessor getCachedMember(Object instance, String attributeName, Object[] argumentValues) {
+    return this.memberCacheUtils.getMember(instance, attributeName, this.getArgumentTypes(argumentValues));
+  }
 
-    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-      throw new PebbleException(e, "Could not call " + member.getName(), lineNumber, filename);
-    }
-    return result;
+  /**
+   * Returns the statistics of the cache holding the members found by reflection.
+   *
+   * @return A snapshot of the statistics
+   */
+  public MemberCacheStats getMemberCacheStats() {
+    return this.memberCacheUtils.stats();
   }
 }
@@ -0,0 +1,193 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.utils.TypeUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Invokes a member found by {@link MemberCacheUtils}. An accessor is linked once per class,
+ * attribute name and argument types, fields and methods are then invoked through a {@link
+ * MethodHandle} instead of {@link Method#invoke(Object, Object...)} so that no access check nor
+ * argument conversion is performed on each call.
+ */
+abstract class MemberAccessor {
+
+  private static final MethodType GETTER_TYPE = MethodType
+      .methodType(Object.class, Object.class);
+
+  private static final MethodType METHOD_TYPE = MethodType
+      .methodType(Object.class, Object.class, Object[].class);
+
+  /**
+   * The accessor cached for the attributes which aren't members of a class, it is never invoked.
+   */
+  static final MemberAccessor MISSING = new MemberAccessor(null) {
+    @Override
+    Object invoke(Object instance, Object[] argumentValues) {
+      throw new IllegalStateException("Missing members can't be invoked");
+    }
+  };
+
+  private final Member member;
+
+  private MemberAccessor(Member member) {
+    this.member = member;
+  }
+
+  Member getMember() {
+    return this.member;
+  }
+
+  /**
+   * Invokes the member, wrapping any failure into a {@link PebbleException}.
+   *
+   * @param instance The object holding the member
+   * @param argumentValues The arguments of the method, null for a field
+   * @param filename Filename of the template
+   * @param lineNumber The line number of the attribute access
+   * @return The value of the field or the result of the method
+   */
+  Object invoke(Object instance, Object[] argumentValues, String filename, int lineNumber) {
+    try {
+      return this.invoke(instance, argumentValues);
+    } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
+      throw new PebbleException(e, "Could not call " + this.member.getName(), lineNumber, filename);
+    }
+  }
+
+  /**
+   * Invokes the member.
+   *
+   * @param instance The object holding the member
+   * @param argumentValues The arguments of the method, null for a field
+   * @return The value of the field or the result of the method
+   * @throws IllegalAccessException If the member can't be accessed
+   * @throws InvocationTargetException If the method throws an exception
+   */
+  abstract Object invoke(Object instance, Object[] argumentValues)
+      throws IllegalAccessException, InvocationTargetException;
+
+  /**
+   * Links an accessor for a member. Arguments which have to be converted, by {@link
+   * TypeUtils#compatibleCast(Object[], Class[])}, to match the parameter types of a method are
+   * still passed through reflection.
+   *
+   * @param member A field or a method which has been made accessible
+   * @param argumentTypes The types of the arguments which will be given to the method
+   * @return The accessor
+   */
+  static MemberAccessor of(Member member, Class<?>[] argumentTypes) {
+    MethodHandles.Lookup lookup = MethodHandles.lookup();
+    try {
+      if (member instanceof Field) {
+        MethodHandle getter = lookup.unreflectGetter((Field) member);
+        return new HandleAccessor(member, withReceiver(member, getter));
+      }
+      Method method = (Method) member;
+      if (method.getParameterCount() == 0) {
+        return new HandleAccessor(member, withReceiver(member, lookup.unreflect(method)));
+      }
+      if (!needsConversion(method.getParameterTypes(), argumentTypes)) {
+        return new SpreadHandleAccessor(member, withReceiver(member, lookup.unreflect(method)));
+      }
+    } catch (IllegalAccessException e) {
+      // fall back to reflection
+    }
+    return new ReflectiveAccessor(member);
+  }
+
+  /**
+   * Static members ignore the object they are invoked on, as with reflection.
+   */
+  private static MethodHandle withReceiver(Member member, MethodHandle handle) {
+    if (Modifier.isStatic(member.getModifiers())) {
+      return MethodHandles.dropArguments(handle, 0, Object.class);
+    }
+    return handle;
+  }
+
+  private static boolean needsConversion(Class<?>[] parameterTypes, Class<?>[] argumentTypes) {
+    for (int i = 0; i < parameterTypes.length; i++) {
+      if (argumentTypes[i] == null
+          || !MemberCacheUtils.widen(parameterTypes[i]).isAssignableFrom(argumentTypes[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Reads a field or invokes a method without parameters.
+   */
+  private static final class HandleAccessor extends MemberAccessor {
+
+    private final MethodHandle handle;
+
+    private HandleAccessor(Member member, MethodHandle handle) {
+      super(member);
+      this.handle = handle.asType(GETTER_TYPE);
+    }
+
+    @Override
+    Object invoke(Object instance, Object[] argumentValues) throws InvocationTargetException {
+      try {
+        return (Object) this.handle.invokeExact(instance);
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e);
+      }
+    }
+  }
+
+  /**
+   * Invokes a method whose arguments already match its parameter types.
+   */
+  private static final class SpreadHandleAccessor extends MemberAccessor {
+
+    private final MethodHandle handle;
+
+    private SpreadHandleAccessor(Member member, MethodHandle handle) {
+      super(member);
+      this.handle = handle
+          .asSpreader(Object[].class, handle.type().parameterCount() - 1)
+          .asType(METHOD_TYPE);
+    }
+
+    @Override
+    Object invoke(Object instance, Object[] argumentValues) throws InvocationTargetException {
+      try {
+        return (Object) this.handle.invokeExact(instance, argumentValues);
+      } catch (Throwable e) {
+        throw new InvocationTargetException(e);
+      }
+    }
+  }
+
+  /**
+   * Invokes a method whose arguments have to be converted first.
+   */
+  private static final class ReflectiveAccessor extends MemberAccessor {
+
+    private ReflectiveAccessor(Member member) {
+      super(member);
+    }
+
+    @Override
+    Object invoke(Object instance, Object[] argumentValues)
+        throws IllegalAccessException, InvocationTargetException {
+      if (this.getMember() instanceof Field) {
+        return ((Field) this.getMember()).get(instance);
+      }
+      Method method = (Method) this.getMember();
+      return method.invoke(instance,
+          TypeUtils.compatibleCast(argumentValues, method.getParameterTypes()));
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.attributes.MemberCacheUtils.MemberCacheKey;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * A bounded cache of the members found by reflection, including {@link MemberAccessor#MISSING}
+ * for the attributes which aren't members of a class. Caffeine is used when it is on the
+ * classpath.
+ */
+abstract class MemberCache {
+
+  private static final String CAFFEINE_CLASS = "com.github.benmanes.caffeine.cache.Caffeine";
+
+  private final int maximumSize;
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  MemberCache(int maximumSize) {
+    this.maximumSize = maximumSize;
+  }
+
+  /**
+   * Creates a cache backed by Caffeine if it is on the classpath, by a {@link
+   * java.util.concurrent.ConcurrentHashMap} otherwise.
+   *
+   * @param maximumSize The maximum number of cached members
+   * @return The cache
+   */
+  static MemberCache create(int maximumSize) {
+    try {
+      Class.forName(CAFFEINE_CLASS, false, MemberCache.class.getClassLoader());
+    } catch (ClassNotFoundException | LinkageError e) {
+      return new ConcurrentMapMemberCache(maximumSize);
+    }
+    return new CaffeineMemberCache(maximumSize);
+  }
+
+  /**
+   * Returns the accessor cached for a key, recording a hit if there is one.
+   *
+   * @param key The key
+   * @return The accessor, null if none is cached
+   */
+  MemberAccessor getIfPresent(MemberCacheKey key) {
+    MemberAccessor accessor = this.lookup(key);
+    if (accessor != null) {
+      this.hitCount.increment();
+    }
+    return accessor;
+  }
+
+  /**
+   * Returns the accessor cached for a key, reflecting it and recording a miss if none is cached.
+   *
+   * @param key The key
+   * @param reflect Finds the accessor, which is {@link MemberAccessor#MISSING} if there is none
+   * @return The accessor
+   */
+  MemberAccessor computeIfAbsent(MemberCacheKey key,
+      Function<MemberCacheKey, MemberAccessor> reflect) {
+    return this.compute(key, k -> {
+      this.missCount.increment();
+      return reflect.apply(k);
+    });
+  }
+
+  abstract MemberAccessor lookup(MemberCacheKey key);
+
+  abstract MemberAccessor compute(MemberCacheKey key,
+      Function<MemberCacheKey, MemberAccessor> reflect);
+
+  abstract long size();
+
+  abstract long evictionCount();
+
+  MemberCacheStats stats() {
+    return new MemberCacheStats(this.hitCount.sum(), this.missCount.sum(), this.size(),
+        this.maximumSize, this.evictionCount());
+  }
+
+  int getMaximumSize() {
+    return this.maximumSize;
+  }
+}
@@ -0,0 +1,60 @@
+package io.pebbletemplates.pebble.attributes;
+
+/**
+ * A snapshot of the statistics of the cache holding the members found by reflection, returned by
+ * {@link DefaultAttributeResolver#getMemberCacheStats()}. The lookups of the attributes which
+ * aren't members of a class are cached as well, and counted as hits once cached.
+ */
+public final class MemberCacheStats {
+
+  private final long hitCount;
+
+  private final long missCount;
+
+  private final long size;
+
+  private final long maximumSize;
+
+  private final long evictionCount;
+
+  MemberCacheStats(long hitCount, long missCount, long size, long maximumSize,
+      long evictionCount) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.size = size;
+    this.maximumSize = maximumSize;
+    this.evictionCount = evictionCount;
+  }
+
+  public long getHitCount() {
+    return this.hitCount;
+  }
+
+  /**
+   * Returns the number of lookups which required reflection.
+   *
+   * @return The number of misses
+   */
+  public long getMissCount() {
+    return this.missCount;
+  }
+
+  public long getSize() {
+    return this.size;
+  }
+
+  public long getMaximumSize() {
+    return this.maximumSize;
+  }
+
+  public long getEvictionCount() {
+    return this.evictionCount;
+  }
+
+  @Override
+  public String toString() {
+    return "MemberCacheStats{hitCount=" + this.hitCount + ", missCount=" + this.missCount
+        + ", size=" + this.size + ", maximumSize=" + this.maximumSize + ", evictionCount="
+        + this.evictionCount + '}';
+  }
+}
@@ -8,27 +8,46 @@ import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 class MemberCacheUtils {
-  private final ConcurrentHashMap<MemberCacheKey, Member> memberCache = new ConcurrentHashMap<>(100,
-          0.9f, 1);
 
-  Member getMember(Object instance, String attributeName, Class<?>[] argumentTypes) {
-    return this.memberCache.get(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes));
+  static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+  private final MemberCache memberCache;
+
+  MemberCacheUtils() {
+    this(DEFAULT_MAXIMUM_SIZE);
   }
 
-  Member cacheMember(Object instance,
-                     String attributeName,
-                     Class<?>[] argumentTypes,
-                     EvaluationContextImpl context,
-                     String filename,
-                     int lineNumber) {
-    Member member = this.reflect(instance, attributeName, argumentTypes, filename, lineNumber, context.getEvaluationOptions());
-    if (member != null) {
-      this.memberCache.put(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes), member);
-    }
-    return member;
+  MemberCacheUtils(int maximumSize) {
+    this.memberCache = MemberCache.create(maximumSize);
+  }
+
+  MemberAccessor getMember(Object instance, String attributeName, Class<?>[] argumentTypes) {
+    MemberAccessor accessor = this.memberCache
+        .getIfPresent(new MemberCacheKey(instance.getClass(), attributeName, argumentTypes));
+    return accessor == MemberAccessor.MISSING ? null : accessor;
+  }
+
+  MemberAccessor cacheMember(Object instance,
+                             String attributeName,
+                             Class<?>[] argumentTypes,
+                             EvaluationContextImpl context,
+                             String filename,
+                             int lineNumber) {
+    // the missing members are cached too, a ClassAccessException isn't cached
+    MemberAccessor accessor = this.memberCache.computeIfAbsent(
+        new MemberCacheKey(instance.getClass(), attributeName, argumentTypes), key -> {
+          Member member = this.reflect(instance, attributeName, argumentTypes, filename,
+              lineNumber, context.getEvaluationOptions());
+          // the accessor is linked once, after the method access validator allowed the member
+          return member == null ? MemberAccessor.MISSING : MemberAccessor.of(member, argumentTypes);
+        });
+    return accessor == MemberAccessor.MISSING ? null : accessor;
+  }
+
+  MemberCacheStats stats() {
+    return this.memberCache.stats();
   }
 
   /**
@@ -106,7 +125,7 @@ class MemberCacheUtils {
       boolean compatibleTypes = true;
       Class<?>[] types = candidate.getParameterTypes();
       for (int i = 0; i < types.length; i++) {
-        if (requiredTypes[i] != null && !this.widen(types[i]).isAssignableFrom(requiredTypes[i])) {
+        if (requiredTypes[i] != null && !widen(types[i]).isAssignableFrom(requiredTypes[i])) {
           compatibleTypes = false;
           break;
         }
@@ -120,7 +139,7 @@ class MemberCacheUtils {
           Class<?>[] bestMatchParamTypes = bestMatch.getParameterTypes();
           for (int i = 0; i < types.length; i++) {
             // if the current method's param strictly extends the previous best, it is a better match
-            Class<?> widened = this.widen(bestMatchParamTypes[i]);
+            Class<?> widened = widen(bestMatchParamTypes[i]);
             if (widened.isAssignableFrom(types[i]) && !widened.equals(types[i])) {
               bestMatch = candidate;
               break;
@@ -169,7 +188,7 @@ class MemberCacheUtils {
   /**
    * Performs a widening conversion (primitive to boxed type)
    */
-  private Class<?> widen(Class<?> clazz) {
+  static Class<?> widen(Class<?> clazz) {
     if (clazz == int.class) {
       return Integer.class;
     }
@@ -212,17 +231,17 @@ class MemberCacheUtils {
   }
 
   private boolean isCompatibleType(Class<?> type1, Class<?> type2) {
-    Class<?> widenType = this.widen(type1);
+    Class<?> widenType = widen(type1);
     return Number.class.isAssignableFrom(widenType) && Number.class.isAssignableFrom(type2);
   }
 
-  private class MemberCacheKey {
+  static final class MemberCacheKey {
 
     private final Class<?> clazz;
     private final String attributeName;
     private final Class<?>[] methodParameterTypes;
 
-    public MemberCacheKey(Class<?> clazz, String attributeName, Class<?>[] methodParameterTypes) {
+    MemberCacheKey(Class<?> clazz, String attributeName, Class<?>[] methodParameterTypes) {
       this.clazz = clazz;
       this.attributeName = attributeName;
       this.methodParameterTypes = methodParameterTypes;
@@ -0,0 +1,66 @@
+package io.pebbletemplates.pebble.cache;
+
+import io.pebbletemplates.pebble.node.MacroNode;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Key of the output of a pure macro in the macro cache: the macro, the values of the arguments it
+ * has been called with and the locale of the evaluation. The key also records the cache key of the
+ * template invoking the macro, so that its outputs are discarded once the template is invalidated.
+ */
+public class MacroCacheKey {
+
+  private final MacroNode macro;
+  private final Map<String, Object> arguments;
+  private final Locale locale;
+  private final Object templateCacheKey;
+  private final int hashCode;
+
+  public MacroCacheKey(MacroNode macro, Map<String, Object> arguments, Locale locale,
+      Object templateCacheKey) {
+    this.macro = macro;
+    this.arguments = arguments;
+    this.locale = locale;
+    this.templateCacheKey = templateCacheKey;
+    int hashCode = macro.hashCode();
+    hashCode = 31 * hashCode + arguments.hashCode();
+    hashCode = 31 * hashCode + (locale == null ? 0 : locale.hashCode());
+    this.hashCode = hashCode;
+  }
+
+  public MacroNode getMacro() {
+    return this.macro;
+  }
+
+  /**
+   * Returns the cache key of the template invoking the macro, which isn't part of the identity of
+   * the key: the macro node already belongs to a single template.
+   *
+   * @return The cache key of the template
+   */
+  public Object getTemplateCacheKey() {
+    return this.templateCacheKey;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null || this.getClass() != obj.getClass()) {
+      return false;
+    }
+    MacroCacheKey other = (MacroCacheKey) obj;
+    return this.macro == other.macro
+        && Objects.equals(this.locale, other.locale)
+        && this.arguments.equals(other.arguments);
+  }
+
+  @Override
+  public int hashCode() {
+    return this.hashCode;
+  }
+}
@@ -1,10 +1,31 @@
 package io.pebbletemplates.pebble.cache;
 
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 public interface PebbleCache<K, V> {
 
   V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction);
 
   void invalidateAll();
+
+  /**
+   * Discards the value cached for a key. Caches which can't discard a single value discard all of
+   * them.
+   *
+   * @param key The key
+   */
+  default void invalidate(K key) {
+    this.invalidateAll();
+  }
+
+  /**
+   * Discards the values cached for the keys matching a predicate. Caches which can't discard a
+   * single value discard all of them.
+   *
+   * @param predicate The predicate matching the keys to discard
+   */
+  default void invalidateIf(Predicate<? super K> predicate) {
+    this.invalidateAll();
+  }
 }
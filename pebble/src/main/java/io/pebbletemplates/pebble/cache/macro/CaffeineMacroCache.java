@@ -0,0 +1,51 @@
+package io.pebbletemplates.pebble.cache.macro;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
+import io.pebbletemplates.pebble.cache.PebbleCache;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class CaffeineMacroCache implements PebbleCache<MacroCacheKey, String> {
+
+  private final Cache<MacroCacheKey, String> macroCache;
+
+  public CaffeineMacroCache() {
+    this.macroCache = Caffeine.newBuilder()
+        .maximumSize(1000)
+        .build();
+  }
+
+  public CaffeineMacroCache(Cache<MacroCacheKey, String> macroCache) {
+    this.macroCache = macroCache;
+  }
+
+  @Override
+  public String computeIfAbsent(MacroCacheKey key,
+      Function<? super MacroCacheKey, ? extends String> mappingFunction) {
+    String output = this.macroCache.getIfPresent(key);
+    if (output == null) {
+      // rendered outside of the cache, as a pure macro may call other pure macros
+      output = mappingFunction.apply(key);
+      this.macroCache.put(key, output);
+    }
+    return output;
+  }
+
+  @Override
+  public void invalidateAll() {
+    this.macroCache.invalidateAll();
+  }
+
+  @Override
+  public void invalidate(MacroCacheKey key) {
+    this.macroCache.invalidate(key);
+  }
+
+  @Override
+  public void invalidateIf(Predicate<? super MacroCacheKey> predicate) {
+    this.macroCache.asMap().keySet().removeIf(predicate);
+  }
+}
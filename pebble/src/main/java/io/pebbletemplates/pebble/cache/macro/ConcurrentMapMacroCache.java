@@ -0,0 +1,67 @@
+package io.pebbletemplates.pebble.cache.macro;
+
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
+import io.pebbletemplates.pebble.cache.PebbleCache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A macro cache evicting arbitrary outputs once it holds its maximum number of outputs.
+ */
+public class ConcurrentMapMacroCache implements PebbleCache<MacroCacheKey, String> {
+
+  private final ConcurrentMap<MacroCacheKey, String> macroCache;
+
+  private final int maximumSize;
+
+  public ConcurrentMapMacroCache() {
+    this(1000);
+  }
+
+  public ConcurrentMapMacroCache(int maximumSize) {
+    this.macroCache = new ConcurrentHashMap<>(Math.min(maximumSize, 200));
+    this.maximumSize = maximumSize;
+  }
+
+  @Override
+  public String computeIfAbsent(MacroCacheKey key,
+      Function<? super MacroCacheKey, ? extends String> mappingFunction) {
+    String output = this.macroCache.get(key);
+    if (output != null) {
+      return output;
+    }
+    // rendered outside of the map, as a pure macro may call other pure macros
+    output = mappingFunction.apply(key);
+    String previous = this.macroCache.putIfAbsent(key, output);
+    if (previous != null) {
+      return previous;
+    }
+    Iterator<MacroCacheKey> keys = this.macroCache.keySet().iterator();
+    while (this.macroCache.size() > this.maximumSize && keys.hasNext()) {
+      MacroCacheKey evicted = keys.next();
+      if (!evicted.equals(key)) {
+        this.macroCache.remove(evicted);
+      }
+    }
+    return output;
+  }
+
+  @Override
+  public void invalidateAll() {
+    this.macroCache.clear();
+  }
+
+  @Override
+  public void invalidate(MacroCacheKey key) {
+    this.macroCache.remove(key);
+  }
+
+  @Override
+  public void invalidateIf(Predicate<? super MacroCacheKey> predicate) {
+    this.macroCache.keySet().removeIf(predicate);
+  }
+}
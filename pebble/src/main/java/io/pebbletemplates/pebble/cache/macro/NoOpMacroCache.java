@@ -0,0 +1,25 @@
+package io.pebbletemplates.pebble.cache.macro;
+
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
+import io.pebbletemplates.pebble.cache.PebbleCache;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+public class NoOpMacroCache implements PebbleCache<MacroCacheKey, String> {
+
+  @Override
+  public String computeIfAbsent(MacroCacheKey key,
+      Function<? super MacroCacheKey, ? extends String> mappingFunction) {
+    return mappingFunction.apply(key);
+  }
+
+  @Override
+  public void invalidateAll() {}
+
+  @Override
+  public void invalidate(MacroCacheKey key) {}
+
+  @Override
+  public void invalidateIf(Predicate<? super MacroCacheKey> predicate) {}
+}
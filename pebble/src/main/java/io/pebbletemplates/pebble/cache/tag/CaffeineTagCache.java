@@ -30,5 +30,9 @@ public class CaffeineTagCache implements PebbleCache<CacheKey, Object> {
   public void invalidateAll() {
     this.tagCache.invalidateAll();
   }
-}
 
+  @Override
+  public void invalidate(CacheKey key) {
+    this.tagCache.invalidate(key);
+  }
+}
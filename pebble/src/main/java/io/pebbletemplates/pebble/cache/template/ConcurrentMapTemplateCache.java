@@ -29,4 +29,9 @@ public class ConcurrentMapTemplateCache implements PebbleCache<Object, PebbleTem
   public void invalidateAll() {
     this.templateCache.clear();
   }
+
+  @Override
+  public void invalidate(Object key) {
+    this.templateCache.remove(key);
+  }
 }
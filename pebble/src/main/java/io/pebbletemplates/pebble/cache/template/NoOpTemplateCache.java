@@ -15,4 +15,7 @@ public class NoOpTemplateCache implements PebbleCache<Object, PebbleTemplate> {
 
   @Override
   public void invalidateAll() {}
+
+  @Override
+  public void invalidate(Object key) {}
 }
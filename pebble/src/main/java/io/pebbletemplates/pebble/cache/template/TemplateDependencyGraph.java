@@ -0,0 +1,87 @@
+package io.pebbletemplates.pebble.cache.template;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Records which templates use which other templates, through the "extends", "include", "import",
+ * "from" and "embed" tags, so that the templates depending on a modified template can be evicted
+ * from the template cache along with it. Templates are identified by their cache keys.
+ * <p>
+ * This class is thread-safe.
+ */
+public class TemplateDependencyGraph {
+
+  /**
+   * The templates using each template
+   */
+  private final ConcurrentMap<Object, Set<Object>> dependents = new ConcurrentHashMap<>();
+
+  /**
+   * Records that a template uses another one.
+   *
+   * @param dependent The cache key of the template using the other one
+   * @param dependency The cache key of the template being used
+   */
+  public void addDependency(Object dependent, Object dependency) {
+    Set<Object> dependents = this.dependents.get(dependency);
+    if (dependents == null) {
+      dependents = this.dependents
+          .computeIfAbsent(dependency, key -> ConcurrentHashMap.newKeySet());
+    }
+    dependents.add(dependent);
+  }
+
+  /**
+   * Returns the templates which directly use a template.
+   *
+   * @param dependency The cache key of the template
+   * @return The cache keys of the templates using it
+   */
+  public Set<Object> getDependents(Object dependency) {
+    Set<Object> dependents = this.dependents.get(dependency);
+    return dependents == null ? Collections.emptySet() : Collections.unmodifiableSet(dependents);
+  }
+
+  /**
+   * Removes a template and all the templates which directly or indirectly use it from the graph.
+   * These templates record their dependencies again once they are reloaded and use other
+   * templates.
+   * <p>
+   * Each template is evicted before the templates using it are looked up: a template which starts
+   * using an evicted template concurrently is either found, or loads the template again.
+   *
+   * @param dependency The cache key of the template
+   * @param eviction Evicts a template from the template cache
+   * @return The cache keys of the removed templates, starting with the given one
+   */
+  public Set<Object> remove(Object dependency, Consumer<Object> eviction) {
+    Set<Object> removed = new LinkedHashSet<>();
+    Deque<Object> pending = new ArrayDeque<>();
+    pending.add(dependency);
+    while (!pending.isEmpty()) {
+      Object key = pending.poll();
+      if (removed.add(key)) {
+        eviction.accept(key);
+        Set<Object> dependents = this.dependents.remove(key);
+        if (dependents != null) {
+          pending.addAll(dependents);
+        }
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes all the recorded dependencies.
+   */
+  public void clear() {
+    this.dependents.clear();
+  }
+}
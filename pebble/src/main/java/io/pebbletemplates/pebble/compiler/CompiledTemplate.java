@@ -0,0 +1,26 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Implemented by the classes generated by the {@link TemplateCompiler}. Each
+ * {@link io.pebbletemplates.pebble.node.BodyNode} of a compiled template is rendered by a method of
+ * the generated class which is selected by its index.
+ */
+public interface CompiledTemplate {
+
+  void render(int bodyIndex, PebbleTemplateImpl self, Writer writer,
+      EvaluationContextImpl context) throws IOException;
+}
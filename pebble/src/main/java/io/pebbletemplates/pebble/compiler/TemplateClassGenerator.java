@@ -0,0 +1,755 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.AbstractRenderableNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.AddExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.DivideExpression;
+import io.pebbletemplates.pebble.node.expression.EqualsExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.ModulusExpression;
+import io.pebbletemplates.pebble.node.expression.MultiplyExpression;
+import io.pebbletemplates.pebble.node.expression.NotEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.SubtractExpression;
+import io.pebbletemplates.pebble.node.fornode.LoopStrategy;
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.OperatorUtils;
+import io.pebbletemplates.pebble.utils.Pair;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.IXOR;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+/**
+ * Generates the class of a compiled template.
+ * <p>
+ * Every {@link BodyNode} becomes a private method and the supported expressions and the conditions
+ * of if nodes get their own methods. This keeps each method small enough to be inlined by the JIT
+ * while the calls between them are statically bound. Nodes and expressions which aren't supported
+ * are kept as constants of the generated class and invoked through their exact type, which keeps
+ * these call sites monomorphic.
+ */
+class TemplateClassGenerator {
+
+  private static final Type TEMPLATE = Type.getType(PebbleTemplateImpl.class);
+
+  private static final Type WRITER = Type.getType(Writer.class);
+
+  private static final Type CONTEXT = Type.getType(EvaluationContextImpl.class);
+
+  private static final Type OBJECT = Type.getType(Object.class);
+
+  private static final String RENDER_DESCRIPTOR = Type.getMethodDescriptor(Type.VOID_TYPE,
+      TEMPLATE, WRITER, CONTEXT);
+
+  private static final String EVALUATE_DESCRIPTOR = Type.getMethodDescriptor(OBJECT, TEMPLATE,
+      CONTEXT);
+
+  private static final String CONDITION_DESCRIPTOR = Type.getMethodDescriptor(Type.BOOLEAN_TYPE,
+      TEMPLATE, CONTEXT);
+
+  private static final String[] IO_EXCEPTION = {Type.getInternalName(IOException.class)};
+
+  /**
+   * Longer strings are kept as fields as they might not fit in the constant pool.
+   */
+  private static final int MAX_STRING_CONSTANT_LENGTH = 8192;
+
+  /**
+   * The name of a template loaded by a StringLoader is its source, which is only used as source
+   * file of the generated class when it is short.
+   */
+  private static final int MAX_SOURCE_NAME_LENGTH = 256;
+
+  /*
+   * Locals of the body methods
+   */
+  private static final int BODY_SELF = 1;
+
+  private static final int BODY_WRITER = 2;
+
+  private static final int BODY_CONTEXT = 3;
+
+  /*
+   * Locals of the expression and condition methods
+   */
+  private static final int EXPRESSION_SELF = 1;
+
+  private static final int EXPRESSION_CONTEXT = 2;
+
+  private static final int EXPRESSION_EXCEPTION = 3;
+
+  private static final Map<Class<?>, Operator> operators = new HashMap<>();
+
+  static {
+    operators.put(AddExpression.class,
+        new Operator("add", false, false, "Could not perform addition"));
+    operators.put(SubtractExpression.class,
+        new Operator("subtract", false, false, "Could not perform subtraction"));
+    operators.put(MultiplyExpression.class,
+        new Operator("multiply", false, false, "Could not perform multiplication"));
+    operators.put(DivideExpression.class,
+        new Operator("divide", false, false, "Could not perform division"));
+    operators.put(ModulusExpression.class,
+        new Operator("mod", false, false, "Could not perform greater modulus"));
+    operators.put(EqualsExpression.class,
+        new Operator("equals", true, false, "Could not perform equals comparison"));
+    operators.put(NotEqualsExpression.class,
+        new Operator("equals", true, true, "Could not perform not equals comparison"));
+    operators.put(GreaterThanExpression.class,
+        new Operator("gt", true, false, "Could not perform greater than comparison"));
+    operators.put(GreaterThanEqualsExpression.class,
+        new Operator("gte", true, false, "Could not perform greater than or equals comparison"));
+    operators.put(LessThanExpression.class,
+        new Operator("lt", true, false, "Could not perform greater modulus"));
+    operators.put(LessThanEqualsExpression.class,
+        new Operator("lte", true, false, "Could not perform less than or equals comparison"));
+  }
+
+  private final String className;
+
+  private final String templateName;
+
+  private final ClassLoader classLoader;
+
+  private final ClassWriter classWriter;
+
+  private final Map<Object, String> constantFields = new IdentityHashMap<>();
+
+  private final List<Object> constants = new ArrayList<>();
+
+  private final List<Type> constantTypes = new ArrayList<>();
+
+  private final Map<BodyNode, Integer> bodies = new LinkedHashMap<>();
+
+  private final Queue<Runnable> pendingMethods = new ArrayDeque<>();
+
+  private BodyNode rootBody;
+
+  private int methodCount = 0;
+
+  private int nextLocal;
+
+  TemplateClassGenerator(String className, String templateName, ClassLoader classLoader) {
+    this.className = className.replace('.', '/');
+    this.templateName = templateName;
+    this.classLoader = classLoader;
+    this.classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+
+      @Override
+      protected ClassLoader getClassLoader() {
+        return TemplateClassGenerator.this.classLoader;
+      }
+
+      @Override
+      protected String getCommonSuperClass(String type1, String type2) {
+        try {
+          return super.getCommonSuperClass(type1, type2);
+        } catch (RuntimeException | LinkageError e) {
+          return OBJECT.getInternalName();
+        }
+      }
+    };
+  }
+
+  /**
+   * Generates the class.
+   *
+   * @param template The template
+   * @param root The root node of the template
+   * @return The bytecode
+   */
+  byte[] generate(PebbleTemplateImpl template, RootNode root) {
+    this.classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, this.className, null,
+        OBJECT.getInternalName(), new String[]{Type.getInternalName(CompiledTemplate.class)});
+    if (this.templateName != null && this.templateName.length() <= MAX_SOURCE_NAME_LENGTH) {
+      this.classWriter.visitSource(this.templateName, null);
+    }
+
+    this.rootBody = root.getBody();
+    root.accept(new AbstractNodeVisitor(template) {
+
+      @Override
+      public void visit(BodyNode node) {
+        TemplateClassGenerator.this.bodyMethod(node);
+        super.visit(node);
+      }
+    });
+    while (!this.pendingMethods.isEmpty()) {
+      this.pendingMethods.poll().run();
+    }
+
+    this.generateDispatcher();
+    this.generateConstructor();
+    this.classWriter.visitEnd();
+    return this.classWriter.toByteArray();
+  }
+
+  /**
+   * Returns the values of the fields of the generated class, to be given to its constructor.
+   */
+  Object[] getConstants() {
+    return this.constants.toArray();
+  }
+
+  /**
+   * Returns the index of every compiled body.
+   */
+  Map<BodyNode, Integer> getBodies() {
+    return this.bodies;
+  }
+
+  private int bodyMethod(BodyNode body) {
+    Integer index = this.bodies.get(body);
+    if (index == null) {
+      int bodyIndex = this.bodies.size();
+      this.bodies.put(body, bodyIndex);
+      this.pendingMethods.add(() -> this.generateBody(body, bodyIndex));
+      index = bodyIndex;
+    }
+    return index;
+  }
+
+  private void generateBody(BodyNode body, int index) {
+    MethodVisitor mv = this.classWriter.visitMethod(ACC_PRIVATE, bodyMethodName(index),
+        RENDER_DESCRIPTOR, null, IO_EXCEPTION);
+    mv.visitCode();
+    this.nextLocal = BODY_CONTEXT + 1;
+
+    String bodyField = null;
+    for (RenderableNode child : body.getChildren()) {
+      if (child instanceof AbstractRenderableNode) {
+        this.visitLineNumber(mv, ((AbstractRenderableNode) child).getLineNumber());
+      }
+
+      /*
+       * The root body of a template which extends another template only renders the inheritance
+       * safe nodes, see BodyNode#render.
+       */
+      Label skip = null;
+      if (body == this.rootBody && !BodyNode.isInheritanceSafe(child)) {
+        if (bodyField == null) {
+          bodyField = this.constant(body, BodyNode.class);
+        }
+        skip = new Label();
+        this.getConstant(mv, bodyField);
+        mv.visitVarInsn(ALOAD, BODY_CONTEXT);
+        mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(BodyNode.class),
+            "isOnlyRenderingInheritanceSafeNodes",
+            Type.getMethodDescriptor(Type.BOOLEAN_TYPE, CONTEXT), false);
+        mv.visitJumpInsn(IFNE, skip);
+      }
+
+      this.generateNode(mv, child);
+
+      if (skip != null) {
+        mv.visitLabel(skip);
+      }
+    }
+
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private void generateNode(MethodVisitor mv, RenderableNode node) {
+    Class<?> type = node.getClass();
+    if (type == TextNode.class) {
+      this.generateText(mv, (TextNode) node);
+    } else if (type == PrintNode.class) {
+      this.generatePrint(mv, (PrintNode) node);
+    } else if (type == IfNode.class) {
+      this.generateIf(mv, (IfNode) node);
+    } else if (type == ForNode.class) {
+      this.generateFor(mv, (ForNode) node);
+    } else if (type == BodyNode.class) {
+      this.invokeBody(mv, this.bodyMethod((BodyNode) node));
+    } else {
+      this.generateRender(mv, node);
+    }
+  }
+
+  private void generateText(MethodVisitor mv, TextNode node) {
+    if (node.getData().length == 0) {
+      return;
+    }
+    String field = this.constant(node, TextNode.class);
+    this.getConstant(mv, field);
+    mv.visitVarInsn(ALOAD, BODY_WRITER);
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(TextNode.class), "write",
+        Type.getMethodDescriptor(Type.VOID_TYPE, WRITER), false);
+  }
+
+  private void generatePrint(MethodVisitor mv, PrintNode node) {
+    if (node.getPrintedInvocation() != null) {
+      // the node streams the output of macros
+      this.generateRender(mv, node);
+      return;
+    }
+    this.generateExpression(mv, node.getExpression(), BODY_SELF, BODY_CONTEXT);
+    mv.visitVarInsn(ALOAD, BODY_WRITER);
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(PrintNode.class), "write",
+        Type.getMethodDescriptor(Type.VOID_TYPE, OBJECT, WRITER), false);
+  }
+
+  private void generateIf(MethodVisitor mv, IfNode node) {
+    Label end = new Label();
+    for (Pair<Expression<?>, BodyNode> ifStatement : node.getConditionsWithBodies()) {
+      String condition = this.conditionMethod(node, ifStatement.getLeft());
+      Label next = new Label();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, BODY_SELF);
+      mv.visitVarInsn(ALOAD, BODY_CONTEXT);
+      mv.visitMethodInsn(INVOKESPECIAL, this.className, condition, CONDITION_DESCRIPTOR, false);
+      mv.visitJumpInsn(IFEQ, next);
+      this.invokeBody(mv, this.bodyMethod(ifStatement.getRight()));
+      mv.visitJumpInsn(GOTO, end);
+      mv.visitLabel(next);
+    }
+    if (node.getElseBody() != null) {
+      this.invokeBody(mv, this.bodyMethod(node.getElseBody()));
+    }
+    mv.visitLabel(end);
+  }
+
+  private void generateFor(MethodVisitor mv, ForNode node) {
+    String forField = this.constant(node, ForNode.class);
+    String forNode = Type.getInternalName(ForNode.class);
+    String iteration = Type.getInternalName(ForNode.Iteration.class);
+    String strategy = Type.getInternalName(LoopStrategy.class);
+    int iterableLocal = this.nextLocal++;
+    int strategyLocal = this.nextLocal++;
+    int iterationLocal = this.nextLocal++;
+    Label loop = new Label();
+    Label iterate = new Label();
+    Label done = new Label();
+    Label end = new Label();
+
+    this.generateExpression(mv, node.getIterable(), BODY_SELF, BODY_CONTEXT);
+    mv.visitVarInsn(ASTORE, iterableLocal);
+    mv.visitVarInsn(ALOAD, iterableLocal);
+    mv.visitJumpInsn(IFNULL, end);
+
+    this.getConstant(mv, forField);
+    mv.visitVarInsn(ALOAD, iterableLocal);
+    mv.visitVarInsn(ALOAD, BODY_SELF);
+    mv.visitMethodInsn(INVOKEVIRTUAL, forNode, "loopStrategy",
+        Type.getMethodDescriptor(Type.getType(LoopStrategy.class), OBJECT, TEMPLATE), false);
+    mv.visitVarInsn(ASTORE, strategyLocal);
+    mv.visitVarInsn(ALOAD, strategyLocal);
+    mv.visitMethodInsn(INVOKEVIRTUAL, strategy, "hasNext", "()Z", false);
+    mv.visitJumpInsn(IFNE, iterate);
+    if (node.getElseBody() != null) {
+      this.invokeBody(mv, this.bodyMethod(node.getElseBody()));
+    }
+    mv.visitJumpInsn(GOTO, end);
+
+    mv.visitLabel(iterate);
+    this.getConstant(mv, forField);
+    mv.visitVarInsn(ALOAD, strategyLocal);
+    mv.visitVarInsn(ALOAD, iterableLocal);
+    mv.visitVarInsn(ALOAD, BODY_CONTEXT);
+    mv.visitMethodInsn(INVOKEVIRTUAL, forNode, "startIteration",
+        Type.getMethodDescriptor(Type.getObjectType(iteration), Type.getType(LoopStrategy.class),
+            OBJECT, CONTEXT), false);
+    mv.visitVarInsn(ASTORE, iterationLocal);
+
+    mv.visitLabel(loop);
+    mv.visitVarInsn(ALOAD, iterationLocal);
+    mv.visitMethodInsn(INVOKEVIRTUAL, iteration, "next", "()Z", false);
+    mv.visitJumpInsn(IFEQ, done);
+    this.invokeBody(mv, this.bodyMethod(node.getBody()));
+    mv.visitJumpInsn(GOTO, loop);
+
+    mv.visitLabel(done);
+    mv.visitVarInsn(ALOAD, iterationLocal);
+    mv.visitMethodInsn(INVOKEVIRTUAL, iteration, "end", "()V", false);
+    mv.visitLabel(end);
+  }
+
+  private void generateRender(MethodVisitor mv, RenderableNode node) {
+    String field = this.constant(node, RenderableNode.class);
+    Type type = this.constantType(field);
+    this.getConstant(mv, field);
+    mv.visitVarInsn(ALOAD, BODY_SELF);
+    mv.visitVarInsn(ALOAD, BODY_WRITER);
+    mv.visitVarInsn(ALOAD, BODY_CONTEXT);
+    this.invoke(mv, type, RenderableNode.class, "render", RENDER_DESCRIPTOR);
+  }
+
+  private void invokeBody(MethodVisitor mv, int index) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitVarInsn(ALOAD, BODY_SELF);
+    mv.visitVarInsn(ALOAD, BODY_WRITER);
+    mv.visitVarInsn(ALOAD, BODY_CONTEXT);
+    mv.visitMethodInsn(INVOKESPECIAL, this.className, bodyMethodName(index), RENDER_DESCRIPTOR,
+        false);
+  }
+
+  /**
+   * Pushes the value of an expression on the stack.
+   */
+  private void generateExpression(MethodVisitor mv, Expression<?> expression, int selfLocal,
+      int contextLocal) {
+    Class<?> type = expression.getClass();
+    Operator operator = operators.get(type);
+    if (type == LiteralNullExpression.class) {
+      mv.visitInsn(ACONST_NULL);
+    } else if (type == LiteralStringExpression.class
+        && ((LiteralStringExpression) expression).getValue().length()
+        <= MAX_STRING_CONSTANT_LENGTH) {
+      mv.visitLdcInsn(((LiteralStringExpression) expression).getValue());
+    } else if (operator != null) {
+      String method = "expression" + this.methodCount++;
+      BinaryExpression<?> binaryExpression = (BinaryExpression<?>) expression;
+      this.pendingMethods.add(() -> this.generateOperator(method, binaryExpression, operator));
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, selfLocal);
+      mv.visitVarInsn(ALOAD, contextLocal);
+      mv.visitMethodInsn(INVOKESPECIAL, this.className, method, EVALUATE_DESCRIPTOR, false);
+    } else {
+      String field = this.constant(expression, Expression.class);
+      this.getConstant(mv, field);
+      mv.visitVarInsn(ALOAD, selfLocal);
+      mv.visitVarInsn(ALOAD, contextLocal);
+      this.invoke(mv, this.constantType(field), Expression.class, "evaluate", EVALUATE_DESCRIPTOR);
+    }
+  }
+
+  /**
+   * Generates the method of a binary operator, any exception is wrapped like the interpreted
+   * expression does.
+   */
+  private void generateOperator(String method, BinaryExpression<?> expression,
+      Operator operator) {
+    MethodVisitor mv = this.classWriter.visitMethod(ACC_PRIVATE, method, EVALUATE_DESCRIPTOR,
+        null, null);
+    mv.visitCode();
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    mv.visitTryCatchBlock(start, end, handler, Type.getInternalName(Exception.class));
+
+    mv.visitLabel(start);
+    this.visitLineNumber(mv, expression.getLineNumber());
+    this.generateExpression(mv, expression.getLeftExpression(), EXPRESSION_SELF,
+        EXPRESSION_CONTEXT);
+    this.generateExpression(mv, expression.getRightExpression(), EXPRESSION_SELF,
+        EXPRESSION_CONTEXT);
+    boolean comparison = operator.comparison;
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(OperatorUtils.class), operator.method,
+        Type.getMethodDescriptor(comparison ? Type.BOOLEAN_TYPE : OBJECT, OBJECT, OBJECT), false);
+    if (comparison) {
+      if (operator.negated) {
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IXOR);
+      }
+      mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Boolean.class), "valueOf",
+          Type.getMethodDescriptor(Type.getType(Boolean.class), Type.BOOLEAN_TYPE), false);
+    }
+    mv.visitLabel(end);
+    mv.visitInsn(ARETURN);
+
+    mv.visitLabel(handler);
+    mv.visitVarInsn(ASTORE, EXPRESSION_EXCEPTION);
+    this.throwPebbleException(mv, operator.message, expression.getLineNumber());
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  private String conditionMethod(IfNode node, Expression<?> condition) {
+    String method = "condition" + this.methodCount++;
+    this.pendingMethods.add(() -> this.generateCondition(method, node, condition));
+    return method;
+  }
+
+  /**
+   * Generates the method evaluating a condition of an if node, see IfNode#render.
+   */
+  private void generateCondition(String method, IfNode node, Expression<?> condition) {
+    MethodVisitor mv = this.classWriter.visitMethod(ACC_PRIVATE, method, CONDITION_DESCRIPTOR,
+        null, null);
+    mv.visitCode();
+    Label start = new Label();
+    Label end = new Label();
+    Label handler = new Label();
+    mv.visitTryCatchBlock(start, end, handler, Type.getInternalName(RuntimeException.class));
+
+    mv.visitLabel(start);
+    this.visitLineNumber(mv, node.getLineNumber());
+    this.getConstant(mv, this.constant(node, IfNode.class));
+    this.generateExpression(mv, condition, EXPRESSION_SELF, EXPRESSION_CONTEXT);
+    mv.visitVarInsn(ALOAD, EXPRESSION_SELF);
+    mv.visitVarInsn(ALOAD, EXPRESSION_CONTEXT);
+    mv.visitMethodInsn(INVOKEVIRTUAL, Type.getInternalName(IfNode.class), "isSatisfied",
+        Type.getMethodDescriptor(Type.BOOLEAN_TYPE, OBJECT, TEMPLATE, CONTEXT), false);
+    mv.visitLabel(end);
+    mv.visitInsn(IRETURN);
+
+    mv.visitLabel(handler);
+    mv.visitVarInsn(ASTORE, EXPRESSION_EXCEPTION);
+    this.throwPebbleException(mv, "Wrong operand(s) type in conditional expression",
+        node.getLineNumber());
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Throws a PebbleException caused by the exception stored in the local variable
+   * EXPRESSION_EXCEPTION.
+   */
+  private void throwPebbleException(MethodVisitor mv, String message, int lineNumber) {
+    String exception = Type.getInternalName(PebbleException.class);
+    mv.visitTypeInsn(NEW, exception);
+    mv.visitInsn(DUP);
+    mv.visitVarInsn(ALOAD, EXPRESSION_EXCEPTION);
+    mv.visitLdcInsn(message);
+    push(mv, lineNumber);
+    mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(Integer.class), "valueOf",
+        Type.getMethodDescriptor(Type.getType(Integer.class), Type.INT_TYPE), false);
+    mv.visitVarInsn(ALOAD, EXPRESSION_SELF);
+    mv.visitMethodInsn(INVOKEVIRTUAL, TEMPLATE.getInternalName(), "getName",
+        Type.getMethodDescriptor(Type.getType(String.class)), false);
+    mv.visitMethodInsn(INVOKESPECIAL, exception, "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Throwable.class),
+            Type.getType(String.class), Type.getType(Integer.class), Type.getType(String.class)),
+        false);
+    mv.visitInsn(ATHROW);
+  }
+
+  /**
+   * Generates CompiledTemplate#render which dispatches to the method of a body.
+   */
+  private void generateDispatcher() {
+    MethodVisitor mv = this.classWriter.visitMethod(ACC_PUBLIC, "render",
+        Type.getMethodDescriptor(Type.VOID_TYPE, Type.INT_TYPE, TEMPLATE, WRITER, CONTEXT), null,
+        IO_EXCEPTION);
+    mv.visitCode();
+    Label unknown = new Label();
+    Label[] cases = new Label[this.bodies.size()];
+    for (int i = 0; i < cases.length; i++) {
+      cases[i] = new Label();
+    }
+    mv.visitVarInsn(ILOAD, 1);
+    mv.visitTableSwitchInsn(0, cases.length - 1, unknown, cases);
+    for (int i = 0; i < cases.length; i++) {
+      mv.visitLabel(cases[i]);
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 2);
+      mv.visitVarInsn(ALOAD, 3);
+      mv.visitVarInsn(ALOAD, 4);
+      mv.visitMethodInsn(INVOKESPECIAL, this.className, bodyMethodName(i), RENDER_DESCRIPTOR,
+          false);
+      mv.visitInsn(RETURN);
+    }
+    mv.visitLabel(unknown);
+    String exception = Type.getInternalName(IllegalArgumentException.class);
+    mv.visitTypeInsn(NEW, exception);
+    mv.visitInsn(DUP);
+    mv.visitMethodInsn(INVOKESPECIAL, exception, "<init>", "()V", false);
+    mv.visitInsn(ATHROW);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Generates the constructor, which assigns the constants to the fields.
+   */
+  private void generateConstructor() {
+    MethodVisitor mv = this.classWriter.visitMethod(ACC_PUBLIC, "<init>",
+        Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Object[].class)), null, null);
+    mv.visitCode();
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitMethodInsn(INVOKESPECIAL, OBJECT.getInternalName(), "<init>", "()V", false);
+    for (int i = 0; i < this.constants.size(); i++) {
+      Type type = this.constantTypes.get(i);
+      this.classWriter.visitField(ACC_PRIVATE | ACC_FINAL, constantFieldName(i),
+          type.getDescriptor(), null, null).visitEnd();
+      mv.visitVarInsn(ALOAD, 0);
+      mv.visitVarInsn(ALOAD, 1);
+      push(mv, i);
+      mv.visitInsn(AALOAD);
+      mv.visitTypeInsn(CHECKCAST, type.getInternalName());
+      mv.visitFieldInsn(PUTFIELD, this.className, constantFieldName(i), type.getDescriptor());
+    }
+    mv.visitInsn(RETURN);
+    mv.visitMaxs(0, 0);
+    mv.visitEnd();
+  }
+
+  /**
+   * Registers a value which is assigned to a field of the generated class. The field has the exact
+   * type of the value if that type is accessible from the generated class, the given type
+   * otherwise.
+   *
+   * @return The name of the field
+   */
+  private String constant(Object value, Class<?> fallbackType) {
+    String field = this.constantFields.get(value);
+    if (field == null) {
+      Class<?> type = this.isAccessible(value.getClass()) ? value.getClass() : fallbackType;
+      field = constantFieldName(this.constants.size());
+      this.constants.add(value);
+      this.constantTypes.add(Type.getType(type));
+      this.constantFields.put(value, field);
+    }
+    return field;
+  }
+
+  private Type constantType(String field) {
+    return this.constantTypes.get(Integer.parseInt(field.substring(1)));
+  }
+
+  private void getConstant(MethodVisitor mv, String field) {
+    mv.visitVarInsn(ALOAD, 0);
+    mv.visitFieldInsn(GETFIELD, this.className, field, this.constantType(field).getDescriptor());
+  }
+
+  private boolean isAccessible(Class<?> type) {
+    if (type.isArray()) {
+      return type.getComponentType().isPrimitive();
+    }
+    for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+      if (!Modifier.isPublic(current.getModifiers())) {
+        return false;
+      }
+    }
+    try {
+      return Class.forName(type.getName(), false, this.classLoader) == type;
+    } catch (ClassNotFoundException | LinkageError e) {
+      return false;
+    }
+  }
+
+  /**
+   * Invokes a method on the value of a constant, through its exact type when possible.
+   */
+  private void invoke(MethodVisitor mv, Type type, Class<?> interfaceType, String method,
+      String descriptor) {
+    if (type.equals(Type.getType(interfaceType))) {
+      mv.visitMethodInsn(INVOKEINTERFACE, type.getInternalName(), method, descriptor, true);
+    } else {
+      mv.visitMethodInsn(INVOKEVIRTUAL, type.getInternalName(), method, descriptor, false);
+    }
+  }
+
+  private void visitLineNumber(MethodVisitor mv, int lineNumber) {
+    if (lineNumber > 0 && lineNumber <= 0xFFFF) {
+      Label label = new Label();
+      mv.visitLabel(label);
+      mv.visitLineNumber(lineNumber, label);
+    }
+  }
+
+  private static void push(MethodVisitor mv, int value) {
+    if (value >= -1 && value <= 5) {
+      mv.visitInsn(ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      mv.visitIntInsn(BIPUSH, value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      mv.visitIntInsn(SIPUSH, value);
+    } else {
+      mv.visitLdcInsn(value);
+    }
+  }
+
+  private static String bodyMethodName(int index) {
+    return "body" + index;
+  }
+
+  private static String constantFieldName(int index) {
+    return "k" + index;
+  }
+
+  private static class Operator {
+
+    /**
+     * The method of OperatorUtils
+     */
+    private final String method;
+
+    /**
+     * Whether the method returns a primitive boolean
+     */
+    private final boolean comparison;
+
+    private final boolean negated;
+
+    private final String message;
+
+    Operator(String method, boolean comparison, boolean negated, String message) {
+      this.method = method;
+      this.comparison = comparison;
+      this.negated = negated;
+      this.message = message;
+    }
+  }
+}
@@ -0,0 +1,24 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+/**
+ * Defines the class generated for a single template so that it can be unloaded together with the
+ * template.
+ */
+class TemplateClassLoader extends ClassLoader {
+
+  TemplateClassLoader(ClassLoader parent) {
+    super(parent);
+  }
+
+  Class<?> define(String className, byte[] bytecode) {
+    return this.defineClass(className, bytecode, 0, bytecode.length);
+  }
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.compiler;
+
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compiles parsed templates into JVM classes.
+ * <p>
+ * Within the generated class, text, print, if and for nodes as well as the arithmetic and
+ * comparison operators are executed as straight-line code instead of being dispatched through the
+ * node tree. Every other node is still rendered by the interpreter. If a template can't be
+ * compiled, it is interpreted.
+ * <p>
+ * Bytecode is generated with ASM which is an optional dependency.
+ */
+public final class TemplateCompiler {
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateCompiler.class);
+
+  private static final String ASM_CLASS = "org.objectweb.asm.ClassWriter";
+
+  private static final String CLASS_NAME_PREFIX = "io.pebbletemplates.pebble.compiler.Template$";
+
+  private static final AtomicLong counter = new AtomicLong();
+
+  private final ClassLoader classLoader;
+
+  private TemplateCompiler(ClassLoader classLoader) {
+    this.classLoader = classLoader;
+  }
+
+  /**
+   * Creates a compiler if ASM is available.
+   *
+   * @return The compiler or null if ASM can't be found
+   */
+  public static TemplateCompiler create() {
+    ClassLoader classLoader = TemplateCompiler.class.getClassLoader();
+    try {
+      Class.forName(ASM_CLASS, false, classLoader);
+    } catch (ClassNotFoundException | LinkageError e) {
+      logger.warn("Template compilation requires org.ow2.asm:asm, templates will be interpreted");
+      return null;
+    }
+    return new TemplateCompiler(classLoader);
+  }
+
+  /**
+   * Compiles a template. On success the bodies of the template delegate their rendering to the
+   * generated class, otherwise the template is left untouched.
+   *
+   * @param template The template
+   * @param root The root node of the template, after all node visitors have been applied
+   * @return Whether the template has been compiled
+   */
+  public boolean compile(PebbleTemplateImpl template, RootNode root) {
+    String className = CLASS_NAME_PREFIX + counter.incrementAndGet();
+    try {
+      TemplateClassGenerator generator = new TemplateClassGenerator(className, template.getName(),
+          this.classLoader);
+      byte[] bytecode = generator.generate(template, root);
+
+      Class<?> compiledClass = new TemplateClassLoader(this.classLoader)
+          .define(className, bytecode);
+      CompiledTemplate compiledTemplate = (CompiledTemplate) compiledClass
+          .getConstructor(Object[].class)
+          .newInstance((Object) generator.getConstants());
+
+      for (Map.Entry<BodyNode, Integer> body : generator.getBodies().entrySet()) {
+        body.getKey().setCompiled(compiledTemplate, body.getValue());
+      }
+      return true;
+    } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+      logger.warn("Template {} could not be compiled and will be interpreted", template.getName(),
+          e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,22 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.error;
+
+/**
+ * Thrown by an evaluation which has been cancelled, or which reached its deadline, see {@link
+ * io.pebbletemplates.pebble.template.CancellationToken}.
+ */
+public class RenderCancelledException extends PebbleException {
+
+  private static final long serialVersionUID = -4630527846245328790L;
+
+  public RenderCancelledException(String message) {
+    super(null, message);
+  }
+}
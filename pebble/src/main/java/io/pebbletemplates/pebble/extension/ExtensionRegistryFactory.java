@@ -1,7 +1,12 @@
 package io.pebbletemplates.pebble.extension;
 
+import io.pebbletemplates.pebble.attributes.DefaultAttributeResolver;
 import io.pebbletemplates.pebble.extension.core.AttributeResolverExtension;
+import io.pebbletemplates.pebble.extension.core.ConstantFoldingExtension;
+import io.pebbletemplates.pebble.extension.core.HtmlWhitespaceMinifierExtension;
 import io.pebbletemplates.pebble.extension.i18n.I18nExtension;
+import io.pebbletemplates.pebble.instrumentation.ProfilingExtension;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler;
 import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.extension.core.CoreExtension;
 import io.pebbletemplates.pebble.extension.escaper.EscaperExtension;
@@ -24,6 +29,14 @@ public class ExtensionRegistryFactory {
 
   private boolean allowOverrideCoreOperators = false;
 
+  private boolean constantFolding = true;
+
+  private boolean minifyHtmlWhitespace = false;
+
+  private RenderProfiler profiler;
+
+  private Integer memberCacheSize;
+
   private Function<Extension, Extension> customizer = Function.identity();
 
   public ExtensionRegistry buildExtensionRegistry() {
@@ -41,7 +54,22 @@ public class ExtensionRegistryFactory {
       }
     }
 
-    extensionRegistry.addExtension(customizer.apply(new AttributeResolverExtension()));
+    extensionRegistry.addExtension(customizer.apply(this.memberCacheSize == null
+        ? new AttributeResolverExtension()
+        : new AttributeResolverExtension(new DefaultAttributeResolver(this.memberCacheSize))));
+
+    if (this.minifyHtmlWhitespace) {
+      extensionRegistry.addExtension(customizer.apply(new HtmlWhitespaceMinifierExtension()));
+    }
+
+    if (this.constantFolding) {
+      extensionRegistry.addExtension(
+          customizer.apply(new ConstantFoldingExtension(extensionRegistry)));
+    }
+
+    if (this.profiler != null) {
+      extensionRegistry.addExtension(customizer.apply(new ProfilingExtension(this.profiler)));
+    }
 
     return extensionRegistry;
   }
@@ -62,6 +90,22 @@ public class ExtensionRegistryFactory {
     this.allowOverrideCoreOperators = allowOverrideCoreOperators;
   }
 
+  public void constantFolding(boolean constantFolding) {
+    this.constantFolding = constantFolding;
+  }
+
+  public void minifyHtmlWhitespace(boolean minifyHtmlWhitespace) {
+    this.minifyHtmlWhitespace = minifyHtmlWhitespace;
+  }
+
+  public void profiler(RenderProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  public void memberCacheSize(int memberCacheSize) {
+    this.memberCacheSize = memberCacheSize;
+  }
+
   public void defaultEscapingStrategy(String strategy) {
     this.escaperExtension.setDefaultStrategy(strategy);
   }
@@ -9,10 +9,20 @@ import java.util.List;
 
 public class AttributeResolverExtension extends AbstractExtension {
 
+  private final DefaultAttributeResolver defaultAttributeResolver;
+
+  public AttributeResolverExtension() {
+    this(new DefaultAttributeResolver());
+  }
+
+  public AttributeResolverExtension(DefaultAttributeResolver defaultAttributeResolver) {
+    this.defaultAttributeResolver = defaultAttributeResolver;
+  }
+
   @Override
   public List<AttributeResolver> getAttributeResolver() {
     List<AttributeResolver> attributeResolvers = new ArrayList<>();
-    attributeResolvers.add(new DefaultAttributeResolver());
+    attributeResolvers.add(this.defaultAttributeResolver);
     return attributeResolvers;
   }
 }
@@ -0,0 +1,26 @@
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers the {@link ConstantFoldingNodeVisitor}, after all the other extensions so that it
+ * visits the templates last.
+ */
+public class ConstantFoldingExtension extends AbstractExtension {
+
+  private final ConstantFoldingNodeVisitorFactory visitorFactory;
+
+  public ConstantFoldingExtension(ExtensionRegistry extensionRegistry) {
+    this.visitorFactory = new ConstantFoldingNodeVisitorFactory(extensionRegistry);
+  }
+
+  @Override
+  public List<NodeVisitorFactory> getNodeVisitors() {
+    return Collections.singletonList(this.visitorFactory);
+  }
+}
@@ -0,0 +1,349 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.AddExpression;
+import io.pebbletemplates.pebble.node.expression.AndExpression;
+import io.pebbletemplates.pebble.node.expression.ArrayExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.ConcatenateExpression;
+import io.pebbletemplates.pebble.node.expression.DivideExpression;
+import io.pebbletemplates.pebble.node.expression.EqualsExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.GreaterThanExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.LessThanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBigDecimalExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBooleanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralDoubleExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralIntegerExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.ModulusExpression;
+import io.pebbletemplates.pebble.node.expression.MultiplyExpression;
+import io.pebbletemplates.pebble.node.expression.NotEqualsExpression;
+import io.pebbletemplates.pebble.node.expression.OrExpression;
+import io.pebbletemplates.pebble.node.expression.RangeExpression;
+import io.pebbletemplates.pebble.node.expression.SubtractExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryMinusExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryNotExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryPlusExpression;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.Pair;
+import io.pebbletemplates.pebble.utils.TypeUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Evaluates the expressions made of literals and built-in operators once, when the template is
+ * loaded, instead of on every evaluation:
+ * <ul>
+ * <li>operators and ternary conditions whose operands are literals are replaced by the literal
+ * they evaluate to, ranges between integer literals by an array of literals;</li>
+ * <li>the branches of an if tag whose condition is a boolean literal are removed, as well as the
+ * tag itself when a single branch is left;</li>
+ * <li>printed string literals become text, and adjacent texts are merged.</li>
+ * </ul>
+ * Only the operator nodes of the core extension are evaluated, so that operators overridden by
+ * extensions keep their behaviour, and an expression which fails is left as is so that it fails
+ * when the template is evaluated. The operators applied to null are left as is too, as the and,
+ * or and not operators then depend on the strict variables option of the evaluation. This visitor runs after the visitors of all the other
+ * extensions but the profiler: the escaper has already decided which expressions to escape, the
+ * macros and blocks of the removed branches have already been registered, and the texts have
+ * already been minified.
+ */
+public class ConstantFoldingNodeVisitor extends AbstractNodeVisitor {
+
+  /**
+   * The largest range replaced by an array of literals, larger ones are evaluated as usual
+   */
+  static final int MAX_FOLDED_RANGE_SIZE = 64;
+
+  private static final Set<Class<?>> FOLDABLE_OPERATORS = new HashSet<>(Arrays.asList(
+      AddExpression.class, SubtractExpression.class, MultiplyExpression.class,
+      DivideExpression.class, ModulusExpression.class, ConcatenateExpression.class,
+      EqualsExpression.class, NotEqualsExpression.class, LessThanExpression.class,
+      LessThanEqualsExpression.class, GreaterThanExpression.class,
+      GreaterThanEqualsExpression.class, AndExpression.class, OrExpression.class,
+      UnaryNotExpression.class, UnaryMinusExpression.class, UnaryPlusExpression.class));
+
+  private final ExtensionRegistry extensionRegistry;
+
+  /**
+   * The body of the visited template, which only renders the inheritance safe nodes when the
+   * template extends another template
+   */
+  private BodyNode rootBody;
+
+  public ConstantFoldingNodeVisitor(PebbleTemplateImpl template,
+      ExtensionRegistry extensionRegistry) {
+    super(template);
+    this.extensionRegistry = extensionRegistry;
+  }
+
+  @Override
+  public void visit(RootNode node) {
+    this.rootBody = node.getBody();
+    super.visit(node);
+  }
+
+  @Override
+  public void visit(BodyNode node) {
+    List<RenderableNode> children = node.getChildren();
+    List<RenderableNode> folded = new ArrayList<>(children.size());
+    boolean changed = false;
+    for (RenderableNode child : children) {
+      child.accept(this);
+      RenderableNode replacement = this.fold(child);
+      changed |= replacement != child;
+      if (replacement instanceof BodyNode && this.canInline((BodyNode) replacement, node)) {
+        for (RenderableNode grandChild : ((BodyNode) replacement).getChildren()) {
+          changed |= TextNode.append(folded, grandChild);
+        }
+      } else if (replacement != null) {
+        changed |= TextNode.append(folded, replacement);
+      }
+    }
+    if (changed) {
+      children.clear();
+      children.addAll(folded);
+    }
+  }
+
+  /**
+   * Returns whether the children of a body can replace it within its parent body. The root body
+   * of a child template skips the nodes which aren't inheritance safe such as nested bodies, so
+   * their children must be skipped as well.
+   */
+  private boolean canInline(BodyNode body, BodyNode parent) {
+    if (parent != this.rootBody) {
+      return true;
+    }
+    for (RenderableNode child : body.getChildren()) {
+      if (BodyNode.isInheritanceSafe(child)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void visit(ForNode node) {
+    node.setIterable(this.fold(node.getIterable()));
+    super.visit(node);
+  }
+
+  @Override
+  public void visit(PrintNode node) {
+    node.setExpression(this.fold(node.getExpression()));
+  }
+
+  @Override
+  public void visit(SetNode node) {
+    node.setValue(this.fold(node.getValue()));
+  }
+
+  /**
+   * Returns the node replacing a child of a body: itself, another node, or null if it renders
+   * nothing.
+   */
+  private RenderableNode fold(RenderableNode node) {
+    if (node instanceof IfNode) {
+      return this.fold((IfNode) node);
+    }
+    if (node instanceof PrintNode) {
+      Expression<?> expression = ((PrintNode) node).getExpression();
+      if (expression instanceof LiteralStringExpression) {
+        return new TextNode(((LiteralStringExpression) expression).getValue(),
+            ((PrintNode) node).getLineNumber());
+      }
+      if (expression instanceof LiteralNullExpression) {
+        return null;
+      }
+    }
+    return node;
+  }
+
+  private RenderableNode fold(IfNode node) {
+    List<Pair<Expression<?>, BodyNode>> conditionsWithBodies = new ArrayList<>();
+    BodyNode elseBody = node.getElseBody();
+    boolean changed = false;
+    for (Pair<Expression<?>, BodyNode> ifStatement : node.getConditionsWithBodies()) {
+      Expression<?> condition = this.fold(ifStatement.getLeft());
+      changed |= condition != ifStatement.getLeft();
+      if (condition instanceof LiteralBooleanExpression) {
+        changed = true;
+        if (((LiteralBooleanExpression) condition).getValue()) {
+          elseBody = ifStatement.getRight();
+          break;
+        }
+      } else {
+        conditionsWithBodies.add(new Pair<>(condition, ifStatement.getRight()));
+      }
+    }
+    if (!changed) {
+      return node;
+    }
+    if (conditionsWithBodies.isEmpty()) {
+      return elseBody;
+    }
+    return new IfNode(node.getLineNumber(), conditionsWithBodies, elseBody);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Expression<?> fold(Expression<?> expression) {
+    if (expression instanceof BinaryExpression) {
+      BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+      binary.setLeft(this.fold(binary.getLeftExpression()));
+      binary.setRight(this.fold(binary.getRightExpression()));
+      if (binary.getClass() == RangeExpression.class) {
+        return this.foldRange(binary);
+      }
+      if (!FOLDABLE_OPERATORS.contains(binary.getClass())) {
+        return binary;
+      }
+      if (isNonNullLiteral(binary.getLeftExpression())
+          && isNonNullLiteral(binary.getRightExpression())) {
+        return this.evaluate(binary);
+      }
+      // short-circuits, the right operand isn't evaluated
+      Expression<?> left = binary.getLeftExpression();
+      if (left instanceof LiteralBooleanExpression) {
+        boolean value = ((LiteralBooleanExpression) left).getValue();
+        if (binary instanceof AndExpression && !value
+            || binary instanceof OrExpression && value) {
+          return new LiteralBooleanExpression(value, binary.getLineNumber());
+        }
+      }
+    } else if (expression instanceof UnaryExpression) {
+      UnaryExpression unary = (UnaryExpression) expression;
+      unary.setChildExpression(this.fold(unary.getChildExpression()));
+      if (FOLDABLE_OPERATORS.contains(unary.getClass())
+          && isNonNullLiteral(unary.getChildExpression())) {
+        return this.evaluate(unary);
+      }
+    } else if (expression instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) expression;
+      ternary.setExpression2(this.fold(ternary.getExpression2()));
+      ternary.setExpression3(this.fold(ternary.getExpression3()));
+      Expression<?> condition = this.fold(ternary.getExpression1());
+      if (isLiteral(condition)) {
+        Object value = ((Expression<Object>) condition).evaluate(this.getTemplate(), null);
+        try {
+          return value != null && TypeUtils.compatibleCast(value, Boolean.class)
+              ? ternary.getExpression2() : ternary.getExpression3();
+        } catch (ClassCastException e) {
+          return ternary;
+        }
+      }
+      if (condition != ternary.getExpression1()) {
+        return new TernaryExpression((Expression<Boolean>) condition, ternary.getExpression2(),
+            ternary.getExpression3(), ternary.getLineNumber(), this.getTemplate().getName());
+      }
+    }
+    return expression;
+  }
+
+  /**
+   * Replaces a range between integer literals by the array it evaluates to, as long as the range
+   * function hasn't been replaced by an extension.
+   */
+  private Expression<?> foldRange(BinaryExpression<?> range) {
+    Long start = toLong(range.getLeftExpression());
+    Long end = toLong(range.getRightExpression());
+    if (start == null || end == null
+        || this.extensionRegistry.getFunction(RangeFunction.FUNCTION_NAME) == null
+        || this.extensionRegistry.getFunction(RangeFunction.FUNCTION_NAME).getClass()
+        != RangeFunction.class) {
+      return range;
+    }
+    List<Expression<?>> values = new ArrayList<>();
+    // the range is empty if the end comes first, overflows are left to the range function
+    if (start <= end) {
+      if (end - start < 0 || end - start >= MAX_FOLDED_RANGE_SIZE) {
+        return range;
+      }
+      for (long i = start; i <= end; i++) {
+        values.add(new LiteralLongExpression(i, range.getLineNumber()));
+      }
+    }
+    return new ArrayExpression(values, range.getLineNumber());
+  }
+
+  private Expression<?> evaluate(Expression<?> expression) {
+    Object value;
+    try {
+      // the operators evaluated here don't use the context once their operands aren't null
+      value = expression.evaluate(this.getTemplate(), null);
+    } catch (PebbleException | ClassCastException | IllegalArgumentException e) {
+      // operands of the wrong type, left to fail when the template is evaluated
+      return expression;
+    }
+    int lineNumber = expression.getLineNumber();
+    if (value == null) {
+      return new LiteralNullExpression(lineNumber);
+    } else if (value instanceof String) {
+      return new LiteralStringExpression((String) value, lineNumber);
+    } else if (value instanceof Boolean) {
+      return new LiteralBooleanExpression((Boolean) value, lineNumber);
+    } else if (value instanceof Long) {
+      return new LiteralLongExpression((Long) value, lineNumber);
+    } else if (value instanceof Integer) {
+      return new LiteralIntegerExpression((Integer) value, lineNumber);
+    } else if (value instanceof Double) {
+      return new LiteralDoubleExpression((Double) value, lineNumber);
+    } else if (value instanceof BigDecimal) {
+      return new LiteralBigDecimalExpression((BigDecimal) value, lineNumber);
+    }
+    return expression;
+  }
+
+  private static Long toLong(Expression<?> expression) {
+    if (expression instanceof LiteralLongExpression) {
+      return ((LiteralLongExpression) expression).getValue();
+    } else if (expression instanceof LiteralIntegerExpression) {
+      return ((LiteralIntegerExpression) expression).getValue().longValue();
+    }
+    return null;
+  }
+
+  private static boolean isNonNullLiteral(Expression<?> expression) {
+    return isLiteral(expression) && !(expression instanceof LiteralNullExpression);
+  }
+
+  private static boolean isLiteral(Expression<?> expression) {
+    return expression instanceof LiteralStringExpression
+        || expression instanceof LiteralBooleanExpression
+        || expression instanceof LiteralNullExpression
+        || expression instanceof LiteralLongExpression
+        || expression instanceof LiteralIntegerExpression
+        || expression instanceof LiteralDoubleExpression
+        || expression instanceof LiteralBigDecimalExpression;
+  }
+}
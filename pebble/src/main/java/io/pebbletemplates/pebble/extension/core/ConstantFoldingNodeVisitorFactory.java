@@ -0,0 +1,25 @@
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+/**
+ * Implementation of {@link NodeVisitorFactory} to create {@link ConstantFoldingNodeVisitor}.
+ */
+public class ConstantFoldingNodeVisitorFactory implements NodeVisitorFactory {
+
+  private final ExtensionRegistry extensionRegistry;
+
+  public ConstantFoldingNodeVisitorFactory(ExtensionRegistry extensionRegistry) {
+    this.extensionRegistry = extensionRegistry;
+  }
+
+  @Override
+  public NodeVisitor createVisitor(PebbleTemplate template) {
+    return new ConstantFoldingNodeVisitor((PebbleTemplateImpl) template, this.extensionRegistry);
+  }
+
+}
@@ -0,0 +1,20 @@
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers the {@link HtmlWhitespaceMinifierNodeVisitor}, after the extensions provided by the
+ * user but before the {@link ConstantFoldingExtension}, so that it only minifies the texts of the
+ * template and not the printed string literals which are folded into texts.
+ */
+public class HtmlWhitespaceMinifierExtension extends AbstractExtension {
+
+  @Override
+  public List<NodeVisitorFactory> getNodeVisitors() {
+    return Collections.singletonList(new HtmlWhitespaceMinifierNodeVisitorFactory());
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.List;
+
+/**
+ * Collapses the whitespace of the static text of HTML templates: every run of whitespace becomes
+ * a single newline if it contains one, a single space otherwise, which browsers render the same
+ * way. The content of the {@code pre}, {@code textarea}, {@code script} and {@code style} elements
+ * is left untouched, as well as the quoted attribute values.
+ * <p>
+ * Only the text of the template is rewritten, the printed values are not, and the elements are
+ * tracked in the order in which the texts appear in the template. Stylesheets changing how
+ * whitespace is rendered, with the {@code white-space} property for instance, aren't taken into
+ * account.
+ */
+public class HtmlWhitespaceMinifierNodeVisitor extends AbstractNodeVisitor {
+
+  private static final String[] RAW_TEXT_ELEMENTS = {"pre", "textarea", "script", "style"};
+
+  /**
+   * The element whose content is being visited and mustn't be minified, null if none
+   */
+  private String rawTextElement;
+
+  /**
+   * Whether a tag is being visited
+   */
+  private boolean inTag;
+
+  /**
+   * Whether the last char of the tag being visited, whitespace aside, is an equals sign
+   */
+  private boolean afterEquals;
+
+  /**
+   * The quote of the attribute value being visited, 0 if none
+   */
+  private char quote;
+
+  public HtmlWhitespaceMinifierNodeVisitor(PebbleTemplateImpl template) {
+    super(template);
+  }
+
+  @Override
+  public void visit(BodyNode node) {
+    List<RenderableNode> children = node.getChildren();
+    for (int i = 0; i < children.size(); i++) {
+      RenderableNode child = children.get(i);
+      if (child instanceof TextNode) {
+        TextNode text = (TextNode) child;
+        String data = new String(text.getData());
+        String minified = this.minify(data);
+        if (!minified.equals(data)) {
+          children.set(i, new TextNode(minified, text.getLineNumber()));
+        }
+      } else {
+        child.accept(this);
+      }
+    }
+  }
+
+  String minify(String text) {
+    StringBuilder result = new StringBuilder(text.length());
+    int length = text.length();
+    int i = 0;
+    while (i < length) {
+      char c = text.charAt(i);
+      if (this.rawTextElement != null) {
+        if (c == '<' && text.regionMatches(true, i + 1, "/" + this.rawTextElement, 0,
+            this.rawTextElement.length() + 1)) {
+          this.rawTextElement = null;
+          this.inTag = true;
+        }
+        result.append(c);
+        i++;
+      } else if (this.quote != 0) {
+        if (c == this.quote) {
+          this.quote = 0;
+        }
+        result.append(c);
+        i++;
+      } else if (isWhitespace(c)) {
+        boolean newLine = false;
+        while (i < length && isWhitespace(text.charAt(i))) {
+          newLine |= text.charAt(i) == '\n';
+          i++;
+        }
+        result.append(newLine ? '\n' : ' ');
+      } else {
+        if (c == '<') {
+          this.rawTextElement = rawTextElement(text, i + 1);
+          this.inTag = this.rawTextElement == null;
+        } else if (c == '>') {
+          this.inTag = false;
+        } else if (this.inTag && this.afterEquals && (c == '"' || c == '\'')) {
+          this.quote = c;
+        }
+        this.afterEquals = this.inTag && c == '=';
+        result.append(c);
+        i++;
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Returns the raw text element starting at an index, if any.
+   */
+  private static String rawTextElement(String text, int start) {
+    for (String element : RAW_TEXT_ELEMENTS) {
+      int end = start + element.length();
+      if (text.regionMatches(true, start, element, 0, element.length())
+          && (end == text.length() || text.charAt(end) == '>' || text.charAt(end) == '/'
+          || isWhitespace(text.charAt(end)))) {
+        return element;
+      }
+    }
+    return null;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+  }
+}
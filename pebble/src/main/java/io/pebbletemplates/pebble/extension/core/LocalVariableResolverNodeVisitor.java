@@ -0,0 +1,168 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.extension.core;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.node.ArgumentsNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.MacroNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TestInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.ArrayExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.BlockFunctionExpression;
+import io.pebbletemplates.pebble.node.expression.ContextVariableExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GetAttributeExpression;
+import io.pebbletemplates.pebble.node.expression.MapExpression;
+import io.pebbletemplates.pebble.node.expression.RenderableNodeExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.template.Frame;
+import io.pebbletemplates.pebble.template.FrameSlot;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the loop variables and macro arguments referenced by a template to the slots of the
+ * frames pushed by the enclosing {@link ForNode} and {@link MacroNode}, so that they don't have to
+ * be searched by name through the scope chain. Any other variable, such as the ones provided by the
+ * user, is still looked up by name.
+ */
+public class LocalVariableResolverNodeVisitor extends AbstractNodeVisitor {
+
+  /**
+   * The layouts of the frames enclosing the visited node, the innermost one being last
+   */
+  private List<Frame.Layout> frames = new ArrayList<>();
+
+  public LocalVariableResolverNodeVisitor(PebbleTemplateImpl template) {
+    super(template);
+  }
+
+  @Override
+  public void visit(ForNode node) {
+    node.getIterable().accept(this);
+    this.frames.add(node.getFrameLayout());
+    node.getBody().accept(this);
+    this.frames.remove(this.frames.size() - 1);
+    if (node.getElseBody() != null) {
+      node.getElseBody().accept(this);
+    }
+  }
+
+  @Override
+  public void visit(MacroNode node) {
+    // a macro can't access the variables of the template calling it
+    List<Frame.Layout> enclosingFrames = this.frames;
+    this.frames = new ArrayList<>();
+    this.frames.add(node.getFrameLayout());
+    super.visit(node);
+    this.frames = enclosingFrames;
+  }
+
+  @Override
+  public void visit(SetNode node) {
+    super.visit(node);
+    node.setFrameSlot(this.resolve(node.getName()));
+  }
+
+  /**
+   * Expressions don't have dedicated visit methods, they are traversed here.
+   */
+  @Override
+  public void visit(Node node) {
+    if (node instanceof ContextVariableExpression) {
+      ContextVariableExpression variable = (ContextVariableExpression) node;
+      variable.setFrameSlot(this.resolve(variable.getName()));
+    } else if (node instanceof BinaryExpression) {
+      this.visitExpression(((BinaryExpression<?>) node).getLeftExpression());
+      this.visitExpression(((BinaryExpression<?>) node).getRightExpression());
+    } else if (node instanceof RenderableNodeExpression) {
+      RenderableNodeExpression renderable = (RenderableNodeExpression) node;
+      if (renderable.getNode() != null) {
+        renderable.getNode().accept(this);
+      }
+    } else if (node instanceof UnaryExpression) {
+      this.visitExpression(((UnaryExpression) node).getChildExpression());
+    } else if (node instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) node;
+      this.visitExpression(ternary.getExpression1());
+      this.visitExpression(ternary.getExpression2());
+      this.visitExpression(ternary.getExpression3());
+    } else if (node instanceof GetAttributeExpression) {
+      GetAttributeExpression getAttribute = (GetAttributeExpression) node;
+      this.visitExpression(getAttribute.getNode());
+      this.visitExpression(getAttribute.getAttributeNameExpression());
+      this.visitArguments(getAttribute.getArgumentsNode());
+    } else if (node instanceof FunctionOrMacroInvocationExpression) {
+      this.visitArguments(((FunctionOrMacroInvocationExpression) node).getArguments());
+    } else if (node instanceof FilterInvocationExpression) {
+      this.visitArguments(((FilterInvocationExpression) node).getArgs());
+    } else if (node instanceof TestInvocationExpression) {
+      this.visitArguments(((TestInvocationExpression) node).getArgs());
+    } else if (node instanceof ArrayExpression) {
+      List<Expression<?>> values = ((ArrayExpression) node).getValues();
+      if (values != null) {
+        for (Expression<?> value : values) {
+          this.visitExpression(value);
+        }
+      }
+    } else if (node instanceof MapExpression) {
+      Map<Expression<?>, Expression<?>> entries = ((MapExpression) node).getEntries();
+      if (entries != null) {
+        for (Map.Entry<Expression<?>, Expression<?>> entry : entries.entrySet()) {
+          this.visitExpression(entry.getKey());
+          this.visitExpression(entry.getValue());
+        }
+      }
+    } else if (node instanceof BlockFunctionExpression) {
+      this.visitExpression(((BlockFunctionExpression) node).getBlockNameExpression());
+    }
+  }
+
+  private void visitExpression(Expression<?> expression) {
+    if (expression != null) {
+      expression.accept(this);
+    }
+  }
+
+  private void visitArguments(ArgumentsNode arguments) {
+    if (arguments != null) {
+      arguments.accept(this);
+    }
+  }
+
+  /**
+   * Returns the location of a variable within the enclosing frames, starting with the innermost
+   * one.
+   *
+   * @param name The name of the variable
+   * @return The location of the variable or null if it isn't stored in a frame
+   */
+  private FrameSlot resolve(String name) {
+    for (int i = this.frames.size() - 1; i >= 0; i--) {
+      int slot = this.frames.get(i).indexOf(name);
+      if (slot >= 0) {
+        Frame.Layout[] layouts = new Frame.Layout[this.frames.size() - i];
+        for (int depth = 0; depth < layouts.length; depth++) {
+          layouts[depth] = this.frames.get(this.frames.size() - 1 - depth);
+        }
+        return new FrameSlot(layouts, slot);
+      }
+    }
+    return null;
+  }
+}
@@ -10,6 +10,7 @@ package io.pebbletemplates.pebble.extension.core;
 
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.Function;
+import io.pebbletemplates.pebble.template.CancellationToken;
 import io.pebbletemplates.pebble.template.EvaluationContext;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 
@@ -61,14 +62,16 @@ public class RangeFunction implements Function {
     if (start instanceof Number && end instanceof Number) {
       long startNum = ((Number) start).longValue();
       long endNum = ((Number) end).longValue();
+      // a large range takes a while to build, the evaluation may be cancelled meanwhile
+      CancellationToken cancellationToken = context.getCancellationToken();
 
       if (incrementNum > 0) {
         for (long i = startNum; i <= endNum; i += incrementNum) {
-          results.add(i);
+          add(results, i, cancellationToken);
         }
       } else if (incrementNum < 0) {
         for (long i = startNum; i >= endNum; i += incrementNum) {
-          results.add(i);
+          add(results, i, cancellationToken);
         }
       } else {
         throw new PebbleException(null,
@@ -111,6 +114,13 @@ public class RangeFunction implements Function {
     return results;
   }
 
+  private static void add(List<Object> results, long value, CancellationToken cancellationToken) {
+    if (cancellationToken != null && (results.size() & 0xFFFF) == 0) {
+      cancellationToken.check();
+    }
+    results.add(value);
+  }
+
   @Override
   public List<String> getArgumentNames() {
     return this.argumentNames;
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+/**
+ * Receives the measurements of an engine: the compilation and the evaluation of its templates, the
+ * included templates, the hits and misses of the template cache and of the "cache" tag, and the
+ * tasks of the "parallel" tag. Durations are in nanoseconds.
+ * <p>
+ * The methods are called synchronously by the threads rendering the templates, including those of
+ * the executor service of the engine, so they must be thread safe and fast. Every method does
+ * nothing by default.
+ *
+ * @see io.pebbletemplates.pebble.PebbleEngine.Builder#instrumentation(Instrumentation)
+ */
+public interface Instrumentation {
+
+  /**
+   * Called when a template is found in the template cache.
+   *
+   * @param templateName The name of the template
+   */
+  default void templateCacheHit(String templateName) {
+  }
+
+  /**
+   * Called when a template which wasn't in the template cache has been loaded, parsed and
+   * compiled, or failed to be.
+   *
+   * @param templateName The name of the template
+   * @param nanos The duration of the compilation
+   * @param error The error which made the compilation fail, null if it succeeded
+   */
+  default void templateCompiled(String templateName, long nanos, Throwable error) {
+  }
+
+  /**
+   * Called when a template has been evaluated by one of the evaluate methods of the template, the
+   * parent templates and the included templates included.
+   *
+   * @param templateName The name of the template
+   * @param nanos The duration of the evaluation
+   * @param outputSize The number of chars written
+   * @param error The error which made the evaluation fail, null if it succeeded
+   */
+  default void templateEvaluated(String templateName, long nanos, long outputSize,
+      Throwable error) {
+  }
+
+  /**
+   * Called when a template has been included by another one with the "include" tag.
+   *
+   * @param templateName The name of the including template
+   * @param includedTemplateName The name of the included template
+   * @param nanos The duration of the evaluation of the included template
+   * @param error The error which made the evaluation fail, null if it succeeded
+   */
+  default void templateIncluded(String templateName, String includedTemplateName, long nanos,
+      Throwable error) {
+  }
+
+  /**
+   * Called when the content of a "cache" tag is found in the tag cache.
+   *
+   * @param templateName The name of the template
+   * @param lineNumber The line of the tag
+   */
+  default void cacheTagHit(String templateName, int lineNumber) {
+  }
+
+  /**
+   * Called when the content of a "cache" tag which wasn't in the tag cache has been rendered.
+   *
+   * @param templateName The name of the template
+   * @param lineNumber The line of the tag
+   * @param nanos The duration of the rendering
+   */
+  default void cacheTagMiss(String templateName, int lineNumber, long nanos) {
+  }
+
+  /**
+   * Called when the task rendering the content of a "parallel" tag has completed.
+   *
+   * @param templateName The name of the template
+   * @param lineNumber The line of the tag
+   * @param queuedNanos The time spent by the task waiting for a thread of the executor service
+   * @param nanos The duration of the rendering
+   * @param error The error which made the rendering fail, null if it succeeded
+   */
+  default void parallelTaskCompleted(String templateName, int lineNumber, long queuedNanos,
+      long nanos, Throwable error) {
+  }
+}
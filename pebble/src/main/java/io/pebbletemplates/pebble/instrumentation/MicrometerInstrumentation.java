@@ -0,0 +1,256 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Records the measurements of an engine as Micrometer meters, tagged with the template:
+ * <ul>
+ * <li>{@code pebble.template.compilation}: timer of the compilations, tagged with their
+ * outcome</li>
+ * <li>{@code pebble.template.cache}: counter of the template cache requests, tagged with their
+ * result, hit or miss</li>
+ * <li>{@code pebble.template.evaluation}: timer of the evaluations, tagged with their outcome</li>
+ * <li>{@code pebble.template.output}: distribution of the number of chars written by the
+ * evaluations</li>
+ * <li>{@code pebble.template.include}: timer of the included templates, tagged with the included
+ * template and the outcome</li>
+ * <li>{@code pebble.cache.tag}: counter of the "cache" tag lookups, tagged with the line of the
+ * tag and their result, hit or miss, but not with the evaluated name of the tag whose values are
+ * unbounded</li>
+ * <li>{@code pebble.parallel.task}: timer of the "parallel" tag tasks, tagged with their
+ * outcome</li>
+ * <li>{@code pebble.parallel.task.queued}: timer of the time spent by the "parallel" tag tasks
+ * waiting for a thread</li>
+ * </ul>
+ * The template tag only holds the name of the template if the names are enabled, otherwise it
+ * holds {@value #ANY_TEMPLATE} so that each meter only has a few variants. The names should only
+ * be enabled when the loader has a bounded set of templates, unlike the StringLoader whose
+ * template names are the templates themselves.
+ * <p>
+ * The measurements are dropped until the binder is bound to a registry, and recorded in the last
+ * registry it has been bound to. Each meter is registered once in the registry, and then looked up
+ * by its name and tags. This requires Micrometer (io.micrometer:micrometer-core) on the
+ * classpath.
+ */
+public class MicrometerInstrumentation implements Instrumentation, MeterBinder {
+
+  /**
+   * The value of the template tag when the template names are disabled
+   */
+  public static final String ANY_TEMPLATE = "any";
+
+  private final Iterable<Tag> tags;
+
+  private final boolean templateNames;
+
+  private volatile Meters meters;
+
+  public MicrometerInstrumentation() {
+    this(Collections.emptyList());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param tags The tags added to every meter
+   */
+  public MicrometerInstrumentation(Iterable<Tag> tags) {
+    this(tags, false);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param tags The tags added to every meter
+   * @param templateNames Whether the template tag holds the name of the template
+   */
+  public MicrometerInstrumentation(Iterable<Tag> tags, boolean templateNames) {
+    this.tags = tags;
+    this.templateNames = templateNames;
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    this.meters = new Meters(registry);
+  }
+
+  @Override
+  public void templateCacheHit(String templateName) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.templateCacheRequest(meters, templateName, "hit");
+  }
+
+  @Override
+  public void templateCompiled(String templateName, long nanos, Throwable error) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.templateCacheRequest(meters, templateName, "miss");
+    this.timer(meters, "pebble.template.compilation", "Compilations of templates",
+        "template", this.template(templateName), "outcome", outcome(error))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void templateEvaluated(String templateName, long nanos, long outputSize,
+      Throwable error) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.timer(meters, "pebble.template.evaluation", "Evaluations of templates",
+        "template", this.template(templateName), "outcome", outcome(error))
+        .record(nanos, TimeUnit.NANOSECONDS);
+    String[] tags = {"template", this.template(templateName)};
+    meters.get("pebble.template.output", tags,
+        registry -> DistributionSummary.builder("pebble.template.output")
+            .description("Number of chars written by the evaluations of templates")
+            .baseUnit("chars")
+            .tags(this.tags)
+            .tags(tags)
+            .register(registry))
+        .record(outputSize);
+  }
+
+  @Override
+  public void templateIncluded(String templateName, String includedTemplateName, long nanos,
+      Throwable error) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.timer(meters, "pebble.template.include", "Evaluations of included templates",
+        "template", this.template(templateName),
+        "included", this.template(includedTemplateName), "outcome", outcome(error))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Override
+  public void cacheTagHit(String templateName, int lineNumber) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.cacheTagRequest(meters, templateName, lineNumber, "hit");
+  }
+
+  @Override
+  public void cacheTagMiss(String templateName, int lineNumber, long nanos) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.cacheTagRequest(meters, templateName, lineNumber, "miss");
+  }
+
+  @Override
+  public void parallelTaskCompleted(String templateName, int lineNumber, long queuedNanos,
+      long nanos, Throwable error) {
+    Meters meters = this.meters;
+    if (meters == null) {
+      return;
+    }
+    this.timer(meters, "pebble.parallel.task.queued",
+        "Time spent by the parallel tag tasks waiting for a thread",
+        "template", this.template(templateName))
+        .record(queuedNanos, TimeUnit.NANOSECONDS);
+    this.timer(meters, "pebble.parallel.task", "Renderings of the parallel tag tasks",
+        "template", this.template(templateName), "outcome", outcome(error))
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  private void templateCacheRequest(Meters meters, String templateName, String result) {
+    this.counter(meters, "pebble.template.cache", "Requests of the template cache",
+        "template", this.template(templateName), "result", result)
+        .increment();
+  }
+
+  private void cacheTagRequest(Meters meters, String templateName, int lineNumber,
+      String result) {
+    this.counter(meters, "pebble.cache.tag", "Lookups of the cache tag contents",
+        "template", this.template(templateName), "line", String.valueOf(lineNumber),
+        "result", result)
+        .increment();
+  }
+
+  private Timer timer(Meters meters, String name, String description, String... tags) {
+    return meters.get(name, tags, registry -> Timer.builder(name)
+        .description(description)
+        .tags(this.tags)
+        .tags(tags)
+        .register(registry));
+  }
+
+  private Counter counter(Meters meters, String name, String description, String... tags) {
+    return meters.get(name, tags, registry -> Counter.builder(name)
+        .description(description)
+        .tags(this.tags)
+        .tags(tags)
+        .register(registry));
+  }
+
+  private String template(String templateName) {
+    return this.templateNames ? String.valueOf(templateName) : ANY_TEMPLATE;
+  }
+
+  private static String outcome(Throwable error) {
+    return error == null ? "success" : "error";
+  }
+
+  /**
+   * The meters registered in a registry, by name and tags.
+   */
+  private static final class Meters {
+
+    private final MeterRegistry registry;
+
+    private final ConcurrentMap<List<String>, Meter> meters = new ConcurrentHashMap<>();
+
+    private Meters(MeterRegistry registry) {
+      this.registry = registry;
+    }
+
+    /**
+     * Returns the meter with a name and tags, registering it the first time.
+     */
+    @SuppressWarnings("unchecked")
+    private <M extends Meter> M get(String name, String[] tags,
+        Function<MeterRegistry, M> registration) {
+      List<String> key = new ArrayList<>(tags.length + 1);
+      key.add(name);
+      Collections.addAll(key, tags);
+      Meter meter = this.meters.get(key);
+      if (meter == null) {
+        // looked up first, as computeIfAbsent locks the entry even when it is present on Java 8
+        meter = this.meters.computeIfAbsent(key, k -> registration.apply(this.registry));
+      }
+      return (M) meter;
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler.CallTree;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler.Frame;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+/**
+ * Decorates an expression to measure its evaluation.
+ */
+class ProfiledExpression implements Expression<Object> {
+
+  private final Expression<?> expression;
+
+  private final RenderProfiler profiler;
+
+  private final Frame frame;
+
+  ProfiledExpression(Expression<?> expression, RenderProfiler profiler, Frame frame) {
+    this.expression = expression;
+    this.profiler = profiler;
+    this.frame = frame;
+  }
+
+  @Override
+  public Object evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
+    CallTree parent = this.profiler.enter(this.frame);
+    long start = System.nanoTime();
+    try {
+      return this.expression.evaluate(self, context);
+    } finally {
+      this.profiler.exit(parent, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public int getLineNumber() {
+    return this.expression.getLineNumber();
+  }
+
+  @Override
+  public void accept(NodeVisitor visitor) {
+    visitor.visit(this);
+  }
+
+  @Override
+  public String toString() {
+    return this.expression.toString();
+  }
+}
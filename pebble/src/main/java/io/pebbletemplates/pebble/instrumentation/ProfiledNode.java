@@ -0,0 +1,56 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler.CallTree;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler.Frame;
+import io.pebbletemplates.pebble.node.AbstractRenderableNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Decorates a node to measure its rendering.
+ */
+class ProfiledNode extends AbstractRenderableNode {
+
+  private final RenderableNode node;
+
+  private final RenderProfiler profiler;
+
+  private final Frame frame;
+
+  ProfiledNode(RenderableNode node, int lineNumber, RenderProfiler profiler, Frame frame) {
+    super(lineNumber);
+    this.node = node;
+    this.profiler = profiler;
+    this.frame = frame;
+  }
+
+  @Override
+  public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
+      throws IOException {
+    CallTree parent = this.profiler.enter(this.frame);
+    long start = System.nanoTime();
+    try {
+      this.node.render(self, writer, context);
+    } finally {
+      this.profiler.exit(parent, System.nanoTime() - start);
+    }
+  }
+
+  @Override
+  public void accept(NodeVisitor visitor) {
+    visitor.visit(this);
+  }
+}
@@ -0,0 +1,25 @@
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers the {@link ProfilingNodeVisitor}, after all the other extensions so that it decorates
+ * the nodes once they have been rewritten.
+ */
+public class ProfilingExtension extends AbstractExtension {
+
+  private final RenderProfiler profiler;
+
+  public ProfilingExtension(RenderProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public List<NodeVisitorFactory> getNodeVisitors() {
+    return Collections.singletonList(new ProfilingNodeVisitorFactory(this.profiler));
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.pebbletemplates.pebble.extension.AbstractNodeVisitor;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler.Frame;
+import io.pebbletemplates.pebble.node.AbstractRenderableNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.MacroNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.Pair;
+
+import java.util.List;
+
+/**
+ * Decorates the nodes of a template, and the filter, function and macro calls of their
+ * expressions, so that the {@link RenderProfiler} measures them.
+ * <p>
+ * Texts and macro definitions aren't profiled, nor are the nodes rendered by child templates such
+ * as "set" and "import", whose class is checked to render them; the value of a "set" is profiled
+ * instead. Only the calls reached through the operators and the ternary expressions of a print,
+ * if, for or set are profiled, not those passed as arguments to another call.
+ */
+public class ProfilingNodeVisitor extends AbstractNodeVisitor {
+
+  private final RenderProfiler profiler;
+
+  /**
+   * The line of the node whose expressions are visited, for the expressions without line such as
+   * those added by the escaper
+   */
+  private int lineNumber;
+
+  public ProfilingNodeVisitor(PebbleTemplateImpl template, RenderProfiler profiler) {
+    super(template);
+    this.profiler = profiler;
+  }
+
+  @Override
+  public void visit(BodyNode node) {
+    List<RenderableNode> children = node.getChildren();
+    for (int i = 0; i < children.size(); i++) {
+      RenderableNode child = children.get(i);
+      child.accept(this);
+      if (!(child instanceof TextNode) && !(child instanceof MacroNode)
+          && !BodyNode.isInheritanceSafe(child)) {
+        int lineNumber = child instanceof AbstractRenderableNode
+            ? ((AbstractRenderableNode) child).getLineNumber() : 0;
+        children.set(i, new ProfiledNode(child, lineNumber, this.profiler,
+            this.frame(lineNumber, nodeName(child))));
+      }
+    }
+  }
+
+  @Override
+  public void visit(ForNode node) {
+    this.lineNumber = node.getLineNumber();
+    node.setIterable(this.profile(node.getIterable()));
+    super.visit(node);
+  }
+
+  @Override
+  public void visit(IfNode node) {
+    this.lineNumber = node.getLineNumber();
+    List<Pair<Expression<?>, BodyNode>> conditionsWithBodies = node.getConditionsWithBodies();
+    for (int i = 0; i < conditionsWithBodies.size(); i++) {
+      Pair<Expression<?>, BodyNode> conditionWithBody = conditionsWithBodies.get(i);
+      conditionsWithBodies.set(i, new Pair<>(this.profile(conditionWithBody.getLeft()),
+          conditionWithBody.getRight()));
+    }
+    super.visit(node);
+  }
+
+  @Override
+  public void visit(PrintNode node) {
+    this.lineNumber = node.getLineNumber();
+    node.setExpression(this.profile(node.getExpression()));
+  }
+
+  @Override
+  public void visit(SetNode node) {
+    this.lineNumber = node.getLineNumber();
+    node.setValue(this.profile(node.getValue()));
+  }
+
+  private Expression<?> profile(Expression<?> expression) {
+    if (expression instanceof BinaryExpression) {
+      BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+      binary.setLeft(this.profile(binary.getLeftExpression()));
+      binary.setRight(this.profile(binary.getRightExpression()));
+    } else if (expression instanceof UnaryExpression) {
+      UnaryExpression unary = (UnaryExpression) expression;
+      unary.setChildExpression(this.profile(unary.getChildExpression()));
+    } else if (expression instanceof TernaryExpression) {
+      TernaryExpression ternary = (TernaryExpression) expression;
+      ternary.setExpression2(this.profile(ternary.getExpression2()));
+      ternary.setExpression3(this.profile(ternary.getExpression3()));
+    }
+
+    if (expression instanceof FilterExpression) {
+      String filterName = ((FilterInvocationExpression) ((FilterExpression) expression)
+          .getRightExpression()).getFilterName();
+      return new ProfiledExpression(expression, this.profiler,
+          this.frame(this.lineNumber(expression), "filter " + filterName));
+    } else if (expression instanceof FunctionOrMacroInvocationExpression) {
+      String functionName = ((FunctionOrMacroInvocationExpression) expression).getFunctionName();
+      return new ProfiledExpression(expression, this.profiler,
+          this.frame(this.lineNumber(expression), "call " + functionName));
+    }
+    return expression;
+  }
+
+  private int lineNumber(Expression<?> expression) {
+    return expression.getLineNumber() > 0 ? expression.getLineNumber() : this.lineNumber;
+  }
+
+  private Frame frame(int lineNumber, String name) {
+    return new Frame(this.getTemplate().getName(), lineNumber, name);
+  }
+
+  /**
+   * Returns the name of a node as written in templates, such as "for" for a {@link ForNode}.
+   */
+  private static String nodeName(RenderableNode node) {
+    String name = node.getClass().getSimpleName();
+    if (name.endsWith("Node") && name.length() > "Node".length()) {
+      name = name.substring(0, name.length() - "Node".length());
+    }
+    return name.toLowerCase();
+  }
+}
@@ -0,0 +1,24 @@
+package io.pebbletemplates.pebble.instrumentation;
+
+import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.NodeVisitorFactory;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+
+/**
+ * Implementation of {@link NodeVisitorFactory} to create {@link ProfilingNodeVisitor}.
+ */
+public class ProfilingNodeVisitorFactory implements NodeVisitorFactory {
+
+  private final RenderProfiler profiler;
+
+  public ProfilingNodeVisitorFactory(RenderProfiler profiler) {
+    this.profiler = profiler;
+  }
+
+  @Override
+  public NodeVisitor createVisitor(PebbleTemplate template) {
+    return new ProfilingNodeVisitor((PebbleTemplateImpl) template, this.profiler);
+  }
+
+}
@@ -0,0 +1,275 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.instrumentation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the time spent rendering each node of the templates, and the time spent evaluating
+ * each filter, function and macro call, per template and line. The measurements are aggregated
+ * into a call tree, from which the hot lines are reported and a collapsed stack file can be
+ * written for flame graph tools.
+ * <p>
+ * Profiling is enabled with {@link io.pebbletemplates.pebble.PebbleEngine.Builder#profiler}, it
+ * slows down the rendering and is meant for diagnosing a slow page rather than for production.
+ * The call stack is tracked per thread: the content of a "parallel" tag rendered by the executor
+ * service of the engine is reported as a separate stack.
+ */
+public class RenderProfiler {
+
+  private final CallTree root = new CallTree(null);
+
+  private final ThreadLocal<CallTree> current = ThreadLocal.withInitial(() -> this.root);
+
+  /**
+   * Enters a frame on the call stack of the current thread.
+   *
+   * @param frame The frame
+   * @return The frame which was current, to be given back to {@link #exit}
+   */
+  CallTree enter(Frame frame) {
+    CallTree parent = this.current.get();
+    this.current.set(parent.child(frame));
+    return parent;
+  }
+
+  /**
+   * Leaves the current frame of the current thread.
+   *
+   * @param parent The frame returned by {@link #enter}
+   * @param nanos The time spent in the left frame
+   */
+  void exit(CallTree parent, long nanos) {
+    this.current.get().record(nanos);
+    this.current.set(parent);
+  }
+
+  /**
+   * Returns the measurements of every profiled template line, the slowest ones first.
+   *
+   * @return The measurements, sorted by decreasing exclusive time
+   */
+  public List<Entry> getEntries() {
+    Map<Frame, Entry> entries = new HashMap<>();
+    for (CallTree child : this.root.children.values()) {
+      child.aggregate(entries, new HashSet<>());
+    }
+    List<Entry> result = new ArrayList<>(entries.values());
+    result.sort(Comparator.comparingLong(Entry::getExclusiveNanos).reversed());
+    return result;
+  }
+
+  /**
+   * Writes the call stacks in the collapsed format of flame graph tools, such as flamegraph.pl or
+   * speedscope: one line per stack, with the frames separated by semicolons and followed by the
+   * exclusive time of the stack in nanoseconds.
+   *
+   * @param writer The writer
+   * @throws IOException Thrown by the writer
+   */
+  public void writeCollapsedStacks(Writer writer) throws IOException {
+    for (CallTree child : this.root.children.values()) {
+      child.writeCollapsedStacks(writer, "");
+    }
+    writer.flush();
+  }
+
+  /**
+   * Discards the measurements.
+   */
+  public void reset() {
+    this.root.children.clear();
+  }
+
+  /**
+   * The measurements of a template line.
+   */
+  public static class Entry {
+
+    private final Frame frame;
+
+    private long count;
+
+    private long inclusiveNanos;
+
+    private long exclusiveNanos;
+
+    private Entry(Frame frame) {
+      this.frame = frame;
+    }
+
+    public String getTemplateName() {
+      return this.frame.templateName;
+    }
+
+    public int getLineNumber() {
+      return this.frame.lineNumber;
+    }
+
+    /**
+     * Returns what has been profiled on the line, such as "for", "include" or "filter upper".
+     *
+     * @return The description of the node
+     */
+    public String getName() {
+      return this.frame.name;
+    }
+
+    public long getCount() {
+      return this.count;
+    }
+
+    /**
+     * Returns the time spent in the node, including the nodes it rendered and the calls it made.
+     * Recursive calls are counted once.
+     *
+     * @return The inclusive time in nanoseconds
+     */
+    public long getInclusiveNanos() {
+      return this.inclusiveNanos;
+    }
+
+    /**
+     * Returns the time spent in the node itself.
+     *
+     * @return The exclusive time in nanoseconds
+     */
+    public long getExclusiveNanos() {
+      return this.exclusiveNanos;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%s: %d calls, %d ns inclusive, %d ns exclusive", this.frame,
+          this.count, this.inclusiveNanos, this.exclusiveNanos);
+    }
+  }
+
+  /**
+   * A profiled node of a template.
+   */
+  static final class Frame {
+
+    private final String templateName;
+
+    private final int lineNumber;
+
+    private final String name;
+
+    Frame(String templateName, int lineNumber, String name) {
+      this.templateName = templateName;
+      this.lineNumber = lineNumber;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || this.getClass() != o.getClass()) {
+        return false;
+      }
+      Frame frame = (Frame) o;
+      return this.lineNumber == frame.lineNumber
+          && Objects.equals(this.templateName, frame.templateName)
+          && this.name.equals(frame.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.templateName, this.lineNumber, this.name);
+    }
+
+    @Override
+    public String toString() {
+      return this.templateName + ":" + this.lineNumber + " " + this.name;
+    }
+  }
+
+  /**
+   * A frame reached through a given call stack.
+   */
+  static final class CallTree {
+
+    private final Frame frame;
+
+    private final Map<Frame, CallTree> children = new ConcurrentHashMap<>();
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+
+    private CallTree(Frame frame) {
+      this.frame = frame;
+    }
+
+    private CallTree child(Frame frame) {
+      CallTree child = this.children.get(frame);
+      if (child == null) {
+        child = this.children.computeIfAbsent(frame, CallTree::new);
+      }
+      return child;
+    }
+
+    private void record(long nanos) {
+      this.count.increment();
+      this.nanos.add(nanos);
+    }
+
+    private long exclusiveNanos() {
+      long exclusive = this.nanos.sum();
+      for (CallTree child : this.children.values()) {
+        exclusive -= child.nanos.sum();
+      }
+      return Math.max(exclusive, 0);
+    }
+
+    private void aggregate(Map<Frame, Entry> entries, Set<Frame> stack) {
+      Entry entry = entries.computeIfAbsent(this.frame, Entry::new);
+      entry.count += this.count.sum();
+      entry.exclusiveNanos += this.exclusiveNanos();
+      boolean outermost = stack.add(this.frame);
+      if (outermost) {
+        entry.inclusiveNanos += this.nanos.sum();
+      }
+      for (CallTree child : this.children.values()) {
+        child.aggregate(entries, stack);
+      }
+      if (outermost) {
+        stack.remove(this.frame);
+      }
+    }
+
+    private void writeCollapsedStacks(Writer writer, String prefix) throws IOException {
+      String stack = prefix + this.frame.toString().replace(';', '_');
+      long exclusive = this.exclusiveNanos();
+      if (exclusive > 0) {
+        writer.write(stack);
+        writer.write(' ');
+        writer.write(Long.toString(exclusive));
+        writer.write('\n');
+      }
+      for (CallTree child : this.children.values()) {
+        child.writeCollapsedStacks(writer, stack + ";");
+      }
+    }
+  }
+}
@@ -18,11 +18,8 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
-import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,6 +27,10 @@ import org.slf4j.LoggerFactory;
 /**
  * This class reads the template input and builds single items out of it.
  * <p>
+ * The source is scanned by hand in a single pass, without regular expressions: delimiters and
+ * operators are compared character by character, and only the values of the tokens are copied out
+ * of the source.
+ * <p>
  * This class is not thread safe.
  */
 public final class LexerImpl implements Lexer {
@@ -87,48 +88,17 @@ public final class LexerImpl implements Lexer {
    */
   private boolean trimLeadingWhitespaceFromNextData = false;
 
-  /**
-   * Static regular expressions for identifiers.
-   */
-  private static final Pattern REGEX_IDENTIFIER;
-  
-  static {
-    if ("The Android Project".equals(System.getProperty("java.vendor"))) {
-      REGEX_IDENTIFIER = Pattern.compile("^[\\p{Letter}_][\\p{Letter}\\p{Digit}_]*");
-    } else {
-      // Standard
-      REGEX_IDENTIFIER = Pattern.compile("^[\\p{IsLetter}_][\\p{IsLetter}\\p{IsDigit}_]*");
-    }
-  }
-
-  private static final Pattern REGEX_LONG = Pattern.compile("^[0-9]+L");
-
-  private static final Pattern REGEX_NUMBER = Pattern.compile("^[0-9]+(\\.[0-9]+)?");
-
-  /**
-   * Matches a double quote
-   */
-  private static final Pattern REGEX_DOUBLEQUOTE = Pattern.compile("^\"");
-
-  /**
-   * Matches everything up to the first interpolation in a double quoted string
-   */
-  private static final Pattern REGEX_STRING_NON_INTERPOLATED_PART =
-      Pattern.compile("^[^#\"\\\\]*(?:(?:\\\\.|#(?!\\{))[^#\"\\\\]*)*", Pattern.DOTALL);
+  private static final String PUNCTUATION = "()[]{}?:.,|=";
 
-  /**
-   * Matches single quoted strings and double quoted strings without interpolation. Extra complexity
-   * is due to ignoring escaped quotation marks.
-   */
-  private static final Pattern REGEX_STRING_PLAIN = Pattern.compile(
-      "^\"([^#\"\\\\]*(?:\\\\.[^#\"\\\\]*)*)\"|'([^'\\\\]*(?:\\\\.[^'\\\\]*)*)'", Pattern.DOTALL);
+  private static final String VERBATIM = "verbatim";
 
-  private static final String PUNCTUATION = "()[]{}?:.,|=";
+  private static final String END_VERBATIM = "endverbatim";
 
   /**
-   * Regular expression to find operators
+   * The operators indexed by their first character, longest first. Operators which don't start
+   * with an ASCII character are in the last slot.
    */
-  private Pattern regexOperators;
+  private String[][] operators;
 
   /**
    * Constructor
@@ -153,8 +123,8 @@ public final class LexerImpl implements Lexer {
   @Override
   public TokenStream tokenize(Reader reader, String name) {
 
-    // operator regex
-    this.buildOperatorRegex();
+    // operator table
+    this.buildOperatorTable();
 
     // standardize the character used for line breaks
     try {
@@ -222,11 +192,13 @@ public final class LexerImpl implements Lexer {
   private void tokenizeStringInterpolation() {
     this.logger.trace("Tokenizing String Interpolation");
     String lastBracket = this.brackets.peek().getLeft();
-    Matcher matcher = this.syntax.getRegexInterpolationClose().matcher(this.source);
-    if (this.syntax.getInterpolationOpenDelimiter().equals(lastBracket) && matcher.lookingAt()) {
+    String closeDelimiter = this.syntax.getInterpolationCloseDelimiter();
+    int index = this.source.skipAsciiWhitespace(0);
+    if (this.syntax.getInterpolationOpenDelimiter().equals(lastBracket)
+        && this.source.startsWith(closeDelimiter, index)) {
       this.brackets.pop();
       this.pushToken(Token.Type.STRING_INTERPOLATION_END);
-      this.source.advance(matcher.end());
+      this.source.advance(index + closeDelimiter.length());
       this.popState();
     } else {
       this.tokenizeExpression();
@@ -236,38 +208,58 @@ public final class LexerImpl implements Lexer {
   private void tokenizeString() {
     this.logger.trace("Tokenizing String");
     // interpolation
-    Matcher matcher = this.syntax.getRegexInterpolationOpen().matcher(this.source);
-    if (matcher.lookingAt()) {
+    String openDelimiter = this.syntax.getInterpolationOpenDelimiter();
+    if (this.source.startsWith(openDelimiter, 0)) {
       this.brackets.push(
-          new Pair<>(this.syntax.getInterpolationOpenDelimiter(), this.source.getLineNumber()));
+          new Pair<>(openDelimiter, this.source.getLineNumber()));
       this.pushToken(Token.Type.STRING_INTERPOLATION_START);
-      this.source.advance(matcher.end());
+      this.source.advance(openDelimiter.length());
       this.lexerStateStack.push(State.STRING_INTERPOLATION);
       return;
     }
 
     // regular string start (always full string if single quotes)
-    matcher = REGEX_STRING_NON_INTERPOLATED_PART.matcher(this.source);
-    if (matcher.lookingAt() && matcher.end() > 0) {
-      String token = this.source.substring(matcher.end());
-      this.source.advance(matcher.end());
+    int end = this.scanNonInterpolatedPart();
+    if (end > 0) {
+      String token = this.source.substring(end);
+      this.source.advance(end);
       this.pushToken(Token.Type.STRING, token);
       return;
     }
 
     // end of string (which may have contained interpolation)
-    matcher = REGEX_DOUBLEQUOTE.matcher(this.source);
-    if (matcher.lookingAt()) {
-      String expected = this.brackets.pop().getLeft();
+    String expected = this.brackets.pop().getLeft();
+    if (this.source.charAt(0) != '"') {
+      throw new ParserException(null, String.format("Unclosed \"%s\"", expected),
+          this.source.getLineNumber(), this.source.getFilename());
+    }
+    this.popState();
+    this.source.advance(1);
+  }
 
-      if (this.source.charAt(0) != '"') {
-        throw new ParserException(null, String.format("Unclosed \"%s\"", expected),
-            this.source.getLineNumber(), this.source.getFilename());
+  /**
+   * Scans a double quoted string up to its end or its first interpolation. Escaped characters are
+   * kept as they are.
+   *
+   * @return The length of the scanned part
+   */
+  private int scanNonInterpolatedPart() {
+    int length = this.source.length();
+    int index = 0;
+    while (index < length) {
+      char c = this.source.peek(index);
+      if (c == '"' || (c == '#' && this.source.peek(index + 1) == '{')) {
+        break;
+      } else if (c == '\\') {
+        if (index + 1 == length) {
+          break;
+        }
+        index += 2;
+      } else {
+        index++;
       }
-
-      this.popState();
-      this.source.advance(matcher.end());
     }
+    return index;
   }
 
   /**
@@ -278,8 +270,8 @@ public final class LexerImpl implements Lexer {
   private void tokenizeData() {
     this.logger.trace("Tokenizing Data");
     // find the next start delimiter
-    Matcher matcher = this.syntax.getRegexStartDelimiters().matcher(this.source);
-    boolean match = matcher.find();
+    int start = this.findStartDelimiter();
+    boolean match = start >= 0;
 
     String text;
     String startDelimiter = null;
@@ -292,11 +284,11 @@ public final class LexerImpl implements Lexer {
       text = this.source.toString();
       this.source.advance(this.source.length());
     } else {
-      text = this.source.substring(matcher.start());
-      startDelimiter = this.source.substring(matcher.start(), matcher.end());
+      text = this.source.substring(start);
+      startDelimiter = this.getStartDelimiter(start);
       this.logger.trace("Start Deliminter Token string: {}", startDelimiter);
       // advance to after the start delimiter
-      this.source.advance(matcher.end());
+      this.source.advance(start + startDelimiter.length());
     }
 
     // trim leading whitespace from this text if we previously
@@ -318,9 +310,9 @@ public final class LexerImpl implements Lexer {
         this.lexerStateStack.push(State.PRINT);
       } else if ((this.syntax.getExecuteOpenDelimiter().equals(startDelimiter))) {
         // check for verbatim tag
-        Matcher verbatimStartMatcher = this.syntax.getRegexVerbatimStart().matcher(this.source);
-        if (verbatimStartMatcher.lookingAt()) {
-          this.lexVerbatimData(verbatimStartMatcher);
+        int verbatimStartEnd = this.matchVerbatimStart();
+        if (verbatimStartEnd >= 0) {
+          this.lexVerbatimData(verbatimStartEnd);
           this.lexerStateStack.push(State.DATA);
         } else {
           this.pushToken(Token.Type.EXECUTE_START);
@@ -330,6 +322,39 @@ public final class LexerImpl implements Lexer {
     }
   }
 
+  /**
+   * Finds the next print, execute or comment start delimiter.
+   *
+   * @return The index of the delimiter, or -1 if there is none
+   */
+  private int findStartDelimiter() {
+    String print = this.syntax.getPrintOpenDelimiter();
+    String execute = this.syntax.getExecuteOpenDelimiter();
+    String comment = this.syntax.getCommentOpenDelimiter();
+    char printFirst = print.charAt(0);
+    char executeFirst = execute.charAt(0);
+    char commentFirst = comment.charAt(0);
+    int length = this.source.length();
+    for (int index = 0; index < length; index++) {
+      char c = this.source.peek(index);
+      if ((c == printFirst && this.source.startsWith(print, index))
+          || (c == executeFirst && this.source.startsWith(execute, index))
+          || (c == commentFirst && this.source.startsWith(comment, index))) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  private String getStartDelimiter(int index) {
+    if (this.source.startsWith(this.syntax.getPrintOpenDelimiter(), index)) {
+      return this.syntax.getPrintOpenDelimiter();
+    } else if (this.source.startsWith(this.syntax.getExecuteOpenDelimiter(), index)) {
+      return this.syntax.getExecuteOpenDelimiter();
+    }
+    return this.syntax.getCommentOpenDelimiter();
+  }
+
   /**
    * Tokenizes between execute delimiters.
    */
@@ -338,12 +363,12 @@ public final class LexerImpl implements Lexer {
     // check for the trailing whitespace trim character
     this.checkForTrailingWhitespaceTrim();
 
-    Matcher matcher = this.syntax.getRegexExecuteClose().matcher(this.source);
-
     // check if we are at the execute closing delimiter
-    if (this.brackets.isEmpty() && matcher.lookingAt()) {
+    int end = this.brackets.isEmpty()
+        ? this.matchCloseDelimiter(this.syntax.getExecuteCloseDelimiter()) : -1;
+    if (end >= 0) {
       this.pushToken(Token.Type.EXECUTE_END, this.syntax.getExecuteCloseDelimiter());
-      this.source.advance(matcher.end());
+      this.source.advance(end);
       this.popState();
     } else {
       this.tokenizeExpression();
@@ -358,18 +383,53 @@ public final class LexerImpl implements Lexer {
     // check for the trailing whitespace trim character
     this.checkForTrailingWhitespaceTrim();
 
-    Matcher matcher = this.syntax.getRegexPrintClose().matcher(this.source);
-
     // check if we are at the print closing delimiter
-    if (this.brackets.isEmpty() && matcher.lookingAt()) {
+    int end = this.brackets.isEmpty()
+        ? this.matchCloseDelimiter(this.syntax.getPrintCloseDelimiter()) : -1;
+    if (end >= 0) {
       this.pushToken(Token.Type.PRINT_END, this.syntax.getPrintCloseDelimiter());
-      this.source.advance(matcher.end());
+      this.source.advance(end);
       this.popState();
     } else {
       this.tokenizeExpression();
     }
   }
 
+  /**
+   * Matches whitespace, an optional whitespace trim character, a close delimiter and the newline
+   * following it if newlines are trimmed.
+   *
+   * @param closeDelimiter The close delimiter
+   * @return The length of the match, or -1 if the source doesn't start with the close delimiter
+   */
+  private int matchCloseDelimiter(String closeDelimiter) {
+    int end = this.matchTrimmedDelimiter(this.source.skipAsciiWhitespace(0), closeDelimiter);
+    return end < 0 ? -1 : this.skipTrimmedNewline(end);
+  }
+
+  /**
+   * Matches an optional whitespace trim character followed by a delimiter.
+   *
+   * @return The index following the delimiter, or -1 if there is no delimiter
+   */
+  private int matchTrimmedDelimiter(int index, String delimiter) {
+    String whitespaceTrim = this.syntax.getWhitespaceTrim();
+    if (this.source.startsWith(whitespaceTrim, index)
+        && this.source.startsWith(delimiter, index + whitespaceTrim.length())) {
+      return index + whitespaceTrim.length() + delimiter.length();
+    } else if (this.source.startsWith(delimiter, index)) {
+      return index + delimiter.length();
+    }
+    return -1;
+  }
+
+  /**
+   * Skips the newline following a tag, if newlines are trimmed.
+   */
+  private int skipTrimmedNewline(int index) {
+    return this.syntax.isEnableNewLineTrimming() ? index + this.source.newlineLength(index) : index;
+  }
+
   /**
    * Tokenizes between comment delimiters.
    * <p>
@@ -378,28 +438,26 @@ public final class LexerImpl implements Lexer {
   private void tokenizeComment() {
 
     // all we need to do is find the end of the comment.
-    Matcher matcher = this.syntax.getRegexCommentClose().matcher(this.source);
-
-    boolean match = matcher.find(0);
-    if (!match) {
+    String closeDelimiter = this.syntax.getCommentCloseDelimiter();
+    int start = this.source.indexOf(closeDelimiter, 0);
+    if (start < 0) {
       throw new ParserException(null, "Unclosed comment.", this.source.getLineNumber(),
           this.source.getFilename());
     }
 
     /*
-     * check if the commented ended with the whitespace trim character by reversing the comment and
-     * performing a regular forward regex search.
+     * check if the comment ended with whitespace followed by the whitespace trim character, which
+     * is read backwards from the closing delimiter.
      */
-    String comment = this.source.substring(matcher.start());
-    String reversedComment = new StringBuilder(comment).reverse().toString();
-    Matcher whitespaceTrimMatcher =
-        this.syntax.getRegexLeadingWhitespaceTrim().matcher(reversedComment);
-    if (whitespaceTrimMatcher.lookingAt()) {
+    String whitespaceTrim = new StringBuilder(this.syntax.getWhitespaceTrim()).reverse().toString();
+    int trimStart = start - whitespaceTrim.length();
+    if (trimStart > 0 && this.source.startsWith(whitespaceTrim, trimStart)
+        && this.source.skipAsciiWhitespace(trimStart - 1) == trimStart) {
       this.trimLeadingWhitespaceFromNextData = true;
     }
 
     // move cursor to end of comment (and closing delimiter)
-    this.source.advance(matcher.end());
+    this.source.advance(this.skipTrimmedNewline(start + closeDelimiter.length()));
     this.popState();
   }
 
@@ -410,68 +468,66 @@ public final class LexerImpl implements Lexer {
     this.logger.trace("Tokenizing Expression");
     String token;
     this.source.advanceThroughWhitespace();
-    /*
-     * Matcher matcher = REGEX_WHITESPACE.matcher(source); if (matcher.lookingAt()) {
-     * source.advance(matcher.end()); }
-     */
 
     // operators
-    Matcher matcher = this.regexOperators.matcher(this.source);
-    if (matcher.lookingAt()) {
-      token = this.source.substring(matcher.end());
+    int end = this.matchOperator();
+    if (end > 0) {
+      token = this.source.substring(end);
       this.pushToken(Token.Type.OPERATOR, token);
-      this.source.advance(matcher.end());
+      this.source.advance(end);
       return;
     }
 
     // names
-    matcher = REGEX_IDENTIFIER.matcher(this.source);
-    if (matcher.lookingAt()) {
-      token = this.source.substring(matcher.end());
+    end = this.scanIdentifier();
+    if (end > 0) {
+      token = this.source.substring(end);
       this.pushToken(Token.Type.NAME, token);
-      this.source.advance(matcher.end());
+      this.source.advance(end);
       return;
     }
 
-    // long
-    matcher = REGEX_LONG.matcher(this.source);
-    if (matcher.lookingAt()) {
-      token = this.source.substring(matcher.end() - 1);
-      this.pushToken(Token.Type.LONG, token);
-      this.source.advance(matcher.end());
-      return;
-    }
+    end = this.scanDigits(0);
+    if (end > 0) {
+      // long
+      if (this.source.peek(end) == 'L') {
+        token = this.source.substring(end);
+        this.pushToken(Token.Type.LONG, token);
+        this.source.advance(end + 1);
+        return;
+      }
 
-    // numbers
-    matcher = REGEX_NUMBER.matcher(this.source);
-    if (matcher.lookingAt()) {
-      token = this.source.substring(matcher.end());
+      // numbers
+      if (this.source.peek(end) == '.') {
+        int fractionEnd = this.scanDigits(end + 1);
+        if (fractionEnd > end + 1) {
+          end = fractionEnd;
+        }
+      }
+      token = this.source.substring(end);
       this.pushToken(Token.Type.NUMBER, token);
-      this.source.advance(matcher.end());
+      this.source.advance(end);
       return;
     }
 
     // punctuation
-    if (PUNCTUATION.indexOf(this.source.charAt(0)) >= 0) {
-      String character = String.valueOf(this.source.charAt(0));
+    char c = this.source.peek(0);
+    if (PUNCTUATION.indexOf(c) >= 0) {
+      String character = String.valueOf(c);
 
       // opening bracket
-      if ("([{".contains(character)) {
+      if (c == '(' || c == '[' || c == '{') {
         this.brackets.push(new Pair<>(character, this.source.getLineNumber()));
       }
 
       // closing bracket
-      else if (")]}".contains(character)) {
+      else if (c == ')' || c == ']' || c == '}') {
         if (this.brackets.isEmpty()) {
           throw new ParserException(null, "Unexpected \"" + character + "\"",
               this.source.getLineNumber(), this.source.getFilename());
         } else {
-          HashMap<String, String> validPairs = new HashMap<>();
-          validPairs.put("(", ")");
-          validPairs.put("[", "]");
-          validPairs.put("{", "}");
           String lastBracket = this.brackets.pop().getLeft();
-          String expected = validPairs.get(lastBracket);
+          String expected = closingBracket(lastBracket);
           if (!expected.equals(character)) {
             throw new ParserException(null, "Unclosed \"" + expected + "\"",
                 this.source.getLineNumber(), this.source.getFilename());
@@ -485,110 +541,258 @@ public final class LexerImpl implements Lexer {
     }
 
     // Plain (non-interpolated) string
-    matcher = REGEX_STRING_PLAIN.matcher(this.source);
-    if (matcher.lookingAt()) {
-      token = this.source.substring(matcher.end());
-      this.source.advance(matcher.end());
-      token = this.unquoteAndUnescape(token);
-      this.pushToken(Token.Type.STRING, token);
-      return;
+    if (c == '"' || c == '\'') {
+      end = this.scanPlainString(c);
+      if (end > 0) {
+        token = this.unquoteAndUnescape(end, c);
+        this.source.advance(end);
+        this.pushToken(Token.Type.STRING, token);
+        return;
+      }
     }
 
     // Interpolated strings
-    matcher = REGEX_DOUBLEQUOTE.matcher(this.source);
-    if (matcher.lookingAt()) {
+    if (c == '"') {
       this.brackets.push(new Pair<>("\"", this.source.getLineNumber()));
       this.lexerStateStack.push(State.STRING);
-      this.source.advance(matcher.end());
+      this.source.advance(1);
       return;
     }
 
     // we should have found something and returned by this point
     throw new ParserException(null,
-        String.format("Unexpected character [%s]", this.source.charAt(0)),
+        String.format("Unexpected character [%s]", c),
         this.source.getLineNumber(), this.source.getFilename());
   }
 
+  private static String closingBracket(String openingBracket) {
+    switch (openingBracket) {
+      case "(":
+        return ")";
+      case "[":
+        return "]";
+      default:
+        return "}";
+    }
+  }
+
+  /**
+   * Matches the longest operator at the start of the source. An operator ending with a letter must
+   * not be followed by a letter, digit or underscore, so that a user can type "organization"
+   * without the "or" being parsed as an operator.
+   *
+   * @return The length of the operator, or 0 if there is none
+   */
+  private int matchOperator() {
+    char first = this.source.peek(0);
+    String[] candidates = this.operators[Math.min(first, 128)];
+    if (candidates == null) {
+      return 0;
+    }
+    for (String operator : candidates) {
+      int length = operator.length();
+      if (this.source.startsWith(operator, 0)) {
+        char last = operator.charAt(length - 1);
+        if (!(Character.isLetter(last) || Character.getType(last) == Character.LETTER_NUMBER)
+            || !isAsciiWordCharacter(this.source.peek(length))) {
+          return length;
+        }
+      }
+    }
+    return 0;
+  }
+
+  private static boolean isAsciiWordCharacter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  /**
+   * Scans an identifier, made of letters, digits and underscores and not starting with a digit.
+   *
+   * @return The length of the identifier, or 0 if there is none
+   */
+  private int scanIdentifier() {
+    int length = this.source.length();
+    if (length == 0) {
+      return 0;
+    }
+    int codePoint = Character.codePointAt(this.source, 0);
+    if (!Character.isLetter(codePoint) && codePoint != '_') {
+      return 0;
+    }
+    int index = Character.charCount(codePoint);
+    while (index < length) {
+      codePoint = Character.codePointAt(this.source, index);
+      if (!Character.isLetterOrDigit(codePoint) && codePoint != '_') {
+        break;
+      }
+      index += Character.charCount(codePoint);
+    }
+    return index;
+  }
+
+  /**
+   * Scans the ASCII digits starting at an index.
+   *
+   * @return The index following the digits
+   */
+  private int scanDigits(int index) {
+    char c;
+    while ((c = this.source.peek(index)) >= '0' && c <= '9') {
+      index++;
+    }
+    return index;
+  }
+
   /**
-   * This method assumes the provided {@code str} starts with a single or double quote. It removes
-   * the wrapping quotes, and un-escapes any quotes within the string.
+   * Scans a quoted string in which quotes are escaped with a backslash. Double quoted strings must
+   * not contain a "#" which may start an interpolation.
+   *
+   * @param quotationType The quote starting the string
+   * @return The length of the string including its quotes, or 0 if it isn't a plain string
    */
-  private String unquoteAndUnescape(String str) {
-    char quotationType = str.charAt(0);
+  private int scanPlainString(char quotationType) {
+    int length = this.source.length();
+    int index = 1;
+    while (index < length) {
+      char c = this.source.peek(index);
+      if (c == quotationType) {
+        return index + 1;
+      } else if (c == '\\') {
+        index += 2;
+      } else if (c == '#' && quotationType == '"') {
+        return 0;
+      } else {
+        index++;
+      }
+    }
+    return 0;
+  }
 
-    // remove first and last quotation marks
-    str = str.substring(1, str.length() - 1);
+  /**
+   * Removes the wrapping quotes of the string at the start of the source, and un-escapes any
+   * quotes within the string.
+   */
+  private String unquoteAndUnescape(int end, char quotationType) {
+    String str = this.source.substring(1, end - 1);
+    if (str.indexOf('\\') < 0) {
+      return str;
+    }
 
     // remove backslashes used to escape inner quotation marks
-    if (quotationType == '\'') {
-      str = str.replaceAll("\\\\(')", "$1");
-    } else if (quotationType == '"') {
-      str = str.replaceAll("\\\\(\")", "$1");
+    StringBuilder unescaped = new StringBuilder(str.length());
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '\\' && i + 1 < str.length() && str.charAt(i + 1) == quotationType) {
+        c = quotationType;
+        i++;
+      }
+      unescaped.append(c);
     }
-    return str;
+    return unescaped.toString();
   }
 
   private void checkForLeadingWhitespaceTrim(Token leadingToken) {
 
-    Matcher whitespaceTrimMatcher =
-        this.syntax.getRegexLeadingWhitespaceTrim().matcher(this.source);
+    // the whitespace trim character must be followed by whitespace
+    String whitespaceTrim = this.syntax.getWhitespaceTrim();
+    int end = this.source.skipAsciiWhitespace(whitespaceTrim.length());
 
-    if (whitespaceTrimMatcher.lookingAt()) {
+    if (end > whitespaceTrim.length() && this.source.startsWith(whitespaceTrim, 0)) {
       this.logger.trace("Found Leading Whitespace Trim Character");
       if (leadingToken != null) {
         this.logger.trace("Right trimming leading token: {}", leadingToken);
         leadingToken.setValue(StringUtils.rtrim(leadingToken.getValue()));
       }
-      this.source.advance(whitespaceTrimMatcher.end());
+      this.source.advance(end);
     }
 
   }
 
   private void checkForTrailingWhitespaceTrim() {
-    Matcher whitespaceTrimMatcher =
-        this.syntax.getRegexTrailingWhitespaceTrim().matcher(this.source);
-
-    if (whitespaceTrimMatcher.lookingAt()) {
-      this.trimLeadingWhitespaceFromNextData = true;
+    String whitespaceTrim = this.syntax.getWhitespaceTrim();
+    int index = this.source.skipAsciiWhitespace(0);
+
+    if (this.source.startsWith(whitespaceTrim, index)) {
+      index += whitespaceTrim.length();
+      if (this.source.startsWith(this.syntax.getPrintCloseDelimiter(), index)
+          || this.source.startsWith(this.syntax.getExecuteCloseDelimiter(), index)
+          || this.source.startsWith(this.syntax.getCommentCloseDelimiter(), index)) {
+        this.trimLeadingWhitespaceFromNextData = true;
+      }
     }
   }
 
+  /**
+   * Matches the rest of a verbatim start tag, ex. " verbatim %}".
+   *
+   * @return The length of the match, or -1 if this isn't a verbatim tag
+   */
+  private int matchVerbatimStart() {
+    int index = this.source.skipAsciiWhitespace(0);
+    if (!this.source.startsWith(VERBATIM, index)) {
+      return -1;
+    }
+    index = this.source.skipAsciiWhitespace(index + VERBATIM.length());
+    index = this.matchTrimmedDelimiter(index, this.syntax.getExecuteCloseDelimiter());
+    return index < 0 ? -1 : this.skipTrimmedNewline(index);
+  }
+
   /**
    * Implementation of the "verbatim" tag
    */
-  private void lexVerbatimData(Matcher verbatimStartMatcher) {
+  private void lexVerbatimData(int verbatimStartEnd) {
 
     // move cursor past the opening verbatim tag
-    this.source.advance(verbatimStartMatcher.end());
+    this.source.advance(verbatimStartEnd);
 
     // look for the "endverbatim" tag and storing everything between
     // now and then into a TEXT node
-    Matcher verbatimEndMatcher = this.syntax.getRegexVerbatimEnd().matcher(this.source);
-
-    // check for EOF
-    if (!verbatimEndMatcher.find()) {
-      throw new ParserException(null, "Unclosed verbatim tag.", this.source.getLineNumber(),
-          this.source.getFilename());
+    String openDelimiter = this.syntax.getExecuteOpenDelimiter();
+    String closeDelimiter = this.syntax.getExecuteCloseDelimiter();
+    String whitespaceTrim = this.syntax.getWhitespaceTrim();
+    int start = -1;
+    int end = -1;
+    boolean leadingTrim = false;
+    boolean trailingTrim = false;
+    while (end < 0) {
+      start = this.source.indexOf(openDelimiter, start + 1);
+
+      // check for EOF
+      if (start < 0) {
+        throw new ParserException(null, "Unclosed verbatim tag.", this.source.getLineNumber(),
+            this.source.getFilename());
+      }
+      int index = start + openDelimiter.length();
+      leadingTrim = this.source.startsWith(whitespaceTrim, index);
+      if (leadingTrim) {
+        index += whitespaceTrim.length();
+      }
+      index = this.source.skipAsciiWhitespace(index);
+      if (this.source.startsWith(END_VERBATIM, index)) {
+        index = this.source.skipAsciiWhitespace(index + END_VERBATIM.length());
+        trailingTrim = this.source.startsWith(whitespaceTrim, index)
+            && this.source.startsWith(closeDelimiter, index + whitespaceTrim.length());
+        end = this.matchTrimmedDelimiter(index, closeDelimiter);
+      }
     }
-    String verbatimText = this.source.substring(verbatimEndMatcher.start());
+    String verbatimText = this.source.substring(start);
 
-    // check if the verbatim start tag has a trailing whitespace trim
-    if (verbatimStartMatcher.group(0) != null) {
-      verbatimText = StringUtils.ltrim(verbatimText);
-    }
+    // the text following the verbatim start tag is always left trimmed
+    verbatimText = StringUtils.ltrim(verbatimText);
 
     // check if the verbatim end tag had a leading whitespace trim
-    if (verbatimEndMatcher.group(1) != null) {
+    if (leadingTrim) {
       verbatimText = StringUtils.rtrim(verbatimText);
     }
 
     // check if the verbatim end tag had a trailing whitespace trim
-    if (verbatimEndMatcher.group(2) != null) {
+    if (trailingTrim) {
       this.trimLeadingWhitespaceFromNextData = true;
     }
 
     // move cursor past the verbatim text and end delimiter
-    this.source.advance(verbatimEndMatcher.end());
+    this.source.advance(this.skipTrimmedNewline(end));
 
     this.pushToken(Type.TEXT, verbatimText);
   }
@@ -633,10 +837,10 @@ public final class LexerImpl implements Lexer {
   }
 
   /**
-   * Retrieves the operators (both unary and binary) from the PebbleEngine and then dynamically
-   * creates one giant regular expression to detect for the existence of one of these operators.
+   * Retrieves the operators (both unary and binary) from the PebbleEngine and indexes them by their
+   * first character.
    */
-  private void buildOperatorRegex() {
+  private void buildOperatorTable() {
 
     List<String> operators = new ArrayList<>();
 
@@ -649,35 +853,32 @@ public final class LexerImpl implements Lexer {
     }
 
     /*
-     * Since java's matcher doesn't conform with the posix standard of matching the longest
-     * alternative (it matches the first alternative), we must first sort all of the operators by
-     * length before creating the regex. This is to help match "is not" over "is".
+     * The first operator which matches is used, so operators are sorted by length to match "is
+     * not" over "is".
      */
     operators.sort(StringLengthComparator.INSTANCE);
 
-    StringBuilder regex = new StringBuilder("^");
-
-    boolean isFirst = true;
+    List<List<String>> table = new ArrayList<>();
+    for (int i = 0; i <= 128; i++) {
+      table.add(null);
+    }
     for (String operator : operators) {
-      if (isFirst) {
-        isFirst = false;
-      } else {
-        regex.append("|");
+      if (operator.isEmpty()) {
+        continue;
       }
-      regex.append(Pattern.quote(operator));
-
-      /*
-       * If the operator ends in an alpha character we use a negative lookahead assertion to make
-       * sure the next character in the stream is NOT an alpha character. This ensures user can type
-       * "organization" without the "or" being parsed as an operator.
-       */
-      char nextChar = operator.charAt(operator.length() - 1);
-      if (Character.isLetter(nextChar) || Character.getType(nextChar) == Character.LETTER_NUMBER) {
-        regex.append("(?![a-zA-Z0-9_])");
+      int slot = Math.min(operator.charAt(0), 128);
+      if (table.get(slot) == null) {
+        table.set(slot, new ArrayList<>());
       }
+      table.get(slot).add(operator);
     }
 
-    this.regexOperators = Pattern.compile(regex.toString());
+    this.operators = new String[129][];
+    for (int i = 0; i <= 128; i++) {
+      if (table.get(i) != null) {
+        this.operators[i] = table.get(i).toArray(new String[0]);
+      }
+    }
   }
 
 }
@@ -4,21 +4,16 @@ import java.io.IOException;
 import java.io.Reader;
 import java.util.Arrays;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 /**
  * An implementation of CharSequence that is tuned to be used specifically by {@link LexerImpl}. It
- * is possible to advance through the sequence without allocating a copy and it is possible to
- * perform regex matches from the logical beginning of the remaining un-tokenized source. This class
- * will also standardize newline characters from different architectures.
+ * is possible to advance through the sequence without allocating a copy and to scan ahead from the
+ * logical beginning of the remaining un-tokenized source. This class also counts lines through
+ * the newline characters from different architectures.
  *
  * @author mbosecke
  */
 public class TemplateSource implements CharSequence {
 
-  private final Logger logger = LoggerFactory.getLogger(TemplateSource.class);
-
   /**
    * The characters found within the template.
    */
@@ -115,7 +110,6 @@ public class TemplateSource implements CharSequence {
    * @param amount Amount of characters to advance by
    */
   public void advance(int amount) {
-	logger.trace("Advancing amount: {}", amount);
     int index = 0;
     while (index < amount) {
       int sizeOfNewline = advanceThroughNewline(index);
@@ -133,7 +127,7 @@ public class TemplateSource implements CharSequence {
 
   public void advanceThroughWhitespace() {
     int index = 0;
-    while (Character.isWhitespace(this.charAt(index))) {
+    while (index < this.size && Character.isWhitespace(this.source[this.offset + index])) {
       int sizeOfNewline = advanceThroughNewline(index);
       if (sizeOfNewline > 0) {
         index += sizeOfNewline;
@@ -141,7 +135,6 @@ public class TemplateSource implements CharSequence {
         index++;
       }
     }
-    logger.trace("Advanced through {} characters of whitespace.", index);
     this.size -= index;
     this.offset += index;
   }
@@ -153,11 +146,11 @@ public class TemplateSource implements CharSequence {
    * @param index The index of the potential newline character
    */
   private int advanceThroughNewline(int index) {
-    char character = this.charAt(index);
+    char character = this.source[this.offset + index];
     int numOfCharacters = 0;
 
     // windows newline
-    if ('\r' == character && '\n' == this.charAt(index + 1)) {
+    if ('\r' == character && '\n' == this.peek(index + 1)) {
 
       this.lineNumber++;
       numOfCharacters = 2;
@@ -173,12 +166,99 @@ public class TemplateSource implements CharSequence {
     return numOfCharacters;
   }
 
+  /**
+   * Returns the character at an index of the remaining source, or 0 past its end.
+   *
+   * @param index The index of the character
+   */
+  char peek(int index) {
+    return index < this.size ? this.source[this.offset + index] : 0;
+  }
+
+  /**
+   * Checks whether the remaining source contains a string at an index.
+   *
+   * @param str The string to look for
+   * @param index The index in the remaining source
+   */
+  boolean startsWith(String str, int index) {
+    int length = str.length();
+    if (index + length > this.size) {
+      return false;
+    }
+    char[] source = this.source;
+    int start = this.offset + index;
+    for (int i = 0; i < length; i++) {
+      if (source[start + i] != str.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Finds the first occurrence of a string in the remaining source.
+   *
+   * @param str The string to look for
+   * @param fromIndex The index in the remaining source at which to start
+   * @return The index of the string, or -1 if the remaining source doesn't contain it
+   */
+  int indexOf(String str, int fromIndex) {
+    char first = str.charAt(0);
+    char[] source = this.source;
+    int last = this.size - str.length();
+    for (int index = fromIndex; index <= last; index++) {
+      if (source[this.offset + index] == first && this.startsWith(str, index)) {
+        return index;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Skips the whitespace characters matched by the \s of regular expressions, which are space,
+   * tab, line feed, vertical tab, form feed and carriage return.
+   *
+   * @param index The index in the remaining source at which to start
+   * @return The index of the first other character, or the length of the remaining source
+   */
+  int skipAsciiWhitespace(int index) {
+    while (index < this.size) {
+      char c = this.source[this.offset + index];
+      if (c != ' ' && (c < '\t' || c > '\r')) {
+        break;
+      }
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Returns how many characters are used to represent a newline at an index, including the "\n\r"
+   * sequence.
+   *
+   * @param index The index in the remaining source
+   * @return The number of characters of the newline, or 0 if there is no newline at this index
+   */
+  int newlineLength(int index) {
+    char character = this.peek(index);
+    if (('\r' == character && '\n' == this.peek(index + 1))
+        || ('\n' == character && '\r' == this.peek(index + 1))) {
+      return 2;
+    }
+    if ('\n' == character || '\r' == character || '\u0085' == character || '\u2028' == character
+        || '\u2029' == character) {
+      return 1;
+    }
+    return 0;
+  }
+
   public String substring(int start, int end) {
-    return new String(Arrays.copyOfRange(source, this.offset + start, this.offset + end));
+    return new String(this.source, this.offset + start, end - start);
   }
 
   public String substring(int end) {
-    return new String(Arrays.copyOfRange(source, offset, offset + end));
+    return new String(this.source, this.offset, end);
   }
 
   @Override
@@ -193,11 +273,11 @@ public class TemplateSource implements CharSequence {
 
   @Override
   public CharSequence subSequence(int start, int end) {
-    return new String(Arrays.copyOfRange(source, this.offset + start, this.offset + end));
+    return this.substring(start, end);
   }
 
   public String toString() {
-    return new String(Arrays.copyOfRange(source, offset, offset + size));
+    return new String(this.source, this.offset, this.size);
   }
 
   public int getLineNumber() {
@@ -15,10 +15,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.UnsupportedEncodingException;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 /**
  * Uses a classloader to find templates located on the classpath.
@@ -129,4 +144,79 @@ public class ClasspathLoader implements Loader<String> {
   public boolean resourceExists(String templateName) {
     return this.rcl.getResource(this.getLocation(templateName)) != null;
   }
+
+  /**
+   * Returns the file of a template found in a directory of the classpath, such as the output
+   * directory of a build. Templates packaged in a jar aren't files.
+   */
+  @Override
+  public Path getTemplateFile(String templateName) {
+    URL url = this.rcl.getResource(this.getLocation(templateName));
+    if (url == null || !"file".equals(url.getProtocol())) {
+      return null;
+    }
+    try {
+      return Paths.get(url.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Lists the templates found under the prefix in the directories and the jars of the classpath.
+   * Templates can't be listed without a prefix, as the whole classpath would have to be scanned.
+   */
+  @Override
+  public List<String> listTemplateNames() {
+    if (this.getPrefix() == null || this.getPrefix().isEmpty()) {
+      return Collections.emptyList();
+    }
+    String location = this.getPrefix();
+    if (location.endsWith(Character.toString(this.expectedSeparator))) {
+      location = location.substring(0, location.length() - 1);
+    }
+    Set<String> templateNames = new TreeSet<>();
+    try {
+      Enumeration<URL> urls = this.rcl.getResources(location);
+      while (urls.hasMoreElements()) {
+        URL url = urls.nextElement();
+        if ("file".equals(url.getProtocol())) {
+          FileLoader.listTemplateNames(Paths.get(url.toURI()), this.getSuffix(), templateNames);
+        } else {
+          URLConnection connection = url.openConnection();
+          if (connection instanceof JarURLConnection) {
+            this.listTemplateNames((JarURLConnection) connection, templateNames);
+          } else {
+            logger.warn("Can't list the templates of {}", url);
+          }
+        }
+      }
+    } catch (IOException | URISyntaxException e) {
+      throw new LoaderException(e, "Could not list the templates of \"" + location + "\"");
+    }
+    return new ArrayList<>(templateNames);
+  }
+
+  private void listTemplateNames(JarURLConnection connection, Set<String> templateNames)
+      throws IOException {
+    connection.setUseCaches(false);
+    String directory = connection.getEntryName();
+    if (directory != null && !directory.endsWith("/")) {
+      directory += "/";
+    }
+    try (JarFile jarFile = connection.getJarFile()) {
+      Enumeration<JarEntry> entries = jarFile.entries();
+      while (entries.hasMoreElements()) {
+        JarEntry entry = entries.nextElement();
+        if (!entry.isDirectory() && (directory == null || entry.getName().startsWith(directory))) {
+          String templateName = PathUtils.toTemplateName(
+              entry.getName().substring(directory == null ? 0 : directory.length()),
+              this.getSuffix());
+          if (templateName != null) {
+            templateNames.add(templateName);
+          }
+        }
+      }
+    }
+  }
 }
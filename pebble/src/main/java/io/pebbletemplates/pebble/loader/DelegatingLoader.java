@@ -11,9 +11,12 @@ package io.pebbletemplates.pebble.loader;
 import io.pebbletemplates.pebble.error.LoaderException;
 
 import java.io.Reader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * This loader will delegate control to a list of children loaders. This is the default
@@ -153,4 +156,23 @@ public class DelegatingLoader implements Loader<DelegatingLoaderCacheKey> {
     }
     return false;
   }
+
+  @Override
+  public Path getTemplateFile(String templateName) {
+    for (Loader<?> loader : this.loaders) {
+      if (loader.resourceExists(templateName)) {
+        return loader.getTemplateFile(templateName);
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public List<String> listTemplateNames() {
+    Set<String> templateNames = new LinkedHashSet<>();
+    for (Loader<?> loader : this.loaders) {
+      templateNames.addAll(loader.listTemplateNames());
+    }
+    return new ArrayList<>(templateNames);
+  }
 }
@@ -14,8 +14,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This loader searches for a file located anywhere on the filesystem. It uses java.io.File to
@@ -111,6 +116,37 @@ public class FileLoader implements Loader<String> {
     return this.getFile(templateName).exists();
   }
 
+  @Override
+  public Path getTemplateFile(String templateName) {
+    return this.getFile(templateName).toPath();
+  }
+
+  /**
+   * Lists the files found in the prefix directory and its subdirectories which end with the
+   * suffix.
+   */
+  @Override
+  public List<String> listTemplateNames() {
+    List<String> templateNames = new ArrayList<>();
+    listTemplateNames(Paths.get(this.prefix), this.suffix, templateNames);
+    templateNames.sort(null);
+    return templateNames;
+  }
+
+  static void listTemplateNames(Path directory, String suffix, Collection<String> templateNames) {
+    if (!Files.isDirectory(directory)) {
+      return;
+    }
+    try (Stream<Path> files = Files.walk(directory)) {
+      files.filter(Files::isRegularFile)
+          .map(file -> PathUtils.toTemplateName(directory.relativize(file).toString(), suffix))
+          .filter(templateName -> templateName != null)
+          .forEach(templateNames::add);
+    } catch (IOException | UncheckedIOException e) {
+      throw new LoaderException(e, String.format("Could not list the templates of '%s'", directory));
+    }
+  }
+
   private void checkIfDirectoryTraversal(String templateName) {
     Path baseDirPath = Paths.get(prefix);
     Path userPath = Paths.get(templateName);
@@ -11,6 +11,9 @@ package io.pebbletemplates.pebble.loader;
 import io.pebbletemplates.pebble.PebbleEngine;
 
 import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * Interface used to find templates for Pebble. Different implementations can use different
@@ -103,4 +106,27 @@ public interface Loader<T> {
   T createCacheKey(String templateName);
 
   boolean resourceExists(String templateName);
+
+  /**
+   * Returns the file from which a template is read, so that a {@link TemplateReloader} can watch it
+   * for changes.
+   *
+   * @param templateName The name of the template
+   * @return The file of the template, or {@code null} if the template isn't read from a file
+   */
+  default Path getTemplateFile(String templateName) {
+    return null;
+  }
+
+  /**
+   * Lists the names of all the templates this loader can find, so that they can be compiled ahead
+   * of time with {@link PebbleEngine#precompile()}. The names don't include the prefix and the
+   * suffix of the loader.
+   *
+   * @return The names of the templates, or an empty list if this loader can't enumerate its
+   * templates
+   */
+  default List<String> listTemplateNames() {
+    return Collections.emptyList();
+  }
 }
\ No newline at end of file
@@ -41,6 +41,17 @@ public class MemoryLoader implements Loader<String> {
         return this.templateDefinitions;
     }
 
+    @Override
+    public List<String> listTemplateNames() {
+        List<String> templateNames = new ArrayList<>();
+        for (TemplateDefinition templateDefinition : this.templateDefinitions) {
+            if (!templateNames.contains(templateDefinition.templateName)) {
+                templateNames.add(templateDefinition.templateName);
+            }
+        }
+        return templateNames;
+    }
+
     @Override
     public void setSuffix(String suffix) {
     }
@@ -0,0 +1,201 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.loader;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.error.LoaderException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Watches the files of the templates loaded by a {@link PebbleEngine} and invalidates a template as
+ * soon as its file is modified, see {@link PebbleEngine#invalidate(String)}. Unlike disabling the
+ * template cache, templates are only read and parsed again once they changed.
+ * <p>
+ * Only the templates whose loader reads them from files are watched, see {@link
+ * Loader#getTemplateFile(String)}. The directories of these files are watched with a {@link
+ * WatchService} by a daemon thread, which runs until the reloader is closed.
+ *
+ * @see PebbleEngine.Builder#templateReloader(TemplateReloader)
+ */
+public class TemplateReloader implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateReloader.class);
+
+  private final WatchService watchService;
+
+  private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+
+  /**
+   * The templates read from each watched file
+   */
+  private final ConcurrentMap<Path, Set<WatchedTemplate>> templates = new ConcurrentHashMap<>();
+
+  private volatile boolean closed = false;
+
+  /**
+   * Creates the reloader and starts the thread watching the template files.
+   */
+  public TemplateReloader() {
+    try {
+      this.watchService = FileSystems.getDefault().newWatchService();
+    } catch (IOException e) {
+      throw new LoaderException(e, "Could not create a watch service for the template files");
+    }
+    Thread thread = new Thread(this::run, "pebble-template-reloader");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Starts watching the file of a template, if it has one. The template is invalidated the next
+   * time the file changes, and must then be watched again when it is reloaded.
+   *
+   * @param engine The engine which loads the template
+   * @param loader The loader reading the template
+   * @param templateName The name of the template
+   */
+  public void watch(PebbleEngine engine, Loader<?> loader, String templateName) {
+    if (this.closed) {
+      return;
+    }
+    Path file = loader.getTemplateFile(templateName);
+    if (file == null) {
+      return;
+    }
+    file = file.toAbsolutePath().normalize();
+    Path directory = file.getParent();
+    if (directory == null || !this.watchDirectory(directory)) {
+      return;
+    }
+    this.templates.computeIfAbsent(file, key -> ConcurrentHashMap.newKeySet())
+        .add(new WatchedTemplate(engine, templateName));
+  }
+
+  private boolean watchDirectory(Path directory) {
+    if (this.watchedDirectories.contains(directory)) {
+      return true;
+    }
+    try {
+      directory.register(this.watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+      this.watchedDirectories.add(directory);
+      return true;
+    } catch (IOException | ClosedWatchServiceException e) {
+      logger.warn("Could not watch the templates of {} for changes", directory, e);
+      return false;
+    }
+  }
+
+  private void run() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = this.watchService.take();
+      } catch (InterruptedException | ClosedWatchServiceException e) {
+        return;
+      }
+      Path directory = (Path) key.watchable();
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (event.kind() == OVERFLOW) {
+          // some events have been lost
+          for (Path file : new ArrayList<>(this.templates.keySet())) {
+            this.invalidate(file);
+          }
+        } else {
+          this.invalidate(directory.resolve((Path) event.context()));
+        }
+      }
+      if (!key.reset()) {
+        this.watchedDirectories.remove(directory);
+      }
+    }
+  }
+
+  private void invalidate(Path file) {
+    Set<WatchedTemplate> templates = this.templates.remove(file);
+    if (templates == null) {
+      return;
+    }
+    for (WatchedTemplate template : templates) {
+      logger.debug("Template file {} changed, invalidating template {}", file, template.name);
+      try {
+        template.engine.invalidate(template.name);
+      } catch (RuntimeException e) {
+        logger.warn("Could not invalidate template {}", template.name, e);
+      }
+    }
+  }
+
+  /**
+   * Returns the files currently watched.
+   *
+   * @return The files of the templates which will be invalidated when they change
+   */
+  public List<Path> getWatchedFiles() {
+    return new ArrayList<>(this.templates.keySet());
+  }
+
+  /**
+   * Stops watching the template files.
+   *
+   * @throws IOException If the watch service can't be closed
+   */
+  @Override
+  public void close() throws IOException {
+    this.closed = true;
+    this.watchService.close();
+    this.templates.clear();
+    this.watchedDirectories.clear();
+  }
+
+  private static final class WatchedTemplate {
+
+    private final PebbleEngine engine;
+
+    private final String name;
+
+    private WatchedTemplate(PebbleEngine engine, String name) {
+      this.engine = engine;
+      this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof WatchedTemplate)) {
+        return false;
+      }
+      WatchedTemplate other = (WatchedTemplate) obj;
+      return this.engine == other.engine && this.name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(this.engine) + this.name.hashCode();
+    }
+  }
+}
@@ -47,6 +47,10 @@ public class ArgumentsNode implements Node {
     return this.positionalArgs;
   }
 
+  public int getLineNumber() {
+    return this.lineNumber;
+  }
+
   /**
    * Using hints from the filter/function/test/macro it will convert an ArgumentMap (which holds
    * both positional and named arguments) into a regular Map that the filter/function/test/macro is
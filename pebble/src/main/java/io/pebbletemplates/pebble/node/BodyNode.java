@@ -8,6 +8,7 @@
  */
 package io.pebbletemplates.pebble.node;
 
+import io.pebbletemplates.pebble.compiler.CompiledTemplate;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
@@ -27,6 +28,13 @@ public class BodyNode extends AbstractRenderableNode {
    */
   private boolean onlyRenderInheritanceSafeNodes = false;
 
+  /**
+   * The generated class rendering this body when templates are compiled, null otherwise.
+   */
+  private CompiledTemplate compiledTemplate;
+
+  private int compiledIndex;
+
   public BodyNode(int lineNumber, List<RenderableNode> children) {
     super(lineNumber);
     this.children = children;
@@ -35,11 +43,13 @@ public class BodyNode extends AbstractRenderableNode {
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException {
+    if (this.compiledTemplate != null) {
+      this.compiledTemplate.render(this.compiledIndex, self, writer, context);
+      return;
+    }
     for (RenderableNode child: this.children) {
-      if (this.onlyRenderInheritanceSafeNodes && context.getHierarchy().getParent() != null) {
-        if (!nodesToRenderInChild.contains(child.getClass())) {
-          continue;
-        }
+      if (this.isOnlyRenderingInheritanceSafeNodes(context) && !isInheritanceSafe(child)) {
+        continue;
       }
       child.render(self, writer, context);
     }
@@ -62,6 +72,38 @@ public class BodyNode extends AbstractRenderableNode {
     this.onlyRenderInheritanceSafeNodes = onlyRenderInheritanceSafeNodes;
   }
 
+  /**
+   * Returns whether only the inheritance safe nodes have to be rendered, i.e. this is the body of a
+   * template which extends a parent template.
+   *
+   * @param context The evaluation context
+   * @return Whether nodes which aren't inheritance safe must be skipped
+   */
+  public boolean isOnlyRenderingInheritanceSafeNodes(EvaluationContextImpl context) {
+    return this.onlyRenderInheritanceSafeNodes && context.getHierarchy().getParent() != null;
+  }
+
+  /**
+   * Returns whether a node gets rendered in a template which extends a parent template.
+   *
+   * @param node The node
+   * @return Whether the node is inheritance safe
+   */
+  public static boolean isInheritanceSafe(RenderableNode node) {
+    return nodesToRenderInChild.contains(node.getClass());
+  }
+
+  /**
+   * Delegates the rendering of this body to a compiled template.
+   *
+   * @param compiledTemplate The compiled template
+   * @param index The index of this body within the compiled template
+   */
+  public void setCompiled(CompiledTemplate compiledTemplate, int index) {
+    this.compiledTemplate = compiledTemplate;
+    this.compiledIndex = index;
+  }
+
   private static List<Class<? extends Node>> nodesToRenderInChild = new ArrayList<>();
 
   static {
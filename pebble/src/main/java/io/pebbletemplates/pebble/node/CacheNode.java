@@ -12,6 +12,7 @@ import io.pebbletemplates.pebble.cache.CacheKey;
 import io.pebbletemplates.pebble.cache.PebbleCache;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
@@ -50,15 +51,28 @@ public class CacheNode extends AbstractRenderableNode {
     try {
       final String body;
       PebbleCache<CacheKey, Object> tagCache = context.getTagCache();
-      CacheKey key = new CacheKey(this, (String) this.name.evaluate(self, context),
-          context.getLocale());
+      String name = (String) this.name.evaluate(self, context);
+      CacheKey key = new CacheKey(this, name, context.getLocale());
+      Instrumentation instrumentation = self.getInstrumentation();
+      boolean[] rendered = new boolean[1];
       body = (String) context.getTagCache().computeIfAbsent(key, k -> {
         try {
-          return this.render(self, context);
+          if (instrumentation == null) {
+            return this.render(self, context);
+          }
+          rendered[0] = true;
+          long start = System.nanoTime();
+          String result = this.render(self, context);
+          instrumentation.cacheTagMiss(self.getName(), this.getLineNumber(),
+              System.nanoTime() - start);
+          return result;
         } catch (IOException e) {
           throw new RuntimeException(e);
         }
       });
+      if (instrumentation != null && !rendered[0]) {
+        instrumentation.cacheTagHit(self.getName(), this.getLineNumber());
+      }
       writer.write(body);
     } catch (CompletionException e) {
       throw new PebbleException(e, "Could not render cache block [" + this.name + "]");
@@ -72,4 +86,12 @@ public class CacheNode extends AbstractRenderableNode {
 
     return tempWriter.toString();
   }
+
+  public Expression<?> getName() {
+    return this.name;
+  }
+
+  public BodyNode getBody() {
+    return this.body;
+  }
 }
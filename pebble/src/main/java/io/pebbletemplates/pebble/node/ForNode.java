@@ -13,16 +13,15 @@ import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.node.fornode.LazyLength;
 import io.pebbletemplates.pebble.node.fornode.LazyRevIndex;
+import io.pebbletemplates.pebble.node.fornode.LoopStrategy;
+import io.pebbletemplates.pebble.template.CancellationToken;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.Frame;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.template.ScopeChain;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.lang.reflect.Array;
-import java.util.Enumeration;
-import java.util.Iterator;
-import java.util.Map;
 
 /**
  * Represents a "for" loop within the template.
@@ -31,14 +30,21 @@ import java.util.Map;
  */
 public class ForNode extends AbstractRenderableNode {
 
+  private static final String LOOP_VARIABLE = "loop";
+
   private final String variableName;
 
-  private final Expression<?> iterableExpression;
+  private Expression<?> iterableExpression;
 
   private final BodyNode body;
 
   private final BodyNode elseBody;
 
+  /**
+   * The variables of the frame pushed by this loop
+   */
+  private final Frame.Layout frameLayout;
+
   public ForNode(int lineNumber, String variableName, Expression<?> iterableExpression,
       BodyNode body,
       BodyNode elseBody) {
@@ -47,17 +53,25 @@ public class ForNode extends AbstractRenderableNode {
     this.iterableExpression = iterableExpression;
     this.body = body;
     this.elseBody = elseBody;
+    this.frameLayout = new Frame.Layout(LOOP_VARIABLE, variableName);
   }
 
+  /**
+   * The "loop" variable. It is updated in place by each iteration, the length and the reversed
+   * index are only computed when the template reads them.
+   */
   public static class LoopVariables {
     private boolean first, last;
-    private LazyLength length;
     private int index;
-    private LazyRevIndex revindex;
+    private final Iteration iteration;
+
+    private LoopVariables(Iteration iteration) {
+      this.iteration = iteration;
+    }
 
     @Override
     public String toString() {
-      return "{last=" + last + ", length=" + length + ", index=" + index + ", revindex=" + revindex + ", first=" + first + "}";
+      return "{last=" + last + ", length=" + getLength() + ", index=" + index + ", revindex=" + getRevindex() + ", first=" + first + "}";
     }
 
     public boolean isFirst() {
@@ -69,7 +83,7 @@ public class ForNode extends AbstractRenderableNode {
     }
 
     public LazyLength getLength() {
-      return length;
+      return iteration.length();
     }
 
     public int getIndex() {
@@ -77,7 +91,7 @@ public class ForNode extends AbstractRenderableNode {
     }
 
     public LazyRevIndex getRevindex() {
-      return revindex;
+      return new LazyRevIndex(index, iteration.length());
     }
   }
 
@@ -85,72 +99,155 @@ public class ForNode extends AbstractRenderableNode {
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException {
     final Object iterableEvaluation = this.iterableExpression.evaluate(self, context);
-    Iterable<?> iterable;
 
     if (iterableEvaluation == null) {
       return;
     }
 
-    iterable = this.toIterable(iterableEvaluation);
+    LoopStrategy strategy = this.loopStrategy(iterableEvaluation, self);
+
+    if (strategy.hasNext()) {
+
+      Iteration iteration = this.startIteration(strategy, iterableEvaluation, context);
+      while (iteration.next()) {
+        this.body.render(self, writer, context);
+      }
+      iteration.end();
+
+    } else if (this.elseBody != null) {
+      this.elseBody.render(self, writer, context);
+    }
+
+  }
+
+  /**
+   * Returns the strategy walking through the evaluated iterable expression.
+   *
+   * @param iterableEvaluation The evaluated iterable expression, must not be null
+   * @param self The template
+   * @return The strategy
+   */
+  public LoopStrategy loopStrategy(Object iterableEvaluation, PebbleTemplateImpl self) {
+    LoopStrategy strategy = LoopStrategy.of(iterableEvaluation);
 
-    if (iterable == null) {
+    if (strategy == null) {
       throw new PebbleException(null,
           "Not an iterable object. Value = [" + iterableEvaluation.toString() + "]",
           this.getLineNumber(), self.getName());
     }
 
-    Iterator<?> iterator = iterable.iterator();
+    return strategy;
+  }
 
-    if (iterator.hasNext()) {
+  /**
+   * Pushes the scope of the loop, {@link Iteration#next()} then has to be invoked before each
+   * rendering of the body and {@link Iteration#end()} once the loop is done.
+   *
+   * @param strategy A strategy with items left
+   * @param iterableEvaluation The evaluated iterable expression
+   * @param context The evaluation context
+   * @return The iteration
+   */
+  public Iteration startIteration(LoopStrategy strategy, Object iterableEvaluation,
+      EvaluationContextImpl context) {
+    return new Iteration(this.frameLayout, this.variableName, strategy, iterableEvaluation,
+        context);
+  }
 
-      ScopeChain scopeChain = context.getScopeChain();
-      scopeChain.pushScope();
+  /**
+   * The state of a running loop.
+   */
+  public static final class Iteration {
 
-      LazyLength length = new LazyLength(iterableEvaluation);
+    private final LoopStrategy strategy;
 
-      int index = 0;
+    private final Object iterableEvaluation;
 
-      LoopVariables loop = null;
+    private final ScopeChain scopeChain;
 
-      boolean usingExecutorService = context.getExecutorService() != null;
+    private final Frame frame;
 
-      while (iterator.hasNext()) {
+    private final int loopSlot;
 
-        /*
-         * If the user is using an executor service (i.e. parallel
-         * node), we must create a new map with every iteration instead
-         * of re-using the same one; it's imperative that each thread
-         * would get it's own distinct copy of the context.
-         */
-        if (index == 0 || usingExecutorService) {
-          loop = new LoopVariables();
-          loop.first = index == 0;
-          loop.last = !iterator.hasNext();
-          loop.length = length;
-        } else if (index == 1) {
-          // second iteration
-          loop.first = false;
-        }
+    private final int variableSlot;
 
-        loop.revindex = new LazyRevIndex(index, length);
-        loop.index = index++;
-        scopeChain.put("loop", loop);
-        scopeChain.put(this.variableName, iterator.next());
+    private final boolean usingExecutorService;
 
-        // last iteration
-        if (!iterator.hasNext()) {
-          loop.last = true;
-        }
+    private final CancellationToken cancellationToken;
 
-        this.body.render(self, writer, context);
+    private int index = 0;
+
+    private LoopVariables loop = null;
+
+    private volatile LazyLength length;
+
+    private Iteration(Frame.Layout frameLayout, String variableName, LoopStrategy strategy,
+        Object iterableEvaluation, EvaluationContextImpl context) {
+      this.strategy = strategy;
+      this.iterableEvaluation = iterableEvaluation;
+      this.scopeChain = context.getScopeChain();
+      this.frame = new Frame(frameLayout, false);
+      this.loopSlot = frameLayout.indexOf(LOOP_VARIABLE);
+      this.variableSlot = frameLayout.indexOf(variableName);
+      this.scopeChain.pushScope(this.frame);
+      this.usingExecutorService = context.getExecutorService() != null;
+      this.cancellationToken = context.getCancellationToken();
+    }
+
+    /**
+     * Moves to the next item and updates the loop variables.
+     *
+     * @return False if there is no item left
+     * @throws io.pebbletemplates.pebble.error.RenderCancelledException If the evaluation has
+     * been cancelled
+     */
+    public boolean next() {
+      LoopStrategy strategy = this.strategy;
+      if (!strategy.hasNext()) {
+        return false;
+      }
+      if (this.cancellationToken != null) {
+        this.cancellationToken.check();
       }
 
-      scopeChain.popScope();
+      int index = this.index;
+      LoopVariables loop = this.loop;
+
+      /*
+       * If the user is using an executor service (i.e. parallel
+       * node), we must create a new map with every iteration instead
+       * of re-using the same one; it's imperative that each thread
+       * would get it's own distinct copy of the context.
+       */
+      if (loop == null || this.usingExecutorService) {
+        loop = new LoopVariables(this);
+        this.loop = loop;
+      }
 
-    } else if (this.elseBody != null) {
-      this.elseBody.render(self, writer, context);
+      loop.first = index == 0;
+      loop.index = index;
+      this.index = index + 1;
+      this.frame.setSlot(this.loopSlot, loop);
+      this.frame.setSlot(this.variableSlot, strategy.next());
+      loop.last = !strategy.hasNext();
+      return true;
     }
 
+    /**
+     * Pops the scope of the loop.
+     */
+    public void end() {
+      this.scopeChain.popScope();
+    }
+
+    private LazyLength length() {
+      LazyLength length = this.length;
+      if (length == null) {
+        length = new LazyLength(this.iterableEvaluation);
+        this.length = length;
+      }
+      return length;
+    }
   }
 
   @Override
@@ -166,6 +263,10 @@ public class ForNode extends AbstractRenderableNode {
     return this.iterableExpression;
   }
 
+  public void setIterable(Expression<?> iterableExpression) {
+    this.iterableExpression = iterableExpression;
+  }
+
   public BodyNode getBody() {
     return this.body;
   }
@@ -174,93 +275,8 @@ public class ForNode extends AbstractRenderableNode {
     return this.elseBody;
   }
 
-  @SuppressWarnings({"unchecked", "rawtypes"})
-  private Iterable<Object> toIterable(final Object obj) {
-
-    Iterable<Object> result = null;
-
-    if (obj instanceof Iterable<?>) {
-      result = (Iterable<Object>) obj;
-    } else if (obj instanceof Map) {
-      // raw type
-      result = ((Map) obj).entrySet();
-    } else if (obj.getClass().isArray()) {
-      result = new ArrayIterable(obj);
-    } else if (obj instanceof Enumeration) {
-      result = new EnumerationIterable((Enumeration) obj);
-    }
-
-    return result;
-  }
-
-  /**
-   * Adapts an array to an Iterable
-   */
-  private class ArrayIterable implements Iterable<Object> {
-
-    private Object obj;
-
-    ArrayIterable(Object array) {
-      this.obj = array;
-    }
-
-    @Override
-    public Iterator<Object> iterator() {
-      return new Iterator<Object>() {
-
-        private int index = 0;
-
-        private final int length = Array.getLength(ArrayIterable.this.obj);
-
-        @Override
-        public boolean hasNext() {
-          return this.index < this.length;
-        }
-
-        @Override
-        public Object next() {
-          return Array.get(ArrayIterable.this.obj, this.index++);
-        }
-
-        @Override
-        public void remove() {
-          throw new UnsupportedOperationException();
-        }
-      };
-    }
-  }
-
-  /**
-   * Adapts an Enumeration to an Iterable
-   */
-  private class EnumerationIterable implements Iterable<Object> {
-
-    private Enumeration<Object> obj;
-
-    EnumerationIterable(Enumeration<Object> enumeration) {
-      this.obj = enumeration;
-    }
-
-    @Override
-    public Iterator<Object> iterator() {
-      return new Iterator<Object>() {
-
-        @Override
-        public boolean hasNext() {
-          return EnumerationIterable.this.obj.hasMoreElements();
-        }
-
-        @Override
-        public Object next() {
-          return EnumerationIterable.this.obj.nextElement();
-        }
-
-        @Override
-        public void remove() {
-          throw new UnsupportedOperationException();
-        }
-      };
-    }
+  public Frame.Layout getFrameLayout() {
+    return this.frameLayout;
   }
 
 }
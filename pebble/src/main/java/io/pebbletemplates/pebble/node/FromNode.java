@@ -39,4 +39,12 @@ public class FromNode extends AbstractRenderableNode {
     visitor.visit(this);
   }
 
+  public Expression<?> getFromExpression() {
+    return this.fromExpression;
+  }
+
+  public List<Pair<String, String>> getNamedMacros() {
+    return this.namedMacros;
+  }
+
 }
@@ -49,30 +49,7 @@ public class IfNode extends AbstractRenderableNode {
       Expression<?> conditionalExpression = ifStatement.getLeft();
 
       try {
-
-        Object result = conditionalExpression.evaluate(self, context);
-
-        if (result != null) {
-          if (result instanceof Boolean
-                  || result instanceof Number
-                  || result instanceof String) {
-            satisfied = TypeUtils.compatibleCast(result, Boolean.class);
-          } else {
-            throw new PebbleException(
-                      null,
-                      String.format(
-                              "Unsupported value type %s. Expected Boolean, String, Number in \"if\" statement",
-                              result.getClass().getSimpleName()),
-                      this.getLineNumber(),
-                      self.getName());
-          }
-
-        } else if (context.isStrictVariables()) {
-          throw new PebbleException(null,
-              "null value given to if statement and strict variables is set to true",
-              this.getLineNumber(), self.getName());
-        }
-
+        satisfied = this.isSatisfied(conditionalExpression.evaluate(self, context), self, context);
       } catch (RuntimeException ex) {
         throw new PebbleException(ex, "Wrong operand(s) type in conditional expression",
             this.getLineNumber(), self.getName());
@@ -89,6 +66,37 @@ public class IfNode extends AbstractRenderableNode {
     }
   }
 
+  /**
+   * Converts the result of a conditional expression to a boolean.
+   *
+   * @param result The evaluated conditional expression
+   * @param self The template
+   * @param context The evaluation context
+   * @return Whether the condition is satisfied
+   */
+  public boolean isSatisfied(Object result, PebbleTemplateImpl self,
+      EvaluationContextImpl context) {
+    if (result != null) {
+      if (result instanceof Boolean
+              || result instanceof Number
+              || result instanceof String) {
+        return TypeUtils.compatibleCast(result, Boolean.class);
+      }
+      throw new PebbleException(
+                null,
+                String.format(
+                        "Unsupported value type %s. Expected Boolean, String, Number in \"if\" statement",
+                        result.getClass().getSimpleName()),
+                this.getLineNumber(),
+                self.getName());
+    } else if (context.isStrictVariables()) {
+      throw new PebbleException(null,
+          "null value given to if statement and strict variables is set to true",
+          this.getLineNumber(), self.getName());
+    }
+    return false;
+  }
+
   @Override
   public void accept(NodeVisitor visitor) {
     visitor.visit(this);
@@ -51,4 +51,8 @@ public class ImportNode extends AbstractRenderableNode {
     return this.importExpression;
   }
 
+  public String getAlias() {
+    return this.alias;
+  }
+
 }
@@ -60,4 +60,8 @@ public class IncludeNode extends AbstractRenderableNode {
     return this.includeExpression;
   }
 
+  public MapExpression getMapExpression() {
+    return this.mapExpression;
+  }
+
 }
@@ -8,9 +8,11 @@
  */
 package io.pebbletemplates.pebble.node;
 
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.Frame;
 import io.pebbletemplates.pebble.template.Macro;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.template.ScopeChain;
@@ -31,10 +33,30 @@ public class MacroNode extends AbstractRenderableNode {
 
   private final BodyNode body;
 
+  /**
+   * Whether the output of the macro only depends on its arguments, in which case it is cached
+   */
+  private final boolean pure;
+
+  /**
+   * The variables of the frame pushed when the macro is called
+   */
+  private final Frame.Layout frameLayout;
+
   public MacroNode(String name, ArgumentsNode args, BodyNode body) {
+    this(name, args, body, false);
+  }
+
+  public MacroNode(String name, ArgumentsNode args, BodyNode body, boolean pure) {
     this.name = name;
     this.args = args;
     this.body = body;
+    this.pure = pure;
+    List<String> argumentNames = new ArrayList<>();
+    for (NamedArgumentNode arg: args.getNamedArgs()) {
+      argumentNames.add(arg.getName());
+    }
+    this.frameLayout = new Frame.Layout(argumentNames.toArray(new String[0]));
   }
 
   @Override
@@ -67,37 +89,61 @@ public class MacroNode extends AbstractRenderableNode {
       @Override
       public String call(PebbleTemplateImpl self, EvaluationContextImpl context,
           Map<String, Object> macroArgs) {
+        if (MacroNode.this.pure) {
+          return self.getMacroCache().computeIfAbsent(
+              new MacroCacheKey(MacroNode.this, macroArgs, context.getLocale(),
+                  self.getCacheKey()),
+              key -> this.render(self, context, macroArgs));
+        }
+        return this.render(self, context, macroArgs);
+      }
+
+      private String render(PebbleTemplateImpl self, EvaluationContextImpl context,
+          Map<String, Object> macroArgs) {
         Writer writer = LimitedSizeWriter.from(new StringWriter(), context);
+        try {
+          this.render(self, context, macroArgs, writer);
+        } catch (IOException e) {
+          throw new RuntimeException("Could not evaluate macro [" + MacroNode.this.name + "]", e);
+        }
+        return writer.toString();
+      }
+
+      @Override
+      public void call(PebbleTemplateImpl self, EvaluationContextImpl context,
+          Map<String, Object> macroArgs, Writer writer) throws IOException {
+        if (MacroNode.this.pure) {
+          writer.write(this.call(self, context, macroArgs));
+        } else {
+          this.render(self, context, macroArgs, writer);
+        }
+      }
+
+      private void render(PebbleTemplateImpl self, EvaluationContextImpl context,
+          Map<String, Object> macroArgs, Writer writer) throws IOException {
         ScopeChain scopeChain = context.getScopeChain();
 
-        // scope for default arguments
-        scopeChain.pushLocalScope();
-        
-        // global vars provided by extensions
-        context.getExtensionRegistry().getGlobalVariables().forEach(scopeChain::put);
-        
+        // local frame for default and user provided arguments, the global vars provided by
+        // extensions are shared by the frames rather than copied into each of them
+        Frame frame = new Frame(MacroNode.this.frameLayout, true,
+            context.getExtensionRegistry().getGlobalVariables());
+        scopeChain.pushScope(frame);
+
         for (NamedArgumentNode arg: MacroNode.this.getArgs().getNamedArgs()) {
           Expression<?> valueExpression = arg.getValueExpression();
           if (valueExpression == null) {
-            scopeChain.put(arg.getName(), null);
+            frame.put(arg.getName(), null);
           } else {
-            scopeChain.put(arg.getName(), arg.getValueExpression().evaluate(self, context));
+            frame.put(arg.getName(), arg.getValueExpression().evaluate(self, context));
           }
         }
 
-        // scope for user provided arguments
-        scopeChain.pushScope(macroArgs);
+        // user provided arguments override the default ones
+        macroArgs.forEach(frame::put);
 
-        try {
-          MacroNode.this.getBody().render(self, writer, context);
-        } catch (IOException e) {
-          throw new RuntimeException("Could not evaluate macro [" + MacroNode.this.name + "]", e);
-        }
-
-        scopeChain.popScope(); // user arguments
-        scopeChain.popScope(); // default arguments
+        MacroNode.this.getBody().render(self, writer, context);
 
-        return writer.toString();
+        scopeChain.popScope();
       }
 
     };
@@ -115,4 +161,12 @@ public class MacroNode extends AbstractRenderableNode {
     return this.name;
   }
 
+  public boolean isPure() {
+    return this.pure;
+  }
+
+  public Frame.Layout getFrameLayout() {
+    return this.frameLayout;
+  }
+
 }
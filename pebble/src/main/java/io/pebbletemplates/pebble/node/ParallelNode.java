@@ -9,9 +9,11 @@
 package io.pebbletemplates.pebble.node;
 
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.utils.FutureWriter;
+import io.pebbletemplates.pebble.utils.LimitedSizeWriter;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -66,16 +68,43 @@ public class ParallelNode extends AbstractRenderableNode {
 
       final EvaluationContextImpl contextCopy = context.threadSafeCopy(self);
 
+      final FutureWriter futureWriter = (FutureWriter) LimitedSizeWriter.unwrap(writer, context);
       final StringWriter newStringWriter = new StringWriter();
-      final Writer newFutureWriter = new FutureWriter(newStringWriter);
-
+      // the content is charged to a fork of the render budget, and to the budget of this thread
+      // once the future writer merges it
+      final FutureWriter newFutureWriter = new FutureWriter(newStringWriter,
+          contextCopy.getRenderBudget(), contextCopy.getCancellationToken());
+      final Writer limitedWriter = LimitedSizeWriter.from(newFutureWriter, contextCopy);
+
+      final Instrumentation instrumentation = self.getInstrumentation();
+      final long submitted = instrumentation == null ? 0 : System.nanoTime();
       Future<String> future = es.submit(() -> {
-        this.body.render(self, newFutureWriter, contextCopy);
-        newFutureWriter.flush();
+        long start = instrumentation == null ? 0 : System.nanoTime();
+        try {
+          // the evaluation may have been cancelled while the task was queued
+          contextCopy.checkCancelled();
+          this.body.render(self, limitedWriter, contextCopy);
+          newFutureWriter.flush();
+        } catch (Throwable e) {
+          // nested parallel tags must not outlive this one
+          newFutureWriter.cancel();
+          // cancels the other parallel tags, this one included
+          futureWriter.fail(e);
+          Thread.interrupted();
+          if (instrumentation != null) {
+            instrumentation.parallelTaskCompleted(self.getName(), this.getLineNumber(),
+                start - submitted, System.nanoTime() - start, e);
+          }
+          throw e;
+        }
         newFutureWriter.close();
+        if (instrumentation != null) {
+          instrumentation.parallelTaskCompleted(self.getName(), this.getLineNumber(),
+              start - submitted, System.nanoTime() - start, null);
+        }
         return newStringWriter.toString();
       });
-      ((FutureWriter) writer).enqueue(future);
+      futureWriter.enqueue(future);
     }
   }
 
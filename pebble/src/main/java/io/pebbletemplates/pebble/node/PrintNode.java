@@ -10,7 +10,11 @@ package io.pebbletemplates.pebble.node;
 
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.extension.escaper.EscapeFilter;
 import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
 import io.pebbletemplates.pebble.extension.writer.SpecializedWriter;
 import io.pebbletemplates.pebble.extension.writer.StringWriterSpecializedAdapter;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
@@ -34,7 +38,49 @@ public class PrintNode extends AbstractRenderableNode {
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException,
           PebbleException {
-    Object var = this.expression.evaluate(self, context);
+    FunctionOrMacroInvocationExpression invocation = this.getPrintedInvocation();
+    if (invocation != null && this.isPrintedAsIs(context)
+        && invocation.writeMacro(self, context, writer)) {
+      // the output of the macro is streamed rather than buffered
+      return;
+    }
+    write(this.expression.evaluate(self, context), writer);
+  }
+
+  /**
+   * Returns the function or macro invocation printed by this node, escaped or not. The output of a
+   * macro is safe, so it is written as is by the escape filter.
+   *
+   * @return The invocation, null if another expression is printed
+   */
+  public FunctionOrMacroInvocationExpression getPrintedInvocation() {
+    Expression<?> expression = this.expression;
+    if (expression instanceof FilterExpression) {
+      FilterExpression filter = (FilterExpression) expression;
+      if (!(filter.getRightExpression() instanceof FilterInvocationExpression)
+          || !"escape".equals(
+          ((FilterInvocationExpression) filter.getRightExpression()).getFilterName())) {
+        return null;
+      }
+      expression = filter.getLeftExpression();
+    }
+    return expression instanceof FunctionOrMacroInvocationExpression
+        ? (FunctionOrMacroInvocationExpression) expression : null;
+  }
+
+  private boolean isPrintedAsIs(EvaluationContextImpl context) {
+    return this.expression instanceof FunctionOrMacroInvocationExpression
+        || context.getExtensionRegistry().getFilter("escape") instanceof EscapeFilter;
+  }
+
+  /**
+   * Writes the result of a print expression, this is shared with compiled templates.
+   *
+   * @param var The evaluated expression, nothing is written if null
+   * @param writer The writer
+   * @throws IOException Thrown by the writer
+   */
+  public static void write(Object var, Writer writer) throws IOException {
     if (var != null) {
       if (writer instanceof StringWriter) {
         new StringWriterSpecializedAdapter((StringWriter) writer).write(var);
@@ -11,7 +11,9 @@ package io.pebbletemplates.pebble.node;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.node.expression.Expression;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameSlot;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.template.ScopeChain;
 
 import java.io.Writer;
 
@@ -19,7 +21,9 @@ public class SetNode extends AbstractRenderableNode {
 
   private final String name;
 
-  private final Expression<?> value;
+  private Expression<?> value;
+
+  private FrameSlot frameSlot;
 
   public SetNode(int lineNumber, String name, Expression<?> value) {
     super(lineNumber);
@@ -29,7 +33,11 @@ public class SetNode extends AbstractRenderableNode {
 
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context) {
-    context.getScopeChain().set(this.name, this.value.evaluate(self, context));
+    ScopeChain scopeChain = context.getScopeChain();
+    Object result = this.value.evaluate(self, context);
+    if (this.frameSlot == null || !scopeChain.set(this.frameSlot, this.name, result)) {
+      scopeChain.set(this.name, result);
+    }
   }
 
   @Override
@@ -41,8 +49,21 @@ public class SetNode extends AbstractRenderableNode {
     return this.value;
   }
 
+  public void setValue(Expression<?> value) {
+    this.value = value;
+  }
+
   public String getName() {
     return this.name;
   }
 
+  /**
+   * Sets the location of the variable if it is known at parse time.
+   *
+   * @param frameSlot The location of the variable
+   */
+  public void setFrameSlot(FrameSlot frameSlot) {
+    this.frameSlot = frameSlot;
+  }
+
 }
@@ -11,9 +11,12 @@ package io.pebbletemplates.pebble.node;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import io.pebbletemplates.pebble.utils.ByteWriter;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
 
 /**
  * Represents static text in a template.
@@ -28,6 +31,11 @@ public class TextNode extends AbstractRenderableNode {
    */
   private final char[] data;
 
+  /**
+   * The data encoded with the charset of the last {@link ByteWriter} it has been written to.
+   */
+  private volatile EncodedData encodedData;
+
   public TextNode(String text, int lineNumber) {
     super(lineNumber);
 
@@ -39,7 +47,31 @@ public class TextNode extends AbstractRenderableNode {
   @Override
   public void render(PebbleTemplateImpl self, Writer writer, EvaluationContextImpl context)
       throws IOException {
-    writer.write(this.data);
+    this.write(writer);
+  }
+
+  /**
+   * Writes the text, as bytes encoded once per charset if the writer is a {@link ByteWriter}.
+   *
+   * @param writer The writer
+   * @throws IOException Thrown from the writer
+   */
+  public void write(Writer writer) throws IOException {
+    if (writer instanceof ByteWriter) {
+      ByteWriter byteWriter = (ByteWriter) writer;
+      byteWriter.writeEncoded(this.getEncodedData(byteWriter.getCharset()), this.data.length);
+    } else {
+      writer.write(this.data);
+    }
+  }
+
+  private byte[] getEncodedData(Charset charset) {
+    EncodedData encodedData = this.encodedData;
+    if (encodedData == null || !encodedData.charset.equals(charset)) {
+      encodedData = new EncodedData(charset, new String(this.data).getBytes(charset));
+      this.encodedData = encodedData;
+    }
+    return encodedData.bytes;
   }
 
   @Override
@@ -51,4 +83,35 @@ public class TextNode extends AbstractRenderableNode {
     return this.data;
   }
 
+  /**
+   * Appends a node to a list of nodes, merging it with the last node if both are texts.
+   *
+   * @param nodes The list of nodes
+   * @param node The node to append
+   * @return Whether the node has been merged
+   */
+  public static boolean append(List<RenderableNode> nodes, RenderableNode node) {
+    int last = nodes.size() - 1;
+    if (node instanceof TextNode && last >= 0 && nodes.get(last) instanceof TextNode) {
+      TextNode previous = (TextNode) nodes.get(last);
+      nodes.set(last, new TextNode(new String(previous.data)
+          + new String(((TextNode) node).data), previous.getLineNumber()));
+      return true;
+    }
+    nodes.add(node);
+    return false;
+  }
+
+  private static final class EncodedData {
+
+    private final Charset charset;
+
+    private final byte[] bytes;
+
+    private EncodedData(Charset charset, byte[] bytes) {
+      this.charset = charset;
+      this.bytes = bytes;
+    }
+  }
+
 }
@@ -11,6 +11,7 @@ package io.pebbletemplates.pebble.node.expression;
 import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
+import io.pebbletemplates.pebble.template.FrameSlot;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 import io.pebbletemplates.pebble.template.ScopeChain;
 
@@ -20,6 +21,8 @@ public class ContextVariableExpression implements Expression<Object> {
 
   private final int lineNumber;
 
+  private FrameSlot frameSlot;
+
   public ContextVariableExpression(String name, int lineNumber) {
     this.name = name;
     this.lineNumber = lineNumber;
@@ -34,10 +37,26 @@ public class ContextVariableExpression implements Expression<Object> {
     return this.name;
   }
 
+  /**
+   * Sets the location of the variable if it is known at parse time, the scope chain is searched
+   * by name otherwise.
+   *
+   * @param frameSlot The location of the variable
+   */
+  public void setFrameSlot(FrameSlot frameSlot) {
+    this.frameSlot = frameSlot;
+  }
+
   @Override
   public Object evaluate(PebbleTemplateImpl self, EvaluationContextImpl context) {
     ScopeChain scopeChain = context.getScopeChain();
-    Object result = scopeChain.get(this.name);
+    Object result = null;
+    if (this.frameSlot != null) {
+      result = scopeChain.get(this.frameSlot, this.name);
+    }
+    if (result == null) {
+      result = scopeChain.get(this.name);
+    }
     if (result == null && context.isStrictVariables() && !scopeChain.containsKey(this.name)) {
       throw new RootAttributeNotFoundException(null, String.format(
           "Root attribute [%s] does not exist or can not be accessed and strict variables is set to true.",
@@ -14,6 +14,8 @@ import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.template.EvaluationContextImpl;
 import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.Map;
 
 public class FunctionOrMacroInvocationExpression implements Expression<Object> {
@@ -40,6 +42,25 @@ public class FunctionOrMacroInvocationExpression implements Expression<Object> {
     return self.macro(context, this.functionName, this.args, false, this.lineNumber);
   }
 
+  /**
+   * Writes the output of the invoked macro to a writer, rather than returning it, unless a function
+   * of the same name has precedence.
+   *
+   * @param self The template
+   * @param context The evaluation context
+   * @param writer The writer
+   * @return False if a function is invoked, in which case nothing has been written
+   * @throws IOException Thrown by the writer
+   */
+  public boolean writeMacro(PebbleTemplateImpl self, EvaluationContextImpl context, Writer writer)
+      throws IOException {
+    if (context.getExtensionRegistry().getFunction(this.functionName) != null) {
+      return false;
+    }
+    self.macro(context, this.functionName, this.args, this.lineNumber, writer);
+    return true;
+  }
+
   private Object applyFunction(PebbleTemplateImpl self, EvaluationContextImpl context,
       Function function, ArgumentsNode args) {
     Map<String, Object> namedArguments = args.getArgumentMap(self, context, function);
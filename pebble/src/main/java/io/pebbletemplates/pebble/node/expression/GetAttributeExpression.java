@@ -12,6 +12,7 @@ import io.pebbletemplates.pebble.error.AttributeNotFoundException;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.error.RootAttributeNotFoundException;
 import io.pebbletemplates.pebble.extension.NodeVisitor;
+import io.pebbletemplates.pebble.attributes.AttributeCallSite;
 import io.pebbletemplates.pebble.attributes.AttributeResolver;
 import io.pebbletemplates.pebble.attributes.ResolvedAttribute;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
@@ -39,6 +40,8 @@ public class GetAttributeExpression implements Expression<Object> {
 
   private final int lineNumber;
 
+  private final AttributeCallSite callSite = new AttributeCallSite();
+
   public GetAttributeExpression(Expression<?> node, Expression<?> attributeNameExpression,
       String filename,
       int lineNumber) {
@@ -77,12 +80,26 @@ public class GetAttributeExpression implements Expression<Object> {
       }
     }
 
-    for (AttributeResolver attributeResolver : context.getExtensionRegistry()
-        .getAttributeResolver()) {
+    List<AttributeResolver> attributeResolvers = context.getExtensionRegistry()
+        .getAttributeResolver();
+    if (object != null) {
+      ResolvedAttribute resolvedAttribute = this.callSite
+          .invoke(attributeResolvers, object, attributeName, argumentValues, this.filename,
+              this.lineNumber);
+      if (resolvedAttribute != null) {
+        return resolvedAttribute.evaluatedValue;
+      }
+    }
+
+    for (AttributeResolver attributeResolver : attributeResolvers) {
       ResolvedAttribute resolvedAttribute = attributeResolver
           .resolve(object, attributeNameValue, argumentValues, this.args, context, this.filename,
               this.lineNumber);
       if (resolvedAttribute != null) {
+        if (object != null) {
+          this.callSite
+              .link(attributeResolvers, attributeResolver, object, attributeName, argumentValues);
+        }
         return resolvedAttribute.evaluatedValue;
       }
     }
@@ -140,6 +157,10 @@ public class GetAttributeExpression implements Expression<Object> {
     return this.args;
   }
 
+  public String getFilename() {
+    return this.filename;
+  }
+
   @Override
   public int getLineNumber() {
     return this.lineNumber;
@@ -0,0 +1,133 @@
+package io.pebbletemplates.pebble.node.fornode;
+
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Walks through the items of the object a "for" loop iterates over. The lists with random access
+ * and the arrays are walked by index, without allocating an iterator nor reflecting on the
+ * arrays.
+ */
+public abstract class LoopStrategy {
+
+  /**
+   * Returns the strategy walking through an evaluated iterable expression.
+   *
+   * @param iterableEvaluation The evaluated iterable expression, must not be null
+   * @return The strategy, null if the object can't be iterated over
+   */
+  @SuppressWarnings("unchecked")
+  public static LoopStrategy of(Object iterableEvaluation) {
+    if (iterableEvaluation instanceof List && iterableEvaluation instanceof RandomAccess) {
+      return new RandomAccessListLoopStrategy((List<?>) iterableEvaluation);
+    } else if (iterableEvaluation instanceof Iterable) {
+      return new IteratorLoopStrategy(((Iterable<?>) iterableEvaluation).iterator());
+    } else if (iterableEvaluation instanceof Map) {
+      return new IteratorLoopStrategy(((Map<?, ?>) iterableEvaluation).entrySet().iterator());
+    } else if (iterableEvaluation instanceof Object[]) {
+      return new ObjectArrayLoopStrategy((Object[]) iterableEvaluation);
+    } else if (iterableEvaluation.getClass().isArray()) {
+      return PrimitiveArrayLoopStrategy.forArray(iterableEvaluation);
+    } else if (iterableEvaluation instanceof Enumeration) {
+      return new EnumerationLoopStrategy((Enumeration<Object>) iterableEvaluation);
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether there are items left.
+   *
+   * @return False once every item has been returned by {@link #next()}
+   */
+  public abstract boolean hasNext();
+
+  /**
+   * Returns the next item, {@link #hasNext()} has to be checked first.
+   *
+   * @return The item
+   */
+  public abstract Object next();
+
+  private static final class RandomAccessListLoopStrategy extends LoopStrategy {
+
+    private final List<?> list;
+
+    private int index;
+
+    private RandomAccessListLoopStrategy(List<?> list) {
+      this.list = list;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.index < this.list.size();
+    }
+
+    @Override
+    public Object next() {
+      return this.list.get(this.index++);
+    }
+  }
+
+  private static final class ObjectArrayLoopStrategy extends LoopStrategy {
+
+    private final Object[] array;
+
+    private int index;
+
+    private ObjectArrayLoopStrategy(Object[] array) {
+      this.array = array;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.index < this.array.length;
+    }
+
+    @Override
+    public Object next() {
+      return this.array[this.index++];
+    }
+  }
+
+  private static final class IteratorLoopStrategy extends LoopStrategy {
+
+    private final Iterator<?> iterator;
+
+    private IteratorLoopStrategy(Iterator<?> iterator) {
+      this.iterator = iterator;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.iterator.hasNext();
+    }
+
+    @Override
+    public Object next() {
+      return this.iterator.next();
+    }
+  }
+
+  private static final class EnumerationLoopStrategy extends LoopStrategy {
+
+    private final Enumeration<Object> enumeration;
+
+    private EnumerationLoopStrategy(Enumeration<Object> enumeration) {
+      this.enumeration = enumeration;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.enumeration.hasMoreElements();
+    }
+
+    @Override
+    public Object next() {
+      return this.enumeration.nextElement();
+    }
+  }
+}
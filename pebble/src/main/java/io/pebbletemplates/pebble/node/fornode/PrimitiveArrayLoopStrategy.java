@@ -0,0 +1,59 @@
+package io.pebbletemplates.pebble.node.fornode;
+
+import java.util.function.IntFunction;
+
+/**
+ * Walks through an array of primitives, boxing each item with a direct array access rather than
+ * through {@link java.lang.reflect.Array#get}.
+ */
+final class PrimitiveArrayLoopStrategy extends LoopStrategy {
+
+  private final int length;
+
+  private final IntFunction<Object> item;
+
+  private int index;
+
+  private PrimitiveArrayLoopStrategy(int length, IntFunction<Object> item) {
+    this.length = length;
+    this.item = item;
+  }
+
+  static PrimitiveArrayLoopStrategy forArray(Object array) {
+    if (array instanceof int[]) {
+      int[] values = (int[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof long[]) {
+      long[] values = (long[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof double[]) {
+      double[] values = (double[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof boolean[]) {
+      boolean[] values = (boolean[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof char[]) {
+      char[] values = (char[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof byte[]) {
+      byte[] values = (byte[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else if (array instanceof short[]) {
+      short[] values = (short[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    } else {
+      float[] values = (float[]) array;
+      return new PrimitiveArrayLoopStrategy(values.length, i -> values[i]);
+    }
+  }
+
+  @Override
+  public boolean hasNext() {
+    return this.index < this.length;
+  }
+
+  @Override
+  public Object next() {
+    return this.item.apply(this.index++);
+  }
+}
@@ -125,10 +125,12 @@ public class ParserImpl implements Parser {
 
           /*
            * The current token is a text token. Not much to do here other
-           * than convert it to a text Node.
+           * than convert it to a text Node, merged with the previous one
+           * when only a comment or a tag without node separates them so
+           * that it takes a single write.
            */
           token = this.stream.current();
-          nodes.add(new TextNode(token.getValue(), token.getLineNumber()));
+          TextNode.append(nodes, new TextNode(token.getValue(), token.getLineNumber()));
           this.stream.next();
           break;
 
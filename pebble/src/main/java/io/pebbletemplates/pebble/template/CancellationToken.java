@@ -0,0 +1,96 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.error.RenderCancelledException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cancels an evaluation on demand, from any thread, or once a deadline is reached. The evaluation
+ * checks the token cooperatively before each iteration of a "for" loop, each macro call and each
+ * included template, and while waiting for the content of the "parallel" tags, whose tasks are
+ * then cancelled. The evaluation then throws a {@link RenderCancelledException}.
+ * <p>
+ * A call which doesn't return, such as a slow method invoked by an attribute, can't be cancelled
+ * by the token, but the evaluation stops as soon as the call returns.
+ */
+public class CancellationToken {
+
+  private final long deadline;
+
+  private final boolean hasDeadline;
+
+  private volatile boolean cancelled = false;
+
+  /**
+   * Constructs a token without deadline, which is only cancelled by {@link #cancel()}.
+   */
+  public CancellationToken() {
+    this(0, false);
+  }
+
+  private CancellationToken(long deadline, boolean hasDeadline) {
+    this.deadline = deadline;
+    this.hasDeadline = hasDeadline;
+  }
+
+  /**
+   * Returns a token which is cancelled once the given time has elapsed.
+   *
+   * @param timeout The maximum time of the evaluations checking the token
+   * @param unit The unit of the timeout
+   * @return The token
+   */
+  public static CancellationToken withTimeout(long timeout, TimeUnit unit) {
+    return new CancellationToken(System.nanoTime() + unit.toNanos(timeout), true);
+  }
+
+  /**
+   * Cancels the evaluations checking this token.
+   */
+  public void cancel() {
+    this.cancelled = true;
+  }
+
+  /**
+   * Returns whether the token has been cancelled or its deadline has been reached.
+   *
+   * @return True if the evaluations must stop
+   */
+  public boolean isCancelled() {
+    return this.cancelled || this.hasDeadline && System.nanoTime() - this.deadline >= 0;
+  }
+
+  /**
+   * Returns the time left until the deadline.
+   *
+   * @return The time in nanoseconds, Long.MAX_VALUE if the token has no deadline
+   */
+  public long getRemainingNanos() {
+    if (!this.hasDeadline) {
+      return Long.MAX_VALUE;
+    }
+    return Math.max(this.deadline - System.nanoTime(), 0);
+  }
+
+  /**
+   * Throws an exception if the evaluation must stop.
+   *
+   * @throws RenderCancelledException If the token has been cancelled or its deadline reached
+   */
+  public void check() {
+    if (this.cancelled) {
+      throw new RenderCancelledException("The evaluation has been cancelled.");
+    }
+    if (this.hasDeadline && System.nanoTime() - this.deadline >= 0) {
+      throw new RenderCancelledException("The evaluation has exceeded its deadline.");
+    }
+  }
+}
@@ -12,4 +12,13 @@ public interface EvaluationContext {
   Locale getLocale();
 
   Object getVariable(String key);
+
+  /**
+   * Returns the token cancelling the evaluation, which the extensions doing lengthy work may check.
+   *
+   * @return The cancellation token, null if the evaluation can't be cancelled
+   */
+  default CancellationToken getCancellationToken() {
+    return null;
+  }
 }
@@ -21,7 +21,6 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An evaluation context will store all stateful data that is necessary for the evaluation of a
@@ -53,12 +52,12 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
   /**
    * The locale of this template.
    */
-  private final Locale locale;
+  private Locale locale;
 
   /**
-   * The maximum size of the rendered template, in chars.
+   * The chars and bytes written by the current thread, and their limits.
    */
-  private final int maxRenderedSize;
+  private final RenderBudget renderBudget;
 
   /**
    * All the available filters/tests/functions for this template.
@@ -91,9 +90,14 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
   private final EvaluationOptions evaluationOptions;
 
   /**
-   * Total number of chars written by all writers sharing this context.
+   * The pooled structures this context belongs to, null if it isn't pooled.
    */
-  private final AtomicInteger charsRendered = new AtomicInteger();
+  private EvaluationContextPool.PooledContext pooledContext;
+
+  /**
+   * The token cancelling the evaluation, null if it can't be cancelled.
+   */
+  private CancellationToken cancellationToken;
 
   /**
    * Constructor used to provide all final variables.
@@ -112,6 +116,30 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
       ExecutorService executorService, List<PebbleTemplateImpl> importedTemplates,
       Map<String, PebbleTemplateImpl> namedImportedTemplates, ScopeChain scopeChain,
       Hierarchy hierarchy, EvaluationOptions evaluationOptions) {
+    this(self, strictVariables, locale, new RenderBudget(maxRenderedSize, -1), extensionRegistry,
+        tagCache, executorService, importedTemplates, namedImportedTemplates, scopeChain,
+        hierarchy, evaluationOptions);
+  }
+
+  /**
+   * Constructor used to provide all final variables.
+   *
+   * @param self The template implementation
+   * @param strictVariables Whether strict variables is to be used
+   * @param locale The locale of the template
+   * @param renderBudget The limits of the size of the output
+   * @param extensionRegistry The extension registry
+   * @param executorService The optional executor service
+   * @param scopeChain The scope chain
+   * @param hierarchy The inheritance chain
+   * @param tagCache The cache used by the "cache" tag
+   */
+  public EvaluationContextImpl(PebbleTemplateImpl self, boolean strictVariables, Locale locale,
+      RenderBudget renderBudget, ExtensionRegistry extensionRegistry,
+      PebbleCache<CacheKey, Object> tagCache, ExecutorService executorService,
+      List<PebbleTemplateImpl> importedTemplates,
+      Map<String, PebbleTemplateImpl> namedImportedTemplates, ScopeChain scopeChain,
+      Hierarchy hierarchy, EvaluationOptions evaluationOptions) {
 
     if (hierarchy == null) {
       hierarchy = new Hierarchy(self);
@@ -119,7 +147,7 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
 
     this.strictVariables = strictVariables;
     this.locale = locale;
-    this.maxRenderedSize = maxRenderedSize;
+    this.renderBudget = renderBudget;
     this.extensionRegistry = extensionRegistry;
     this.tagCache = tagCache;
     this.executorService = executorService;
@@ -130,6 +158,29 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
     this.evaluationOptions = evaluationOptions;
   }
 
+  /**
+   * Resets the state of a pooled context, for another evaluation.
+   *
+   * @param self The evaluated template
+   * @param locale The locale of the evaluation
+   */
+  void reset(PebbleTemplateImpl self, Locale locale) {
+    this.locale = locale;
+    this.hierarchy.reset(self);
+    this.importedTemplates.clear();
+    this.namedImportedTemplates.clear();
+    this.renderBudget.reset();
+    this.cancellationToken = null;
+  }
+
+  EvaluationContextPool.PooledContext getPooledContext() {
+    return this.pooledContext;
+  }
+
+  void setPooledContext(EvaluationContextPool.PooledContext pooledContext) {
+    this.pooledContext = pooledContext;
+  }
+
   /**
    * Makes an exact copy of the evaluation context EXCEPT for the inheritance chain. This is
    * necessary for the "include" tag.
@@ -139,25 +190,27 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
    */
   public EvaluationContextImpl shallowCopyWithoutInheritanceChain(PebbleTemplateImpl self) {
     EvaluationContextImpl result = new EvaluationContextImpl(self, this.strictVariables,
-        this.locale, this.maxRenderedSize, this.extensionRegistry, this.tagCache,
+        this.locale, this.renderBudget, this.extensionRegistry, this.tagCache,
         this.executorService, this.importedTemplates, this.namedImportedTemplates, this.scopeChain,
         null, this.evaluationOptions);
+    result.cancellationToken = this.cancellationToken;
     return result;
   }
 
   /**
-   * Makes a "snapshot" of the evaluation context. The scopeChain object will be a deep copy and the
-   * imported templates will be a new list. This is used for the "parallel" tag.
+   * Makes a "snapshot" of the evaluation context. The scopeChain object will be a copy-on-write
+   * snapshot and the imported templates will be a new list. This is used for the "parallel" tag.
    *
    * @param self The template implementation
    * @return A copy of the evaluation context
    */
   public EvaluationContextImpl threadSafeCopy(PebbleTemplateImpl self) {
     EvaluationContextImpl result = new EvaluationContextImpl(self, this.strictVariables,
-        this.locale, this.maxRenderedSize, this.extensionRegistry, this.tagCache,
+        this.locale, this.renderBudget.fork(), this.extensionRegistry, this.tagCache,
         this.executorService, new ArrayList<>(this.importedTemplates),
-        new HashMap<>(this.namedImportedTemplates), this.scopeChain.deepCopy(), this.hierarchy,
+        new HashMap<>(this.namedImportedTemplates), this.scopeChain.snapshot(), this.hierarchy,
         this.evaluationOptions);
+    result.cancellationToken = this.cancellationToken;
     return result;
   }
 
@@ -204,7 +257,45 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
    */
   @Override
   public int getMaxRenderedSize() {
-    return this.maxRenderedSize;
+    return this.renderBudget.getMaxChars();
+  }
+
+  /**
+   * Returns the budget charged by the writers of this context, which belongs to the thread
+   * rendering the template.
+   *
+   * @return The render budget
+   */
+  @Override
+  public RenderBudget getRenderBudget() {
+    return this.renderBudget;
+  }
+
+  /**
+   * Returns the token cancelling the evaluation.
+   *
+   * @return The cancellation token, null if the evaluation can't be cancelled
+   */
+  @Override
+  public CancellationToken getCancellationToken() {
+    return this.cancellationToken;
+  }
+
+  void setCancellationToken(CancellationToken cancellationToken) {
+    this.cancellationToken = cancellationToken;
+  }
+
+  /**
+   * Stops the evaluation if it has been cancelled.
+   *
+   * @throws io.pebbletemplates.pebble.error.RenderCancelledException If the evaluation has been
+   * cancelled or has reached its deadline
+   */
+  public void checkCancelled() {
+    CancellationToken cancellationToken = this.cancellationToken;
+    if (cancellationToken != null) {
+      cancellationToken.check();
+    }
   }
 
   /**
@@ -312,8 +403,15 @@ public class EvaluationContextImpl implements EvaluationContext, RenderedSizeCon
     );
   }
 
+  /**
+   * Charges chars to the render budget.
+   *
+   * @deprecated The writers charge the {@link #getRenderBudget() render budget} directly
+   */
+  @Deprecated
   @Override
   public int addAndGet(int delta) {
-    return charsRendered.addAndGet(delta);
+    this.renderBudget.chargeChars(delta);
+    return (int) this.renderBudget.getChars();
   }
 }
@@ -0,0 +1,159 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Keeps an evaluation context per thread, with its scope chain, its global variables and its
+ * imported templates, to reuse them from one evaluation to the next instead of allocating them
+ * for each evaluation. This is enabled with {@link PebbleEngine.Builder#contextPooling(boolean)}.
+ * <p>
+ * A context is only given back to the pool once an evaluation completes normally; a context is
+ * never shared by two evaluations running at the same time, a template evaluated while another
+ * one is being evaluated by the same thread gets a new context. The extensions must not keep a
+ * reference to the {@link EvaluationContext} or to the "_context" variable once an evaluation is
+ * complete.
+ */
+public class EvaluationContextPool {
+
+  private final PebbleEngine engine;
+
+  private final ThreadLocal<PooledContext> contexts = new ThreadLocal<>();
+
+  /**
+   * Constructor
+   *
+   * @param engine The engine evaluating the templates
+   */
+  public EvaluationContextPool(PebbleEngine engine) {
+    this.engine = engine;
+  }
+
+  /**
+   * Returns the context of the current thread, or a new one if it is already in use.
+   *
+   * @param self The evaluated template
+   * @param locale The locale of the evaluation
+   * @return The context, to be given back to {@link #release} once the evaluation is complete
+   */
+  EvaluationContextImpl acquire(PebbleTemplateImpl self, Locale locale) {
+    PooledContext pooled = this.contexts.get();
+    if (pooled == null) {
+      pooled = new PooledContext(this.engine);
+    } else {
+      this.contexts.set(null);
+    }
+    return pooled.start(self, locale);
+  }
+
+  /**
+   * Gives a context back to the pool of the current thread.
+   *
+   * @param context A context returned by {@link #acquire}
+   */
+  void release(EvaluationContextImpl context) {
+    PooledContext pooled = context.getPooledContext();
+    pooled.clear();
+    this.contexts.set(pooled);
+  }
+
+  /**
+   * The structures reused by the evaluations of a thread.
+   */
+  static final class PooledContext {
+
+    private final Map<String, Object> extensionGlobals;
+
+    private final ScopeChain scopeChain = new ScopeChain();
+
+    private final Map<String, Object> globals = new HashMap<>(4);
+
+    private final GlobalContext globalContext = new GlobalContext(this.scopeChain);
+
+    /**
+     * The variables set by the template, see Issue #449
+     */
+    private final Map<String, Object> variables = new HashMap<>();
+
+    /**
+     * The scopes of the globals, of the extension globals, of the variables given to the
+     * evaluation and of the variables set by the template
+     */
+    private final Scope[] scopes = new Scope[4];
+
+    private int scopeCount = 0;
+
+    private final EvaluationContextImpl context;
+
+    private PooledContext(PebbleEngine engine) {
+      this.extensionGlobals = engine.getExtensionRegistry().getGlobalVariables();
+      this.context = new EvaluationContextImpl(null, engine.isStrictVariables(), null,
+          new RenderBudget(engine.getMaxRenderedSize(), engine.getMaxRenderedBytes()),
+          engine.getExtensionRegistry(), engine.getTagCache(),
+          engine.getExecutorService(), new ArrayList<>(), new HashMap<>(), this.scopeChain,
+          new Hierarchy(null), engine.getEvaluationOptions());
+      this.context.setPooledContext(this);
+    }
+
+    private EvaluationContextImpl start(PebbleTemplateImpl self, Locale locale) {
+      this.globals.put("locale", locale);
+      this.globals.put("template", self);
+      this.globals.put("_context", this.globalContext);
+      this.pushScope(this.globals);
+      this.pushScope(this.extensionGlobals);
+      this.context.reset(self, locale);
+      return this.context;
+    }
+
+    /**
+     * Adds a scope to the scope chain of the context, reusing the scope of the previous
+     * evaluation.
+     *
+     * @param map The variables of the scope
+     */
+    void pushScope(Map<String, Object> map) {
+      Scope scope = this.scopes[this.scopeCount];
+      if (scope == null) {
+        scope = new Scope(map, false);
+        this.scopes[this.scopeCount] = scope;
+      } else {
+        scope.reset(map);
+      }
+      this.scopeCount++;
+      this.scopeChain.pushScope(scope);
+    }
+
+    /**
+     * Returns the map holding the variables set by the template, which is empty.
+     *
+     * @return The map
+     */
+    Map<String, Object> getVariables() {
+      return this.variables;
+    }
+
+    private void clear() {
+      this.scopeChain.clear();
+      for (int i = 0; i < this.scopeCount; i++) {
+        this.scopes[i].reset(Collections.emptyMap());
+      }
+      this.scopeCount = 0;
+      this.globals.clear();
+      this.variables.clear();
+      this.context.reset(null, null);
+    }
+  }
+}
@@ -0,0 +1,243 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A scope whose variables are known in advance, such as the variables of a for loop or the arguments
+ * of a macro. These variables are stored in slots of an array, described by the {@link Layout} of
+ * the frame, so that they can be accessed by index. Any other variable is stored in a map.
+ */
+public class Frame extends Scope {
+
+  /**
+   * Marks a slot whose variable has not been defined yet.
+   */
+  private static final Object UNSET = new Object();
+
+  private final Layout layout;
+
+  private Object[] values;
+
+  private Map<String, Object> overflow;
+
+  /**
+   * The read-only variables visible from this frame unless it defines a variable of the same name
+   */
+  private final Map<String, Object> globals;
+
+  /**
+   * Whether the values are shared with a snapshot, in which case they are copied before being
+   * modified
+   */
+  private boolean shared;
+
+  /**
+   * Constructor
+   *
+   * @param layout The variables stored in slots
+   * @param local Whether this scope is local or not
+   */
+  public Frame(Layout layout, boolean local) {
+    this(layout, local, Collections.emptyMap());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param layout The variables stored in slots
+   * @param local Whether this scope is local or not
+   * @param globals The read-only variables visible from this frame, which are shared rather than
+   * copied
+   */
+  public Frame(Layout layout, boolean local, Map<String, Object> globals) {
+    super(Collections.emptyMap(), local);
+    this.layout = layout;
+    this.values = new Object[layout.size()];
+    this.globals = globals;
+    Arrays.fill(this.values, UNSET);
+  }
+
+  private Frame(Frame frame, boolean shared) {
+    super(Collections.emptyMap(), frame.isLocal());
+    this.layout = frame.layout;
+    this.values = frame.values;
+    this.overflow = frame.overflow;
+    this.globals = frame.globals;
+    this.shared = shared;
+    if (!shared) {
+      this.copyValues();
+    }
+  }
+
+  @Override
+  public Frame shallowCopy() {
+    return new Frame(this, false);
+  }
+
+  @Override
+  public Frame snapshot() {
+    this.shared = true;
+    return new Frame(this, true);
+  }
+
+  private void copyValues() {
+    this.values = this.values.clone();
+    this.overflow = this.overflow == null ? null : new HashMap<>(this.overflow);
+    this.shared = false;
+  }
+
+  public Layout getLayout() {
+    return this.layout;
+  }
+
+  /**
+   * Returns the value of a slot.
+   *
+   * @param slot The index of the slot
+   * @return The value, null if the variable has not been defined
+   */
+  public Object getSlot(int slot) {
+    Object value = this.values[slot];
+    return value == UNSET ? null : value;
+  }
+
+  /**
+   * Sets the value of a slot.
+   *
+   * @param slot The index of the slot
+   * @param value The value of the variable
+   */
+  public void setSlot(int slot, Object value) {
+    if (this.shared) {
+      this.copyValues();
+    }
+    this.values[slot] = value;
+  }
+
+  /**
+   * Checks if the variable of a slot has been defined.
+   *
+   * @param slot The index of the slot
+   * @return Whether the variable has been defined
+   */
+  public boolean isSlotSet(int slot) {
+    return this.values[slot] != UNSET;
+  }
+
+  /**
+   * Checks if a variable which isn't part of the layout is defined in this frame.
+   *
+   * @param key The name of the variable
+   * @return Whether the variable has been added to this frame
+   */
+  boolean containsAdditionalVariable(String key) {
+    return this.overflow != null && this.overflow.containsKey(key);
+  }
+
+  @Override
+  public void put(String key, Object value) {
+    if (this.shared) {
+      this.copyValues();
+    }
+    int slot = this.layout.indexOf(key);
+    if (slot >= 0) {
+      this.values[slot] = value;
+    } else {
+      if (this.overflow == null) {
+        this.overflow = new HashMap<>();
+      }
+      this.overflow.put(key, value);
+    }
+  }
+
+  @Override
+  public Object get(String key) {
+    int slot = this.layout.indexOf(key);
+    if (slot >= 0 && this.isSlotSet(slot)) {
+      return this.values[slot];
+    }
+    if (this.overflow != null && this.overflow.containsKey(key)) {
+      return this.overflow.get(key);
+    }
+    return this.globals.get(key);
+  }
+
+  @Override
+  public boolean containsKey(String key) {
+    int slot = this.layout.indexOf(key);
+    if (slot >= 0 && this.isSlotSet(slot)) {
+      return true;
+    }
+    return this.containsAdditionalVariable(key) || this.globals.containsKey(key);
+  }
+
+  @Override
+  public Set<String> getKeys() {
+    Set<String> keys = new LinkedHashSet<>(this.globals.keySet());
+    for (int slot = 0; slot < this.values.length; slot++) {
+      if (this.isSlotSet(slot)) {
+        keys.add(this.layout.names[slot]);
+      }
+    }
+    if (this.overflow != null) {
+      keys.addAll(this.overflow.keySet());
+    }
+    return keys;
+  }
+
+  /**
+   * The names of the variables stored in the slots of a frame. Layouts are compared by identity,
+   * each node which pushes frames owns a single layout.
+   */
+  public static final class Layout {
+
+    private final String[] names;
+
+    /**
+     * Constructor, duplicate names share the same slot.
+     *
+     * @param names The names of the variables
+     */
+    public Layout(String... names) {
+      this.names = new LinkedHashSet<>(Arrays.asList(names)).toArray(new String[0]);
+    }
+
+    /**
+     * Returns the slot of a variable.
+     *
+     * @param name The name of the variable
+     * @return The index of the slot or -1 if the variable isn't part of this layout
+     */
+    public int indexOf(String name) {
+      String[] names = this.names;
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    public int size() {
+      return this.names.length;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.toString(this.names);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * This file is part of Pebble.
+ * <p>
+ * Copyright (c) 2014 by Mitchell Bösecke
+ * <p>
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+/**
+ * The location of a variable which has been resolved when the template was parsed.
+ * <p>
+ * The variable is stored in a slot of the frame found at a given depth of the scope chain. As
+ * scopes may be pushed by nodes unknown at parse time, the layouts of all frames from the top of
+ * the scope chain down to that depth are verified before the slot is used.
+ */
+public final class FrameSlot {
+
+  private final Frame.Layout[] layouts;
+
+  private final int slot;
+
+  /**
+   * Constructor
+   *
+   * @param layouts The expected layouts of the frames, starting at the top of the scope chain. The
+   * variable is stored in the last one
+   * @param slot The index of the slot in the last frame
+   */
+  public FrameSlot(Frame.Layout[] layouts, int slot) {
+    this.layouts = layouts;
+    this.slot = slot;
+  }
+
+  Frame.Layout[] getLayouts() {
+    return this.layouts;
+  }
+
+  int getSlot() {
+    return this.slot;
+  }
+}
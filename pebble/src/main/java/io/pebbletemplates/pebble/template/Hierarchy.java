@@ -36,6 +36,18 @@ public class Hierarchy {
     this.hierarchy.add(currentTemplate);
   }
 
+  /**
+   * Resets the inheritance chain to one known template, for a context reused by another
+   * evaluation.
+   *
+   * @param currentTemplate The current template
+   */
+  void reset(PebbleTemplateImpl currentTemplate) {
+    this.hierarchy.clear();
+    this.hierarchy.add(currentTemplate);
+    this.current = 0;
+  }
+
   /**
    * Adds a known ancestor onto the inheritance chain, does not increment which template is the
    * "current" template being evaluated.
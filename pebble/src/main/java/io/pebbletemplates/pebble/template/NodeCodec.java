@@ -0,0 +1,843 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.ExtensionRegistry;
+import io.pebbletemplates.pebble.node.ArgumentsNode;
+import io.pebbletemplates.pebble.node.AutoEscapeNode;
+import io.pebbletemplates.pebble.node.BlockNode;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.CacheNode;
+import io.pebbletemplates.pebble.node.EmbedNode;
+import io.pebbletemplates.pebble.node.ExtendsNode;
+import io.pebbletemplates.pebble.node.FlushNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.FromNode;
+import io.pebbletemplates.pebble.node.FunctionOrMacroNameNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.ImportNode;
+import io.pebbletemplates.pebble.node.IncludeNode;
+import io.pebbletemplates.pebble.node.MacroNode;
+import io.pebbletemplates.pebble.node.NamedArgumentNode;
+import io.pebbletemplates.pebble.node.Node;
+import io.pebbletemplates.pebble.node.ParallelNode;
+import io.pebbletemplates.pebble.node.PositionalArgumentNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.SetNode;
+import io.pebbletemplates.pebble.node.TestInvocationExpression;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.ArrayExpression;
+import io.pebbletemplates.pebble.node.expression.BinaryExpression;
+import io.pebbletemplates.pebble.node.expression.BlockFunctionExpression;
+import io.pebbletemplates.pebble.node.expression.ConcatenateExpression;
+import io.pebbletemplates.pebble.node.expression.ContextVariableExpression;
+import io.pebbletemplates.pebble.node.expression.Expression;
+import io.pebbletemplates.pebble.node.expression.FilterInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.FunctionOrMacroInvocationExpression;
+import io.pebbletemplates.pebble.node.expression.GetAttributeExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBigDecimalExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralBooleanExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralDoubleExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralIntegerExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralNullExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralStringExpression;
+import io.pebbletemplates.pebble.node.expression.MapExpression;
+import io.pebbletemplates.pebble.node.expression.ParentFunctionExpression;
+import io.pebbletemplates.pebble.node.expression.RenderableNodeExpression;
+import io.pebbletemplates.pebble.node.expression.TernaryExpression;
+import io.pebbletemplates.pebble.node.expression.UnaryExpression;
+import io.pebbletemplates.pebble.operator.BinaryOperator;
+import io.pebbletemplates.pebble.operator.UnaryOperator;
+import io.pebbletemplates.pebble.utils.Pair;
+
+import java.io.ByteArrayOutputStream;
+import java.io.NotSerializableException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Encodes the trees produced by the parser into the compact binary form stored in a {@link
+ * TemplateArchive}, and decodes them by calling the constructors of the nodes, as the parser does.
+ * <p>
+ * All the nodes of the core extension are supported, as well as the binary and unary expressions
+ * of the operators of the engine. A template using any other node can't be encoded and is parsed
+ * instead.
+ * <p>
+ * Each node starts with a tag, followed by its line number and its fields. Integers are encoded as
+ * variable-length zigzag integers, and strings are written once per tree and then referenced.
+ * <p>
+ * This class is thread-safe.
+ */
+public class NodeCodec {
+
+  private static final int NULL = 0;
+  private static final int ROOT = 1;
+  private static final int BODY = 2;
+  private static final int TEXT = 3;
+  private static final int PRINT = 4;
+  private static final int IF = 5;
+  private static final int FOR = 6;
+  private static final int SET = 7;
+  private static final int BLOCK = 8;
+  private static final int MACRO = 9;
+  private static final int EXTENDS = 10;
+  private static final int IMPORT = 11;
+  private static final int FROM = 12;
+  private static final int INCLUDE = 13;
+  private static final int EMBED = 14;
+  private static final int AUTO_ESCAPE = 15;
+  private static final int CACHE = 16;
+  private static final int FLUSH = 17;
+  private static final int PARALLEL = 18;
+  private static final int CONTEXT_VARIABLE = 19;
+  private static final int LITERAL_STRING = 20;
+  private static final int LITERAL_INTEGER = 21;
+  private static final int LITERAL_LONG = 22;
+  private static final int LITERAL_DOUBLE = 23;
+  private static final int LITERAL_BIG_DECIMAL = 24;
+  private static final int LITERAL_BOOLEAN = 25;
+  private static final int LITERAL_NULL = 26;
+  private static final int ARRAY = 27;
+  private static final int MAP = 28;
+  private static final int GET_ATTRIBUTE = 29;
+  private static final int FUNCTION_OR_MACRO = 30;
+  private static final int FUNCTION_OR_MACRO_NAME = 31;
+  private static final int FILTER_INVOCATION = 32;
+  private static final int TEST_INVOCATION = 33;
+  private static final int PARENT_FUNCTION = 34;
+  private static final int BLOCK_FUNCTION = 35;
+  private static final int TERNARY = 36;
+  private static final int RENDERABLE_NODE_EXPRESSION = 37;
+  private static final int BINARY = 38;
+  private static final int UNARY = 39;
+  private static final int ARGUMENTS = 40;
+
+  private static final Map<Class<?>, Integer> TAGS = new HashMap<>();
+
+  static {
+    TAGS.put(RootNode.class, ROOT);
+    TAGS.put(BodyNode.class, BODY);
+    TAGS.put(TextNode.class, TEXT);
+    TAGS.put(PrintNode.class, PRINT);
+    TAGS.put(IfNode.class, IF);
+    TAGS.put(ForNode.class, FOR);
+    TAGS.put(SetNode.class, SET);
+    TAGS.put(BlockNode.class, BLOCK);
+    TAGS.put(MacroNode.class, MACRO);
+    TAGS.put(ExtendsNode.class, EXTENDS);
+    TAGS.put(ImportNode.class, IMPORT);
+    TAGS.put(FromNode.class, FROM);
+    TAGS.put(IncludeNode.class, INCLUDE);
+    TAGS.put(EmbedNode.class, EMBED);
+    TAGS.put(AutoEscapeNode.class, AUTO_ESCAPE);
+    TAGS.put(CacheNode.class, CACHE);
+    TAGS.put(FlushNode.class, FLUSH);
+    TAGS.put(ParallelNode.class, PARALLEL);
+    TAGS.put(ContextVariableExpression.class, CONTEXT_VARIABLE);
+    TAGS.put(LiteralStringExpression.class, LITERAL_STRING);
+    TAGS.put(LiteralIntegerExpression.class, LITERAL_INTEGER);
+    TAGS.put(LiteralLongExpression.class, LITERAL_LONG);
+    TAGS.put(LiteralDoubleExpression.class, LITERAL_DOUBLE);
+    TAGS.put(LiteralBigDecimalExpression.class, LITERAL_BIG_DECIMAL);
+    TAGS.put(LiteralBooleanExpression.class, LITERAL_BOOLEAN);
+    TAGS.put(LiteralNullExpression.class, LITERAL_NULL);
+    TAGS.put(ArrayExpression.class, ARRAY);
+    TAGS.put(MapExpression.class, MAP);
+    TAGS.put(GetAttributeExpression.class, GET_ATTRIBUTE);
+    TAGS.put(FunctionOrMacroInvocationExpression.class, FUNCTION_OR_MACRO);
+    TAGS.put(FunctionOrMacroNameNode.class, FUNCTION_OR_MACRO_NAME);
+    TAGS.put(FilterInvocationExpression.class, FILTER_INVOCATION);
+    TAGS.put(TestInvocationExpression.class, TEST_INVOCATION);
+    TAGS.put(ParentFunctionExpression.class, PARENT_FUNCTION);
+    TAGS.put(BlockFunctionExpression.class, BLOCK_FUNCTION);
+    TAGS.put(TernaryExpression.class, TERNARY);
+    TAGS.put(RenderableNodeExpression.class, RENDERABLE_NODE_EXPRESSION);
+    TAGS.put(ArgumentsNode.class, ARGUMENTS);
+  }
+
+  /**
+   * Creates the expressions of the operators, by class name
+   */
+  private final Map<String, Supplier<? extends Expression<?>>> operators = new HashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param extensionRegistry The extensions of the engine, whose operators may be found in the
+   * trees
+   */
+  public NodeCodec(ExtensionRegistry extensionRegistry) {
+    for (BinaryOperator operator : extensionRegistry.getBinaryOperators().values()) {
+      this.operators.put(operator.createInstance().getClass().getName(), operator::createInstance);
+    }
+    this.operators.put(ConcatenateExpression.class.getName(), ConcatenateExpression::new);
+    for (UnaryOperator operator : extensionRegistry.getUnaryOperators().values()) {
+      Class<? extends UnaryExpression> nodeClass = operator.getNodeClass();
+      this.operators.put(nodeClass.getName(), () -> {
+        try {
+          return nodeClass.newInstance();
+        } catch (InstantiationException | IllegalAccessException e) {
+          throw new PebbleException(e, "Error instantiating class " + nodeClass.getName());
+        }
+      });
+    }
+  }
+
+  /**
+   * Encodes a tree, as it was produced by the parser.
+   *
+   * @param root The tree
+   * @return The encoded tree
+   * @throws NotSerializableException If the tree contains a node which isn't supported
+   */
+  public byte[] encode(RootNode root) throws NotSerializableException {
+    Encoder encoder = new Encoder();
+    encoder.writeNode(root);
+    return encoder.out.toByteArray();
+  }
+
+  /**
+   * Decodes a tree.
+   *
+   * @param buffer The encoded tree, from its position to its limit
+   * @return The tree
+   * @throws IllegalArgumentException If the buffer doesn't contain a valid tree
+   */
+  public RootNode decode(ByteBuffer buffer) {
+    try {
+      Node root = new Decoder(buffer).readNode();
+      if (!(root instanceof RootNode) || buffer.hasRemaining()) {
+        throw new IllegalArgumentException("Invalid encoded tree");
+      }
+      return (RootNode) root;
+    } catch (RuntimeException e) {
+      if (e instanceof IllegalArgumentException) {
+        throw e;
+      }
+      throw new IllegalArgumentException("Invalid encoded tree", e);
+    }
+  }
+
+  private class Encoder {
+
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream(1024);
+
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    private void writeNode(Node node) throws NotSerializableException {
+      if (node == null) {
+        this.writeInt(NULL);
+        return;
+      }
+      Integer tag = TAGS.get(node.getClass());
+      if (tag == null) {
+        this.writeOperator(node);
+        return;
+      }
+      this.writeInt(tag);
+      switch (tag) {
+        case ROOT:
+          this.writeNode(((RootNode) node).getBody());
+          break;
+        case BODY: {
+          BodyNode body = (BodyNode) node;
+          this.writeInt(body.getLineNumber());
+          this.writeBoolean(body.isOnlyRenderInheritanceSafeNodes());
+          this.writeNodes(body.getChildren());
+          break;
+        }
+        case TEXT:
+          this.writeInt(((TextNode) node).getLineNumber());
+          this.writeChars(((TextNode) node).getData());
+          break;
+        case PRINT:
+          this.writeInt(((PrintNode) node).getLineNumber());
+          this.writeNode(((PrintNode) node).getExpression());
+          break;
+        case IF: {
+          IfNode ifNode = (IfNode) node;
+          this.writeInt(ifNode.getLineNumber());
+          this.writeInt(ifNode.getConditionsWithBodies().size());
+          for (Pair<Expression<?>, BodyNode> condition : ifNode.getConditionsWithBodies()) {
+            this.writeNode(condition.getLeft());
+            this.writeNode(condition.getRight());
+          }
+          this.writeNode(ifNode.getElseBody());
+          break;
+        }
+        case FOR: {
+          ForNode forNode = (ForNode) node;
+          this.writeInt(forNode.getLineNumber());
+          this.writeString(forNode.getIterationVariable());
+          this.writeNode(forNode.getIterable());
+          this.writeNode(forNode.getBody());
+          this.writeNode(forNode.getElseBody());
+          break;
+        }
+        case SET:
+          this.writeInt(((SetNode) node).getLineNumber());
+          this.writeString(((SetNode) node).getName());
+          this.writeNode(((SetNode) node).getValue());
+          break;
+        case BLOCK:
+          this.writeInt(((BlockNode) node).getLineNumber());
+          this.writeString(((BlockNode) node).getName());
+          this.writeNode(((BlockNode) node).getBody());
+          break;
+        case MACRO:
+          this.writeInt(((MacroNode) node).getLineNumber());
+          this.writeString(((MacroNode) node).getName());
+          this.writeNode(((MacroNode) node).getArgs());
+          this.writeNode(((MacroNode) node).getBody());
+          this.writeBoolean(((MacroNode) node).isPure());
+          break;
+        case EXTENDS:
+          this.writeInt(((ExtendsNode) node).getLineNumber());
+          this.writeNode(((ExtendsNode) node).getParentExpression());
+          break;
+        case IMPORT:
+          this.writeInt(((ImportNode) node).getLineNumber());
+          this.writeNode(((ImportNode) node).getImportExpression());
+          this.writeString(((ImportNode) node).getAlias());
+          break;
+        case FROM: {
+          FromNode from = (FromNode) node;
+          this.writeInt(from.getLineNumber());
+          this.writeNode(from.getFromExpression());
+          this.writeInt(from.getNamedMacros().size());
+          for (Pair<String, String> namedMacro : from.getNamedMacros()) {
+            this.writeString(namedMacro.getLeft());
+            this.writeString(namedMacro.getRight());
+          }
+          break;
+        }
+        case INCLUDE:
+          this.writeInt(((IncludeNode) node).getLineNumber());
+          this.writeNode(((IncludeNode) node).getIncludeExpression());
+          this.writeNode(((IncludeNode) node).getMapExpression());
+          break;
+        case EMBED:
+          this.writeInt(((EmbedNode) node).getLineNumber());
+          this.writeNode(((EmbedNode) node).getIncludeExpression());
+          this.writeNode(((EmbedNode) node).getMapExpression());
+          this.writeNodes(((EmbedNode) node).getNodes());
+          break;
+        case AUTO_ESCAPE:
+          this.writeInt(((AutoEscapeNode) node).getLineNumber());
+          this.writeNode(((AutoEscapeNode) node).getBody());
+          this.writeBoolean(((AutoEscapeNode) node).isActive());
+          this.writeString(((AutoEscapeNode) node).getStrategy());
+          break;
+        case CACHE:
+          this.writeInt(((CacheNode) node).getLineNumber());
+          this.writeNode(((CacheNode) node).getName());
+          this.writeNode(((CacheNode) node).getBody());
+          break;
+        case FLUSH:
+          this.writeInt(((FlushNode) node).getLineNumber());
+          break;
+        case PARALLEL:
+          this.writeInt(((ParallelNode) node).getLineNumber());
+          this.writeNode(((ParallelNode) node).getBody());
+          break;
+        case CONTEXT_VARIABLE:
+          this.writeInt(((ContextVariableExpression) node).getLineNumber());
+          this.writeString(((ContextVariableExpression) node).getName());
+          break;
+        case LITERAL_STRING:
+          this.writeInt(((LiteralStringExpression) node).getLineNumber());
+          this.writeString(((LiteralStringExpression) node).getValue());
+          break;
+        case LITERAL_INTEGER:
+          this.writeInt(((LiteralIntegerExpression) node).getLineNumber());
+          this.writeInt(((LiteralIntegerExpression) node).getValue());
+          break;
+        case LITERAL_LONG:
+          this.writeInt(((LiteralLongExpression) node).getLineNumber());
+          this.writeLong(((LiteralLongExpression) node).getValue());
+          break;
+        case LITERAL_DOUBLE:
+          this.writeInt(((LiteralDoubleExpression) node).getLineNumber());
+          this.writeLong(Double.doubleToRawLongBits(((LiteralDoubleExpression) node).getValue()));
+          break;
+        case LITERAL_BIG_DECIMAL:
+          this.writeInt(((LiteralBigDecimalExpression) node).getLineNumber());
+          this.writeString(((LiteralBigDecimalExpression) node).getValue().toString());
+          break;
+        case LITERAL_BOOLEAN:
+          this.writeInt(((LiteralBooleanExpression) node).getLineNumber());
+          this.writeBoolean(((LiteralBooleanExpression) node).getValue());
+          break;
+        case LITERAL_NULL:
+          this.writeInt(((LiteralNullExpression) node).getLineNumber());
+          break;
+        case ARRAY:
+          this.writeInt(((ArrayExpression) node).getLineNumber());
+          this.writeNodes(((ArrayExpression) node).getValues());
+          break;
+        case MAP: {
+          MapExpression map = (MapExpression) node;
+          this.writeInt(map.getLineNumber());
+          this.writeInt(map.getEntries().size());
+          for (Map.Entry<Expression<?>, Expression<?>> entry : map.getEntries().entrySet()) {
+            this.writeNode(entry.getKey());
+            this.writeNode(entry.getValue());
+          }
+          break;
+        }
+        case GET_ATTRIBUTE: {
+          GetAttributeExpression attribute = (GetAttributeExpression) node;
+          this.writeInt(attribute.getLineNumber());
+          this.writeNode(attribute.getNode());
+          this.writeNode(attribute.getAttributeNameExpression());
+          this.writeNode(attribute.getArgumentsNode());
+          this.writeString(attribute.getFilename());
+          break;
+        }
+        case FUNCTION_OR_MACRO:
+          this.writeInt(((FunctionOrMacroInvocationExpression) node).getLineNumber());
+          this.writeString(((FunctionOrMacroInvocationExpression) node).getFunctionName());
+          this.writeNode(((FunctionOrMacroInvocationExpression) node).getArguments());
+          break;
+        case FUNCTION_OR_MACRO_NAME:
+          this.writeInt(((FunctionOrMacroNameNode) node).getLineNumber());
+          this.writeString(((FunctionOrMacroNameNode) node).getName());
+          break;
+        case FILTER_INVOCATION:
+          this.writeInt(((FilterInvocationExpression) node).getLineNumber());
+          this.writeString(((FilterInvocationExpression) node).getFilterName());
+          this.writeNode(((FilterInvocationExpression) node).getArgs());
+          break;
+        case TEST_INVOCATION:
+          this.writeInt(((TestInvocationExpression) node).getLineNumber());
+          this.writeString(((TestInvocationExpression) node).getTestName());
+          this.writeNode(((TestInvocationExpression) node).getArgs());
+          break;
+        case PARENT_FUNCTION:
+          this.writeInt(((ParentFunctionExpression) node).getLineNumber());
+          this.writeString(((ParentFunctionExpression) node).getBlockName());
+          break;
+        case BLOCK_FUNCTION:
+          this.writeInt(((BlockFunctionExpression) node).getLineNumber());
+          this.writeNode(((BlockFunctionExpression) node).getBlockNameExpression());
+          break;
+        case TERNARY: {
+          TernaryExpression ternary = (TernaryExpression) node;
+          this.writeInt(ternary.getLineNumber());
+          this.writeNode(ternary.getExpression1());
+          this.writeNode(ternary.getExpression2());
+          this.writeNode(ternary.getExpression3());
+          break;
+        }
+        case RENDERABLE_NODE_EXPRESSION:
+          this.writeInt(((RenderableNodeExpression) node).getLineNumber());
+          this.writeNode(((RenderableNodeExpression) node).getNode());
+          break;
+        case ARGUMENTS: {
+          ArgumentsNode arguments = (ArgumentsNode) node;
+          this.writeInt(arguments.getLineNumber());
+          List<PositionalArgumentNode> positionalArgs = arguments.getPositionalArgs();
+          this.writeInt(positionalArgs == null ? -1 : positionalArgs.size());
+          if (positionalArgs != null) {
+            for (PositionalArgumentNode positionalArg : positionalArgs) {
+              this.writeNode(positionalArg.getValueExpression());
+            }
+          }
+          List<NamedArgumentNode> namedArgs = arguments.getNamedArgs();
+          this.writeInt(namedArgs == null ? -1 : namedArgs.size());
+          if (namedArgs != null) {
+            for (NamedArgumentNode namedArg : namedArgs) {
+              this.writeString(namedArg.getName());
+              this.writeNode(namedArg.getValueExpression());
+            }
+          }
+          break;
+        }
+        default:
+          throw new IllegalStateException("Unknown tag " + tag);
+      }
+    }
+
+    private void writeOperator(Node node) throws NotSerializableException {
+      String className = node.getClass().getName();
+      if (!NodeCodec.this.operators.containsKey(className)) {
+        throw new NotSerializableException(className);
+      }
+      if (node instanceof BinaryExpression) {
+        BinaryExpression<?> binary = (BinaryExpression<?>) node;
+        this.writeInt(BINARY);
+        this.writeString(className);
+        this.writeInt(binary.getLineNumber());
+        this.writeNode(binary.getLeftExpression());
+        this.writeNode(binary.getRightExpression());
+      } else if (node instanceof UnaryExpression) {
+        UnaryExpression unary = (UnaryExpression) node;
+        this.writeInt(UNARY);
+        this.writeString(className);
+        this.writeInt(unary.getLineNumber());
+        this.writeNode(unary.getChildExpression());
+      } else {
+        throw new NotSerializableException(className);
+      }
+    }
+
+    private void writeNodes(List<? extends Node> nodes) throws NotSerializableException {
+      this.writeInt(nodes.size());
+      for (Node node : nodes) {
+        this.writeNode(node);
+      }
+    }
+
+    private void writeBoolean(boolean value) {
+      this.out.write(value ? 1 : 0);
+    }
+
+    private void writeInt(int value) {
+      this.writeLong(value);
+    }
+
+    private void writeLong(long value) {
+      long zigzag = (value << 1) ^ (value >> 63);
+      while ((zigzag & ~0x7FL) != 0) {
+        this.out.write((int) ((zigzag & 0x7F) | 0x80));
+        zigzag >>>= 7;
+      }
+      this.out.write((int) zigzag);
+    }
+
+    /**
+     * Writes a string, or a reference to it if it has already been written.
+     */
+    private void writeString(String value) {
+      if (value == null) {
+        this.writeInt(-1);
+        return;
+      }
+      Integer index = this.strings.get(value);
+      if (index != null) {
+        this.writeInt(index);
+        return;
+      }
+      this.strings.put(value, this.strings.size());
+      this.writeInt(this.strings.size() - 1);
+      this.writeChars(value.toCharArray());
+    }
+
+    /**
+     * Writes characters as modified UTF-8, which keeps unpaired surrogates.
+     */
+    private void writeChars(char[] chars) {
+      this.writeInt(chars.length);
+      for (char c : chars) {
+        if (c != 0 && c < 0x80) {
+          this.out.write(c);
+        } else if (c < 0x800) {
+          this.out.write(0xC0 | (c >> 6));
+          this.out.write(0x80 | (c & 0x3F));
+        } else {
+          this.out.write(0xE0 | (c >> 12));
+          this.out.write(0x80 | ((c >> 6) & 0x3F));
+          this.out.write(0x80 | (c & 0x3F));
+        }
+      }
+    }
+  }
+
+  private class Decoder {
+
+    private final ByteBuffer in;
+
+    private final List<String> strings = new ArrayList<>();
+
+    private Decoder(ByteBuffer in) {
+      this.in = in;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Node readNode() {
+      int tag = this.readInt();
+      if (tag == NULL) {
+        return null;
+      }
+      if (tag == ROOT) {
+        return new RootNode(this.readBody());
+      } else if (tag == BINARY || tag == UNARY) {
+        return this.readOperator(tag);
+      } else if (tag == ARGUMENTS) {
+        return this.readArguments();
+      }
+      int lineNumber = this.readInt();
+      switch (tag) {
+        case BODY: {
+          boolean onlyRenderInheritanceSafeNodes = this.readBoolean();
+          BodyNode body = new BodyNode(lineNumber, this.<RenderableNode>readNodes());
+          body.setOnlyRenderInheritanceSafeNodes(onlyRenderInheritanceSafeNodes);
+          return body;
+        }
+        case TEXT:
+          return new TextNode(this.readChars(), lineNumber);
+        case PRINT:
+          return new PrintNode(this.readExpression(), lineNumber);
+        case IF: {
+          int size = this.readSize();
+          List<Pair<Expression<?>, BodyNode>> conditionsWithBodies = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            conditionsWithBodies.add(new Pair<>(this.readExpression(), this.readBody()));
+          }
+          return new IfNode(lineNumber, conditionsWithBodies, this.readBody());
+        }
+        case FOR:
+          return new ForNode(lineNumber, this.readString(), this.readExpression(),
+              this.readBody(), this.readBody());
+        case SET:
+          return new SetNode(lineNumber, this.readString(), this.readExpression());
+        case BLOCK:
+          return new BlockNode(lineNumber, this.readString(), this.readBody());
+        case MACRO: {
+          MacroNode macro = new MacroNode(this.readString(), this.readArgumentsNode(),
+              this.readBody(), this.readBoolean());
+          macro.setLineNumber(lineNumber);
+          return macro;
+        }
+        case EXTENDS:
+          return new ExtendsNode(lineNumber, this.readExpression());
+        case IMPORT:
+          return new ImportNode(lineNumber, this.readExpression(), this.readString());
+        case FROM: {
+          Expression<?> fromExpression = this.readExpression();
+          int size = this.readSize();
+          List<Pair<String, String>> namedMacros = new ArrayList<>(size);
+          for (int i = 0; i < size; i++) {
+            namedMacros.add(new Pair<>(this.readString(), this.readString()));
+          }
+          return new FromNode(lineNumber, fromExpression, namedMacros);
+        }
+        case INCLUDE:
+          return new IncludeNode(lineNumber, this.readExpression(),
+              (MapExpression) this.readNode());
+        case EMBED:
+          return new EmbedNode(lineNumber, this.readExpression(), (MapExpression) this.readNode(),
+              this.<BlockNode>readNodes());
+        case AUTO_ESCAPE: {
+          BodyNode body = this.readBody();
+          return new AutoEscapeNode(lineNumber, body, this.readBoolean(), this.readString());
+        }
+        case CACHE:
+          return new CacheNode(lineNumber, this.readExpression(), this.readBody());
+        case FLUSH:
+          return new FlushNode(lineNumber);
+        case PARALLEL:
+          return new ParallelNode(lineNumber, this.readBody());
+        case CONTEXT_VARIABLE:
+          return new ContextVariableExpression(this.readString(), lineNumber);
+        case LITERAL_STRING:
+          return new LiteralStringExpression(this.readString(), lineNumber);
+        case LITERAL_INTEGER:
+          return new LiteralIntegerExpression(this.readInt(), lineNumber);
+        case LITERAL_LONG:
+          return new LiteralLongExpression(this.readLong(), lineNumber);
+        case LITERAL_DOUBLE:
+          return new LiteralDoubleExpression(Double.longBitsToDouble(this.readLong()),
+              lineNumber);
+        case LITERAL_BIG_DECIMAL:
+          return new LiteralBigDecimalExpression(new BigDecimal(this.readString()), lineNumber);
+        case LITERAL_BOOLEAN:
+          return new LiteralBooleanExpression(this.readBoolean(), lineNumber);
+        case LITERAL_NULL:
+          return new LiteralNullExpression(lineNumber);
+        case ARRAY: {
+          List<Expression<?>> values = this.readNodes();
+          return values.isEmpty() ? new ArrayExpression(lineNumber)
+              : new ArrayExpression(values, lineNumber);
+        }
+        case MAP: {
+          int size = this.readSize();
+          if (size == 0) {
+            return new MapExpression(lineNumber);
+          }
+          // keeps the encoded order, so that the tree is encoded again identically
+          Map<Expression<?>, Expression<?>> entries = new LinkedHashMap<>();
+          for (int i = 0; i < size; i++) {
+            entries.put(this.readExpression(), this.readExpression());
+          }
+          return new MapExpression(entries, lineNumber);
+        }
+        case GET_ATTRIBUTE:
+          return new GetAttributeExpression(this.readExpression(), this.readExpression(),
+              this.readArgumentsNode(), this.readString(), lineNumber);
+        case FUNCTION_OR_MACRO:
+          return new FunctionOrMacroInvocationExpression(this.readString(),
+              this.readArgumentsNode(), lineNumber);
+        case FUNCTION_OR_MACRO_NAME:
+          return new FunctionOrMacroNameNode(this.readString(), lineNumber);
+        case FILTER_INVOCATION:
+          return new FilterInvocationExpression(this.readString(), this.readArgumentsNode(),
+              lineNumber);
+        case TEST_INVOCATION: {
+          String testName = this.readString();
+          return new TestInvocationExpression(lineNumber, testName, this.readArgumentsNode());
+        }
+        case PARENT_FUNCTION:
+          return new ParentFunctionExpression(this.readString(), lineNumber);
+        case BLOCK_FUNCTION: {
+          PositionalArgumentNode blockName = new PositionalArgumentNode(this.readExpression());
+          return new BlockFunctionExpression(
+              new ArgumentsNode(Collections.singletonList(blockName), null, lineNumber),
+              lineNumber);
+        }
+        case TERNARY:
+          return new TernaryExpression((Expression<Boolean>) this.readExpression(),
+              this.readExpression(), this.readExpression(), lineNumber, null);
+        case RENDERABLE_NODE_EXPRESSION:
+          return new RenderableNodeExpression((RenderableNode) this.readNode(), lineNumber);
+        default:
+          throw new IllegalArgumentException("Unknown tag " + tag);
+      }
+    }
+
+    private Expression<?> readOperator(int tag) {
+      String className = this.readString();
+      Supplier<? extends Expression<?>> supplier = NodeCodec.this.operators.get(className);
+      if (supplier == null) {
+        throw new IllegalArgumentException("Unknown operator expression " + className);
+      }
+      Expression<?> expression = supplier.get();
+      int lineNumber = this.readInt();
+      if (tag == BINARY) {
+        BinaryExpression<?> binary = (BinaryExpression<?>) expression;
+        binary.setLineNumber(lineNumber);
+        binary.setLeft(this.readExpression());
+        binary.setRight(this.readExpression());
+      } else {
+        UnaryExpression unary = (UnaryExpression) expression;
+        unary.setLineNumber(lineNumber);
+        unary.setChildExpression(this.readExpression());
+      }
+      return expression;
+    }
+
+    private ArgumentsNode readArguments() {
+      int lineNumber = this.readInt();
+      List<PositionalArgumentNode> positionalArgs = null;
+      int size = this.readInt();
+      if (size >= 0) {
+        positionalArgs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          positionalArgs.add(new PositionalArgumentNode(this.readExpression()));
+        }
+      }
+      List<NamedArgumentNode> namedArgs = null;
+      size = this.readInt();
+      if (size >= 0) {
+        namedArgs = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          namedArgs.add(new NamedArgumentNode(this.readString(), this.readExpression()));
+        }
+      }
+      return new ArgumentsNode(positionalArgs, namedArgs, lineNumber);
+    }
+
+    private Expression<?> readExpression() {
+      return (Expression<?>) this.readNode();
+    }
+
+    private BodyNode readBody() {
+      return (BodyNode) this.readNode();
+    }
+
+    private ArgumentsNode readArgumentsNode() {
+      return (ArgumentsNode) this.readNode();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Node> List<T> readNodes() {
+      int size = this.readSize();
+      List<T> nodes = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        nodes.add((T) this.readNode());
+      }
+      return nodes;
+    }
+
+    private boolean readBoolean() {
+      return this.in.get() != 0;
+    }
+
+    private int readSize() {
+      int size = this.readInt();
+      if (size < 0 || size > this.in.remaining()) {
+        throw new IllegalArgumentException("Invalid size " + size);
+      }
+      return size;
+    }
+
+    private int readInt() {
+      long value = this.readLong();
+      if (value != (int) value) {
+        throw new IllegalArgumentException("Invalid integer " + value);
+      }
+      return (int) value;
+    }
+
+    private long readLong() {
+      long zigzag = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        byte b = this.in.get();
+        zigzag |= (long) (b & 0x7F) << shift;
+        if (b >= 0) {
+          return (zigzag >>> 1) ^ -(zigzag & 1);
+        }
+      }
+      throw new IllegalArgumentException("Invalid variable-length integer");
+    }
+
+    private String readString() {
+      int index = this.readInt();
+      if (index == -1) {
+        return null;
+      }
+      if (index < this.strings.size()) {
+        return this.strings.get(index);
+      }
+      if (index != this.strings.size()) {
+        throw new IllegalArgumentException("Invalid string reference " + index);
+      }
+      String value = this.readChars();
+      this.strings.add(value);
+      return value;
+    }
+
+    private String readChars() {
+      char[] chars = new char[this.readSize()];
+      ByteBuffer in = this.in;
+      for (int i = 0; i < chars.length; i++) {
+        int b = in.get() & 0xFF;
+        if (b < 0x80) {
+          chars[i] = (char) b;
+        } else if (b < 0xE0) {
+          chars[i] = (char) (((b & 0x1F) << 6) | (in.get() & 0x3F));
+        } else {
+          chars[i] = (char) (((b & 0x0F) << 12) | ((in.get() & 0x3F) << 6) | (in.get() & 0x3F));
+        }
+      }
+      return new String(chars);
+    }
+  }
+}
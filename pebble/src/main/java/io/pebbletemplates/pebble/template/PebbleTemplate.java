@@ -10,9 +10,12 @@ package io.pebbletemplates.pebble.template;
 
 import io.pebbletemplates.pebble.PebbleEngine;
 import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.utils.ByteWriter;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Writer;
+import java.nio.charset.Charset;
 import java.util.Locale;
 import java.util.Map;
 
@@ -61,6 +64,69 @@ public interface PebbleTemplate {
    */
   void evaluate(Writer writer, Map<String, Object> context, Locale locale) throws IOException;
 
+  /**
+   * Evaluate the template with a particular locale and a set of variables, stopping the evaluation
+   * once the given token is cancelled or reaches its deadline. The default implementation ignores
+   * the token and evaluates the template without cancellation.
+   *
+   * @param writer The results of the evaluation are written to this writer.
+   * @param context The variables used during the evaluation of the template.
+   * @param locale The locale used during the evaluation of the template, or null for the default
+   * locale.
+   * @param cancellationToken The token cancelling the evaluation.
+   * @throws IOException An IO exception during the evaluation
+   * @throws io.pebbletemplates.pebble.error.RenderCancelledException If the evaluation has been
+   * cancelled
+   */
+  default void evaluate(Writer writer, Map<String, Object> context, Locale locale,
+      CancellationToken cancellationToken) throws IOException {
+    this.evaluate(writer, context, locale);
+  }
+
+  /**
+   * Evaluate the template without any provided variables, encoding the results with the given
+   * charset. The static text of the template is only encoded once per charset.
+   *
+   * @param outputStream The encoded results of the evaluation are written to this stream, it is
+   * flushed but not closed.
+   * @param charset The charset used to encode the results.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream outputStream, Charset charset) throws IOException {
+    this.evaluate(new ByteWriter(outputStream, charset));
+  }
+
+  /**
+   * Evaluate the template with a set of variables and the default locale provided by the {@link
+   * PebbleEngine}, encoding the results with the given charset.
+   *
+   * @param outputStream The encoded results of the evaluation are written to this stream, it is
+   * flushed but not closed.
+   * @param charset The charset used to encode the results.
+   * @param context The variables used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream outputStream, Charset charset, Map<String, Object> context)
+      throws IOException {
+    this.evaluate(new ByteWriter(outputStream, charset), context);
+  }
+
+  /**
+   * Evaluate the template with a particular locale and a set of variables, encoding the results
+   * with the given charset.
+   *
+   * @param outputStream The encoded results of the evaluation are written to this stream, it is
+   * flushed but not closed.
+   * @param charset The charset used to encode the results.
+   * @param context The variables used during the evaluation of the template.
+   * @param locale The locale used during the evaluation of the template.
+   * @throws IOException An IO exception during the evaluation
+   */
+  default void evaluate(OutputStream outputStream, Charset charset, Map<String, Object> context,
+      Locale locale) throws IOException {
+    this.evaluate(new ByteWriter(outputStream, charset), context, locale);
+  }
+
   /**
    * Evaluate the template but only render the contents of a specific block.
    *
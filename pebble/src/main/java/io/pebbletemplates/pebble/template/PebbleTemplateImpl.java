@@ -9,18 +9,25 @@
 package io.pebbletemplates.pebble.template;
 
 import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
+import io.pebbletemplates.pebble.cache.PebbleCache;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.extension.escaper.SafeString;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
 import io.pebbletemplates.pebble.node.ArgumentsNode;
 import io.pebbletemplates.pebble.node.BlockNode;
 import io.pebbletemplates.pebble.node.BodyNode;
 import io.pebbletemplates.pebble.node.RenderableNode;
 import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.utils.ByteWriter;
+import io.pebbletemplates.pebble.utils.CountingWriter;
 import io.pebbletemplates.pebble.utils.FutureWriter;
 import io.pebbletemplates.pebble.utils.LimitedSizeWriter;
 import io.pebbletemplates.pebble.utils.Pair;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -64,6 +71,11 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   private final String name;
 
+  /**
+   * The key of this template in the template cache, null if it isn't cached.
+   */
+  private final Object cacheKey;
+
   /**
    * Constructor
    *
@@ -72,37 +84,61 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    * @param name The name of the template
    */
   public PebbleTemplateImpl(PebbleEngine engine, RenderableNode root, String name) {
+    this(engine, root, name, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param engine The pebble engine used to construct this template
+   * @param root The root not to evaluate
+   * @param name The name of the template
+   * @param cacheKey The key of the template in the template cache of the engine
+   */
+  public PebbleTemplateImpl(PebbleEngine engine, RenderableNode root, String name,
+      Object cacheKey) {
     this.engine = engine;
     this.rootNode = root;
     this.name = name;
+    this.cacheKey = cacheKey;
   }
 
   public void evaluate(Writer writer) throws IOException {
     EvaluationContextImpl context = this.initContext(null);
-    this.evaluate(writer, context);
+    this.evaluateInstrumented(writer, context);
+    this.releaseContext(context);
   }
 
   public void evaluate(Writer writer, Locale locale) throws IOException {
     EvaluationContextImpl context = this.initContext(locale);
-    this.evaluate(writer, context);
+    this.evaluateInstrumented(writer, context);
+    this.releaseContext(context);
   }
 
   public void evaluate(Writer writer, Map<String, Object> map) throws IOException {
     EvaluationContextImpl context = this.initContext(null);
-    context.getScopeChain().pushScope(map);
+    pushScope(context, map);
 
     // Issue #449: if the provided map is immutable, this allows us to still set variables in the template context
-    context.getScopeChain().pushScope(new HashMap<>());
-    this.evaluate(writer, context);
+    pushScope(context, templateVariables(context));
+    this.evaluateInstrumented(writer, context);
+    this.releaseContext(context);
   }
 
   public void evaluate(Writer writer, Map<String, Object> map, Locale locale) throws IOException {
+    this.evaluate(writer, map, locale, null);
+  }
+
+  public void evaluate(Writer writer, Map<String, Object> map, Locale locale,
+      CancellationToken cancellationToken) throws IOException {
     EvaluationContextImpl context = this.initContext(locale);
-    context.getScopeChain().pushScope(map);
+    context.setCancellationToken(cancellationToken);
+    pushScope(context, map);
 
     // Issue #449: if the provided map is immutable, this allows us to still set variables in the template context
-    context.getScopeChain().pushScope(new HashMap<>());
-    this.evaluate(writer, context);
+    pushScope(context, templateVariables(context));
+    this.evaluateInstrumented(writer, context);
+    this.releaseContext(context);
   }
 
   public void evaluateBlock(String blockName, Writer writer) throws IOException {
@@ -111,6 +147,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
 
     this.block(writer, context, blockName, false);
     writer.flush();
+    this.releaseContext(context);
   }
 
   public void evaluateBlock(String blockName, Writer writer, Locale locale) throws IOException {
@@ -119,26 +156,73 @@ public class PebbleTemplateImpl implements PebbleTemplate {
 
     this.block(writer, context, blockName, false);
     writer.flush();
+    this.releaseContext(context);
   }
 
   public void evaluateBlock(String blockName, Writer writer, Map<String, Object> map)
       throws IOException {
     EvaluationContextImpl context = this.initContext(null);
-    context.getScopeChain().pushScope(map);
+    pushScope(context, map);
     this.evaluate(new NoopWriter(), context);
 
     this.block(writer, context, blockName, false);
     writer.flush();
+    this.releaseContext(context);
   }
 
   public void evaluateBlock(String blockName, Writer writer, Map<String, Object> map, Locale locale)
       throws IOException {
     EvaluationContextImpl context = this.initContext(locale);
-    context.getScopeChain().pushScope(map);
+    pushScope(context, map);
     this.evaluate(new NoopWriter(), context);
 
     this.block(writer, context, blockName, false);
     writer.flush();
+    this.releaseContext(context);
+  }
+
+  /**
+   * Evaluates the template for one of the public evaluate methods, reporting the evaluation to the
+   * instrumentation of the engine, if any.
+   *
+   * @param writer The writer used to write the final output of the template
+   * @param context The evaluation context
+   * @throws IOException Thrown from the writer object
+   */
+  private void evaluateInstrumented(Writer writer, EvaluationContextImpl context)
+      throws IOException {
+    Instrumentation instrumentation = this.engine.getInstrumentation();
+    if (instrumentation == null) {
+      this.evaluate(writer, context);
+      return;
+    }
+
+    // string and byte writers are measured rather than wrapped, not to lose the specialized
+    // printing and the encoded texts
+    StringBuffer buffer = null;
+    ByteWriter byteWriter = null;
+    CountingWriter countingWriter = null;
+    if (writer instanceof StringWriter) {
+      buffer = ((StringWriter) writer).getBuffer();
+    } else if (writer instanceof ByteWriter) {
+      byteWriter = (ByteWriter) writer;
+    } else {
+      writer = countingWriter = new CountingWriter(writer);
+    }
+    long initialLength = buffer != null ? buffer.length()
+        : byteWriter != null ? byteWriter.getCharCount() : 0;
+    long start = System.nanoTime();
+    Throwable error = null;
+    try {
+      this.evaluate(writer, context);
+    } catch (IOException | RuntimeException | Error e) {
+      error = e;
+      throw e;
+    } finally {
+      long outputSize = countingWriter != null ? countingWriter.getCount()
+          : (buffer != null ? buffer.length() : byteWriter.getCharCount()) - initialLength;
+      instrumentation.templateEvaluated(this.name, System.nanoTime() - start, outputSize, error);
+    }
   }
 
   /**
@@ -150,24 +234,37 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    * @throws IOException Thrown from the writer object
    */
   private void evaluate(Writer writer, EvaluationContextImpl context) throws IOException {
+    context.checkCancelled();
+    // the writes of included and parent templates are only charged once to the render budget
+    writer = LimitedSizeWriter.unwrap(writer, context);
+    FutureWriter futureWriter = null;
     if (context.getExecutorService() != null) {
-      writer = new FutureWriter(writer);
+      writer = futureWriter = new FutureWriter(writer, context.getRenderBudget(),
+          context.getCancellationToken());
     }
     writer = LimitedSizeWriter.from(writer, context);
-    this.rootNode.render(this, writer, context);
-
-    /*
-     * If the current template has a parent then we know the current template
-     * was only used to evaluate a very small subset of tags such as "set" and "import".
-     * We now evaluate the parent template as to evaluate all of the actual content.
-     * When evaluating the parent template, it will check the child template for overridden blocks.
-     */
-    if (context.getHierarchy().getParent() != null) {
-      PebbleTemplateImpl parent = context.getHierarchy().getParent();
-      context.getHierarchy().ascend();
-      parent.evaluate(writer, context);
+    try {
+      this.rootNode.render(this, writer, context);
+
+      /*
+       * If the current template has a parent then we know the current template
+       * was only used to evaluate a very small subset of tags such as "set" and "import".
+       * We now evaluate the parent template as to evaluate all of the actual content.
+       * When evaluating the parent template, it will check the child template for overridden blocks.
+       */
+      if (context.getHierarchy().getParent() != null) {
+        PebbleTemplateImpl parent = context.getHierarchy().getParent();
+        context.getHierarchy().ascend();
+        parent.evaluate(writer, context);
+      }
+      writer.flush();
+    } catch (Throwable e) {
+      // the parallel tags which are still running are not needed anymore
+      if (futureWriter != null) {
+        futureWriter.cancel();
+      }
+      throw e;
     }
-    writer.flush();
   }
 
   /**
@@ -179,6 +276,11 @@ public class PebbleTemplateImpl implements PebbleTemplate {
   private EvaluationContextImpl initContext(Locale locale) {
     locale = locale == null ? this.engine.getDefaultLocale() : locale;
 
+    EvaluationContextPool pool = this.engine.getEvaluationContextPool();
+    if (pool != null) {
+      return pool.acquire(this, locale);
+    }
+
     // globals
     ScopeChain scopeChain = new ScopeChain();
     Map<String, Object> globals = new HashMap<>();
@@ -191,25 +293,69 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     // global vars provided from extensions
     scopeChain.pushScope(this.engine.getExtensionRegistry().getGlobalVariables());
 
-    return new EvaluationContextImpl(this, this.engine.isStrictVariables(), locale, this.engine.getMaxRenderedSize(),
+    RenderBudget renderBudget = new RenderBudget(this.engine.getMaxRenderedSize(),
+        this.engine.getMaxRenderedBytes());
+    return new EvaluationContextImpl(this, this.engine.isStrictVariables(), locale, renderBudget,
         this.engine.getExtensionRegistry(), this.engine.getTagCache(),
         this.engine.getExecutorService(),
         new ArrayList<>(), new HashMap<>(), scopeChain, null, this.engine.getEvaluationOptions());
   }
 
+  /**
+   * Gives a context back to the pool of the engine once an evaluation completed normally.
+   *
+   * @param context The evaluation context
+   */
+  private void releaseContext(EvaluationContextImpl context) {
+    if (context.getPooledContext() != null) {
+      this.engine.getEvaluationContextPool().release(context);
+    }
+  }
+
+  /**
+   * Adds the scope of the variables given to an evaluation.
+   */
+  private static void pushScope(EvaluationContextImpl context, Map<String, Object> map) {
+    EvaluationContextPool.PooledContext pooledContext = context.getPooledContext();
+    if (pooledContext != null) {
+      pooledContext.pushScope(map);
+    } else {
+      context.getScopeChain().pushScope(map);
+    }
+  }
+
+  /**
+   * Returns the empty map holding the variables set by the template.
+   */
+  private static Map<String, Object> templateVariables(EvaluationContextImpl context) {
+    EvaluationContextPool.PooledContext pooledContext = context.getPooledContext();
+    return pooledContext != null ? pooledContext.getVariables() : new HashMap<>();
+  }
+
   /**
    * Return a shallow copy of this template.
    *
    * @return A new template instance with the same data
    */
   private PebbleTemplateImpl shallowCopy() {
-    PebbleTemplateImpl copy = new PebbleTemplateImpl(engine, rootNode, name);
+    PebbleTemplateImpl copy = new PebbleTemplateImpl(engine, rootNode, name, cacheKey);
     copy.blocks.putAll(this.blocks);
     copy.macros.putAll(this.macros);
 
     return copy;
   }
 
+  /**
+   * Returns a template used by this template, recording the dependency so that this template is
+   * evicted from the template cache along with the used one.
+   *
+   * @param templateName The resolved name of the template
+   * @return The template
+   */
+  private PebbleTemplateImpl getTemplate(String templateName) {
+    return (PebbleTemplateImpl) this.engine.getTemplate(templateName, this);
+  }
+
   /**
    * Imports a template.
    *
@@ -218,7 +364,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   public void importTemplate(EvaluationContextImpl context, String name) {
     context.getImportedTemplates()
-        .add((PebbleTemplateImpl) this.engine.getTemplate(this.resolveRelativePath(name)));
+        .add(this.getTemplate(this.resolveRelativePath(name)));
   }
 
   /**
@@ -230,7 +376,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   public void importNamedTemplate(EvaluationContextImpl context, String name, String alias) {
     context.addNamedImportedTemplates(alias,
-        (PebbleTemplateImpl) this.engine.getTemplate(this.resolveRelativePath(name)));
+        this.getTemplate(this.resolveRelativePath(name)));
   }
 
   /**
@@ -240,8 +386,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    * @param namedMacros named macros
    */
   public void importNamedMacrosFromTemplate(String name, List<Pair<String, String>> namedMacros) {
-    PebbleTemplateImpl templateImpl = (PebbleTemplateImpl) this.engine
-        .getTemplate(this.resolveRelativePath(name));
+    PebbleTemplateImpl templateImpl = this.getTemplate(this.resolveRelativePath(name));
     for (Pair<String, String> pair : namedMacros) {
       Macro m = templateImpl.macros.get(pair.getRight());
 
@@ -276,15 +421,29 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   public void includeTemplate(Writer writer, EvaluationContextImpl context, String name,
       Map<?, ?> additionalVariables) throws IOException {
-    PebbleTemplateImpl template = (PebbleTemplateImpl) this.engine
-        .getTemplate(this.resolveRelativePath(name));
+    PebbleTemplateImpl template = this.getTemplate(this.resolveRelativePath(name));
     EvaluationContextImpl newContext = context.shallowCopyWithoutInheritanceChain(template);
     ScopeChain scopeChain = newContext.getScopeChain();
     scopeChain.pushScope();
     for (Entry<?, ?> entry : additionalVariables.entrySet()) {
       scopeChain.put((String) entry.getKey(), entry.getValue());
     }
-    template.evaluate(writer, newContext);
+    Instrumentation instrumentation = this.engine.getInstrumentation();
+    if (instrumentation == null) {
+      template.evaluate(writer, newContext);
+    } else {
+      long start = System.nanoTime();
+      Throwable error = null;
+      try {
+        template.evaluate(writer, newContext);
+      } catch (IOException | RuntimeException | Error e) {
+        error = e;
+        throw e;
+      } finally {
+        instrumentation.templateIncluded(this.name, template.getName(), System.nanoTime() - start,
+            error);
+      }
+    }
     scopeChain.popScope();
   }
 
@@ -317,7 +476,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     // template cache. Include and extend will use the same object from the cache, so we need to make sure embeds do not
     // impact those other tags or change anything in the cache.
     final PebbleTemplateImpl embeddedTemplate =
-            ((PebbleTemplateImpl) this.engine.getTemplate(embeddedTemplateName)).shallowCopy();
+            this.getTemplate(embeddedTemplateName).shallowCopy();
 
     // push a child scope based on the current scope
     context.scopedShallowWithoutInheritanceChain(embeddedTemplate, additionalVariables, (newContext) -> {
@@ -327,7 +486,8 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       // into that hierarchy
       BodyNode embeddedTemplateBody = ((RootNode) embeddedTemplate.rootNode).getBody();
       BodyNode bodyNode = new BodyNode(lineNo, Collections.singletonList(embeddedTemplateBody));
-      PebbleTemplateImpl fakeRootTemplate = new PebbleTemplateImpl(engine, bodyNode, embeddedTemplateName);
+      PebbleTemplateImpl fakeRootTemplate = new PebbleTemplateImpl(engine, bodyNode, embeddedTemplateName,
+          cacheKey);
 
       // push the blocks from the embedded template into the fake root, to make sure they are able to rendered if they
       // are not overridden
@@ -470,6 +630,35 @@ public class PebbleTemplateImpl implements PebbleTemplate {
    */
   public SafeString macro(EvaluationContextImpl context, String macroName, ArgumentsNode args,
       boolean ignoreOverriden, int lineNumber) {
+    try {
+      return this.macro(context, macroName, args, ignoreOverriden, lineNumber, null);
+    } catch (IOException e) {
+      // not thrown without a writer
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Invokes a macro, writing its output to a writer rather than returning it.
+   *
+   * @param context The evaluation context
+   * @param macroName The name of the macro
+   * @param args The arguments
+   * @param lineNumber The line of the invocation
+   * @param writer The writer
+   * @throws IOException Thrown by the writer
+   */
+  public void macro(EvaluationContextImpl context, String macroName, ArgumentsNode args,
+      int lineNumber, Writer writer) throws IOException {
+    this.macro(context, macroName, args, false, lineNumber, writer);
+  }
+
+  /**
+   * Invokes a macro, returning its output if there is no writer.
+   */
+  private SafeString macro(EvaluationContextImpl context, String macroName, ArgumentsNode args,
+      boolean ignoreOverriden, int lineNumber, Writer writer) throws IOException {
+    context.checkCancelled();
     SafeString result = null;
     boolean found = false;
 
@@ -479,7 +668,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     if (!ignoreOverriden && childTemplate != null) {
       found = true;
       context.getHierarchy().descend();
-      result = childTemplate.macro(context, macroName, args, false, lineNumber);
+      result = childTemplate.macro(context, macroName, args, false, lineNumber, writer);
       context.getHierarchy().ascend();
 
       // check current template
@@ -488,7 +677,11 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       Macro macro = this.macros.get(macroName);
 
       Map<String, Object> namedArguments = args.getArgumentMap(this, context, macro);
-      result = new SafeString(macro.call(this, context, namedArguments));
+      if (writer == null) {
+        result = new SafeString(macro.call(this, context, namedArguments));
+      } else {
+        macro.call(this, context, namedArguments, writer);
+      }
     }
 
     // check imported templates
@@ -496,7 +689,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       for (PebbleTemplateImpl template : context.getImportedTemplates()) {
         if (template.hasMacro(macroName)) {
           found = true;
-          result = template.macro(context, macroName, args, false, lineNumber);
+          result = template.macro(context, macroName, args, false, lineNumber, writer);
           // If a macro was found and executed, dont search for more
           break;
         }
@@ -508,7 +701,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
       if (context.getHierarchy().getParent() != null) {
         PebbleTemplateImpl parent = context.getHierarchy().getParent();
         context.getHierarchy().ascend();
-        result = parent.macro(context, macroName, args, true, lineNumber);
+        result = parent.macro(context, macroName, args, true, lineNumber, writer);
         context.getHierarchy().descend();
       } else {
         throw new PebbleException(null,
@@ -523,7 +716,7 @@ public class PebbleTemplateImpl implements PebbleTemplate {
   public void setParent(EvaluationContextImpl context, String parentName) {
     context.getHierarchy()
         .pushAncestor(
-            (PebbleTemplateImpl) this.engine.getTemplate(this.resolveRelativePath(parentName)));
+            this.getTemplate(this.resolveRelativePath(parentName)));
   }
 
   /**
@@ -535,6 +728,34 @@ public class PebbleTemplateImpl implements PebbleTemplate {
     return this.name;
   }
 
+  /**
+   * Returns the key of this template in the template cache
+   *
+   * @return The cache key, null if the template isn't cached
+   */
+  public Object getCacheKey() {
+    return this.cacheKey;
+  }
+
+  /**
+   * Returns the instrumentation of the engine which constructed this template
+   *
+   * @return The instrumentation, null if none
+   */
+  public Instrumentation getInstrumentation() {
+    return this.engine.getInstrumentation();
+  }
+
+  /**
+   * Returns the cache of the output of the pure macros of the engine which constructed this
+   * template
+   *
+   * @return The macro cache
+   */
+  public PebbleCache<MacroCacheKey, String> getMacroCache() {
+    return this.engine.getMacroCache();
+  }
+
   /**
    * Returns the root node of the template AST
    *
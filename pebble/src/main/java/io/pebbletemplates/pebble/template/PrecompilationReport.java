@@ -0,0 +1,123 @@
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of {@link PebbleEngine#precompile()}: how long each template took to load and parse,
+ * and why the templates which couldn't be compiled failed.
+ */
+public class PrecompilationReport {
+
+  private final List<Result> results;
+
+  private final Duration duration;
+
+  public PrecompilationReport(List<Result> results, Duration duration) {
+    this.results = Collections.unmodifiableList(new ArrayList<>(results));
+    this.duration = duration;
+  }
+
+  /**
+   * Returns the result of each template, in the order in which they were given.
+   *
+   * @return The results
+   */
+  public List<Result> getResults() {
+    return this.results;
+  }
+
+  /**
+   * Returns the results of the templates which couldn't be compiled.
+   *
+   * @return The failed results
+   */
+  public List<Result> getFailures() {
+    List<Result> failures = new ArrayList<>();
+    for (Result result : this.results) {
+      if (!result.isSuccessful()) {
+        failures.add(result);
+      }
+    }
+    return failures;
+  }
+
+  /**
+   * Returns whether all the templates have been compiled.
+   *
+   * @return true if no template failed
+   */
+  public boolean isSuccessful() {
+    return this.getFailures().isEmpty();
+  }
+
+  /**
+   * Returns the time elapsed until all the templates were compiled.
+   *
+   * @return The elapsed time
+   */
+  public Duration getDuration() {
+    return this.duration;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Precompiled %d templates in %d ms, %d failed", this.results.size(),
+        this.duration.toMillis(), this.getFailures().size());
+  }
+
+  /**
+   * The result of the compilation of a single template.
+   */
+  public static class Result {
+
+    private final String templateName;
+
+    private final Duration duration;
+
+    private final RuntimeException error;
+
+    public Result(String templateName, Duration duration, RuntimeException error) {
+      this.templateName = templateName;
+      this.duration = duration;
+      this.error = error;
+    }
+
+    public String getTemplateName() {
+      return this.templateName;
+    }
+
+    /**
+     * Returns how long the template took to load and parse, including the time it waited for a
+     * concurrent compilation of the same template.
+     *
+     * @return The compilation time
+     */
+    public Duration getDuration() {
+      return this.duration;
+    }
+
+    /**
+     * Returns why the template couldn't be compiled.
+     *
+     * @return The error, or null if the template has been compiled
+     */
+    public RuntimeException getError() {
+      return this.error;
+    }
+
+    public boolean isSuccessful() {
+      return this.error == null;
+    }
+
+    @Override
+    public String toString() {
+      return this.templateName + " (" + this.duration.toMillis() + " ms)"
+          + (this.error == null ? "" : ": " + this.error.getMessage());
+    }
+  }
+}
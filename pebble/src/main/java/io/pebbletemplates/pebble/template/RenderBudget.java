@@ -0,0 +1,163 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+
+/**
+ * Counts the chars, and the bytes once encoded in UTF-8, written by an evaluation and throws a
+ * PebbleException once one of the limits is exceeded. A negative limit means unlimited, and the
+ * bytes are only counted if they are limited.
+ * <p>
+ * A budget isn't thread-safe: it is charged by the thread rendering the template without any
+ * synchronization. The "parallel" tag renders its content with a {@link #fork() fork} of the
+ * budget, which starts from the chars written so far, and the output of the tag is charged to the
+ * original budget when it is merged into the output of the template.
+ */
+public class RenderBudget {
+
+  private final int maxChars;
+
+  private final int maxBytes;
+
+  private long chars;
+
+  private long bytes;
+
+  /**
+   * Constructor
+   *
+   * @param maxChars The maximum number of chars, or -1
+   * @param maxBytes The maximum number of bytes, or -1
+   */
+  public RenderBudget(int maxChars, int maxBytes) {
+    this.maxChars = maxChars;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns a budget charging the number of chars of the given context.
+   *
+   * @param context The context counting the chars written by its writers
+   * @return The budget
+   */
+  static RenderBudget of(RenderedSizeContext context) {
+    return new RenderBudget(context.getMaxRenderedSize(), -1) {
+      @Override
+      protected void chargeChars(int len) {
+        if (context.addAndGet(len) > context.getMaxRenderedSize()) {
+          throw this.exceeded(context.getMaxRenderedSize(), "chars");
+        }
+      }
+    };
+  }
+
+  public boolean isLimited() {
+    return this.maxChars >= 0 || this.maxBytes >= 0;
+  }
+
+  public int getMaxChars() {
+    return this.maxChars;
+  }
+
+  public int getMaxBytes() {
+    return this.maxBytes;
+  }
+
+  public long getChars() {
+    return this.chars;
+  }
+
+  /**
+   * Returns the number of bytes written so far, which are only counted if they are limited.
+   *
+   * @return The number of bytes
+   */
+  public long getBytes() {
+    return this.bytes;
+  }
+
+  /**
+   * Returns a budget for another thread, starting from the chars and bytes written so far.
+   *
+   * @return The new budget
+   */
+  public RenderBudget fork() {
+    RenderBudget fork = new RenderBudget(this.maxChars, this.maxBytes);
+    fork.chars = this.chars;
+    fork.bytes = this.bytes;
+    return fork;
+  }
+
+  /**
+   * Forgets the chars and bytes written so far.
+   */
+  public void reset() {
+    this.chars = 0;
+    this.bytes = 0;
+  }
+
+  public void charge(int c) {
+    this.chargeChars(1);
+    if (this.maxBytes >= 0) {
+      this.chargeBytes(c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate((char) c) ? 2 : 3);
+    }
+  }
+
+  public void charge(char[] cbuf, int off, int len) {
+    this.chargeChars(len);
+    if (this.maxBytes >= 0) {
+      long bytes = len;
+      for (int i = off; i < off + len; i++) {
+        bytes += extraBytes(cbuf[i]);
+      }
+      this.chargeBytes(bytes);
+    }
+  }
+
+  public void charge(String str, int off, int len) {
+    this.chargeChars(len);
+    if (this.maxBytes >= 0) {
+      long bytes = len;
+      for (int i = off; i < off + len; i++) {
+        bytes += extraBytes(str.charAt(i));
+      }
+      this.chargeBytes(bytes);
+    }
+  }
+
+  protected void chargeChars(int len) {
+    this.chars += len;
+    if (this.maxChars >= 0 && this.chars > this.maxChars) {
+      throw this.exceeded(this.maxChars, "chars");
+    }
+  }
+
+  private void chargeBytes(long len) {
+    this.bytes += len;
+    if (this.bytes > this.maxBytes) {
+      throw this.exceeded(this.maxBytes, "bytes");
+    }
+  }
+
+  protected PebbleException exceeded(int max, String unit) {
+    return new PebbleException(null, String.format("Tried to write more than %d %s.", max, unit));
+  }
+
+  /**
+   * Returns the number of bytes a char takes in UTF-8 beyond the first one, a surrogate pair
+   * taking 4 bytes.
+   */
+  private static int extraBytes(char c) {
+    if (c < 0x80) {
+      return 0;
+    }
+    return c < 0x800 || Character.isSurrogate(c) ? 1 : 2;
+  }
+}
@@ -4,4 +4,14 @@ public interface RenderedSizeContext {
     int getMaxRenderedSize();
 
     int addAndGet(int delta);
+
+    /**
+     * Returns the budget charged by the writers limiting the size of the output in the current
+     * thread. The default budget adds the chars written to {@link #addAndGet}.
+     *
+     * @return The render budget
+     */
+    default RenderBudget getRenderBudget() {
+        return RenderBudget.of(this);
+    }
 }
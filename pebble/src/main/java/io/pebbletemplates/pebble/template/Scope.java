@@ -29,7 +29,13 @@ public class Scope {
   /**
    * The map of variables known at this scope
    */
-  private final Map<String, Object> backingMap;
+  private Map<String, Object> backingMap;
+
+  /**
+   * Whether the backing map is shared with a snapshot, in which case it is copied before being
+   * modified
+   */
+  private boolean shared;
 
   /**
    * Constructor
@@ -59,6 +65,31 @@ public class Scope {
     return new Scope(backingMapCopy, this.local);
   }
 
+  /**
+   * Creates a copy-on-write snapshot of the Scope.
+   * <p>
+   * This is used for the parallel tag, like {@link #shallowCopy()}, but the variables aren't copied
+   * until either this scope or the snapshot is modified, which a parallel tag seldom does.
+   *
+   * @return A snapshot of the scope
+   */
+  public Scope snapshot() {
+    this.shared = true;
+    Scope snapshot = new Scope(this.backingMap, this.local);
+    snapshot.shared = true;
+    return snapshot;
+  }
+
+  /**
+   * Replaces the variables of this scope, for a scope reused by another evaluation.
+   *
+   * @param backingMap The backing map of variables
+   */
+  void reset(Map<String, Object> backingMap) {
+    this.backingMap = backingMap;
+    this.shared = false;
+  }
+
   /**
    * Adds a variable to this scope
    *
@@ -66,6 +97,10 @@ public class Scope {
    * @param value The value of the variable
    */
   public void put(String key, Object value) {
+    if (this.shared) {
+      this.backingMap = new HashMap<>(this.backingMap);
+      this.shared = false;
+    }
     this.backingMap.put(key, value);
   }
 
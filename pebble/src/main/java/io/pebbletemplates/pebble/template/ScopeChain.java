@@ -9,11 +9,11 @@
 package io.pebbletemplates.pebble.template;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 /**
  * A stack data structure used to represent the scope of variables that are currently accessible.
@@ -23,15 +23,20 @@ import java.util.Map;
  */
 public class ScopeChain {
 
+  private static final int INITIAL_CAPACITY = 8;
+
   /**
-   * The stack of scopes
+   * The stack of scopes, the current scope is at index size - 1
    */
-  private LinkedList<Scope> stack = new LinkedList<>();
+  private Scope[] stack = new Scope[INITIAL_CAPACITY];
+
+  private int size = 0;
 
   /**
    * Constructs an empty scope chain without any known scopes.
    */
   public ScopeChain() {
+
   }
 
   /**
@@ -47,13 +52,31 @@ public class ScopeChain {
    */
   public ScopeChain deepCopy() {
     ScopeChain copy = new ScopeChain();
-
-    for (Scope originalScope : this.stack) {
-      copy.stack.add(originalScope.shallowCopy());
+    copy.stack = new Scope[Math.max(this.stack.length, INITIAL_CAPACITY)];
+    for (int i = 0; i < this.size; i++) {
+      copy.stack[i] = this.stack[i].shallowCopy();
     }
+    copy.size = this.size;
     return copy;
   }
 
+  /**
+   * Creates a copy-on-write snapshot of the ScopeChain. This is used for the parallel tag instead of
+   * {@link #deepCopy()}: the scopes of the snapshot share their variables with the original scopes
+   * until one of them is modified, see {@link Scope#snapshot()}.
+   *
+   * @return A snapshot of the scope chain
+   */
+  public ScopeChain snapshot() {
+    ScopeChain snapshot = new ScopeChain();
+    snapshot.stack = new Scope[Math.max(this.stack.length, INITIAL_CAPACITY)];
+    for (int i = 0; i < this.size; i++) {
+      snapshot.stack[i] = this.stack[i].snapshot();
+    }
+    snapshot.size = this.size;
+    return snapshot;
+  }
+
   /**
    * Adds an empty non-local scope to the scope chain
    */
@@ -67,23 +90,51 @@ public class ScopeChain {
    * @param map The known variables of this scope.
    */
   public void pushScope(Map<String, Object> map) {
-    Scope scope = new Scope(map, false);
-    this.stack.push(scope);
+    this.pushScope(new Scope(map, false));
+  }
+
+  /**
+   * Adds a scope, such as a {@link Frame}, to the scope chain
+   *
+   * @param scope The scope
+   */
+  public void pushScope(Scope scope) {
+    if (this.size == this.stack.length) {
+      this.stack = Arrays.copyOf(this.stack, this.size * 2);
+    }
+    this.stack[this.size++] = scope;
   }
 
   /**
    * Adds a new local scope to the scope chain
    */
   public void pushLocalScope() {
-    Scope scope = new Scope(new HashMap<>(), true);
-    this.stack.push(scope);
+    this.pushScope(new Scope(new HashMap<>(), true));
   }
 
   /**
    * Pops the most recent scope from the scope chain.
    */
   public void popScope() {
-    this.stack.pop();
+    if (this.size == 0) {
+      throw new NoSuchElementException();
+    }
+    this.stack[--this.size] = null;
+  }
+
+  /**
+   * Pops all the scopes.
+   */
+  void clear() {
+    Arrays.fill(this.stack, 0, this.size, null);
+    this.size = 0;
+  }
+
+  private Scope currentScope() {
+    if (this.size == 0) {
+      throw new NoSuchElementException();
+    }
+    return this.stack[this.size - 1];
   }
 
   /**
@@ -93,7 +144,7 @@ public class ScopeChain {
    * @param value The value of the variable
    */
   public void put(String key, Object value) {
-    this.stack.peek().put(key, value);
+    this.currentScope().put(key, value);
   }
 
   /**
@@ -105,41 +156,35 @@ public class ScopeChain {
    */
   public Object get(String key) {
     /*
-     * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
      * null values must not be handled as "not present".
      */
-    Scope scope = this.stack.getFirst();
-    Object result = scope.get(key);
-    if (result != null) {
-      return result;
-    }
-
-    if (this.stack.size() > 1) {
-      if (scope.isLocal() || scope.containsKey(key)) {
+    Scope[] stack = this.stack;
+    for (int i = this.size - 1; i >= 0; i--) {
+      Scope scope = stack[i];
+      Object result = scope.get(key);
+      if (result != null) {
+        return result;
+      } else if (scope.isLocal() || scope.containsKey(key)) {
         // key could be defined with null and override another value below in the stack
         return null;
       }
-      Iterator<Scope> iterator = this.stack.iterator();
-      // account for the first lookup we did
-      iterator.next();
-
-      while (iterator.hasNext()) {
-        scope = iterator.next();
-        result = scope.get(key);
-        if (result != null) {
-          return result;
-        } else if (scope.isLocal() || scope.containsKey(key)) {
-          // null value
-          return null;
-        }
-      }
     }
-
     return null;
   }
 
+  /**
+   * Retrieves a variable from the slot of a frame.
+   *
+   * @param frameSlot The location of the variable
+   * @param key The name of the variable
+   * @return The value of the variable or null if it is null or the frame isn't available, in which
+   * case {@link #get(String)} must be used
+   */
+  public Object get(FrameSlot frameSlot, String key) {
+    Frame frame = this.getFrame(frameSlot, key);
+    return frame == null ? null : frame.getSlot(frameSlot.getSlot());
+  }
+
   /**
    * This method checks if the given {@code key} does exists within the scope chain.
    *
@@ -148,28 +193,9 @@ public class ScopeChain {
    * exists.
    */
   public boolean containsKey(String key) {
-
-    /*
-     * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
-     */
-    Scope scope = this.stack.getFirst();
-    if (scope.containsKey(key)) {
-      return true;
-    }
-    if (scope.isLocal()) {
-      return false;
-    }
-
-    Iterator<Scope> iterator = this.stack.iterator();
-
-    // account for the first lookup we did
-    iterator.next();
-
-    while (iterator.hasNext()) {
-      scope = iterator.next();
-
+    Scope[] stack = this.stack;
+    for (int i = this.size - 1; i >= 0; i--) {
+      Scope scope = stack[i];
       if (scope.containsKey(key)) {
         return true;
       }
@@ -177,7 +203,6 @@ public class ScopeChain {
         return false;
       }
     }
-
     return false;
   }
 
@@ -188,7 +213,7 @@ public class ScopeChain {
    * @return Whether or not the variable exists in the current scope
    */
   public boolean currentScopeContainsVariable(String variableName) {
-    return this.stack.getFirst().containsKey(variableName);
+    return this.currentScope().containsKey(variableName);
   }
 
   /**
@@ -199,25 +224,9 @@ public class ScopeChain {
    * @param value The value of the variable
    */
   public void set(String key, Object value) {
-    /*
-     * The majority of time, the requested variable will be in the first
-     * scope so we do a quick lookup in that scope before attempting to
-     * create an iterator, etc. This is solely for performance.
-     */
-    Scope scope = this.stack.getFirst();
-    if (scope.isLocal() || scope.containsKey(key)) {
-      scope.put(key, value);
-      return;
-    }
-
-    Iterator<Scope> iterator = this.stack.iterator();
-
-    // account for the first lookup we did
-    iterator.next();
-
-    while (iterator.hasNext()) {
-      scope = iterator.next();
-
+    Scope[] stack = this.stack;
+    for (int i = this.size - 1; i >= 0; i--) {
+      Scope scope = stack[i];
       if (scope.isLocal() || scope.containsKey(key)) {
         scope.put(key, value);
         return;
@@ -228,18 +237,61 @@ public class ScopeChain {
     this.put(key, value);
   }
 
+  /**
+   * Sets the value of a variable stored in the slot of a frame, if that variable has already been
+   * defined.
+   *
+   * @param frameSlot The location of the variable
+   * @param key The name of the variable
+   * @param value The value of the variable
+   * @return Whether the variable has been set, otherwise {@link #set(String, Object)} must be used
+   */
+  public boolean set(FrameSlot frameSlot, String key, Object value) {
+    Frame frame = this.getFrame(frameSlot, key);
+    if (frame == null || !frame.isSlotSet(frameSlot.getSlot())) {
+      return false;
+    }
+    frame.setSlot(frameSlot.getSlot(), value);
+    return true;
+  }
+
+  /**
+   * Returns the frame holding a variable if the frames at the top of the chain match the expected
+   * layouts and none of the frames above it shadows the variable.
+   */
+  private Frame getFrame(FrameSlot frameSlot, String key) {
+    Frame.Layout[] layouts = frameSlot.getLayouts();
+    int top = this.size - 1;
+    if (top < layouts.length - 1) {
+      return null;
+    }
+    Frame frame = null;
+    for (int depth = 0; depth < layouts.length; depth++) {
+      Scope scope = this.stack[top - depth];
+      if (!(scope instanceof Frame)) {
+        return null;
+      }
+      frame = (Frame) scope;
+      if (frame.getLayout() != layouts[depth]) {
+        return null;
+      }
+      if (frame.containsAdditionalVariable(key)) {
+        return null;
+      }
+    }
+    return frame;
+  }
+
   public List<Scope> getGlobalScopes() {
     List<Scope> globalScopes = new ArrayList<>();
-    Iterator<Scope> iterator = this.stack.iterator();
-    while (iterator.hasNext()) {
-      Scope scope = iterator.next();
+    for (int i = this.size - 1; i >= 0; i--) {
+      Scope scope = this.stack[i];
       if (scope.isLocal()) {
         globalScopes.clear();
       } else {
         globalScopes.add(scope);
       }
     }
-
     return globalScopes;
   }
 }
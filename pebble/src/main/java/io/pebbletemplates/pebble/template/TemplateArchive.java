@@ -0,0 +1,281 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.node.RootNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A file storing the parsed trees of templates, written ahead of time by {@link
+ * PebbleEngine#writeTemplateArchive(java.util.Collection, Path)}, so that an engine using it only
+ * has to read the templates instead of lexing and parsing them.
+ * <p>
+ * The archive is memory-mapped and its templates are read when they are first loaded. A template
+ * is only read from the archive when its source is unchanged, and when the archive has been written
+ * by an engine with the same configuration, otherwise it is parsed as usual. The node visitors of
+ * the engine and the template compiler are still applied to the templates read from the archive.
+ * <p>
+ * The trees are encoded by a {@link NodeCodec}: templates using nodes which it doesn't support
+ * aren't archived.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @see PebbleEngine.Builder#templateArchive(TemplateArchive)
+ */
+public class TemplateArchive {
+
+  private static final Logger logger = LoggerFactory.getLogger(TemplateArchive.class);
+
+  static final int MAGIC = 0x50454241;
+
+  static final int FORMAT_VERSION = 2;
+
+  static final String DIGEST_ALGORITHM = "SHA-256";
+
+  private final String location;
+
+  private final ByteBuffer buffer;
+
+  private final String fingerprint;
+
+  private final Map<String, Entry> entries;
+
+  /**
+   * The position of the first tree, the offsets of the entries are relative to it
+   */
+  private final int payloadStart;
+
+  private TemplateArchive(String location, ByteBuffer buffer, String fingerprint,
+      Map<String, Entry> entries, int payloadStart) {
+    this.location = location;
+    this.buffer = buffer;
+    this.fingerprint = fingerprint;
+    this.entries = entries;
+    this.payloadStart = payloadStart;
+  }
+
+  /**
+   * Memory-maps an archive and reads its index.
+   *
+   * @param file The archive
+   * @return The archive
+   * @throws IOException If the file can't be read or isn't an archive
+   */
+  public static TemplateArchive open(Path file) throws IOException {
+    ByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    return open(buffer, file.toString());
+  }
+
+  /**
+   * Opens an archive packaged as a resource, typically in a jar by the {@code precompile} goal of
+   * the {@code pebble-maven-plugin}. An archive found in a directory is memory-mapped, otherwise it
+   * is read into memory.
+   *
+   * @param resource The archive, see {@link ClassLoader#getResource(String)}
+   * @return The archive
+   * @throws IOException If the resource can't be read or isn't an archive
+   */
+  public static TemplateArchive open(URL resource) throws IOException {
+    if ("file".equals(resource.getProtocol())) {
+      try {
+        return open(Paths.get(resource.toURI()));
+      } catch (URISyntaxException | IllegalArgumentException e) {
+        // not a plain file, read it as a stream
+      }
+    }
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (InputStream in = resource.openStream()) {
+      byte[] chunk = new byte[8192];
+      int read;
+      while ((read = in.read(chunk)) != -1) {
+        bytes.write(chunk, 0, read);
+      }
+    }
+    return open(ByteBuffer.wrap(bytes.toByteArray()), resource.toString());
+  }
+
+  private static TemplateArchive open(ByteBuffer buffer, String location) throws IOException {
+    ByteBufferInputStream input = new ByteBufferInputStream(buffer.duplicate());
+    try {
+      DataInputStream data = new DataInputStream(input);
+      if (data.readInt() != MAGIC) {
+        throw new IOException("Not a Pebble template archive: " + location);
+      }
+      int version = data.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new IOException(String.format(
+            "Unsupported version %d of the Pebble template archive %s, version %d is expected",
+            version, location, FORMAT_VERSION));
+      }
+      String fingerprint = data.readUTF();
+      int count = data.readInt();
+      Map<String, Entry> entries = new HashMap<>();
+      for (int i = 0; i < count; i++) {
+        String name = data.readUTF();
+        byte[] sourceDigest = new byte[data.readUnsignedByte()];
+        data.readFully(sourceDigest);
+        entries.put(name, new Entry(sourceDigest, data.readInt(), data.readInt(), data.readInt()));
+      }
+      int payloadStart = input.buffer.position();
+      for (Entry entry : entries.values()) {
+        if (entry.offset < 0 || entry.length < 0
+            || entry.offset > buffer.limit() - payloadStart - entry.length) {
+          throw new IOException("Truncated Pebble template archive: " + location);
+        }
+      }
+      return new TemplateArchive(location, buffer, fingerprint, entries, payloadStart);
+    } catch (BufferUnderflowException | EOFException e) {
+      throw new IOException("Truncated Pebble template archive: " + location, e);
+    }
+  }
+
+  /**
+   * Returns the fingerprint of the configuration of the engine which wrote the archive. The
+   * templates of the archive are only used by engines with the same fingerprint.
+   *
+   * @return The fingerprint
+   */
+  public String getFingerprint() {
+    return this.fingerprint;
+  }
+
+  /**
+   * Returns the names of the archived templates.
+   *
+   * @return The template names
+   */
+  public Set<String> getTemplateNames() {
+    return Collections.unmodifiableSet(this.entries.keySet());
+  }
+
+  /**
+   * Reads the tree of a template, as it was before the node visitors were applied.
+   *
+   * @param templateName The name of the template
+   * @param source The current source of the template
+   * @param codec The codec of the engine reading the template
+   * @return The tree, or null if the template isn't archived, if its source changed since the
+   * archive was written or if it can't be read, in which case the template must be parsed
+   */
+  public RootNode read(String templateName, String source, NodeCodec codec) {
+    Entry entry = this.entries.get(templateName);
+    if (entry == null) {
+      return null;
+    }
+    if (!MessageDigest.isEqual(entry.sourceDigest, digest(source))) {
+      logger.debug("Template {} changed since the archive {} was written", templateName,
+          this.location);
+      return null;
+    }
+    int offset = this.payloadStart + entry.offset;
+    ByteBuffer tree = this.buffer.duplicate();
+    // called on Buffer, as the ByteBuffer overrides returning a ByteBuffer only exist since Java 9
+    ((Buffer) tree).limit(offset + entry.length);
+    ((Buffer) tree).position(offset);
+    CRC32 crc = new CRC32();
+    crc.update(tree.duplicate());
+    if ((int) crc.getValue() != entry.checksum) {
+      logger.warn("Template {} is corrupted in the archive {}", templateName, this.location);
+      return null;
+    }
+    try {
+      return codec.decode(tree);
+    } catch (IllegalArgumentException e) {
+      logger.warn("Could not read template {} from the archive {}", templateName, this.location, e);
+      return null;
+    }
+  }
+
+  static byte[] digest(String source) {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM)
+          .digest(source.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class Entry {
+
+    private final byte[] sourceDigest;
+
+    private final int offset;
+
+    private final int length;
+
+    private final int checksum;
+
+    private Entry(byte[] sourceDigest, int offset, int length, int checksum) {
+      this.sourceDigest = sourceDigest;
+      this.offset = offset;
+      this.length = length;
+      this.checksum = checksum;
+    }
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+      return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) {
+        return 0;
+      }
+      if (!this.buffer.hasRemaining()) {
+        return -1;
+      }
+      len = Math.min(len, this.buffer.remaining());
+      this.buffer.get(b, off, len);
+      return len;
+    }
+
+    @Override
+    public int available() {
+      return this.buffer.remaining();
+    }
+  }
+}
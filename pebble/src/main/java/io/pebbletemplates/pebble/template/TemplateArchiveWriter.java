@@ -0,0 +1,142 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.template;
+
+import io.pebbletemplates.pebble.node.RootNode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Collects the trees of templates and writes them into a {@link TemplateArchive}.
+ * <p>
+ * Archive layout: magic number, format version, engine fingerprint, number of templates, then for
+ * each template its name, the digest of its source, the offset, length and CRC-32 checksum of its
+ * tree, and finally the serialized trees.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class TemplateArchiveWriter {
+
+  private final String fingerprint;
+
+  private final NodeCodec codec;
+
+  private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+  /**
+   * Constructor
+   *
+   * @param fingerprint The fingerprint of the configuration of the engine which parsed the
+   * templates
+   * @param codec The codec encoding the trees
+   */
+  public TemplateArchiveWriter(String fingerprint, NodeCodec codec) {
+    this.fingerprint = fingerprint;
+    this.codec = codec;
+  }
+
+  /**
+   * Adds the tree of a template, as it was before the node visitors were applied.
+   *
+   * @param templateName The name of the template
+   * @param source The source the tree has been parsed from
+   * @param root The tree
+   * @throws NotSerializableException If the tree contains a node which the codec doesn't
+   * support
+   */
+  public void add(String templateName, String source, RootNode root)
+      throws NotSerializableException {
+    this.entries.put(templateName,
+        new Entry(TemplateArchive.digest(source), this.codec.encode(root)));
+  }
+
+  /**
+   * Removes the tree of a template, if it was added.
+   *
+   * @param templateName The name of the template
+   */
+  public void remove(String templateName) {
+    this.entries.remove(templateName);
+  }
+
+  /**
+   * Returns the names of the templates added so far.
+   *
+   * @return The template names
+   */
+  public List<String> getTemplateNames() {
+    return new ArrayList<>(this.entries.keySet());
+  }
+
+  /**
+   * Writes the archive to a file, replacing it if it exists.
+   *
+   * @param file The archive
+   * @throws IOException If the file can't be written
+   */
+  public void write(Path file) throws IOException {
+    try (OutputStream out = Files.newOutputStream(file)) {
+      this.write(out);
+    }
+  }
+
+  /**
+   * Writes the archive to a stream.
+   *
+   * @param out The stream, which isn't closed
+   * @throws IOException If the stream fails
+   */
+  public void write(OutputStream out) throws IOException {
+    DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(TemplateArchive.MAGIC);
+    data.writeInt(TemplateArchive.FORMAT_VERSION);
+    data.writeUTF(this.fingerprint);
+    data.writeInt(this.entries.size());
+    int offset = 0;
+    for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+      Entry value = entry.getValue();
+      CRC32 crc = new CRC32();
+      crc.update(value.tree);
+      data.writeUTF(entry.getKey());
+      data.writeByte(value.sourceDigest.length);
+      data.write(value.sourceDigest);
+      data.writeInt(offset);
+      data.writeInt(value.tree.length);
+      data.writeInt((int) crc.getValue());
+      offset += value.tree.length;
+    }
+    for (Entry entry : this.entries.values()) {
+      data.write(entry.tree);
+    }
+    data.flush();
+  }
+
+  private static final class Entry {
+
+    private final byte[] sourceDigest;
+
+    private final byte[] tree;
+
+    private Entry(byte[] sourceDigest, byte[] tree) {
+      this.sourceDigest = sourceDigest;
+      this.tree = tree;
+    }
+  }
+}
@@ -30,6 +30,12 @@ public class MacroTokenParser implements TokenParser {
 
     ArgumentsNode args = parser.getExpressionParser().parseArguments(true);
 
+    // the output of a pure macro only depends on its arguments
+    boolean pure = stream.current().test(Token.Type.NAME, "pure");
+    if (pure) {
+      stream.next();
+    }
+
     stream.expect(Token.Type.EXECUTE_END);
 
     // parse the body
@@ -40,7 +46,7 @@ public class MacroTokenParser implements TokenParser {
 
     stream.expect(Token.Type.EXECUTE_END);
 
-    return new MacroNode(macroName, args, body);
+    return new MacroNode(macroName, args, body, pure);
   }
 
   @Override
@@ -0,0 +1,285 @@
+package io.pebbletemplates.pebble.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A Writer which encodes characters into a buffered OutputStream, like an {@link
+ * java.io.OutputStreamWriter} would, but which also accepts text that has already been encoded
+ * with its charset. This allows the static text of a template to be encoded once instead of on
+ * each evaluation.
+ * <p>
+ * Characters are encoded by hand for UTF-8, a {@link CharsetEncoder} is used for other charsets.
+ * Unmappable and malformed characters are replaced, as with an OutputStreamWriter.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class ByteWriter extends Writer {
+
+  private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+  private static final int CHUNK_SIZE = 1024;
+
+  private static final byte REPLACEMENT = '?';
+
+  private final OutputStream outputStream;
+
+  private final Charset charset;
+
+  private final CharsetEncoder encoder;
+
+  private final byte[] buffer;
+
+  /**
+   * Receives the characters of the strings being written
+   */
+  private char[] chars;
+
+  private int count;
+
+  /**
+   * The number of chars written so far, including the chars of the encoded texts
+   */
+  private long charCount;
+
+  /**
+   * A high surrogate written at the end of the previous chunk, or 0
+   */
+  private char pendingHighSurrogate;
+
+  /**
+   * Constructor
+   *
+   * @param outputStream The stream receiving the encoded output
+   * @param charset The charset used to encode the output
+   */
+  public ByteWriter(OutputStream outputStream, Charset charset) {
+    this(outputStream, charset, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param outputStream The stream receiving the encoded output
+   * @param charset The charset used to encode the output
+   * @param bufferSize The number of bytes written to the stream at once, at least 4
+   */
+  public ByteWriter(OutputStream outputStream, Charset charset, int bufferSize) {
+    if (bufferSize < 4) {
+      throw new IllegalArgumentException("Buffer size must be at least 4 bytes");
+    }
+    this.outputStream = outputStream;
+    this.buffer = new byte[bufferSize];
+    this.charset = charset;
+    if (StandardCharsets.UTF_8.equals(charset)) {
+      this.encoder = null;
+    } else {
+      this.encoder = charset.newEncoder()
+          .onMalformedInput(CodingErrorAction.REPLACE)
+          .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+  }
+
+  public Charset getCharset() {
+    return this.charset;
+  }
+
+  /**
+   * Returns the number of chars written so far, the encoded texts counting for the chars they
+   * encode.
+   *
+   * @return The number of chars
+   */
+  public long getCharCount() {
+    return this.charCount;
+  }
+
+  /**
+   * Writes text which has already been encoded with the charset of this writer.
+   *
+   * @param bytes The encoded text
+   * @param charCount The number of chars of the text
+   * @throws IOException If the output stream fails
+   */
+  public void writeEncoded(byte[] bytes, int charCount) throws IOException {
+    this.completePendingSurrogate();
+    this.charCount += charCount;
+    int offset = 0;
+    while (offset < bytes.length) {
+      if (this.count == this.buffer.length) {
+        this.flushBuffer();
+      }
+      int length = Math.min(bytes.length - offset, this.buffer.length - this.count);
+      System.arraycopy(bytes, offset, this.buffer, this.count, length);
+      this.count += length;
+      offset += length;
+    }
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    if (this.encoder == null && c < 0x80 && this.pendingHighSurrogate == 0) {
+      if (this.count == this.buffer.length) {
+        this.flushBuffer();
+      }
+      this.buffer[this.count++] = (byte) c;
+      this.charCount++;
+    } else {
+      this.write(new char[]{(char) c}, 0, 1);
+    }
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    char[] chunk = this.chars;
+    if (chunk == null) {
+      chunk = this.chars = new char[CHUNK_SIZE];
+    }
+    int end = off + len;
+    while (off < end) {
+      int length = Math.min(chunk.length, end - off);
+      str.getChars(off, off + length, chunk, 0);
+      this.write(chunk, 0, length);
+      off += length;
+    }
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    this.charCount += len;
+    if (this.encoder == null) {
+      this.writeUtf8(cbuf, off, off + len);
+    } else {
+      this.encode(CharBuffer.wrap(cbuf, off, len), false);
+    }
+  }
+
+  private void writeUtf8(char[] chars, int index, int end) throws IOException {
+    byte[] buffer = this.buffer;
+    if (this.pendingHighSurrogate != 0 && index < end) {
+      char high = this.pendingHighSurrogate;
+      this.pendingHighSurrogate = 0;
+      if (Character.isLowSurrogate(chars[index])) {
+        this.writeCodePoint(Character.toCodePoint(high, chars[index++]));
+      } else {
+        this.writeReplacement();
+      }
+    }
+    while (index < end) {
+      // at most 4 bytes per iteration
+      if (this.count > buffer.length - 4) {
+        this.flushBuffer();
+      }
+      char c = chars[index++];
+      if (c < 0x80) {
+        buffer[this.count++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[this.count++] = (byte) (0xC0 | (c >> 6));
+        buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)) {
+        if (index == end) {
+          this.pendingHighSurrogate = c;
+        } else if (Character.isLowSurrogate(chars[index])) {
+          this.writeCodePoint(Character.toCodePoint(c, chars[index++]));
+        } else {
+          this.writeReplacement();
+        }
+      } else if (Character.isLowSurrogate(c)) {
+        this.writeReplacement();
+      } else {
+        buffer[this.count++] = (byte) (0xE0 | (c >> 12));
+        buffer[this.count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[this.count++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  private void writeCodePoint(int codePoint) throws IOException {
+    if (this.count > this.buffer.length - 4) {
+      this.flushBuffer();
+    }
+    this.buffer[this.count++] = (byte) (0xF0 | (codePoint >> 18));
+    this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+    this.buffer[this.count++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+    this.buffer[this.count++] = (byte) (0x80 | (codePoint & 0x3F));
+  }
+
+  private void writeReplacement() throws IOException {
+    if (this.count == this.buffer.length) {
+      this.flushBuffer();
+    }
+    this.buffer[this.count++] = REPLACEMENT;
+  }
+
+  private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+    if (this.pendingHighSurrogate != 0) {
+      CharBuffer joined = CharBuffer.allocate(chars.remaining() + 1);
+      joined.put(this.pendingHighSurrogate).put(chars);
+      // flipped as a Buffer, as the CharBuffer override only exists since Java 9
+      ((Buffer) joined).flip();
+      this.pendingHighSurrogate = 0;
+      chars = joined;
+    }
+    ByteBuffer bytes = ByteBuffer.wrap(this.buffer, this.count, this.buffer.length - this.count);
+    while (true) {
+      CoderResult result = this.encoder.encode(chars, bytes, endOfInput);
+      this.count = bytes.position();
+      if (result.isOverflow()) {
+        this.flushBuffer();
+        bytes = ByteBuffer.wrap(this.buffer);
+      } else {
+        break;
+      }
+    }
+    if (endOfInput) {
+      this.encoder.reset();
+    } else if (chars.hasRemaining()) {
+      // an incomplete surrogate pair, completed by the next write
+      this.pendingHighSurrogate = chars.get();
+    }
+  }
+
+  /**
+   * Encodes a high surrogate which hasn't been followed by a low surrogate.
+   */
+  private void completePendingSurrogate() throws IOException {
+    if (this.pendingHighSurrogate == 0) {
+      return;
+    }
+    if (this.encoder == null) {
+      this.pendingHighSurrogate = 0;
+      this.writeReplacement();
+    } else {
+      this.encode(CharBuffer.allocate(0), true);
+    }
+  }
+
+  private void flushBuffer() throws IOException {
+    if (this.count > 0) {
+      this.outputStream.write(this.buffer, 0, this.count);
+      this.count = 0;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.flushBuffer();
+    this.outputStream.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.completePendingSurrogate();
+    this.flush();
+    this.outputStream.close();
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble.utils;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A Writer counting the chars written to the writer it wraps. This isn't thread-safe.
+ */
+public class CountingWriter extends Writer {
+
+  private final Writer internalWriter;
+
+  private long count;
+
+  public CountingWriter(Writer internalWriter) {
+    this.internalWriter = internalWriter;
+  }
+
+  @Override
+  public void write(int c) throws IOException {
+    this.internalWriter.write(c);
+    this.count++;
+  }
+
+  @Override
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    this.internalWriter.write(cbuf, off, len);
+    this.count += len;
+  }
+
+  @Override
+  public void write(String str, int off, int len) throws IOException {
+    this.internalWriter.write(str, off, len);
+    this.count += len;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    this.internalWriter.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    this.internalWriter.close();
+  }
+
+  @Override
+  public String toString() {
+    return this.internalWriter.toString();
+  }
+
+  /**
+   * Returns the number of chars written so far.
+   *
+   * @return The number of chars
+   */
+  public long getCount() {
+    return this.count;
+  }
+}
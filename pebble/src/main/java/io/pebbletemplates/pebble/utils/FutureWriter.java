@@ -8,12 +8,22 @@
  */
 package io.pebbletemplates.pebble.utils;
 
+import io.pebbletemplates.pebble.error.RenderCancelledException;
+import io.pebbletemplates.pebble.template.CancellationToken;
+import io.pebbletemplates.pebble.template.RenderBudget;
+
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Writer;
 import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A Writer that will wrap around the user-provided writer if the user also provided an
@@ -21,27 +31,93 @@ import java.util.concurrent.TimeUnit;
  * return a string.
  *
  * It is not thread safe but that is okay. Each thread will have its own writer, provided by the
- * "parallel" node; i.e. they will never share writers.
+ * "parallel" node; i.e. they will never share writers. The only exception is {@link
+ * #fail(Throwable)}, which the parallel tags enqueued in this writer call from their own thread.
  *
  * @author Mitchell
  */
 public class FutureWriter extends Writer {
 
+  /**
+   * The interval at which the cancellation token is checked while waiting for a parallel tag
+   */
+  private static final long CANCELLATION_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
   private final LinkedList<Future<String>> orderedFutures = new LinkedList<>();
 
+  /**
+   * The futures of the parallel tags, which may be cancelled by another thread
+   */
+  private final Queue<Future<String>> parallelFutures = new ConcurrentLinkedQueue<>();
+
+  /**
+   * The first failure of a parallel tag
+   */
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
   private final Writer internalWriter;
 
+  /**
+   * The budget charged with the content of the parallel tags, null if the output isn't limited
+   */
+  private final RenderBudget budget;
+
+  /**
+   * The token cancelling the evaluation, checked while waiting for the parallel tags
+   */
+  private final CancellationToken cancellationToken;
+
   private boolean closed = false;
 
   public FutureWriter(Writer writer) {
+    this(writer, null, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param writer The writer
+   * @param budget The render budget of the thread using this writer, which is charged with the
+   * content of the parallel tags once it is written
+   * @param cancellationToken The token cancelling the evaluation, the parallel tags are cancelled
+   * with it
+   */
+  public FutureWriter(Writer writer, RenderBudget budget, CancellationToken cancellationToken) {
     this.internalWriter = writer;
+    this.budget = budget != null && budget.isLimited() ? budget : null;
+    this.cancellationToken = cancellationToken;
   }
 
   public void enqueue(Future<String> future) throws IOException {
     if (this.closed) {
       throw new IOException("Writer is closed");
     }
+    this.checkFailure();
     this.orderedFutures.add(future);
+    this.parallelFutures.add(future);
+  }
+
+  /**
+   * Reports the failure of a parallel tag enqueued in this writer. The other parallel tags are
+   * cancelled right away, and the failure is thrown by the thread using this writer instead of
+   * waiting for the tags enqueued before the failed one.
+   *
+   * @param cause The failure of the parallel tag
+   */
+  public void fail(Throwable cause) {
+    if (this.failure.compareAndSet(null, cause)) {
+      for (Future<String> future : this.parallelFutures) {
+        future.cancel(true);
+      }
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable cause = this.failure.get();
+    if (cause != null) {
+      this.cancel();
+      throw propagate(cause);
+    }
   }
 
   @Override
@@ -50,6 +126,7 @@ public class FutureWriter extends Writer {
     if (this.closed) {
       throw new IOException("Writer is closed");
     }
+    this.checkFailure();
 
     final String result = new String(cbuf, off, len);
 
@@ -91,18 +168,84 @@ public class FutureWriter extends Writer {
 
   @Override
   public void flush() throws IOException {
-    for (Future<String> future: this.orderedFutures) {
+    while (!this.orderedFutures.isEmpty()) {
+      Future<String> future = this.orderedFutures.peek();
+      String result;
       try {
-        String result = future.get();
-        this.internalWriter.write(result);
-        this.internalWriter.flush();
+        result = this.await(future);
+      } catch (RenderCancelledException e) {
+        this.fail(e);
+        this.cancel();
+        throw e;
       } catch (InterruptedException e) {
+        this.cancel();
         Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a parallel tag");
+      } catch (CancellationException e) {
+        // cancelled because another parallel tag failed
+        this.checkFailure();
+        this.cancel();
+        throw new InterruptedIOException("A parallel tag has been cancelled");
       } catch (ExecutionException e) {
-        throw new IOException(e);
+        this.fail(e.getCause());
+        this.cancel();
+        throw propagate(this.failure.get());
+      }
+      this.orderedFutures.poll();
+      if (this.parallelFutures.remove(future) && this.budget != null) {
+        this.budget.charge(result, 0, result.length());
       }
+      this.internalWriter.write(result);
+      this.internalWriter.flush();
+    }
+  }
+
+  /**
+   * Waits for a future, checking the cancellation token periodically if there is one.
+   */
+  private String await(Future<String> future) throws InterruptedException, ExecutionException {
+    CancellationToken cancellationToken = this.cancellationToken;
+    if (cancellationToken == null) {
+      return future.get();
+    }
+    while (true) {
+      cancellationToken.check();
+      try {
+        return future.get(Math.min(cancellationToken.getRemainingNanos(), CANCELLATION_CHECK_NANOS),
+            TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        // the token is checked again
+      }
+    }
+  }
+
+  /**
+   * Cancels the futures which haven't been written yet, interrupting the threads rendering them.
+   * This is used when the evaluation of the template fails so that no parallel tag keeps running
+   * after it.
+   */
+  public void cancel() {
+    for (Future<String> future : this.orderedFutures) {
+      future.cancel(true);
     }
     this.orderedFutures.clear();
+    this.parallelFutures.clear();
+  }
+
+  /**
+   * Rethrows the failure of a parallel tag as if it had been rendered sequentially.
+   */
+  private static IOException propagate(Throwable cause) {
+    if (cause instanceof RuntimeException) {
+      throw (RuntimeException) cause;
+    }
+    if (cause instanceof Error) {
+      throw (Error) cause;
+    }
+    if (cause instanceof IOException) {
+      return (IOException) cause;
+    }
+    return new IOException(cause);
   }
 
   @Override
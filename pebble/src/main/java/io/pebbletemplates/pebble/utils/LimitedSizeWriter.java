@@ -1,6 +1,6 @@
 package io.pebbletemplates.pebble.utils;
 
-import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.template.RenderBudget;
 import io.pebbletemplates.pebble.template.RenderedSizeContext;
 
 import java.io.IOException;
@@ -8,9 +8,9 @@ import java.io.Writer;
 
 /**
  * A Writer that will wrap around the internal writer if the user also provided a limit
- * on the size of the rendered template. The context is shared between all the writers
- * used to evaluate a template: the one supplied by the user when calling template.evaluate
- * as well as any internally created writers e.g. when evaluating a macro.
+ * on the size of the rendered template. The render budget is shared between all the writers
+ * used to evaluate a template in a thread: the one supplied by the user when calling
+ * template.evaluate as well as any internally created writers e.g. when evaluating a macro.
  *
  * There will be false positives. For example if a function writes something and its output
  * is passed to a filter than we count both the output of the function and the output of the
@@ -21,38 +21,68 @@ import java.io.Writer;
  * If the limit is reached a PebbleException will be thrown.
  * If the limit is negative then no checks will be performed and the original writer used as is.
  *
- * This is thread-safe if RenderedSizeContext is thread-safe.
+ * This isn't thread-safe, the content of a "parallel" tag is written with a fork of the budget.
  */
 public class LimitedSizeWriter extends Writer {
 
     private final Writer internalWriter;
 
-    private final RenderedSizeContext context;
+    private final RenderBudget budget;
 
     public static Writer from(Writer internalWriter, RenderedSizeContext context) {
-        if (context.getMaxRenderedSize() < 0) {
+        RenderBudget budget = context.getRenderBudget();
+        if (!budget.isLimited()) {
             return internalWriter;
         }
 
-        return new LimitedSizeWriter(internalWriter, context);
+        return new LimitedSizeWriter(internalWriter, budget);
     }
 
-    private LimitedSizeWriter(Writer internalWriter, RenderedSizeContext context) {
-        if (context.getMaxRenderedSize() < 0) {
-            throw new IllegalArgumentException("maxRenderedSize should not be negative");
+    /**
+     * Returns the writer wrapped by the given writer if it is a LimitedSizeWriter charging the
+     * budget of the given context, so that the writes aren't charged twice when it is wrapped
+     * again, or the given writer otherwise.
+     *
+     * @param writer The writer
+     * @param context The context
+     * @return The writer to wrap
+     */
+    public static Writer unwrap(Writer writer, RenderedSizeContext context) {
+        if (writer instanceof LimitedSizeWriter
+            && ((LimitedSizeWriter) writer).budget == context.getRenderBudget()) {
+            return ((LimitedSizeWriter) writer).internalWriter;
         }
+        return writer;
+    }
+
+    private LimitedSizeWriter(Writer internalWriter, RenderBudget budget) {
         this.internalWriter = internalWriter;
-        this.context = context;
+        this.budget = budget;
+    }
+
+    // The budget is charged before writing so that the output never exceeds the limit.
+    // If internalWriter.write throws than the content written and the count of chars
+    // written will get out of sync, but that's fine because at that point we don't
+    // care about accuracy anymore.
+
+    @Override
+    public void write(int c) throws IOException {
+        this.budget.charge(c);
+        this.internalWriter.write(c);
     }
 
     @Override
     public void write(char[] cbuf, int off, int len) throws IOException {
-        if (this.willExceedMaxChars(len)) {
-            throw new PebbleException(null, String.format("Tried to write more than %d chars.", this.context.getMaxRenderedSize()));
-        }
+        this.budget.charge(cbuf, off, len);
         this.internalWriter.write(cbuf, off, len);
     }
 
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        this.budget.charge(str, off, len);
+        this.internalWriter.write(str, off, len);
+    }
+
     @Override
     public void flush() throws IOException {
         this.internalWriter.flush();
@@ -67,15 +97,4 @@ public class LimitedSizeWriter extends Writer {
     public String toString() {
         return internalWriter.toString();
     }
-
-    // This has the side effect of incrementing the number of chars written.
-    // This is necessary to maintain thread-safety, otherwise two threads might check
-    // the size before writing, both checks might be fine but the resulting output
-    // will be greater than the limit.
-    // If internalWriter.write throws than the content written and the count of chars
-    // written will get out of sync, but that's fine because at that point we don't
-    // care about accuracy anymore.
-    private boolean willExceedMaxChars(int charsToWrite) {
-        return this.context.addAndGet(charsToWrite) > this.context.getMaxRenderedSize();
-    }
 }
@@ -44,6 +44,25 @@ public final class PathUtils {
     return null;
   }
 
+  /**
+   * Returns the name of a template from the path of its file relative to the prefix of a loader.
+   *
+   * @param relativePath The path of the file, with any separator
+   * @param suffix The suffix of the loader, or null
+   * @return The template name, using '/' as separator, or null if the file doesn't end with the
+   * suffix
+   */
+  public static String toTemplateName(String relativePath, String suffix) {
+    String templateName = sanitize(relativePath, '/');
+    if (suffix == null) {
+      return templateName;
+    }
+    if (!templateName.endsWith(suffix) || templateName.length() == suffix.length()) {
+      return null;
+    }
+    return templateName.substring(0, templateName.length() - suffix.length());
+  }
+
   public static String sanitize(String path, char expectedSeparator) {
     return PATH_SEPARATOR_REGEX.matcher(path)
         .replaceAll(Matcher.quoteReplacement(String.valueOf(expectedSeparator)));
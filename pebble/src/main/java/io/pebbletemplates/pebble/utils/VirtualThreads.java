@@ -0,0 +1,53 @@
+package io.pebbletemplates.pebble.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Creates executor services which run each task on a new virtual thread. Virtual threads are
+ * available from Java 21, they are therefore looked up through reflection.
+ */
+public final class VirtualThreads {
+
+  private static final Method NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR = findFactoryMethod();
+
+  private VirtualThreads() {
+  }
+
+  /**
+   * Returns whether virtual threads are available on the running JVM.
+   *
+   * @return Whether virtual threads are available
+   */
+  public static boolean isAvailable() {
+    return NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR != null;
+  }
+
+  /**
+   * Creates an executor service which starts a new virtual thread for each task. Such an executor
+   * doesn't keep any thread alive, it doesn't need to be shut down.
+   *
+   * @return The executor service
+   * @throws IllegalStateException If virtual threads aren't available
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    if (NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR == null) {
+      throw new IllegalStateException("Virtual threads require Java 21 or later");
+    }
+    try {
+      return (ExecutorService) NEW_VIRTUAL_THREAD_PER_TASK_EXECUTOR.invoke(null);
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("Could not create a virtual thread executor", e);
+    }
+  }
+
+  private static Method findFactoryMethod() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+}
@@ -8,14 +8,23 @@
  */
 package io.pebbletemplates.pebble;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.pebbletemplates.pebble.cache.MacroCacheKey;
+import io.pebbletemplates.pebble.cache.macro.CaffeineMacroCache;
 import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.loader.TemplateReloader;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.file.Path;
 import java.security.SecureRandom;
 import java.util.HashMap;
 import java.util.Map;
@@ -25,8 +34,12 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import static io.pebbletemplates.pebble.Templates.render;
+import static io.pebbletemplates.pebble.Templates.write;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class CacheTest {
 
@@ -182,4 +195,115 @@ class CacheTest {
     }
   }
 
+  @Test
+  void invalidateEvictsTheTemplateAndItsDependents(@TempDir Path directory) throws IOException {
+    write(directory, "base.peb", "base {% block content %}{% endblock %}");
+    write(directory, "page.peb",
+        "{% extends 'base.peb' %}{% block content %}{% include 'part.peb' %}{% endblock %}");
+    write(directory, "part.peb", "part1");
+    write(directory, "other.peb", "{% from 'macros.peb' import m %}{{ m() }}");
+    write(directory, "macros.peb", "{% macro m() %}m1{% endmacro %}");
+    PebbleEngine engine = new PebbleEngine.Builder()
+        .loader(new FileLoader(directory.toString())).build();
+
+    PebbleTemplate page = engine.getTemplate("page.peb");
+    PebbleTemplate other = engine.getTemplate("other.peb");
+    assertEquals("base part1", render(page));
+    assertEquals("m1", render(other));
+    PebbleTemplate base = engine.getTemplate("base.peb");
+
+    write(directory, "part.peb", "part2");
+    engine.invalidate("part.peb");
+
+    assertNotSame(page, engine.getTemplate("page.peb"));
+    assertSame(base, engine.getTemplate("base.peb"));
+    assertSame(other, engine.getTemplate("other.peb"));
+    assertEquals("base part2", render(engine.getTemplate("page.peb")));
+
+    write(directory, "macros.peb", "{% macro m() %}m2{% endmacro %}");
+    engine.invalidate("macros.peb");
+
+    assertNotSame(other, engine.getTemplate("other.peb"));
+    assertEquals("m2", render(engine.getTemplate("other.peb")));
+  }
+
+  @Test
+  void invalidateDiscardsThePureMacroOutputsOfTheEvictedTemplates(@TempDir Path directory)
+      throws IOException {
+    write(directory, "macros.peb", "{% macro m(x) pure %}m{{ x }}{% endmacro %}");
+    write(directory, "page.peb", "{% import 'macros.peb' %}{{ m(1) }}");
+    write(directory, "other.peb", "{% macro n(x) pure %}n{{ x }}{% endmacro %}{{ n(1) }}");
+    Cache<MacroCacheKey, String> macroCache = Caffeine.newBuilder().build();
+    PebbleEngine engine = new PebbleEngine.Builder()
+        .loader(new FileLoader(directory.toString()))
+        .macroCache(new CaffeineMacroCache(macroCache)).build();
+
+    assertEquals("m1", render(engine.getTemplate("page.peb")));
+    assertEquals("n1", render(engine.getTemplate("other.peb")));
+    assertEquals(2, macroCache.asMap().size());
+
+    engine.invalidate("macros.peb");
+
+    assertEquals(1, macroCache.asMap().size());
+    assertEquals("n1", macroCache.asMap().values().iterator().next());
+  }
+
+  @Test
+  void invalidateEvictsIndirectDependents(@TempDir Path directory) throws IOException {
+    write(directory, "base.peb", "base {% block content %}{% endblock %}");
+    write(directory, "layout.peb", "{% extends 'base.peb' %}");
+    write(directory, "page.peb", "{% extends 'layout.peb' %}{% block content %}page{% endblock %}");
+    PebbleEngine engine = new PebbleEngine.Builder()
+        .loader(new FileLoader(directory.toString())).build();
+
+    PebbleTemplate page = engine.getTemplate("page.peb");
+    assertEquals("base page", render(page));
+
+    write(directory, "base.peb", "new base {% block content %}{% endblock %}");
+    engine.invalidate("base.peb");
+
+    assertNotSame(page, engine.getTemplate("page.peb"));
+    assertEquals("new base page", render(engine.getTemplate("page.peb")));
+  }
+
+  @Test
+  void reloaderInvalidatesChangedTemplates(@TempDir Path directory)
+      throws IOException, InterruptedException {
+    write(directory, "page.peb", "{% include 'part.peb' %}");
+    write(directory, "part.peb", "part1");
+    write(directory, "other.peb", "other");
+    try (TemplateReloader reloader = new TemplateReloader()) {
+      PebbleEngine engine = new PebbleEngine.Builder()
+          .loader(new FileLoader(directory.toString()))
+          .templateReloader(reloader)
+          .build();
+
+      PebbleTemplate page = engine.getTemplate("page.peb");
+      PebbleTemplate other = engine.getTemplate("other.peb");
+      assertEquals("part1", render(page));
+      assertEquals(3, reloader.getWatchedFiles().size());
+
+      write(directory, "part.peb", "part2");
+
+      long deadline = System.currentTimeMillis() + 10_000;
+      while (engine.getTemplate("page.peb") == page && System.currentTimeMillis() < deadline) {
+        Thread.sleep(20);
+      }
+      assertEquals("part2", render(engine.getTemplate("page.peb")));
+      assertSame(other, engine.getTemplate("other.peb"));
+    }
+  }
+
+  @Test
+  void reloaderIgnoresTemplatesWithoutFile() throws IOException {
+    try (TemplateReloader reloader = new TemplateReloader()) {
+      PebbleEngine engine = new PebbleEngine.Builder()
+          .loader(new StringLoader())
+          .templateReloader(reloader)
+          .build();
+
+      assertEquals("hello", render(engine.getTemplate("hello")));
+      assertEquals(0, reloader.getWatchedFiles().size());
+    }
+  }
 }
@@ -0,0 +1,131 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.RenderCancelledException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.CancellationToken;
+import io.pebbletemplates.pebble.template.EvaluationContext;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CancellationTest {
+
+  @Test
+  void rendersUntilTheTokenIsCancelled() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate("{% for i in range(1, 3) %}{{ i }}{% endfor %}");
+
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, Collections.emptyMap(), null, new CancellationToken());
+    assertEquals("123", writer.toString());
+
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    RenderCancelledException thrown = assertThrows(RenderCancelledException.class,
+        () -> template.evaluate(new StringWriter(), Collections.emptyMap(), null, token));
+    assertTrue(thrown.getMessage().contains("cancelled"));
+  }
+
+  @Test
+  void loopsStopAtTheDeadline() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{% for i in range(1, 100000) %}{% for j in range(1, 100000) %}{% endfor %}{% endfor %}");
+
+    CancellationToken token = CancellationToken.withTimeout(50, TimeUnit.MILLISECONDS);
+    RenderCancelledException thrown = assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> assertThrows(RenderCancelledException.class,
+            () -> template.evaluate(new StringWriter(), Collections.emptyMap(), null, token)));
+    assertTrue(thrown.getMessage().contains("deadline"));
+  }
+
+  @Test
+  void recursiveMacrosStopWhenCancelledByAnotherThread() throws InterruptedException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{% macro m(n) %}{% if n > 0 %}{{ m(n - 1) }}{{ m(n - 1) }}{% endif %}{% endmacro %}"
+            + "{{ m(40) }}");
+
+    CancellationToken token = new CancellationToken();
+    Thread canceller = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      token.cancel();
+    });
+    canceller.start();
+
+    assertTimeoutPreemptively(Duration.ofSeconds(10),
+        () -> assertThrows(RenderCancelledException.class,
+            () -> template.evaluate(new StringWriter(), Collections.emptyMap(), null, token)));
+    canceller.join();
+  }
+
+  @Test
+  void parallelTagsAreCancelledAtTheDeadline() throws InterruptedException {
+    SlowExtension extension = new SlowExtension();
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+          .extension(extension).executorService(executorService).build();
+      PebbleTemplate template = pebble.getTemplate(
+          "a{% parallel %}{{ 'b' | slow }}{% endparallel %}c");
+
+      CancellationToken token = CancellationToken.withTimeout(100, TimeUnit.MILLISECONDS);
+      assertTimeoutPreemptively(Duration.ofSeconds(10),
+          () -> assertThrows(RenderCancelledException.class,
+              () -> template.evaluate(new StringWriter(), Collections.emptyMap(), null, token)));
+
+      // the thread rendering the parallel tag has been released
+      assertTrue(extension.interrupted.await(10, TimeUnit.SECONDS));
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  private static class SlowExtension extends AbstractExtension {
+
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    @Override
+    public Map<String, Filter> getFilters() {
+      return Collections.singletonMap("slow", new Filter() {
+        @Override
+        public List<String> getArgumentNames() {
+          return null;
+        }
+
+        @Override
+        public Object apply(Object input, Map<String, Object> args, PebbleTemplate self,
+            EvaluationContext context, int lineNumber) {
+          try {
+            Thread.sleep(60_000);
+          } catch (InterruptedException e) {
+            SlowExtension.this.interrupted.countDown();
+            Thread.currentThread().interrupt();
+          }
+          return input;
+        }
+      });
+    }
+  }
+}
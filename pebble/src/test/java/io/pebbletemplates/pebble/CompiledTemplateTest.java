@@ -0,0 +1,152 @@
+/*
+ * This file is part of Pebble.
+ *
+ * Copyright (c) 2014 by Mitchell Bösecke
+ *
+ * For the full copyright and license information, please view the LICENSE
+ * file that was distributed with this source code.
+ */
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledTemplateTest {
+
+  private static final String CONTROL_FLOW = "{% for item in items %}"
+      + "{% if loop.first %}[{% elseif loop.last %}]{% else %},{% endif %}"
+      + "{{ item }}:{{ loop.index }}/{{ loop.revindex }}/{{ loop.length }}"
+      + "{% else %}empty{% endfor %}"
+      + "{% for item in nothing %}never{% endfor %}"
+      + "{% if count > 2 and count <= 10 %}between{% elseif count == 0 %}zero{% endif %}"
+      + "{{ count + 1 }} {{ count - 1 }} {{ count * 2 }} {{ count / 2 }} {{ count % 2 }}"
+      + "{{ count != 3 }} {{ count >= 3 }} {{ count < 3 }} {{ 'text' }} {{ null }}"
+      + "{% for entry in map %}{{ entry.key }}={{ entry.value }}{% endfor %}"
+      + "{% for i in array %}{{ i }}{% endfor %}";
+
+  @Test
+  void testControlFlowMatchesInterpreter() throws IOException {
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Arrays.asList("a", "b", "c"));
+    context.put("count", 3);
+    context.put("map", Collections.singletonMap("k", "v"));
+    context.put("array", new int[]{1, 2, 3});
+
+    PebbleEngine interpreted = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine compiled = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+
+    assertEquals(render(interpreted.getTemplate(CONTROL_FLOW), context),
+        render(compiled.getTemplate(CONTROL_FLOW), context));
+    assertEquals("[a:0/2/3,b:1/1/3]c:2/0/3between4 2 6 1 1false true false text k=v123",
+        render(compiled.getTemplate(CONTROL_FLOW), context));
+
+    context.put("items", Collections.emptyList());
+    context.put("count", 0);
+    assertEquals(render(interpreted.getTemplate(CONTROL_FLOW), context),
+        render(compiled.getTemplate(CONTROL_FLOW), context));
+  }
+
+  @Test
+  void testNestedLoopsMatchInterpreter() throws IOException {
+    String source = "{% for row in rows %}{% for cell in row %}"
+        + "{% if loop.index > 0 %}|{% endif %}{{ cell | upper }}{% endfor %}"
+        + "{% if not loop.last %};{% endif %}{% endfor %}";
+    Map<String, Object> context = new HashMap<>();
+    context.put("rows", Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c", "d", "e")));
+    PebbleEngine interpreted = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine compiled = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+
+    assertEquals("A|B;C|D|E", render(compiled.getTemplate(source), context));
+    assertEquals(render(interpreted.getTemplate(source), context),
+        render(compiled.getTemplate(source), context));
+  }
+
+  @Test
+  void testMacrosAndSetMatchInterpreter() throws IOException {
+    String source = "{% macro item(name, count=1) %}{% if count > 1 %}{{ count }}x{% endif %}"
+        + "{{ name }}{% endmacro %}"
+        + "{% set total = 0 %}{% for i in [1, 2, 3] %}{% set total = total + i %}"
+        + "{{ item('x', i) }}{% endfor %}={{ total }}";
+    PebbleEngine interpreted = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine compiled = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+
+    assertEquals("x2xx3xx=6", render(compiled.getTemplate(source)));
+    assertEquals(render(interpreted.getTemplate(source)), render(compiled.getTemplate(source)));
+  }
+
+  @Test
+  void testInheritance() throws IOException {
+    PebbleEngine interpreted = new PebbleEngine.Builder().build();
+    PebbleEngine compiled = new PebbleEngine.Builder().compileTemplates(true).build();
+
+    assertEquals(render(interpreted.getTemplate("templates/template.child.peb")),
+        render(compiled.getTemplate("templates/template.child.peb")));
+    assertEquals(render(interpreted.getTemplate("templates/template.parent.peb")),
+        render(compiled.getTemplate("templates/template.parent.peb")));
+  }
+
+  @Test
+  void testConditionErrorIsWrapped() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+    PebbleTemplate template = pebble.getTemplate("\n{% if items %}never{% endif %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("items", Collections.emptyList());
+
+    assertThatThrownBy(() -> template.evaluate(new StringWriter(), context))
+        .isInstanceOf(PebbleException.class)
+        .hasMessageStartingWith("Wrong operand(s) type in conditional expression")
+        .hasMessageEndingWith(":2)")
+        .satisfies(e -> assertThat(e.getStackTrace())
+            .anyMatch(element -> element.getClassName()
+                .startsWith("io.pebbletemplates.pebble.compiler.Template$")))
+        .cause()
+        .hasMessageStartingWith("Unsupported value type");
+  }
+
+  @Test
+  void testOperatorErrorIsWrapped() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+    PebbleTemplate template = pebble.getTemplate("{{ 1 + (2 / zero) }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("zero", 0);
+
+    assertThatThrownBy(() -> template.evaluate(new StringWriter(), context))
+        .isInstanceOf(PebbleException.class)
+        .hasMessageStartingWith("Could not perform addition")
+        .cause()
+        .hasMessageStartingWith("Could not perform division")
+        .cause()
+        .isInstanceOf(ArithmeticException.class);
+  }
+
+  @Test
+  void testNotIterable() {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .compileTemplates(true).build();
+    PebbleTemplate template = pebble.getTemplate("{% for i in 5 %}{{ i }}{% endfor %}");
+
+    assertThatThrownBy(() -> template.evaluate(new StringWriter()))
+        .isInstanceOf(PebbleException.class)
+        .hasMessageStartingWith("Not an iterable object. Value = [5]");
+  }
+}
@@ -0,0 +1,159 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.node.BodyNode;
+import io.pebbletemplates.pebble.node.ForNode;
+import io.pebbletemplates.pebble.node.IfNode;
+import io.pebbletemplates.pebble.node.PrintNode;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.node.expression.ArrayExpression;
+import io.pebbletemplates.pebble.node.expression.FilterExpression;
+import io.pebbletemplates.pebble.node.expression.LiteralLongExpression;
+import io.pebbletemplates.pebble.node.expression.RangeExpression;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConstantFoldingTest {
+
+  @Test
+  void foldsOperatorsOnLiterals() throws IOException {
+    String source = "{{ 60 * 60 }} {{ 10 / 4 }} {{ 2.5 + 1 }} {{ -(3 - 5) }} {{ 7 % 3 }}"
+        + " {{ 2 > 1 }} {{ 'a' == 'b' }} {{ not false }} {{ false and x }} {{ true or x }}"
+        + " {{ 'a' ~ 1 ~ true }} {{ '<b>' ~ '</b>' ~ '!' }} {{ true ? '<i>' : x }}"
+        + " {{ null ? x : 1 + 1 }}{% set total = 3 * 4 %} {{ total }}";
+    PebbleEngine folding = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine interpreting = new PebbleEngine.Builder().loader(new StringLoader())
+        .constantFolding(false).build();
+    Map<String, Object> context = Collections.singletonMap("x", true);
+
+    assertEquals(render(interpreting.getTemplate(source), context),
+        render(folding.getTemplate(source), context));
+    assertEquals("3600 2 3.5 2 1 true false true false true a1true &lt;b&gt;&lt;/b&gt;! <i>"
+        + " 2 12", render(folding.getTemplate(source), context));
+    // the escaper wraps the product before it is folded
+    FilterExpression escaped = (FilterExpression) ((PrintNode) children(
+        folding.getTemplate(source)).get(0)).getExpression();
+    assertEquals(3600L, ((LiteralLongExpression) escaped.getLeftExpression()).getValue());
+  }
+
+  @Test
+  void mergesPrintedStringLiteralsIntoText() {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    List<RenderableNode> children = children(
+        engine.getTemplate("a{{ 'b' ~ 'c' }}{% if true %}d{% endif %}e"));
+
+    assertEquals(1, children.size());
+    assertEquals("abcde", new String(((TextNode) children.get(0)).getData()));
+  }
+
+  @Test
+  void prunesUnreachableBranches() throws IOException {
+    String source = "{% if false %}a{% elseif 1 > 2 %}b{% elseif x %}c{% elseif true %}d"
+        + "{% else %}e{% endif %}";
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = engine.getTemplate(source);
+
+    assertEquals("c", render(template, Collections.singletonMap("x", true)));
+    IfNode node = (IfNode) children(template).get(0);
+    assertEquals(1, node.getConditionsWithBodies().size());
+    assertEquals("c", text(node.getConditionsWithBodies().get(0).getRight()));
+    assertEquals("d", text(node.getElseBody()));
+  }
+
+  @Test
+  void keepsTheBlocksOfPrunedBranches() throws IOException {
+    String source = "{% if false %}{% block content %}hidden{% endblock %}{% endif %}"
+        + "[{{ block('content') }}]";
+    PebbleEngine folding = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine interpreting = new PebbleEngine.Builder().loader(new StringLoader())
+        .constantFolding(false).build();
+
+    assertEquals(render(interpreting.getTemplate(source)), render(folding.getTemplate(source)));
+    assertEquals("[hidden]", render(folding.getTemplate(source)));
+  }
+
+  @Test
+  void keepsTheInheritanceSafeNodesOfChildTemplates() throws IOException {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("base", "{{ value }}");
+    loader.addTemplate("child", "{% extends 'base' %}{% if true %}{% set value = 1 %}{% endif %}"
+        + "{% set other = 2 %}");
+    PebbleEngine folding = new PebbleEngine.Builder().loader(loader).build();
+    PebbleEngine interpreting = new PebbleEngine.Builder().loader(loader).constantFolding(false)
+        .build();
+
+    assertEquals(render(interpreting.getTemplate("child")), render(folding.getTemplate("child")));
+  }
+
+  @Test
+  void foldsSmallRangesOnly() throws IOException {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate small = engine.getTemplate("{% for i in 1..3 %}{{ i }}{% endfor %}");
+    PebbleTemplate large = engine.getTemplate("{% for i in 0..1000 %}{% endfor %}");
+
+    assertEquals("123", render(small));
+    assertInstanceOf(ArrayExpression.class, ((ForNode) children(small).get(0)).getIterable());
+    assertInstanceOf(RangeExpression.class, ((ForNode) children(large).get(0)).getIterable());
+  }
+
+  @Test
+  void leavesFailingExpressionsToTheEvaluation() {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    PebbleTemplate template = engine.getTemplate("{{ 1 / 0 }}");
+
+    assertThrows(PebbleException.class,
+        () -> template.evaluate(new StringWriter(), Collections.emptyMap()));
+  }
+
+  @Test
+  void leavesOperatorsOnNullToTheEvaluation() throws IOException {
+    PebbleEngine lenient = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleEngine strict = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+
+    assertEquals("false false true",
+        render(lenient.getTemplate("{{ none and true }} {{ none or false }} {{ not none }}")));
+    for (String source : new String[]{"{{ none and true }}", "{{ none or false }}",
+        "{{ not none }}"}) {
+      PebbleTemplate template = strict.getTemplate(source);
+      assertThrows(PebbleException.class, () -> template.evaluate(new StringWriter()), source);
+    }
+  }
+
+  @Test
+  void canBeDisabled() {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .constantFolding(false).build();
+
+    List<RenderableNode> children = children(
+        engine.getTemplate("{% if true %}{{ 1 + 1 }}{% endif %}"));
+
+    assertInstanceOf(IfNode.class, children.get(0));
+  }
+
+  private static List<RenderableNode> children(PebbleTemplate template) {
+    return ((RootNode) ((PebbleTemplateImpl) template).getRootNode()).getBody().getChildren();
+  }
+
+  private static String text(BodyNode body) {
+    return new String(((TextNode) body.getChildren().get(0)).getData());
+  }
+}
@@ -0,0 +1,120 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Function;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.template.EvaluationContext;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ContextPoolingTest {
+
+  @Test
+  void reusesTheContextOfTheThread() throws IOException {
+    ContextExtension extension = new ContextExtension();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader()).strictVariables(true)
+        .extension(extension).contextPooling(true).build();
+    PebbleTemplate template = engine.getTemplate("page");
+
+    assertEquals("a!1", render(template, Collections.singletonMap("name", "a")));
+    assertEquals("b!1", render(template, Collections.singletonMap("name", "b")));
+
+    assertEquals(2, extension.contexts.size());
+    assertSame(extension.contexts.get(0), extension.contexts.get(1));
+  }
+
+  @Test
+  void doesNotShareTheContextWithANestedEvaluation() throws IOException {
+    ContextExtension extension = new ContextExtension();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader()).strictVariables(true)
+        .extension(extension).contextPooling(true).build();
+    extension.engine = engine;
+
+    assertEquals("<c!1>a",
+        render(engine.getTemplate("nested"), Collections.singletonMap("name", "a")));
+    assertNotSame(extension.contexts.get(0), extension.contexts.get(1));
+  }
+
+  @Test
+  void discardsTheContextOfAFailedEvaluation() throws IOException {
+    ContextExtension extension = new ContextExtension();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader()).strictVariables(true)
+        .extension(extension).contextPooling(true).build();
+    PebbleTemplate template = engine.getTemplate("page");
+
+    assertThrows(PebbleException.class,
+        () -> template.evaluate(new StringWriter(), Collections.emptyMap()));
+    assertEquals("a!1", render(template, Collections.singletonMap("name", "a")));
+
+    assertNotSame(extension.contexts.get(0), extension.contexts.get(1));
+  }
+
+  private static MemoryLoader loader() {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("page", "{% import 'macros' %}{% if defined is defined %}{{ defined }}{% endif %}"
+        + "{% set defined = 1 %}{{ context() }}{{ bang(name) }}{{ defined }}");
+    loader.addTemplate("macros", "{% macro bang(value) %}{{ value }}!{% endmacro %}");
+    loader.addTemplate("nested", "<{{ render('page', 'c') }}>{{ context() }}{{ name }}");
+    return loader;
+  }
+
+  private static class ContextExtension extends AbstractExtension {
+
+    private final List<EvaluationContext> contexts = new ArrayList<>();
+
+    private PebbleEngine engine;
+
+    @Override
+    public Map<String, Function> getFunctions() {
+      Map<String, Function> functions = new HashMap<>();
+      functions.put("context", new Function() {
+        @Override
+        public List<String> getArgumentNames() {
+          return null;
+        }
+
+        @Override
+        public Object execute(Map<String, Object> args, PebbleTemplate self,
+            EvaluationContext context, int lineNumber) {
+          ContextExtension.this.contexts.add(context);
+          return "";
+        }
+      });
+      functions.put("render", new Function() {
+        @Override
+        public List<String> getArgumentNames() {
+          return Arrays.asList("template", "name");
+        }
+
+        @Override
+        public Object execute(Map<String, Object> args, PebbleTemplate self,
+            EvaluationContext context, int lineNumber) {
+          try {
+            return render(ContextExtension.this.engine.getTemplate((String) args.get("template")),
+                Collections.singletonMap("name", args.get("name")));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+      });
+      return functions;
+    }
+  }
+}
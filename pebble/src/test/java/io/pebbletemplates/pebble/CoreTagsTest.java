@@ -13,6 +13,7 @@ import io.pebbletemplates.pebble.error.ParserException;
 import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.loader.StringLoader;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.utils.VirtualThreads;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
@@ -26,12 +27,16 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 class CoreTagsTest {
 
@@ -905,6 +910,71 @@ class CoreTagsTest {
     assertEquals("success", writer.toString());
   }
 
+  @Test
+  @Timeout(value = 1000, unit = TimeUnit.MILLISECONDS)
+  void testParallelFailureCancelsOtherParallelTags() throws InterruptedException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true)
+        .executorService(Executors.newCachedThreadPool()).build();
+    String source = "{% parallel %}{{ blocking.block() }}{% endparallel %}"
+        + "{% parallel %}{{ blocking.awaitBlocking() }}{{ missing }}{% endparallel %}";
+    PebbleTemplate template = pebble.getTemplate(source);
+
+    BlockingObject blocking = new BlockingObject();
+    Map<String, Object> context = new HashMap<>();
+    context.put("blocking", blocking);
+
+    PebbleException exception = assertThrows(PebbleException.class,
+        () -> template.evaluate(new StringWriter(), context));
+    assertTrue(exception.getMessage().contains("missing"));
+    assertTrue(blocking.interrupted.await(500, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  void testParallelOnVirtualThreads() throws IOException {
+    assumeTrue(VirtualThreads.isAvailable());
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .virtualThreads(true).build();
+    String source = "{% for num in array %}{% parallel %}{{ loop.index }}{% endparallel %}{% endfor%}";
+    PebbleTemplate template = pebble.getTemplate(source);
+
+    Writer writer = new StringWriter();
+    Map<String, Object> context = new HashMap<>();
+    context.put("array", new int[10]);
+    template.evaluate(writer, context);
+
+    assertEquals("0123456789", writer.toString());
+  }
+
+  @Test
+  void testVirtualThreadsRequireJava21() {
+    assumeFalse(VirtualThreads.isAvailable());
+    assertThrows(IllegalStateException.class,
+        () -> new PebbleEngine.Builder().virtualThreads(true).build());
+  }
+
+  public class BlockingObject {
+
+    private final CountDownLatch blocking = new CountDownLatch(1);
+
+    private final CountDownLatch interrupted = new CountDownLatch(1);
+
+    public String awaitBlocking() throws InterruptedException {
+      this.blocking.await();
+      return "";
+    }
+
+    public String block() {
+      this.blocking.countDown();
+      try {
+        Thread.sleep(10000);
+      } catch (InterruptedException e) {
+        this.interrupted.countDown();
+      }
+      return "blocked";
+    }
+  }
+
   public class SlowObject {
 
     public String first() {
@@ -10,7 +10,11 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
@@ -67,6 +71,65 @@ class ForTest {
     }
   }
 
+  @Test
+  void testLoopVariablesShadowingAndSet() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).strictVariables(false).build();
+
+    String source = "{% macro show(item, suffix='!') %}{{ item }}{{ suffix }}{% endmacro %}"
+        + "{% for item in outer %}{% for x in inner %}{% set item = item + x %}{% set other = x %}"
+        + "{% endfor %}{{ item }}{{ other }}-{{ show(item) }}{{ loop.index }};{% endfor %}{{ item }}";
+    PebbleTemplate template = pebble.getTemplate(source);
+    Map<String, Object> context = new HashMap<>();
+    context.put("outer", Arrays.asList(1, 10));
+    context.put("inner", Arrays.asList(1, 2));
+    context.put("item", "model");
+
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    assertEquals("4-4!0;13-13!1;model", writer.toString());
+  }
+
+  @Test
+  void testLoopVariablesOfEachLoopStrategy() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    String source = "{% for i in items %}{{ i }}:{{ loop.index }}{{ loop.revindex }}{{ loop.length }}"
+        + "{% if loop.first %}f{% endif %}{% if loop.last %}l{% endif %} {% endfor %}";
+    PebbleTemplate template = pebble.getTemplate(source);
+    String expected = "1:012f 2:102l ";
+    Object[] iterables = {
+        Arrays.asList(1, 2),
+        new LinkedList<>(Arrays.asList(1, 2)),
+        new Integer[]{1, 2},
+        new int[]{1, 2},
+        new long[]{1L, 2L},
+        new LinkedHashSet<>(Arrays.asList(1, 2)),
+    };
+
+    for (Object iterable : iterables) {
+      Writer writer = new StringWriter();
+      template.evaluate(writer, Collections.singletonMap("items", iterable));
+      assertEquals(expected, writer.toString());
+    }
+  }
+
+  @Test
+  void testForWithArraysOfEachPrimitive() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+
+    PebbleTemplate template = pebble.getTemplate("{% for i in items %}{{ i }} {% endfor %}");
+    Object[] arrays = {
+        new boolean[]{true}, new byte[]{1}, new char[]{'c'}, new short[]{2}, new int[]{3},
+        new long[]{4L}, new float[]{5.5f}, new double[]{6.5}
+    };
+
+    Writer writer = new StringWriter();
+    for (Object array : arrays) {
+      template.evaluate(writer, Collections.singletonMap("items", array));
+    }
+    assertEquals("true 1 c 2 3 4 5.5 6.5 ", writer.toString());
+  }
+
   public static class User {
     public final String username;
 
@@ -20,6 +20,7 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -492,6 +493,58 @@ class GetAttributeTest {
     assertEquals("hello Steve", writer.toString());
   }
 
+  @Test
+  void testStaticMemberAttributes() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+
+    PebbleTemplate template = pebble
+        .getTemplate("{{ object.prefix }} {{ object.greet('Steve') }} {{ object.greet(null) }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("object", new StaticMembers());
+
+    Writer writer = new StringWriter();
+    template.evaluate(writer, context);
+    assertEquals("hello hello Steve hello null", writer.toString());
+  }
+
+  @Test
+  void testExceptionThrownByMethodAttribute() throws PebbleException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+
+    PebbleTemplate template = pebble.getTemplate("{{ object.failing }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("object", new StaticMembers());
+
+    PebbleException exception = assertThrows(PebbleException.class,
+        () -> template.evaluate(new StringWriter(), context));
+    assertTrue(exception.getMessage().startsWith("Could not call getFailing"));
+    assertTrue(exception.getCause() instanceof InvocationTargetException);
+    assertTrue(exception.getCause().getCause() instanceof IllegalStateException);
+  }
+
+  @Test
+  void testAttributeOfObjectsWithDifferentTypes() throws PebbleException, IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .strictVariables(true).build();
+
+    PebbleTemplate template = pebble.getTemplate(
+        "{% for object in objects %}{{ object.name }},{% endfor %}{{ number.name(one) }}{{ number.name(2) }}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("objects", Arrays.asList(new SimpleObject(), new SimpleObject4(),
+        new SimpleObject5(), new SimpleObject(), new SimpleObject6(), new SimpleObject9(),
+        new SimpleObject5(), new SimpleObject()));
+    context.put("number", new NameWithArgument());
+    context.put("one", 1);
+
+    for (int i = 0; i < 2; i++) {
+      Writer writer = new StringWriter();
+      template.evaluate(writer, context);
+      assertEquals("Steve,Steve,Steve,Steve,Steve,Steve,Steve,Steve,1-2", writer.toString());
+    }
+  }
+
   @Test
   void testBeanMethodWithLongArgument() throws PebbleException, IOException {
     PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
@@ -966,6 +1019,30 @@ class GetAttributeTest {
     }
   }
 
+  public static class NameWithArgument {
+
+    public String name(Integer number) {
+      return number + "-";
+    }
+
+    public String name(Long number) {
+      return String.valueOf(number);
+    }
+  }
+
+  public static class StaticMembers {
+
+    public static final String prefix = "hello";
+
+    public static String greet(String name) {
+      return prefix + " " + name;
+    }
+
+    public String getFailing() {
+      throw new IllegalStateException("failing");
+    }
+  }
+
   public class BeanWithMethodsThatHaveArguments {
 
     public String getName(String name) {
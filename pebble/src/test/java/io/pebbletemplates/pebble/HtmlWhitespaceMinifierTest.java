@@ -0,0 +1,87 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.node.RenderableNode;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.node.TextNode;
+import io.pebbletemplates.pebble.template.PebbleTemplateImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlWhitespaceMinifierTest {
+
+  @Test
+  void collapsesWhitespace() throws IOException {
+    String source = "<ul>\n    <li>{{ first }}</li>\r\n\r\n  <li>\tb  </li>  </ul>  ";
+    PebbleEngine minifying = new PebbleEngine.Builder().loader(new StringLoader())
+        .minifyHtmlWhitespace(true).build();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    Map<String, Object> context = Collections.singletonMap("first", "  a  ");
+
+    assertEquals("<ul>\n<li>  a  </li>\n<li> b </li> </ul> ",
+        render(minifying.getTemplate(source), context));
+    assertEquals("<ul>\n    <li>  a  </li>\r\n\r\n  <li>\tb  </li>  </ul>  ",
+        render(engine.getTemplate(source), context));
+  }
+
+  @Test
+  void keepsTheWhitespaceOfRawTextElements() throws IOException {
+    String source = "<PRE class=\"code\">  {{ first }}\n\n  x</pre>   <textarea>  a\n  b</textarea>"
+        + "<script>\n  var a;\n</script>\n\n<style>\n  p {}\n</style>  <prefix>  </prefix>";
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .minifyHtmlWhitespace(true).build();
+
+    assertEquals("<PRE class=\"code\">    a  \n  x</pre> <textarea>  a\n  b</textarea>"
+        + "<script>\n  var a;\n</script>\n<style>\n  p {}\n</style> <prefix> </prefix>",
+        render(engine.getTemplate(source), Collections.singletonMap("first", "  a  ")));
+  }
+
+  @Test
+  void keepsTheWhitespaceOfQuotedAttributeValues() throws IOException {
+    String source = "<input  value=\"c     d\" title = 'it\"s   e'  >  <p>don't   f</p>";
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .minifyHtmlWhitespace(true).build();
+
+    assertEquals("<input value=\"c     d\" title = 'it\"s   e' > <p>don't f</p>",
+        render(engine.getTemplate(source)));
+  }
+
+  @Test
+  void keepsTheWhitespaceOfFoldedLiterals() throws IOException {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .constantFolding(true).minifyHtmlWhitespace(true).build();
+
+    assertEquals("<p> a     b </p>", render(engine.getTemplate("<p>  {{ 'a     b' }}  </p>")));
+  }
+
+  @Test
+  void minifiesMacrosAndBlocks() throws IOException {
+    String source = "{% macro item(name) %}\n  <li>{{ name }}</li>\n{% endmacro %}"
+        + "{% block list %}<ul>  {{ item('x') }}  </ul>{% endblock %}";
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .minifyHtmlWhitespace(true).build();
+
+    // the new line following the macro tag is trimmed
+    assertEquals("<ul>  <li>x</li>\n </ul>", render(engine.getTemplate(source)));
+  }
+
+  @Test
+  void mergesTextsAroundComments() {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .constantFolding(false).build();
+
+    PebbleTemplateImpl template = (PebbleTemplateImpl) engine.getTemplate(
+        "a {# comment #} b {% macro m() %}{% endmacro %}c");
+
+    List<RenderableNode> children = ((RootNode) template.getRootNode()).getBody().getChildren();
+    assertEquals(3, children.size());
+    assertEquals("a  b ", new String(((TextNode) children.get(0)).getData()));
+  }
+}
@@ -0,0 +1,232 @@
+package io.pebbletemplates.pebble;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.instrumentation.Instrumentation;
+import io.pebbletemplates.pebble.instrumentation.MicrometerInstrumentation;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import io.pebbletemplates.pebble.utils.ByteWriter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstrumentationTest {
+
+  @Test
+  void reportsCompilationsAndTemplateCacheHits() {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", "hello");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+
+    engine.getTemplate("template");
+    engine.getTemplate("template");
+
+    assertEquals(2, instrumentation.events.size());
+    assertEquals("compiled template", instrumentation.events.get(0));
+    assertEquals("hit template", instrumentation.events.get(1));
+  }
+
+  @Test
+  void reportsFailedCompilations() {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", "{{ ");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+
+    assertThrows(PebbleException.class, () -> engine.getTemplate("template"));
+
+    assertEquals(Collections.singletonList("compiled template with error"),
+        instrumentation.events);
+  }
+
+  @Test
+  void reportsEvaluationsAndIncludes() throws IOException {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("page", "<{% include 'footer' %}>");
+    loader.addTemplate("footer", "footer");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+    PebbleTemplate template = engine.getTemplate("page");
+    instrumentation.events.clear();
+
+    StringWriter writer = new StringWriter();
+    writer.write("before");
+    template.evaluate(writer);
+    template.evaluate(new CharArrayWriter());
+
+    assertEquals("compiled footer", instrumentation.events.get(0));
+    assertEquals("included footer in page", instrumentation.events.get(1));
+    assertEquals("evaluated page writing 8 chars", instrumentation.events.get(2));
+    assertEquals("hit footer", instrumentation.events.get(3));
+    assertEquals("included footer in page", instrumentation.events.get(4));
+    assertEquals("evaluated page writing 8 chars", instrumentation.events.get(5));
+  }
+
+  @Test
+  void writesTheEncodedTextsToByteWriters() throws IOException {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", "<p>é {{ name }}</p>");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+    PebbleTemplate template = engine.getTemplate("template");
+    instrumentation.events.clear();
+
+    List<Integer> encodedTexts = new ArrayList<>();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ByteWriter writer = new ByteWriter(outputStream, StandardCharsets.UTF_8) {
+      @Override
+      public void writeEncoded(byte[] bytes, int charCount) throws IOException {
+        encodedTexts.add(charCount);
+        super.writeEncoded(bytes, charCount);
+      }
+    };
+    template.evaluate(writer, Collections.singletonMap("name", "Zoë"));
+    writer.flush();
+
+    assertEquals("<p>é Zoë</p>", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(Arrays.asList(5, 4), encodedTexts);
+    assertEquals("evaluated template writing 12 chars", instrumentation.events.get(0));
+  }
+
+  @Test
+  void reportsFailedEvaluations() {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template", "{{ 1 / zero }}");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+    PebbleTemplate template = engine.getTemplate("template");
+
+    assertThrows(PebbleException.class,
+        () -> template.evaluate(new StringWriter(), Collections.singletonMap("zero", 0)));
+
+    assertEquals("evaluated template writing 0 chars with error",
+        instrumentation.events.get(1));
+  }
+
+  @Test
+  void reportsCacheTagHitsAndMisses() throws IOException {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("template",
+        "{% for i in [1, 2] %}{% cache 'list' %}{{ i }}{% endcache %}{% endfor %}");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .instrumentation(instrumentation).build();
+
+    assertEquals("11", render(engine.getTemplate("template")));
+    assertEquals("cache miss of template:1", instrumentation.events.get(1));
+    assertEquals("cache hit of template:1", instrumentation.events.get(2));
+  }
+
+  @Test
+  void reportsParallelTasks() throws IOException {
+    RecordingInstrumentation instrumentation = new RecordingInstrumentation();
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+    try {
+      MemoryLoader loader = new MemoryLoader();
+      loader.addTemplate("template", "a{% parallel %}b{% endparallel %}c");
+      PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+          .executorService(executorService).instrumentation(instrumentation).build();
+
+      assertEquals("abc", render(engine.getTemplate("template")));
+      assertTrue(instrumentation.events.contains("parallel task of template:1"));
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  void tagsTheMetersWithTheTemplateNamesOnlyOnceEnabled() throws IOException {
+    for (boolean templateNames : new boolean[]{false, true}) {
+      MicrometerInstrumentation instrumentation = new MicrometerInstrumentation(
+          Collections.emptyList(), templateNames);
+      SimpleMeterRegistry registry = new SimpleMeterRegistry();
+      instrumentation.bindTo(registry);
+      PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+          .instrumentation(instrumentation).build();
+
+      engine.getTemplate("a").evaluate(new StringWriter());
+      engine.getTemplate("b").evaluate(new StringWriter());
+      engine.getTemplate("b").evaluate(new StringWriter());
+
+      Collection<Timer> timers = registry.find("pebble.template.evaluation").timers();
+      if (templateNames) {
+        assertEquals(2, timers.size());
+        assertEquals(2, registry.get("pebble.template.evaluation").tag("template", "b").timer()
+            .count());
+      } else {
+        assertEquals(1, timers.size());
+        assertEquals(3, registry.get("pebble.template.evaluation")
+            .tag("template", MicrometerInstrumentation.ANY_TEMPLATE).timer().count());
+      }
+    }
+  }
+
+  private static class RecordingInstrumentation implements Instrumentation {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void templateCacheHit(String templateName) {
+      this.events.add("hit " + templateName);
+    }
+
+    @Override
+    public void templateCompiled(String templateName, long nanos, Throwable error) {
+      this.events.add("compiled " + templateName + (error != null ? " with error" : ""));
+    }
+
+    @Override
+    public void templateEvaluated(String templateName, long nanos, long outputSize,
+        Throwable error) {
+      this.events.add("evaluated " + templateName + " writing " + outputSize + " chars"
+          + (error != null ? " with error" : ""));
+    }
+
+    @Override
+    public void templateIncluded(String templateName, String includedTemplateName, long nanos,
+        Throwable error) {
+      this.events.add("included " + includedTemplateName + " in " + templateName);
+    }
+
+    @Override
+    public void cacheTagHit(String templateName, int lineNumber) {
+      this.events.add("cache hit of " + templateName + ":" + lineNumber);
+    }
+
+    @Override
+    public void cacheTagMiss(String templateName, int lineNumber, long nanos) {
+      this.events.add("cache miss of " + templateName + ":" + lineNumber);
+    }
+
+    @Override
+    public void parallelTaskCompleted(String templateName, int lineNumber, long queuedNanos,
+        long nanos, Throwable error) {
+      this.events.add("parallel task of " + templateName + ":" + lineNumber);
+    }
+  }
+}
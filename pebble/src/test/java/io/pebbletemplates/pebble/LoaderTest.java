@@ -13,19 +13,26 @@ import io.pebbletemplates.pebble.error.PebbleException;
 import io.pebbletemplates.pebble.loader.*;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.io.*;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class LoaderTest {
 
@@ -166,6 +173,62 @@ class LoaderTest {
     }
   }
 
+  @Test
+  void testFileLoaderListsTemplates(@TempDir Path directory) throws IOException {
+    Files.createDirectories(directory.resolve("sub"));
+    Files.write(directory.resolve("a.peb"), new byte[0]);
+    Files.write(directory.resolve("sub/b.peb"), new byte[0]);
+    Files.write(directory.resolve("sub/c.txt"), new byte[0]);
+    Loader<?> loader = new FileLoader(directory.toString());
+    loader.setSuffix(".peb");
+
+    assertEquals(Arrays.asList("a", "sub/b"), loader.listTemplateNames());
+  }
+
+  @Test
+  void testClassLoaderLoaderListsTemplates() {
+    Loader<?> loader = new ClasspathLoader();
+    loader.setPrefix("templates/relativepath/");
+    loader.setSuffix(".peb");
+
+    List<String> templateNames = loader.listTemplateNames();
+
+    assertTrue(templateNames.contains("template.relativeextends1"));
+    assertTrue(templateNames.contains("subdirectory1/template.forwardslashes"));
+    assertTrue(new ClasspathLoader().listTemplateNames().isEmpty());
+  }
+
+  @Test
+  void testClassLoaderLoaderListsTemplatesInJar(@TempDir Path directory) throws IOException {
+    Path jar = directory.resolve("templates.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      for (String entry : new String[]{"templates/", "templates/a.peb", "templates/sub/",
+          "templates/sub/b.peb", "templates/c.txt", "other/d.peb"}) {
+        out.putNextEntry(new JarEntry(entry));
+        out.closeEntry();
+      }
+    }
+    Loader<?> loader = new ClasspathLoader(
+        new URLClassLoader(new URL[]{jar.toUri().toURL()}, null));
+    loader.setPrefix("templates");
+    loader.setSuffix(".peb");
+
+    assertEquals(Arrays.asList("a", "sub/b"), loader.listTemplateNames());
+  }
+
+  @Test
+  void testDelegatingLoaderListsTemplates() {
+    MemoryLoader first = new MemoryLoader();
+    first.addTemplate("a", "A");
+    first.addTemplate("b", "B");
+    MemoryLoader second = new MemoryLoader();
+    second.addTemplate("b", "B");
+    second.addTemplate("c", "C");
+    List<Loader<?>> loaders = Arrays.asList(first, second, new StringLoader());
+
+    assertEquals(Arrays.asList("a", "b", "c"), new DelegatingLoader(loaders).listTemplateNames());
+  }
+
   private class StringLoaderOne extends StringLoader {
 
     @Override
@@ -198,4 +198,46 @@ class MacroTest {
     template.evaluate(writer);
     assertEquals("barfoo", writer.toString());
   }
+
+  @Test
+  void testPrintedMacroIsStreamedToTheWriter() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble.getTemplate(
+        "{% macro m(value) %}<{{ value }}>{{ 1 / value.length }}{% endmacro %}{{ m('&') }}|");
+
+    Writer writer = new StringWriter();
+    template.evaluate(writer);
+    assertEquals("<&amp;>1|", writer.toString());
+
+    Writer failed = new StringWriter();
+    assertThrows(PebbleException.class,
+        () -> pebble.getTemplate("{% macro m() %}partial{{ 1 / 0 }}{% endmacro %}{{ m() }}")
+            .evaluate(failed));
+    assertEquals("partial", failed.toString());
+  }
+
+  @Test
+  void testPureMacroIsRenderedOncePerArguments() throws IOException {
+    String source = "{% macro m(x) MODIFIER %}{{ x }}{{ invocationCountingFunction() }}{% endmacro %}"
+        + "{{ m(1) }}{{ m(1) }}{{ m(2) }}|{{ m(1) | upper }}";
+    TestingExtension extension = new TestingExtension();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+        .extension(extension).build();
+
+    Writer writer = new StringWriter();
+    pebble.getTemplate(source.replace("MODIFIER", "pure")).evaluate(writer);
+    pebble.getTemplate(source.replace("MODIFIER", "pure")).evaluate(new StringWriter());
+
+    assertEquals("111122|11", writer.toString());
+    assertEquals(2, extension.getInvocationCountingFunction().getInvocationCount());
+
+    pebble.invalidateAll();
+    pebble.getTemplate(source.replace("MODIFIER", "pure")).evaluate(new StringWriter());
+    assertEquals(4, extension.getInvocationCountingFunction().getInvocationCount());
+
+    writer = new StringWriter();
+    pebble.getTemplate(source.replace("MODIFIER", "")).evaluate(writer);
+    assertEquals("151627|18", writer.toString());
+    assertEquals(8, extension.getInvocationCountingFunction().getInvocationCount());
+  }
 }
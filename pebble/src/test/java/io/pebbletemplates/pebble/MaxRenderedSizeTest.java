@@ -1,13 +1,19 @@
 package io.pebbletemplates.pebble;
 
 import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.loader.StringLoader;
 import io.pebbletemplates.pebble.template.PebbleTemplate;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -41,4 +47,58 @@ class MaxRenderedSizeTest {
 
         assertThrows(OutOfMemoryError.class, () -> template.evaluate(writer));
     }
+
+    @Test
+    void bytesAreLimitedOnceEncodedInUtf8() throws IOException {
+        PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+                .maxRenderedBytes(10)
+                .build();
+
+        Writer writer = new StringWriter();
+        pebble.getTemplate("{{ 'é€😀' }}a").evaluate(writer);
+        assertEquals("é€😀a", writer.toString());
+
+        PebbleException thrown = assertThrows(PebbleException.class,
+                () -> pebble.getTemplate("{{ 'é€😀' }}ab").evaluate(new StringWriter()));
+        assertTrue(thrown.getMessage().contains("10 bytes"));
+    }
+
+    @Test
+    void parentTemplatesAreChargedOnce() throws IOException {
+        MemoryLoader loader = new MemoryLoader();
+        loader.addTemplate("base", "0123{% block content %}{% endblock %}{% include 'footer' %}");
+        loader.addTemplate("page", "{% extends 'base' %}{% block content %}4567{% endblock %}");
+        loader.addTemplate("footer", "89");
+        PebbleEngine pebble = new PebbleEngine.Builder().loader(loader)
+                .maxRenderedSize(10)
+                .build();
+
+        Writer writer = new StringWriter();
+        pebble.getTemplate("page").evaluate(writer);
+        assertEquals("0123456789", writer.toString());
+    }
+
+    @Test
+    void parallelContentIsChargedWhenMerged() throws IOException {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader())
+                    .executorService(executorService)
+                    .maxRenderedSize(10)
+                    .build();
+
+            Writer writer = new StringWriter();
+            pebble.getTemplate("a{% parallel %}bcd{% endparallel %}{% parallel %}efg{% endparallel %}hij")
+                    .evaluate(writer);
+            assertEquals("abcdefghij", writer.toString());
+
+            // each parallel tag fits in the budget, but not both of them
+            PebbleException thrown = assertThrows(PebbleException.class,
+                    () -> pebble.getTemplate("a{% parallel %}bcdef{% endparallel %}"
+                            + "{% parallel %}ghijk{% endparallel %}").evaluate(new StringWriter()));
+            assertTrue(thrown.getMessage().contains("10 chars"));
+        } finally {
+            executorService.shutdown();
+        }
+    }
 }
@@ -0,0 +1,141 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.ParserException;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.template.PrecompilationReport;
+import io.pebbletemplates.pebble.template.TemplateArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static io.pebbletemplates.pebble.Templates.write;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrecompileTest {
+
+  @Test
+  void precompilesAllTemplatesOfTheLoader(@TempDir Path directory) throws IOException {
+    write(directory, "base.peb", "base {% block content %}{% endblock %}");
+    write(directory, "pages/page.peb", "{% extends 'base' %}{% block content %}page{% endblock %}");
+    write(directory, "broken.peb", "{{ missing ");
+    CountingLoader loader = new CountingLoader(directory);
+    loader.setSuffix(".peb");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).build();
+
+    PrecompilationReport report = engine.precompile();
+
+    assertEquals(3, report.getResults().size());
+    assertFalse(report.isSuccessful());
+    assertEquals(1, report.getFailures().size());
+    PrecompilationReport.Result failure = report.getFailures().get(0);
+    assertEquals("broken", failure.getTemplateName());
+    assertInstanceOf(ParserException.class, failure.getError());
+    assertEquals(3, loader.reads.get());
+
+    engine.getTemplate("pages/page");
+    engine.getTemplate("base");
+    assertEquals(3, loader.reads.get());
+  }
+
+  @Test
+  void precompilesTheGivenTemplatesOnAnExecutor(@TempDir Path directory) throws IOException {
+    write(directory, "a.peb", "a");
+    write(directory, "b.peb", "b");
+    CountingLoader loader = new CountingLoader(directory);
+    loader.setSuffix(".peb");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).build();
+    ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+    try {
+      PrecompilationReport report = engine.precompile(Arrays.asList("a", "b"), executorService);
+
+      assertTrue(report.isSuccessful());
+      assertEquals("a", report.getResults().get(0).getTemplateName());
+      assertEquals("b", report.getResults().get(1).getTemplateName());
+      assertEquals(2, loader.reads.get());
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  void precompilesOnTheExecutorOfTheEngine(@TempDir Path directory) throws IOException {
+    write(directory, "a.peb", "a");
+    write(directory, "b.peb", "b");
+    FileLoader loader = new FileLoader(directory.toString());
+    loader.setSuffix(".peb");
+    AtomicInteger tasks = new AtomicInteger();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .executorService(new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>()) {
+          @Override
+          public void execute(Runnable command) {
+            tasks.incrementAndGet();
+            super.execute(command);
+          }
+        })
+        .build();
+
+    try {
+      PrecompilationReport report = engine.precompile(Arrays.asList("a", "b"));
+
+      assertTrue(report.isSuccessful());
+      assertEquals(2, tasks.get());
+    } finally {
+      engine.getExecutorService().shutdown();
+    }
+  }
+
+  @Test
+  void precompilesAndArchivesTheTemplatesLoadingEachOnce(@TempDir Path directory)
+      throws IOException {
+    write(directory, "base.peb", "base {% block content %}{% endblock %}");
+    write(directory, "page.peb", "{% extends 'base' %}{% block content %}page{% endblock %}");
+    write(directory, "broken.peb", "{{ missing ");
+    CountingLoader loader = new CountingLoader(directory);
+    loader.setSuffix(".peb");
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).build();
+    Path file = directory.resolve("templates.archive");
+
+    PrecompilationReport report = engine.precompile(Arrays.asList("base", "page", "broken"), file);
+
+    assertEquals(3, report.getResults().size());
+    assertEquals("broken", report.getFailures().get(0).getTemplateName());
+    assertEquals(3, loader.reads.get());
+    assertEquals(new HashSet<>(Arrays.asList("base", "page")),
+        TemplateArchive.open(file).getTemplateNames());
+
+    assertEquals("base page", render(engine.getTemplate("page")));
+    assertEquals(3, loader.reads.get());
+  }
+
+  private static class CountingLoader extends FileLoader {
+
+    private final AtomicInteger reads = new AtomicInteger();
+
+    private CountingLoader(Path directory) {
+      super(directory.toString());
+    }
+
+    @Override
+    public Reader getReader(String templateName) {
+      this.reads.incrementAndGet();
+      return super.getReader(templateName);
+    }
+  }
+}
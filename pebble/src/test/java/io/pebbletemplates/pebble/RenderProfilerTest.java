@@ -0,0 +1,136 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.extension.AbstractExtension;
+import io.pebbletemplates.pebble.extension.Filter;
+import io.pebbletemplates.pebble.instrumentation.RenderProfiler;
+import io.pebbletemplates.pebble.loader.MemoryLoader;
+import io.pebbletemplates.pebble.template.EvaluationContext;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RenderProfilerTest {
+
+  private static final String BASE = "<html>{% block content %}{% endblock %}</html>";
+
+  private static final String PAGE = "{% extends 'base' %}{% set title = 'list' | upper %}\n"
+      + "{% block content %}{{ title }}{% for i in items %}\n"
+      + "{{ i | slow }}{{ item(i) }}{% endfor %}\n"
+      + "{% include 'footer' %}{% endblock %}\n"
+      + "{% macro item(i) %}[{{ i + 1 }}]{% endmacro %}";
+
+  private static final Map<String, Object> CONTEXT = Collections.singletonMap("items",
+      Arrays.asList(1, 2, 3));
+
+  @Test
+  void rendersLikeWithoutProfiling() throws IOException {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader())
+        .extension(new SlowExtension()).build();
+    PebbleEngine profiled = new PebbleEngine.Builder().loader(loader())
+        .extension(new SlowExtension()).profiler(new RenderProfiler()).build();
+
+    assertEquals("<html>LIST1[2]2[3]3[4]footer</html>",
+        render(engine.getTemplate("page"), CONTEXT));
+    assertEquals(render(engine.getTemplate("page"), CONTEXT),
+        render(profiled.getTemplate("page"), CONTEXT));
+  }
+
+  @Test
+  void reportsTheTimeSpentPerLine() throws IOException {
+    RenderProfiler profiler = new RenderProfiler();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader())
+        .extension(new SlowExtension()).profiler(profiler).build();
+
+    render(engine.getTemplate("page"), CONTEXT);
+
+    Map<String, RenderProfiler.Entry> entries = new HashMap<>();
+    for (RenderProfiler.Entry entry : profiler.getEntries()) {
+      entries.put(entry.getTemplateName() + ":" + entry.getLineNumber() + " " + entry.getName(),
+          entry);
+    }
+    assertEquals(1, entries.get("page:1 filter upper").getCount());
+    assertEquals(1, entries.get("page:2 for").getCount());
+    assertEquals(3, entries.get("page:3 filter slow").getCount());
+    assertEquals(3, entries.get("page:3 call item").getCount());
+    assertEquals(3, entries.get("page:5 print").getCount());
+    assertEquals(1, entries.get("page:4 include").getCount());
+    assertEquals(1, entries.get("footer:1 filter lower").getCount());
+    RenderProfiler.Entry loop = entries.get("page:2 for");
+    RenderProfiler.Entry filter = entries.get("page:3 filter slow");
+    assertTrue(filter.getExclusiveNanos() >= TimeUnit.MILLISECONDS.toNanos(3));
+    assertTrue(loop.getInclusiveNanos() >= filter.getInclusiveNanos());
+    List<RenderProfiler.Entry> sorted = profiler.getEntries();
+    for (int i = 1; i < sorted.size(); i++) {
+      assertTrue(sorted.get(i - 1).getExclusiveNanos() >= sorted.get(i).getExclusiveNanos());
+    }
+  }
+
+  @Test
+  void writesCollapsedStacks() throws IOException {
+    RenderProfiler profiler = new RenderProfiler();
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader())
+        .extension(new SlowExtension()).profiler(profiler).build();
+    render(engine.getTemplate("page"), CONTEXT);
+
+    StringWriter writer = new StringWriter();
+    profiler.writeCollapsedStacks(writer);
+
+    List<String> lines = Arrays.asList(writer.toString().split("\n"));
+    for (String line : lines) {
+      assertTrue(line.matches("[^;]+(;[^;]+)* \\d+"), line);
+    }
+    String slowStack = "base:1 block;page:2 for;page:3 print;page:3 filter escape;"
+        + "page:3 filter slow ";
+    String includeStack = "base:1 block;page:4 include;footer:1 print;footer:1 filter escape;"
+        + "footer:1 filter lower ";
+    assertTrue(lines.stream().anyMatch(line -> line.startsWith(slowStack)), writer.toString());
+    assertTrue(lines.stream().anyMatch(line -> line.startsWith(includeStack)), writer.toString());
+
+    profiler.reset();
+    assertEquals(Collections.emptyList(), profiler.getEntries());
+  }
+
+  private static MemoryLoader loader() {
+    MemoryLoader loader = new MemoryLoader();
+    loader.addTemplate("base", BASE);
+    loader.addTemplate("page", PAGE);
+    loader.addTemplate("footer", "{{ 'FOOTER' | lower }}");
+    return loader;
+  }
+
+  private static class SlowExtension extends AbstractExtension {
+
+    @Override
+    public Map<String, Filter> getFilters() {
+      return Collections.singletonMap("slow", new Filter() {
+        @Override
+        public List<String> getArgumentNames() {
+          return null;
+        }
+
+        @Override
+        public Object apply(Object input, Map<String, Object> args, PebbleTemplate self,
+            EvaluationContext context, int lineNumber) {
+          try {
+            Thread.sleep(1);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          return input;
+        }
+      });
+    }
+  }
+}
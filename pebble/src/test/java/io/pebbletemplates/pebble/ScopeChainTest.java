@@ -9,6 +9,8 @@
 package io.pebbletemplates.pebble;
 
 import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.template.Frame;
+import io.pebbletemplates.pebble.template.FrameSlot;
 import io.pebbletemplates.pebble.template.ScopeChain;
 
 import org.junit.jupiter.api.Test;
@@ -97,4 +99,74 @@ class ScopeChainTest {
     assertTrue(scopeChain.containsKey("key2"));
     assertTrue(scopeChain.containsKey("key3"));
   }
+
+  @Test
+  void testGetAndSetFrameSlot() {
+    Frame.Layout outer = new Frame.Layout("loop", "item");
+    Frame.Layout inner = new Frame.Layout("loop", "cell");
+    FrameSlot item = new FrameSlot(new Frame.Layout[]{inner, outer}, 1);
+
+    ScopeChain scopeChain = new ScopeChain();
+    scopeChain.pushScope();
+    scopeChain.pushScope(new Frame(outer, false));
+    scopeChain.put("item", "value");
+    scopeChain.pushScope(new Frame(inner, false));
+    scopeChain.put("cell", "cell");
+
+    assertEquals("value", scopeChain.get(item, "item"));
+    assertTrue(scopeChain.set(item, "item", "value2"));
+    assertEquals("value2", scopeChain.get("item"));
+    scopeChain.popScope();
+    assertEquals("value2", scopeChain.get("item"));
+  }
+
+  @Test
+  void testFrameSlotFallsBackWhenChainDoesNotMatch() {
+    Frame.Layout layout = new Frame.Layout("loop", "item");
+    FrameSlot item = new FrameSlot(new Frame.Layout[]{layout}, 1);
+
+    ScopeChain scopeChain = new ScopeChain();
+    scopeChain.pushScope();
+    Frame frame = new Frame(layout, false);
+    scopeChain.pushScope(frame);
+    assertNull(scopeChain.get(item, "item"));
+    assertFalse(scopeChain.set(item, "item", "value"));
+
+    frame.put("item", "value");
+    scopeChain.pushScope();
+    scopeChain.put("item", "shadowed");
+    assertNull(scopeChain.get(item, "item"));
+    assertEquals("shadowed", scopeChain.get("item"));
+    scopeChain.popScope();
+
+    scopeChain.put("other", "other");
+    assertEquals("value", scopeChain.get(item, "item"));
+    assertEquals("other", scopeChain.get("other"));
+    assertTrue(scopeChain.containsKey("other"));
+  }
+
+  @Test
+  void testSnapshotIsCopiedOnWrite() {
+    Frame.Layout layout = new Frame.Layout("loop", "item");
+    FrameSlot item = new FrameSlot(new Frame.Layout[]{layout}, 1);
+
+    ScopeChain scopeChain = new ScopeChain();
+    scopeChain.pushScope();
+    scopeChain.put("key", "value");
+    Frame frame = new Frame(layout, false);
+    scopeChain.pushScope(frame);
+    frame.setSlot(1, "first");
+
+    ScopeChain snapshot = scopeChain.snapshot();
+    frame.setSlot(1, "second");
+    scopeChain.set("key", "changed");
+    snapshot.set("other", "added");
+
+    assertEquals("first", snapshot.get(item, "item"));
+    assertEquals("value", snapshot.get("key"));
+    assertEquals("second", scopeChain.get(item, "item"));
+    assertEquals("changed", scopeChain.get("key"));
+    assertFalse(scopeChain.containsKey("other"));
+    assertEquals("added", snapshot.get("other"));
+  }
 }
@@ -0,0 +1,217 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.error.PebbleException;
+import io.pebbletemplates.pebble.lexer.Syntax;
+import io.pebbletemplates.pebble.loader.FileLoader;
+import io.pebbletemplates.pebble.node.RootNode;
+import io.pebbletemplates.pebble.template.NodeCodec;
+import io.pebbletemplates.pebble.template.TemplateArchive;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static io.pebbletemplates.pebble.Templates.render;
+import static io.pebbletemplates.pebble.Templates.write;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TemplateArchiveTest {
+
+  private static final String BASE = "{% macro item(name, price=0) %}<li>{{ name }}: {{ price }}"
+      + "</li>{% endmacro %}<html>{% block content %}default{% endblock %}</html>";
+
+  private static final String PAGE = "{% extends 'base' %}{% import 'base' %}"
+      + "{% block content %}{% set total = 0 %}<ul>{% for product in products %}"
+      + "{{ item(product.name | upper, price=product.price) }}"
+      + "{% set total = total + product.price %}{% else %}none{% endfor %}</ul>"
+      + "{% if total is even %}even{% elseif total > 10 %}large{% endif %} {{ total }}"
+      + "{% set data = {'a': 1, 'b': [1, 2.5, 'x']} %} {{ data.b[1] }} {{ tag }}"
+      + " {{ \"#{total}!\" }}"
+      + "{% include 'footer' with {'year': 2024} %}{% endblock %}";
+
+  @Test
+  void rendersArchivedTemplatesLikeParsedTemplates(@TempDir Path directory) throws IOException {
+    FileLoader loader = writeTemplates(directory);
+    Path file = directory.resolve("templates.archive");
+    PebbleEngine parsing = new PebbleEngine.Builder().loader(loader).build();
+    List<String> archived = parsing.writeTemplateArchive(file);
+    assertEquals(3, archived.size());
+
+    TemplateArchive archive = TemplateArchive.open(file);
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).templateArchive(archive)
+        .build();
+
+    assertSame(archive, engine.getTemplateArchive());
+    assertNotNull(archive.read("page", PAGE, codec(engine)));
+    assertEquals(render(parsing.getTemplate("page"), context()),
+        render(engine.getTemplate("page"), context()));
+    assertEquals("<html><ul><li>PEN: 3</li><li>BOOK: 12</li></ul>large 15 2.5 &lt;b&gt; 15!"
+        + "&copy; 2024</html>", render(engine.getTemplate("page"), context()));
+  }
+
+  @Test
+  void parsesTemplatesChangedSinceTheArchiveWasWritten(@TempDir Path directory)
+      throws IOException {
+    FileLoader loader = writeTemplates(directory);
+    Path file = directory.resolve("templates.archive");
+    new PebbleEngine.Builder().loader(loader).build().writeTemplateArchive(file);
+    write(directory, "footer.peb", "changed {{ year }}");
+
+    TemplateArchive archive = TemplateArchive.open(file);
+
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).templateArchive(archive)
+        .build();
+    assertNull(archive.read("footer", "changed {{ year }}", codec(engine)));
+    assertEquals("<html><ul><li>PEN: 3</li><li>BOOK: 12</li></ul>large 15 2.5 &lt;b&gt; 15!"
+        + "changed 2024</html>", render(engine.getTemplate("page"), context()));
+  }
+
+  @Test
+  void ignoresArchivesWrittenWithAnotherConfiguration(@TempDir Path directory)
+      throws IOException {
+    FileLoader loader = writeTemplates(directory);
+    Path file = directory.resolve("templates.archive");
+    new PebbleEngine.Builder().loader(loader).build().writeTemplateArchive(file);
+
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader)
+        .syntax(new Syntax.Builder().setPrintOpenDelimiter("${").setPrintCloseDelimiter("}")
+            .build())
+        .templateArchive(TemplateArchive.open(file))
+        .build();
+
+    assertNull(engine.getTemplateArchive());
+  }
+
+  @Test
+  void parsesCorruptedTemplates(@TempDir Path directory) throws IOException {
+    FileLoader loader = writeTemplates(directory);
+    Path file = directory.resolve("templates.archive");
+    new PebbleEngine.Builder().loader(loader).build()
+        .writeTemplateArchive(Collections.singletonList("footer"), file);
+    byte[] bytes = Files.readAllBytes(file);
+    bytes[bytes.length - 2] ^= 0x7F;
+    Files.write(file, bytes);
+
+    TemplateArchive archive = TemplateArchive.open(file);
+
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).templateArchive(archive)
+        .build();
+    assertNull(archive.read("footer", "&copy; {{ year }}", codec(engine)));
+    assertEquals("<html><ul><li>PEN: 3</li><li>BOOK: 12</li></ul>large 15 2.5 &lt;b&gt; 15!"
+        + "&copy; 2024</html>", render(engine.getTemplate("page"), context()));
+  }
+
+  @Test
+  void readsArchivesPackagedInJars(@TempDir Path directory) throws IOException {
+    FileLoader loader = writeTemplates(directory);
+    Path file = directory.resolve("templates.archive");
+    new PebbleEngine.Builder().loader(loader).build().writeTemplateArchive(file);
+    Path jar = directory.resolve("templates.jar");
+    try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar))) {
+      out.putNextEntry(new JarEntry("META-INF/pebble/templates.archive"));
+      Files.copy(file, out);
+      out.closeEntry();
+    }
+
+    TemplateArchive archive = TemplateArchive.open(
+        new URL("jar:" + jar.toUri() + "!/META-INF/pebble/templates.archive"));
+
+    assertEquals(TemplateArchive.open(file.toUri().toURL()).getTemplateNames(),
+        archive.getTemplateNames());
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).templateArchive(archive)
+        .build();
+    assertSame(archive, engine.getTemplateArchive());
+    assertNotNull(archive.read("page", PAGE, codec(engine)));
+  }
+
+  @Test
+  void rejectsFilesWhichAreNotArchives(@TempDir Path directory) throws IOException {
+    Path file = directory.resolve("templates.archive");
+    Files.write(file, "not an archive".getBytes(StandardCharsets.UTF_8));
+
+    assertThrows(IOException.class, () -> TemplateArchive.open(file));
+  }
+
+  @Test
+  void archivesAllTheTestTemplates(@TempDir Path directory)
+      throws IOException, URISyntaxException {
+    Path templates = Paths.get(this.getClass().getResource("/templates").toURI());
+    FileLoader loader = new FileLoader(templates.toString());
+    PebbleEngine engine = new PebbleEngine.Builder().loader(loader).build();
+    List<String> names = new ArrayList<>();
+    for (String name : loader.listTemplateNames()) {
+      try {
+        engine.getTemplate(name);
+        names.add(name);
+      } catch (PebbleException e) {
+        // not every test template is valid
+      }
+    }
+    Path file = directory.resolve("templates.archive");
+
+    List<String> archived = engine.writeTemplateArchive(names, file);
+
+    assertEquals(names, archived);
+    assertFalse(names.isEmpty());
+    TemplateArchive archive = TemplateArchive.open(file);
+    NodeCodec codec = codec(engine);
+    for (String name : names) {
+      String source = new String(Files.readAllBytes(templates.resolve(name)),
+          StandardCharsets.UTF_8);
+      RootNode root = archive.read(name, source, codec);
+      assertNotNull(root, name);
+      byte[] encoded = codec.encode(root);
+      assertArrayEquals(encoded, codec.encode(codec.decode(ByteBuffer.wrap(encoded))), name);
+    }
+  }
+
+  private static NodeCodec codec(PebbleEngine engine) {
+    return new NodeCodec(engine.getExtensionRegistry());
+  }
+
+  private static FileLoader writeTemplates(Path directory) throws IOException {
+    write(directory, "base.peb", BASE);
+    write(directory, "page.peb", PAGE);
+    write(directory, "footer.peb", "&copy; {{ year }}");
+    FileLoader loader = new FileLoader(directory.toString());
+    loader.setSuffix(".peb");
+    return loader;
+  }
+
+  private static Map<String, Object> context() {
+    Map<String, Object> context = new HashMap<>();
+    List<Map<String, Object>> products = new ArrayList<>();
+    products.add(product("pen", 3));
+    products.add(product("book", 12));
+    context.put("products", products);
+    context.put("tag", "<b>");
+    return context;
+  }
+
+  private static Map<String, Object> product(String name, int price) {
+    Map<String, Object> product = new HashMap<>();
+    product.put("name", name);
+    product.put("price", price);
+    return product;
+  }
+}
@@ -0,0 +1,37 @@
+package io.pebbletemplates.pebble;
+
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Helpers shared by the tests.
+ */
+final class Templates {
+
+  private Templates() {
+  }
+
+  static String render(PebbleTemplate template) throws IOException {
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer);
+    return writer.toString();
+  }
+
+  static String render(PebbleTemplate template, Map<String, Object> context) throws IOException {
+    StringWriter writer = new StringWriter();
+    template.evaluate(writer, context);
+    return writer.toString();
+  }
+
+  static void write(Path directory, String name, String content) throws IOException {
+    Path file = directory.resolve(name);
+    Files.createDirectories(file.getParent());
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
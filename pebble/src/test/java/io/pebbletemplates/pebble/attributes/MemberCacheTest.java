@@ -0,0 +1,78 @@
+package io.pebbletemplates.pebble.attributes;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.attributes.MemberCacheUtils.MemberCacheKey;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MemberCacheTest {
+
+  @Test
+  void cachesTheMissingMembers() throws IOException {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = engine.getTemplate("{{ user.name }}{{ user.missing }}");
+
+    for (int i = 0; i < 3; i++) {
+      StringWriter writer = new StringWriter();
+      template.evaluate(writer, Collections.singletonMap("user", new User()));
+      assertEquals("Bob", writer.toString());
+    }
+
+    MemberCacheStats stats = memberCacheStats(engine);
+    assertEquals(2, stats.getMissCount());
+    assertEquals(2, stats.getSize());
+    assertTrue(stats.getHitCount() > 0, stats.toString());
+  }
+
+  @Test
+  void boundsTheNumberOfCachedMembers() {
+    MemberCache cache = new ConcurrentMapMemberCache(2);
+
+    for (String name : new String[]{"a", "b", "c"}) {
+      cache.computeIfAbsent(new MemberCacheKey(User.class, name, new Class<?>[0]),
+          key -> MemberAccessor.MISSING);
+    }
+    MemberAccessor last = cache.computeIfAbsent(new MemberCacheKey(User.class, "c", new Class<?>[0]),
+        key -> {
+          throw new AssertionError("cached member reflected again");
+        });
+
+    MemberCacheStats stats = cache.stats();
+    assertSame(MemberAccessor.MISSING, last);
+    assertEquals(2, stats.getSize());
+    assertEquals(1, stats.getEvictionCount());
+    assertEquals(3, stats.getMissCount());
+  }
+
+  @Test
+  void usesTheConfiguredSize() {
+    PebbleEngine engine = new PebbleEngine.Builder().loader(new StringLoader())
+        .memberCacheSize(50).build();
+
+    assertEquals(50, memberCacheStats(engine).getMaximumSize());
+  }
+
+  private static MemberCacheStats memberCacheStats(PebbleEngine engine) {
+    return engine.getExtensionRegistry().getAttributeResolver().stream()
+        .filter(DefaultAttributeResolver.class::isInstance)
+        .map(resolver -> ((DefaultAttributeResolver) resolver).getMemberCacheStats())
+        .findFirst()
+        .orElseThrow(IllegalStateException::new);
+  }
+
+  public static class User {
+
+    public String getName() {
+      return "Bob";
+    }
+  }
+}
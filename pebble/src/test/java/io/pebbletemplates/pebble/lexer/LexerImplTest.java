@@ -1,5 +1,6 @@
 package io.pebbletemplates.pebble.lexer;
 
+import io.pebbletemplates.pebble.error.ParserException;
 import io.pebbletemplates.pebble.extension.ExtensionRegistry;
 import io.pebbletemplates.pebble.extension.core.CoreExtension;
 import io.pebbletemplates.pebble.loader.Loader;
@@ -13,6 +14,7 @@ import org.slf4j.LoggerFactory;
 import java.io.Reader;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class LexerImplTest {
 
@@ -461,4 +463,51 @@ class LexerImplTest {
 	assertThat(tokenStream.peek(i++).getValue()).isNull(); 
   }
   
+  /**
+   * Test tokenizing numbers, strings and identifiers which aren't ASCII.
+   */
+  @Test
+  void testLiteralsAndUnicodeNames() {
+    Loader<String> loader = new StringLoader();
+    Reader templateReader = loader.getReader(
+        "{{ 12L + 3.5 + 4. ~ 'it\\'s' ~ \"say \\\"hi\\\"\" ~ éte_1 }}");
+
+    TokenStream tokenStream = this.lexer.tokenize(templateReader, this.TEMPLATE_NAME);
+
+    int i = 1;
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.LONG);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("12");
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("+");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.NUMBER);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("3.5");
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("+");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.NUMBER);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("4");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.PUNCTUATION);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo(".");
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("~");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.STRING);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("it's");
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("~");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.STRING);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("say \"hi\"");
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("~");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.NAME);
+    assertThat(tokenStream.peek(i++).getValue()).isEqualTo("éte_1");
+    assertThat(tokenStream.peek(i).getType()).isEqualTo(Token.Type.PRINT_END);
+  }
+
+  /**
+   * Test that an unterminated string in an interpolation is reported instead of looping.
+   */
+  @Test
+  void testUnclosedStringInInterpolation() {
+    Loader<String> loader = new StringLoader();
+    Reader templateReader = loader.getReader("{{ \"a #{ \"b\\");
+
+    assertThatThrownBy(() -> this.lexer.tokenize(templateReader, this.TEMPLATE_NAME))
+        .isInstanceOf(ParserException.class)
+        .hasMessageContaining("Unclosed \"\"\"");
+  }
+
 }
@@ -30,4 +30,16 @@ public class MacroGlobalVariablesTest {
     pebble.getTemplate("{% macro m() %}{{ someGlobalValue }}{% endmacro %}{{ m() }}").evaluate(writer);
     assertEquals("18181", writer.toString());
   }
+
+  @Test
+  void globalVariablesCanBeShadowedInsideMacros() throws IOException {
+    Extension extension = new Extension();
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).strictVariables(true).extension(extension).build();
+    StringWriter writer = new StringWriter();
+    pebble.getTemplate("{% macro m(someGlobalValue=1) %}{{ someGlobalValue }}{% endmacro %}"
+        + "{% macro n() %}{% set someGlobalValue = 2 %}{{ someGlobalValue }}{% endmacro %}"
+        + "{{ m() }}{{ m(3) }}{{ n() }}{{ n() }}{{ someGlobalValue }}").evaluate(writer);
+    assertEquals("132218181", writer.toString());
+    assertEquals(18181, pebble.getExtensionRegistry().getGlobalVariables().get("someGlobalValue"));
+  }
 }
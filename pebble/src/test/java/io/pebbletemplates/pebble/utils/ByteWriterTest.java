@@ -0,0 +1,122 @@
+package io.pebbletemplates.pebble.utils;
+
+import io.pebbletemplates.pebble.PebbleEngine;
+import io.pebbletemplates.pebble.loader.StringLoader;
+import io.pebbletemplates.pebble.template.PebbleTemplate;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests {@link ByteWriter}.
+ */
+class ByteWriterTest {
+
+  private static final String TEXT = "ascii é € 😀 done";
+
+  @Test
+  void encodesLikeStringGetBytes() throws IOException {
+    for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1,
+        StandardCharsets.UTF_16}) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ByteWriter writer = new ByteWriter(outputStream, charset);
+      writer.write(TEXT);
+      writer.flush();
+
+      assertArrayEquals(TEXT.getBytes(charset), outputStream.toByteArray(), charset.name());
+    }
+  }
+
+  @Test
+  void encodesSurrogatePairSplitAcrossWrites() throws IOException {
+    for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16LE}) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      ByteWriter writer = new ByteWriter(outputStream, charset);
+      for (char c : TEXT.toCharArray()) {
+        writer.write(c);
+      }
+      writer.flush();
+
+      assertArrayEquals(TEXT.getBytes(charset), outputStream.toByteArray(), charset.name());
+    }
+  }
+
+  @Test
+  void replacesUnpairedSurrogate() throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ByteWriter writer = new ByteWriter(outputStream, StandardCharsets.UTF_8);
+    writer.write("a\uD83D");
+    writer.writeEncoded("b".getBytes(StandardCharsets.UTF_8), 1);
+    writer.write("\uDE00c");
+    writer.flush();
+
+    assertEquals("a?b?c", new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  void writesMoreThanTheBuffer() throws IOException {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      builder.append("é€");
+    }
+    String text = builder.toString();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ByteWriter writer = new ByteWriter(outputStream, StandardCharsets.UTF_8);
+    writer.write(text);
+    writer.writeEncoded(text.getBytes(StandardCharsets.UTF_8), text.length());
+    writer.flush();
+
+    assertEquals(text + text, new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(2L * text.length(), writer.getCharCount());
+  }
+
+  @Test
+  void writesBuffersOfTheGivenSize() throws IOException {
+    List<Integer> writes = new ArrayList<>();
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream() {
+      @Override
+      public synchronized void write(byte[] b, int off, int len) {
+        writes.add(len);
+        super.write(b, off, len);
+      }
+    };
+    ByteWriter writer = new ByteWriter(outputStream, StandardCharsets.UTF_8, 16);
+    writer.write("0123456789");
+    writer.writeEncoded("abcdefghijklmnopqrstuvwxyz".getBytes(StandardCharsets.UTF_8), 26);
+    writer.flush();
+
+    assertEquals("0123456789abcdefghijklmnopqrstuvwxyz",
+        new String(outputStream.toByteArray(), StandardCharsets.UTF_8));
+    assertEquals(Arrays.asList(16, 16, 4), writes);
+  }
+
+  @Test
+  void evaluatesTemplateIntoOutputStream() throws IOException {
+    PebbleEngine pebble = new PebbleEngine.Builder().loader(new StringLoader()).build();
+    PebbleTemplate template = pebble
+        .getTemplate("<p>é {{ name }}</p>{% for i in [1, 2] %}<li>€{{ i }}</li>{% endfor %}");
+    Map<String, Object> context = new HashMap<>();
+    context.put("name", "😀 Zoë");
+
+    StringWriter expected = new StringWriter();
+    template.evaluate(expected, context);
+    for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1}) {
+      ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+      template.evaluate(outputStream, charset, context);
+
+      assertArrayEquals(expected.toString().getBytes(charset), outputStream.toByteArray());
+    }
+  }
+}